@@ -57,11 +57,13 @@ import org.broadinstitute.gatk.utils.commandline.Gatherer;
 import org.broadinstitute.gatk.utils.report.GATKReport;
 import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
 import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.threading.NamedThreadFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * User: carneiro
@@ -76,16 +78,37 @@ public class BQSRGatherer extends Gatherer  {
     private static final String MISSING_OUTPUT_FILE = "missing output file name";
     private static final String MISSING_READ_GROUPS = "Missing read group(s)";
 
+    /**
+     * The number of reports that may be loaded but not yet merged, whatever the number of gathering threads
+     */
+    private static final int MAX_REPORTS_IN_FLIGHT = 4;
+
+    /**
+     * Gathers the input recalibration reports into output.
+     *
+     * Binary recalibration reports are merged directly into a binary report; otherwise the output is a GATK report.
+     */
     @Override
     public void gather(final List<File> inputs, final File output) {
+        if ( ! inputs.isEmpty() && allBinaryReports(inputs) ) {
+            gatherRecalibrationReport(inputs).writeBinaryReport(output);
+            return;
+        }
+
         final PrintStream outputFile;
         try {
             outputFile = new PrintStream(output);
         } catch(FileNotFoundException e) {
             throw new UserException.MissingArgument("output", MISSING_OUTPUT_FILE);
         }
-        final GATKReport report = gatherReport(inputs);
-        report.print(outputFile);
+        gatherRecalibrationReport(inputs).printGATKReport(outputFile);
+    }
+
+    private static boolean allBinaryReports(final List<File> inputs) {
+        for ( final File input : inputs )
+            if ( ! BinaryRecalibrationReport.isBinaryReport(input) )
+                return false;
+        return true;
     }
 
     /**
@@ -95,44 +118,136 @@ public class BQSRGatherer extends Gatherer  {
      * @return gathered recalibration GATK report
      */
     public static GATKReport gatherReport(final List<File> inputs) {
-        final SortedSet<String> allReadGroups = new TreeSet<String>();
-        final LinkedHashMap<File, Set<String>> inputReadGroups = new LinkedHashMap<File, Set<String>>();
+        return gatherRecalibrationReport(inputs).createGATKReport();
+    }
 
-        // Get the read groups from each input report
-        for (final File input : inputs) {
-            final Set<String> readGroups = RecalibrationReport.getReadGroups(input);
-            inputReadGroups.put(input, readGroups);
-            allReadGroups.addAll(readGroups);
-        }
+    /**
+     * Gathers the input recalibration reports into a single recalibration report, with quantized qualities calculated.
+     *
+     * The reports are loaded on a pool of threads, with at most MAX_REPORTS_IN_FLIGHT reports loaded but not yet
+     * merged, so memory stays bounded no matter how many inputs or cores there are.  The loaded reports are merged
+     * in input order (each table on its own thread) on a separate pool, so merges never queue behind pending loads,
+     * and the floating point sums, and therefore the output, are exactly the same as when merging the reports one
+     * after another.
+     *
+     * @param inputs Input recalibration GATK reports
+     * @return gathered recalibration report
+     */
+    private static RecalibrationReport gatherRecalibrationReport(final List<File> inputs) {
+        final int nThreads = Math.max(1, Math.min(inputs.size(), Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(nThreads, MAX_REPORTS_IN_FLIGHT), new NamedThreadFactory("BQSR-gather-thread-%d"));
+        final ExecutorService combineExecutor = Executors.newFixedThreadPool(nThreads, new NamedThreadFactory("BQSR-combine-thread-%d"));
+        try {
+            final SortedSet<String> allReadGroups = new TreeSet<String>();
+            final LinkedHashMap<File, Set<String>> inputReadGroups = getReadGroups(inputs, executor);
+            for ( final Set<String> readGroups : inputReadGroups.values() )
+                allReadGroups.addAll(readGroups);
 
-        // Log the read groups that are missing from specific inputs
-        for (Map.Entry<File, Set<String>> entry: inputReadGroups.entrySet()) {
-            final File input = entry.getKey();
-            final Set<String> readGroups = entry.getValue();
-            if (allReadGroups.size() != readGroups.size()) {
-                // Since this is not completely unexpected, more than debug, but less than a proper warning.
-                logger.info(MISSING_READ_GROUPS + ": " + input.getAbsolutePath());
-                for (final Object readGroup: CollectionUtils.subtract(allReadGroups, readGroups)) {
-                    logger.info("  " + readGroup);
+            // Log the read groups that are missing from specific inputs
+            for (Map.Entry<File, Set<String>> entry: inputReadGroups.entrySet()) {
+                final File input = entry.getKey();
+                final Set<String> readGroups = entry.getValue();
+                if (allReadGroups.size() != readGroups.size()) {
+                    // Since this is not completely unexpected, more than debug, but less than a proper warning.
+                    logger.info(MISSING_READ_GROUPS + ": " + input.getAbsolutePath());
+                    for (final Object readGroup: CollectionUtils.subtract(allReadGroups, readGroups)) {
+                        logger.info("  " + readGroup);
+                    }
                 }
             }
-        }
 
-        RecalibrationReport generalReport = null;
-        for (File input : inputs) {
-            final RecalibrationReport inputReport = new RecalibrationReport(input, allReadGroups);
-            if( inputReport.isEmpty() ) { continue; }
+            final Iterator<File> toLoad = inputs.iterator();
+            final LinkedList<Future<RecalibrationReport>> loading = new LinkedList<Future<RecalibrationReport>>();
+            RecalibrationReport generalReport = null;
+            while ( toLoad.hasNext() || ! loading.isEmpty() ) {
+                while ( toLoad.hasNext() && loading.size() < MAX_REPORTS_IN_FLIGHT ) {
+                    final File input = toLoad.next();
+                    loading.add(executor.submit(new Callable<RecalibrationReport>() {
+                        @Override
+                        public RecalibrationReport call() {
+                            return new RecalibrationReport(input, allReadGroups);
+                        }
+                    }));
+                }
 
+                final RecalibrationReport inputReport = getResult(loading.removeFirst());
+                if( inputReport.isEmpty() ) { continue; }
+
+                if (generalReport == null)
+                    generalReport = inputReport;
+                else
+                    combine(generalReport, inputReport, combineExecutor);
+            }
             if (generalReport == null)
-                generalReport = inputReport;
-            else
-                generalReport.combine(inputReport);
+                throw new ReviewedGATKException(EMPTY_INPUT_LIST);
+
+            generalReport.calculateQuantizedQualities();
+
+            return generalReport;
+        } finally {
+            executor.shutdownNow();
+            combineExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the read groups of each input, reading the inputs in parallel
+     *
+     * @param inputs   Input recalibration GATK reports
+     * @param executor the executor to read the inputs with
+     * @return the read groups of each input, in input order
+     */
+    private static LinkedHashMap<File, Set<String>> getReadGroups(final List<File> inputs, final ExecutorService executor) {
+        final List<Future<SortedSet<String>>> results = new ArrayList<Future<SortedSet<String>>>(inputs.size());
+        for ( final File input : inputs ) {
+            results.add(executor.submit(new Callable<SortedSet<String>>() {
+                @Override
+                public SortedSet<String> call() {
+                    return RecalibrationReport.getReadGroups(input);
+                }
+            }));
+        }
+
+        final LinkedHashMap<File, Set<String>> inputReadGroups = new LinkedHashMap<File, Set<String>>();
+        for ( int i = 0; i < inputs.size(); i++ )
+            inputReadGroups.put(inputs.get(i), getResult(results.get(i)));
+        return inputReadGroups;
+    }
+
+    /**
+     * Same as generalReport.combine(inputReport), but with each table combined on its own thread
+     */
+    private static void combine(final RecalibrationReport generalReport, final RecalibrationReport inputReport, final ExecutorService executor) {
+        final RecalibrationTables generalTables = generalReport.getRecalibrationTables();
+        final RecalibrationTables inputTables = inputReport.getRecalibrationTables();
+        final List<Future<Object>> results = new ArrayList<Future<Object>>(generalTables.numTables());
+        for ( int i = 0; i < generalTables.numTables(); i++ ) {
+            final int tableIndex = i;
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    RecalUtils.combineTables(generalTables.getTable(tableIndex), inputTables.getTable(tableIndex));
+                    return null;
+                }
+            }));
         }
-        if (generalReport == null)
-            throw new ReviewedGATKException(EMPTY_INPUT_LIST);
 
-        generalReport.calculateQuantizedQualities();
+        for ( final Future<Object> result : results )
+            getResult(result);
+    }
 
-        return generalReport.createGATKReport();
+    /**
+     * Waits for a result, rethrowing any (user) exception thrown while computing it
+     */
+    private static <T> T getResult(final Future<T> result) {
+        try {
+            return result.get();
+        } catch ( InterruptedException e ) {
+            throw new ReviewedGATKException("Interrupted while gathering recalibration reports", e);
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new ReviewedGATKException("Failed to gather recalibration reports", e.getCause());
+        }
     }
 }
@@ -0,0 +1,470 @@
+/*
+* By downloading the PROGRAM you agree to the following terms of use:
+* 
+* BROAD INSTITUTE
+* SOFTWARE LICENSE AGREEMENT
+* FOR ACADEMIC NON-COMMERCIAL RESEARCH PURPOSES ONLY
+* 
+* This Agreement is made between the Broad Institute, Inc. with a principal address at 415 Main Street, Cambridge, MA 02142 (“BROAD”) and the LICENSEE and is effective at the date the downloading is completed (“EFFECTIVE DATE”).
+* 
+* WHEREAS, LICENSEE desires to license the PROGRAM, as defined hereinafter, and BROAD wishes to have this PROGRAM utilized in the public interest, subject only to the royalty-free, nonexclusive, nontransferable license rights of the United States Government pursuant to 48 CFR 52.227-14; and
+* WHEREAS, LICENSEE desires to license the PROGRAM and BROAD desires to grant a license on the following terms and conditions.
+* NOW, THEREFORE, in consideration of the promises and covenants made herein, the parties hereto agree as follows:
+* 
+* 1. DEFINITIONS
+* 1.1 PROGRAM shall mean copyright in the object code and source code known as GATK3 and related documentation, if any, as they exist on the EFFECTIVE DATE and can be downloaded from http://www.broadinstitute.org/gatk on the EFFECTIVE DATE.
+* 
+* 2. LICENSE
+* 2.1 Grant. Subject to the terms of this Agreement, BROAD hereby grants to LICENSEE, solely for academic non-commercial research purposes, a non-exclusive, non-transferable license to: (a) download, execute and display the PROGRAM and (b) create bug fixes and modify the PROGRAM. LICENSEE hereby automatically grants to BROAD a non-exclusive, royalty-free, irrevocable license to any LICENSEE bug fixes or modifications to the PROGRAM with unlimited rights to sublicense and/or distribute.  LICENSEE agrees to provide any such modifications and bug fixes to BROAD promptly upon their creation.
+* The LICENSEE may apply the PROGRAM in a pipeline to data owned by users other than the LICENSEE and provide these users the results of the PROGRAM provided LICENSEE does so for academic non-commercial purposes only. For clarification purposes, academic sponsored research is not a commercial use under the terms of this Agreement.
+* 2.2 No Sublicensing or Additional Rights. LICENSEE shall not sublicense or distribute the PROGRAM, in whole or in part, without prior written permission from BROAD. LICENSEE shall ensure that all of its users agree to the terms of this Agreement. LICENSEE further agrees that it shall not put the PROGRAM on a network, server, or other similar technology that may be accessed by anyone other than the LICENSEE and its employees and users who have agreed to the terms of this agreement.
+* 2.3 License Limitations. Nothing in this Agreement shall be construed to confer any rights upon LICENSEE by implication, estoppel, or otherwise to any computer software, trademark, intellectual property, or patent rights of BROAD, or of any other entity, except as expressly granted herein. LICENSEE agrees that the PROGRAM, in whole or part, shall not be used for any commercial purpose, including without limitation, as the basis of a commercial software or hardware product or to provide services. LICENSEE further agrees that the PROGRAM shall not be copied or otherwise adapted in order to circumvent the need for obtaining a license for use of the PROGRAM.
+* 
+* 3. PHONE-HOME FEATURE
+* LICENSEE expressly acknowledges that the PROGRAM contains an embedded automatic reporting system (“PHONE-HOME”) which is enabled by default upon download. Unless LICENSEE requests disablement of PHONE-HOME, LICENSEE agrees that BROAD may collect limited information transmitted by PHONE-HOME regarding LICENSEE and its use of the PROGRAM.  Such information shall include LICENSEE’S user identification, version number of the PROGRAM and tools being run, mode of analysis employed, and any error reports generated during run-time.  Collection of such information is used by BROAD solely to monitor usage rates, fulfill reporting requirements to BROAD funding agencies, drive improvements to the PROGRAM, and facilitate adjustments to PROGRAM-related documentation.
+* 
+* 4. OWNERSHIP OF INTELLECTUAL PROPERTY
+* LICENSEE acknowledges that title to the PROGRAM shall remain with BROAD. The PROGRAM is marked with the following BROAD copyright notice and notice of attribution to contributors. LICENSEE shall retain such notice on all copies. LICENSEE agrees to include appropriate attribution if any results obtained from use of the PROGRAM are included in any publication.
+* Copyright 2012-2014 Broad Institute, Inc.
+* Notice of attribution: The GATK3 program was made available through the generosity of Medical and Population Genetics program at the Broad Institute, Inc.
+* LICENSEE shall not use any trademark or trade name of BROAD, or any variation, adaptation, or abbreviation, of such marks or trade names, or any names of officers, faculty, students, employees, or agents of BROAD except as states above for attribution purposes.
+* 
+* 5. INDEMNIFICATION
+* LICENSEE shall indemnify, defend, and hold harmless BROAD, and their respective officers, faculty, students, employees, associated investigators and agents, and their respective successors, heirs and assigns, (Indemnitees), against any liability, damage, loss, or expense (including reasonable attorneys fees and expenses) incurred by or imposed upon any of the Indemnitees in connection with any claims, suits, actions, demands or judgments arising out of any theory of liability (including, without limitation, actions in the form of tort, warranty, or strict liability and regardless of whether such action has any factual basis) pursuant to any right or license granted under this Agreement.
+* 
+* 6. NO REPRESENTATIONS OR WARRANTIES
+* THE PROGRAM IS DELIVERED AS IS. BROAD MAKES NO REPRESENTATIONS OR WARRANTIES OF ANY KIND CONCERNING THE PROGRAM OR THE COPYRIGHT, EXPRESS OR IMPLIED, INCLUDING, WITHOUT LIMITATION, WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NONINFRINGEMENT, OR THE ABSENCE OF LATENT OR OTHER DEFECTS, WHETHER OR NOT DISCOVERABLE. BROAD EXTENDS NO WARRANTIES OF ANY KIND AS TO PROGRAM CONFORMITY WITH WHATEVER USER MANUALS OR OTHER LITERATURE MAY BE ISSUED FROM TIME TO TIME.
+* IN NO EVENT SHALL BROAD OR ITS RESPECTIVE DIRECTORS, OFFICERS, EMPLOYEES, AFFILIATED INVESTIGATORS AND AFFILIATES BE LIABLE FOR INCIDENTAL OR CONSEQUENTIAL DAMAGES OF ANY KIND, INCLUDING, WITHOUT LIMITATION, ECONOMIC DAMAGES OR INJURY TO PROPERTY AND LOST PROFITS, REGARDLESS OF WHETHER BROAD SHALL BE ADVISED, SHALL HAVE OTHER REASON TO KNOW, OR IN FACT SHALL KNOW OF THE POSSIBILITY OF THE FOREGOING.
+* 
+* 7. ASSIGNMENT
+* This Agreement is personal to LICENSEE and any rights or obligations assigned by LICENSEE without the prior written consent of BROAD shall be null and void.
+* 
+* 8. MISCELLANEOUS
+* 8.1 Export Control. LICENSEE gives assurance that it will comply with all United States export control laws and regulations controlling the export of the PROGRAM, including, without limitation, all Export Administration Regulations of the United States Department of Commerce. Among other things, these laws and regulations prohibit, or require a license for, the export of certain types of software to specified countries.
+* 8.2 Termination. LICENSEE shall have the right to terminate this Agreement for any reason upon prior written notice to BROAD. If LICENSEE breaches any provision hereunder, and fails to cure such breach within thirty (30) days, BROAD may terminate this Agreement immediately. Upon termination, LICENSEE shall provide BROAD with written assurance that the original and all copies of the PROGRAM have been destroyed, except that, upon prior written authorization from BROAD, LICENSEE may retain a copy for archive purposes.
+* 8.3 Survival. The following provisions shall survive the expiration or termination of this Agreement: Articles 1, 3, 4, 5 and Sections 2.2, 2.3, 7.3, and 7.4.
+* 8.4 Notice. Any notices under this Agreement shall be in writing, shall specifically refer to this Agreement, and shall be sent by hand, recognized national overnight courier, confirmed facsimile transmission, confirmed electronic mail, or registered or certified mail, postage prepaid, return receipt requested. All notices under this Agreement shall be deemed effective upon receipt.
+* 8.5 Amendment and Waiver; Entire Agreement. This Agreement may be amended, supplemented, or otherwise modified only by means of a written instrument signed by all parties. Any waiver of any rights or failure to act in a specific instance shall relate only to such instance and shall not be construed as an agreement to waive any rights or fail to act in any other instance, whether or not similar. This Agreement constitutes the entire agreement among the parties with respect to its subject matter and supersedes prior agreements or understandings between the parties relating to its subject matter.
+* 8.6 Binding Effect; Headings. This Agreement shall be binding upon and inure to the benefit of the parties and their respective permitted successors and assigns. All headings are for convenience only and shall not affect the meaning of any provision of this Agreement.
+* 8.7 Governing Law. This Agreement shall be construed, governed, interpreted and applied in accordance with the internal laws of the Commonwealth of Massachusetts, U.S.A., without regard to conflict of laws principles.
+*/
+
+package org.broadinstitute.gatk.engine.recalibration;
+
+import org.broadinstitute.gatk.engine.recalibration.covariates.Covariate;
+import org.broadinstitute.gatk.utils.QualityUtils;
+import org.broadinstitute.gatk.utils.collections.NestedIntegerArray;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.report.GATKReportTable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Compact binary, memory-mappable serialization of a recalibration report
+ *
+ * The text GATKReport remains the interchange format for recalibration reports.  This format holds exactly the
+ * same information (the argument table, the quantization map and the recalibration tables) but is laid out so it
+ * can be loaded without parsing any text: the file is memory-mapped and each recalibration table is stored
+ * column by column, so every column is read in a single bulk copy into a primitive array.
+ *
+ * Covariate values are dictionary-encoded per table and key column: the formatted value of each distinct key is
+ * stored once, and translated back into a covariate key with one call to Covariate.keyFromValue() per distinct
+ * value when loading.  This keeps the file independent of how a covariate assigns its keys (e.g., read groups).
+ * The error counts and estimated reported qualities are rounded to the precision of the text report, and the
+ * estimated reported quality of the tables other than the read group table is their quality score, as when reading
+ * a text report, so that recalibrating from either format gives the same qualities.
+ *
+ * Layout (all values big-endian):
+ *
+ *   magic, version
+ *   argument table description, number of arguments, then (argument, value) string pairs sorted by argument
+ *   number of qualities, then the quantized quality and count for each quality
+ *   number of tables, then for each table:
+ *     covariate name, number of key columns (including the event type), number of rows
+ *     for each covariate key column: dictionary size, dictionary strings, then an int column of dictionary indices
+ *     the event type column (bytes), the observations column (longs), the errors column (doubles)
+ *     and the estimated reported quality column (doubles)
+ *
+ * Strings are stored as an int byte count followed by their UTF-8 bytes.
+ */
+public final class BinaryRecalibrationReport {
+    private static final byte[] MAGIC = "GATKBQSR".getBytes(Charset.forName("US-ASCII"));
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final GATKReportTable argumentTable;
+    private final QuantizationInfo quantizationInfo;
+    private final int tablesStart;
+
+    /**
+     * Open a binary recalibration report, reading its argument table and quantization map
+     *
+     * The recalibration tables themselves are only read by readTables() or getReadGroups()
+     *
+     * @param file a binary recalibration report
+     */
+    public BinaryRecalibrationReport(final File file) {
+        this.file = file;
+        this.buffer = map(file);
+
+        final byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if ( ! Arrays.equals(magic, MAGIC) )
+            throw new UserException.MalformedFile(file, "it is not a binary recalibration report");
+        final int version = buffer.getInt();
+        if ( version != VERSION )
+            throw new UserException.MalformedFile(file, "unsupported binary recalibration report version " + version);
+
+        argumentTable = readArgumentTable();
+        quantizationInfo = readQuantizationInfo();
+        tablesStart = buffer.position();
+    }
+
+    /**
+     * @param file a recalibration report file
+     * @return true if file is a binary recalibration report, false if it is (presumably) a text GATKReport
+     */
+    public static boolean isBinaryReport(final File file) {
+        final byte[] magic = new byte[MAGIC.length];
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(magic);
+            } finally {
+                in.close();
+            }
+        } catch ( EOFException e ) {
+            return false;
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    /**
+     * @return the argument table, with the same (String) values as an argument table read from a text report
+     */
+    public GATKReportTable getArgumentTable() {
+        return argumentTable;
+    }
+
+    public QuantizationInfo getQuantizationInfo() {
+        return quantizationInfo;
+    }
+
+    /**
+     * Gets the unique read groups in the read group table of this report
+     *
+     * @return the unique read groups
+     */
+    public SortedSet<String> getReadGroups() {
+        buffer.position(tablesStart);
+        final int numTables = buffer.getInt();
+        if ( numTables < 1 )
+            throw new UserException.MalformedFile(file, "the binary recalibration report has no read group table");
+
+        readString(); // the covariate name
+        buffer.getInt(); // the number of key columns
+        buffer.getInt(); // the number of rows
+        return new TreeSet<String>(Arrays.asList(readStrings(buffer.getInt())));
+    }
+
+    /**
+     * Read all of the recalibration tables in this report into recalibrationTables
+     *
+     * Read group keys are assigned through requestedCovariates[0].keyFromValue(), so the read group covariate should
+     * already be initialized with all of the read groups (see RecalibrationReport).
+     *
+     * @param recalibrationTables      the (empty) tables to fill in
+     * @param requestedCovariates      the covariates of recalibrationTables
+     * @param optionalCovariateIndexes map from the name of each optional covariate to its index among the optional covariates
+     */
+    public void readTables(final RecalibrationTables recalibrationTables, final Covariate[] requestedCovariates, final Map<String, Integer> optionalCovariateIndexes) {
+        buffer.position(tablesStart);
+        final int numTables = buffer.getInt();
+        final int optionalStart = RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal();
+
+        for ( int i = 0; i < numTables; i++ ) {
+            final String covariateName = readString();
+            final int tableIndex;
+            if ( i < optionalStart ) {
+                tableIndex = i;
+            } else {
+                final Integer covIndex = optionalCovariateIndexes.get(covariateName);
+                if ( covIndex == null )
+                    throw new UserException.MalformedFile(file, "the binary recalibration report contains a table for unknown covariate " + covariateName);
+                tableIndex = optionalStart + covIndex;
+            }
+
+            final int numKeyColumns = buffer.getInt();
+            final int numRows = buffer.getInt();
+
+            // decode the covariate key columns, translating each dictionary entry into a key once
+            final int[][] keyColumns = new int[numKeyColumns][];
+            for ( int column = 0; column < numKeyColumns - 1; column++ ) {
+                final Covariate covariate = requestedCovariates[column < optionalStart ? column : tableIndex];
+                final String[] dictionary = readStrings(buffer.getInt());
+                final int[] dictionaryKeys = new int[dictionary.length];
+                for ( int d = 0; d < dictionary.length; d++ )
+                    dictionaryKeys[d] = covariate.keyFromValue(dictionary[d]);
+
+                final int[] keys = readInts(numRows);
+                for ( int row = 0; row < numRows; row++ )
+                    keys[row] = dictionaryKeys[keys[row]];
+                keyColumns[column] = keys;
+            }
+
+            final byte[] events = new byte[numRows];
+            buffer.get(events);
+            final long[] observations = readLongs(numRows);
+            final double[] errors = readDoubles(numRows);
+            final double[] estimatedQReported = readDoubles(numRows);
+
+            final NestedIntegerArray<RecalDatum> table = recalibrationTables.getTable(tableIndex);
+            final int[] keys = new int[numKeyColumns];
+            for ( int row = 0; row < numRows; row++ ) {
+                for ( int column = 0; column < numKeyColumns - 1; column++ )
+                    keys[column] = keyColumns[column][row];
+                keys[numKeyColumns - 1] = events[row];
+
+                final RecalDatum datum = new RecalDatum(observations[row], errors[row], (byte)1);
+                datum.setEstimatedQReported(estimatedQReported[row]);
+                table.put(datum, keys);
+            }
+        }
+    }
+
+    /**
+     * Write a recalibration report in binary format
+     *
+     * @param output              the file to write
+     * @param argumentTable       the argument table of the report
+     * @param quantizationInfo    the quantization map of the report
+     * @param recalibrationTables the recalibration tables
+     * @param requestedCovariates the covariates of recalibrationTables
+     */
+    public static void write(final File output, final GATKReportTable argumentTable, final QuantizationInfo quantizationInfo,
+                             final RecalibrationTables recalibrationTables, final Covariate[] requestedCovariates) {
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 20));
+            try {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                writeArgumentTable(out, argumentTable);
+                writeQuantizationInfo(out, quantizationInfo);
+
+                out.writeInt(recalibrationTables.numTables());
+                for ( int tableIndex = 0; tableIndex < recalibrationTables.numTables(); tableIndex++ )
+                    writeTable(out, tableIndex, recalibrationTables.getTable(tableIndex), requestedCovariates);
+            } finally {
+                out.close();
+            }
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(output, "unable to write binary recalibration report", e);
+        }
+    }
+
+    private static void writeArgumentTable(final DataOutputStream out, final GATKReportTable argumentTable) throws IOException {
+        // the text report writes the arguments sorted by name, so we do the same here
+        final SortedMap<String, String> arguments = new TreeMap<String, String>();
+        for ( int i = 0; i < argumentTable.getNumRows(); i++ )
+            arguments.put(argumentTable.get(i, RecalUtils.ARGUMENT_COLUMN_NAME).toString(), String.valueOf(argumentTable.get(i, RecalUtils.ARGUMENT_VALUE_COLUMN_NAME)));
+
+        writeString(out, argumentTable.getTableDescription());
+        out.writeInt(arguments.size());
+        for ( final Map.Entry<String, String> argument : arguments.entrySet() ) {
+            writeString(out, argument.getKey());
+            writeString(out, argument.getValue());
+        }
+    }
+
+    private GATKReportTable readArgumentTable() {
+        final String description = readString();
+        final int numArguments = buffer.getInt();
+        final GATKReportTable table = new GATKReportTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE, description, 2);
+        table.addColumn(RecalUtils.ARGUMENT_COLUMN_NAME);
+        table.addColumn(RecalUtils.ARGUMENT_VALUE_COLUMN_NAME);
+        for ( int i = 0; i < numArguments; i++ ) {
+            final String argument = readString();
+            table.addRowID(argument, true);
+            table.set(argument, RecalUtils.ARGUMENT_VALUE_COLUMN_NAME, readString());
+        }
+        return table;
+    }
+
+    private static void writeQuantizationInfo(final DataOutputStream out, final QuantizationInfo quantizationInfo) throws IOException {
+        final List<Byte> quantizedQuals = quantizationInfo.getQuantizedQuals();
+        final List<Long> counts = quantizationInfo.getEmpiricalQualCounts();
+        out.writeInt(quantizedQuals.size());
+        for ( int qual = 0; qual < quantizedQuals.size(); qual++ ) {
+            out.writeByte(quantizedQuals.get(qual));
+            out.writeLong(counts.get(qual));
+        }
+    }
+
+    private QuantizationInfo readQuantizationInfo() {
+        final int numQuals = buffer.getInt();
+        if ( numQuals != QualityUtils.MAX_SAM_QUAL_SCORE + 1 )
+            throw new UserException.MalformedFile(file, "the binary recalibration report has a quantization map of " + numQuals + " qualities");
+
+        final List<Byte> quals = new ArrayList<Byte>(numQuals);
+        final List<Long> counts = new ArrayList<Long>(numQuals);
+        for ( int qual = 0; qual < numQuals; qual++ ) {
+            quals.add(buffer.get());
+            counts.add(buffer.getLong());
+        }
+        return new QuantizationInfo(quals, counts);
+    }
+
+    private static void writeTable(final DataOutputStream out, final int tableIndex, final NestedIntegerArray<RecalDatum> table, final Covariate[] requestedCovariates) throws IOException {
+        final int optionalStart = RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal();
+        final int numKeyColumns = table.getDimensions().length;
+
+        // gather the table into columns
+        final int[] numRows = new int[1];
+        table.visitAllLeaves(new NestedIntegerArray.LeafVisitor<RecalDatum>() {
+            @Override
+            public void visit(final int[] keys, final RecalDatum datum) {
+                numRows[0]++;
+            }
+        });
+
+        final int[][] keyColumns = new int[numKeyColumns][numRows[0]];
+        final long[] observations = new long[numRows[0]];
+        final double[] errors = new double[numRows[0]];
+        final double[] estimatedQReported = new double[numRows[0]];
+        table.visitAllLeaves(new NestedIntegerArray.LeafVisitor<RecalDatum>() {
+            private int row = 0;
+
+            @Override
+            public void visit(final int[] keys, final RecalDatum datum) {
+                for ( int column = 0; column < numKeyColumns; column++ )
+                    keyColumns[column][row] = keys[column];
+                observations[row] = datum.getNumObservations();
+                errors[row] = datum.getNumMismatches();
+                estimatedQReported[row] = datum.getEstimatedQReported();
+                row++;
+            }
+        });
+
+        // round as the text report would, so that both formats read back the same values
+        final boolean isReadGroupTable = tableIndex == RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal();
+        for ( int row = 0; row < numRows[0]; row++ ) {
+            errors[row] = asInTextReport(errors[row], RecalUtils.NUMBER_ERRORS_FORMAT);
+            estimatedQReported[row] = isReadGroupTable ? asInTextReport(estimatedQReported[row], RecalUtils.ESTIMATED_Q_REPORTED_FORMAT)
+                    : keyColumns[RecalibrationTables.TableType.QUALITY_SCORE_TABLE.ordinal()][row];
+        }
+
+        final Covariate tableCovariate = requestedCovariates[tableIndex];
+        writeString(out, tableCovariate.getClass().getSimpleName().split("Covariate")[0]);
+        out.writeInt(numKeyColumns);
+        out.writeInt(numRows[0]);
+
+        for ( int column = 0; column < numKeyColumns - 1; column++ ) {
+            final Covariate covariate = requestedCovariates[column < optionalStart ? column : tableIndex];
+
+            // dictionary-encode the formatted covariate values, in order of first appearance
+            final Map<Integer, Integer> keyToDictionaryIndex = new HashMap<Integer, Integer>();
+            final List<String> dictionary = new ArrayList<String>();
+            final int[] keys = keyColumns[column];
+            for ( int row = 0; row < keys.length; row++ ) {
+                Integer index = keyToDictionaryIndex.get(keys[row]);
+                if ( index == null ) {
+                    index = dictionary.size();
+                    keyToDictionaryIndex.put(keys[row], index);
+                    dictionary.add(covariate.formatKey(keys[row]));
+                }
+                keys[row] = index;
+            }
+
+            out.writeInt(dictionary.size());
+            for ( final String value : dictionary )
+                writeString(out, value);
+            for ( final int key : keys )
+                out.writeInt(key);
+        }
+
+        for ( final int event : keyColumns[numKeyColumns - 1] )
+            out.writeByte(event);
+        for ( final long value : observations )
+            out.writeLong(value);
+        for ( final double value : errors )
+            out.writeDouble(value);
+        for ( final double value : estimatedQReported )
+            out.writeDouble(value);
+    }
+
+    /**
+     * @param value  a value of a report column
+     * @param format the format of the column in the text report
+     * @return the value read back from the text report
+     */
+    private static double asInTextReport(final double value, final String format) {
+        return Double.parseDouble(String.format(format, value));
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString() {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private String[] readStrings(final int n) {
+        final String[] values = new String[n];
+        for ( int i = 0; i < n; i++ )
+            values[i] = readString();
+        return values;
+    }
+
+    private int[] readInts(final int n) {
+        final int[] values = new int[n];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + n * 4);
+        return values;
+    }
+
+    private long[] readLongs(final int n) {
+        final long[] values = new long[n];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + n * 8);
+        return values;
+    }
+
+    private double[] readDoubles(final int n) {
+        final double[] values = new double[n];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + n * 8);
+        return values;
+    }
+
+    private static MappedByteBuffer map(final File file) {
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = raf.getChannel();
+                if ( channel.size() > Integer.MAX_VALUE )
+                    throw new UserException.CouldNotReadInputFile(file, "binary recalibration reports larger than 2GB are not supported");
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+        } catch ( FileNotFoundException e ) {
+            throw new UserException.CouldNotReadInputFile(file, "it does not exist");
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+}
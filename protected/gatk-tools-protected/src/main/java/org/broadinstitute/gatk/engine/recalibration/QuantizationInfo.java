@@ -56,7 +56,7 @@ import org.broadinstitute.gatk.utils.MathUtils;
 import org.broadinstitute.gatk.utils.QualityUtils;
 import org.broadinstitute.gatk.utils.collections.NestedIntegerArray;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -81,18 +81,22 @@ public class QuantizationInfo {
     }
     
     public QuantizationInfo(final RecalibrationTables recalibrationTables, final int quantizationLevels) {
-        final Long [] qualHistogram = new Long[QualityUtils.MAX_SAM_QUAL_SCORE +1]; // create a histogram with the empirical quality distribution
-        for (int i = 0; i < qualHistogram.length; i++)
-            qualHistogram[i] = 0L;
+        final long[] qualHistogram = new long[QualityUtils.MAX_SAM_QUAL_SCORE +1]; // create a histogram with the empirical quality distribution
 
         final NestedIntegerArray<RecalDatum> qualTable = recalibrationTables.getQualityScoreTable(); // get the quality score table
 
-        for (final RecalDatum value : qualTable.getAllValues()) {
-            final RecalDatum datum = value;
-            final int empiricalQual = MathUtils.fastRound(datum.getEmpiricalQuality()); // convert the empirical quality to an integer ( it is already capped by MAX_QUAL )
-            qualHistogram[empiricalQual] += (long) datum.getNumObservations(); // add the number of observations for every key
-        }
-        empiricalQualCounts = Arrays.asList(qualHistogram); // histogram with the number of observations of the empirical qualities
+        qualTable.visitAllLeaves(new NestedIntegerArray.LeafVisitor<RecalDatum>() {
+            @Override
+            public void visit(final int[] keys, final RecalDatum datum) {
+                final int empiricalQual = MathUtils.fastRound(datum.getEmpiricalQuality()); // convert the empirical quality to an integer ( it is already capped by MAX_QUAL )
+                qualHistogram[empiricalQual] += datum.getNumObservations(); // add the number of observations for every key
+            }
+        });
+
+        final List<Long> histogram = new ArrayList<Long>(qualHistogram.length);
+        for (final long count : qualHistogram)
+            histogram.add(count);
+        empiricalQualCounts = histogram; // histogram with the number of observations of the empirical qualities
         quantizeQualityScores(quantizationLevels);
 
         this.quantizationLevels = quantizationLevels;
@@ -114,6 +118,10 @@ public class QuantizationInfo {
         return quantizedQuals;
     }
 
+    public List<Long> getEmpiricalQualCounts() {
+        return empiricalQualCounts;
+    }
+
     public int getQuantizationLevels() {
         return quantizationLevels;
     }
@@ -56,6 +56,7 @@ import com.google.java.contract.Requires;
 import org.apache.log4j.Logger;
 import org.broadinstitute.gatk.engine.recalibration.covariates.*;
 import org.broadinstitute.gatk.utils.report.GATKReport;
+import org.broadinstitute.gatk.utils.report.GATKReportStreamingTable;
 import org.broadinstitute.gatk.utils.report.GATKReportTable;
 import org.broadinstitute.gatk.utils.classloader.JVMUtils;
 import org.broadinstitute.gatk.utils.recalibration.EventType;
@@ -107,6 +108,10 @@ public class RecalUtils {
     public final static String NUMBER_OBSERVATIONS_COLUMN_NAME = "Observations";
     public final static String NUMBER_ERRORS_COLUMN_NAME = "Errors";
 
+    // the precision of the columns read back from a report
+    public final static String ESTIMATED_Q_REPORTED_FORMAT = "%.4f";
+    public final static String NUMBER_ERRORS_FORMAT = "%.2f";
+
     private final static String COLOR_SPACE_ATTRIBUTE_TAG = "CS"; // The tag that holds the color space for SOLID bams
     private final static String COLOR_SPACE_INCONSISTENCY_TAG = "ZC"; // A new tag made up for the recalibrator which will hold an array of ints which say if this base is inconsistent with its color
     private static boolean warnUserNullPlatform = false;
@@ -117,9 +122,9 @@ public class RecalUtils {
     private static final Pair<String, String> covariateName      = new Pair<String, String>(RecalUtils.COVARIATE_NAME_COLUMN_NAME, "%s");
     private static final Pair<String, String> eventType          = new Pair<String, String>(RecalUtils.EVENT_TYPE_COLUMN_NAME, "%s");
     private static final Pair<String, String> empiricalQuality   = new Pair<String, String>(RecalUtils.EMPIRICAL_QUALITY_COLUMN_NAME, "%.4f");
-    private static final Pair<String, String> estimatedQReported = new Pair<String, String>(RecalUtils.ESTIMATED_Q_REPORTED_COLUMN_NAME, "%.4f");
+    private static final Pair<String, String> estimatedQReported = new Pair<String, String>(RecalUtils.ESTIMATED_Q_REPORTED_COLUMN_NAME, ESTIMATED_Q_REPORTED_FORMAT);
     private static final Pair<String, String> nObservations      = new Pair<String, String>(RecalUtils.NUMBER_OBSERVATIONS_COLUMN_NAME, "%d");
-    private static final Pair<String, String> nErrors            = new Pair<String, String>(RecalUtils.NUMBER_ERRORS_COLUMN_NAME, "%.2f");
+    private static final Pair<String, String> nErrors            = new Pair<String, String>(RecalUtils.NUMBER_ERRORS_COLUMN_NAME, NUMBER_ERRORS_FORMAT);
 
     /**
      * Generates two lists : required covariates and optional covariates based on the user's requests.
@@ -430,28 +435,11 @@ public class RecalUtils {
         List<GATKReportTable> result = new LinkedList<GATKReportTable>();
         int reportTableIndex = 0;
         int rowIndex = 0;
-        final Map<Covariate, String> covariateNameMap = new HashMap<Covariate, String>(requestedCovariates.length);
-        for (final Covariate covariate : requestedCovariates)
-            covariateNameMap.put(covariate, parseCovariateName(covariate));
+        final Map<Covariate, String> covariateNameMap = makeCovariateNameMap(requestedCovariates);
 
         for (int tableIndex = 0; tableIndex < recalibrationTables.numTables(); tableIndex++) {
 
-            final ArrayList<Pair<String, String>> columnNames = new ArrayList<Pair<String, String>>(); // initialize the array to hold the column names
-            columnNames.add(new Pair<String, String>(covariateNameMap.get(requestedCovariates[0]), "%s")); // save the required covariate name so we can reference it in the future
-            if (tableIndex != RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal()) {
-                columnNames.add(new Pair<String, String>(covariateNameMap.get(requestedCovariates[1]), "%s")); // save the required covariate name so we can reference it in the future
-                if (tableIndex >= RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal()) {
-                    columnNames.add(covariateValue);
-                    columnNames.add(covariateName);
-                }
-            }
-
-            columnNames.add(eventType); // the order of these column names is important here
-            columnNames.add(empiricalQuality);
-            if (tableIndex == RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal())
-                columnNames.add(estimatedQReported); // only the read group table needs the estimated Q reported
-            columnNames.add(nObservations);
-            columnNames.add(nErrors);
+            final List<Pair<String, String>> columnNames = makeReportColumnNames(tableIndex, requestedCovariates, covariateNameMap);
 
             final GATKReportTable reportTable;
             if (tableIndex <= RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal()) {
@@ -468,38 +456,141 @@ public class RecalUtils {
             }
 
             final NestedIntegerArray<RecalDatum> table = recalibrationTables.getTable(tableIndex);
-            for (final NestedIntegerArray.Leaf row : table.getAllLeaves()) {
-                final RecalDatum datum = (RecalDatum)row.value;
-                final int[] keys = row.keys;
-
-                int columnIndex = 0;
-                int keyIndex = 0;
-                reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), requestedCovariates[0].formatKey(keys[keyIndex++]));
-                if (tableIndex != RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal()) {
-                    reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), requestedCovariates[1].formatKey(keys[keyIndex++]));
-                    if (tableIndex >= RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal()) {
-                        final Covariate covariate = requestedCovariates[tableIndex];
-
-                        reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), covariate.formatKey(keys[keyIndex++]));
-                        reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), covariateNameMap.get(covariate));
+            for (final NestedIntegerArray.Leaf<RecalDatum> row : table.getAllLeaves()) {
+                final Object[] values = makeReportRow(tableIndex, row.keys, row.value, requestedCovariates, covariateNameMap);
+                for (int columnIndex = 0; columnIndex < values.length; columnIndex++)
+                    reportTable.set(rowIndex, columnNames.get(columnIndex).getFirst(), values[columnIndex]);
+                rowIndex++;
+            }
+            result.add(reportTable);
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate the recalibration report tables as streaming tables, which write their rows straight from
+     * the recalibration tables instead of copying every datum into a GATKReportTable first.
+     *
+     * The written output is identical to that of the unsorted tables produced by generateReportTables()
+     *
+     * @param recalibrationTables the recalibration tables to report
+     * @param requestedCovariates the covariates used to build the recalibration tables
+     * @return one report table per required covariate table, plus one for all of the optional covariate tables
+     */
+    private static List<GATKReportStreamingTable> generateStreamingReportTables(final RecalibrationTables recalibrationTables, final Covariate[] requestedCovariates) {
+        final List<GATKReportStreamingTable> result = new LinkedList<GATKReportStreamingTable>();
+        final Map<Covariate, String> covariateNameMap = makeCovariateNameMap(requestedCovariates);
+        final int optionalStart = RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal();
+
+        for (int tableIndex = 0; tableIndex < Math.min(recalibrationTables.numTables(), optionalStart + 1); tableIndex++) {
+            // all of the optional covariate tables are written into the same report table
+            final int[] tableIndices = new int[tableIndex == optionalStart ? recalibrationTables.numTables() - optionalStart : 1];
+            for (int i = 0; i < tableIndices.length; i++)
+                tableIndices[i] = tableIndex + i;
+
+            final List<Pair<String, String>> columnNames = makeReportColumnNames(tableIndex, requestedCovariates, covariateNameMap);
+            final GATKReportStreamingTable reportTable = new RecalibrationReportTable("RecalTable" + tableIndex, columnNames.size(), recalibrationTables, tableIndices, requestedCovariates, covariateNameMap);
+            for (final Pair<String, String> columnName : columnNames)
+                reportTable.addColumn(columnName.getFirst(), columnName.getSecond());
+            result.add(reportTable);
+        }
+
+        return result;
+    }
+
+    /**
+     * A report table that streams its rows straight from the nested integer arrays of a set of recalibration tables
+     */
+    private static final class RecalibrationReportTable extends GATKReportStreamingTable {
+        private final RecalibrationTables recalibrationTables;
+        private final int[] tableIndices;
+        private final Covariate[] requestedCovariates;
+        private final Map<Covariate, String> covariateNameMap;
+
+        private RecalibrationReportTable(final String tableName, final int numColumns, final RecalibrationTables recalibrationTables, final int[] tableIndices,
+                                         final Covariate[] requestedCovariates, final Map<Covariate, String> covariateNameMap) {
+            super(tableName, "", numColumns);
+            this.recalibrationTables = recalibrationTables;
+            this.tableIndices = tableIndices;
+            this.requestedCovariates = requestedCovariates;
+            this.covariateNameMap = covariateNameMap;
+        }
+
+        @Override
+        protected void emitRows(final RowWriter writer) {
+            for (final int tableIndex : tableIndices) {
+                recalibrationTables.getTable(tableIndex).visitAllLeaves(new NestedIntegerArray.LeafVisitor<RecalDatum>() {
+                    @Override
+                    public void visit(final int[] keys, final RecalDatum datum) {
+                        writer.writeRow(makeReportRow(tableIndex, keys, datum, requestedCovariates, covariateNameMap));
                     }
-                }
+                });
+            }
+        }
+    }
+
+    private static Map<Covariate, String> makeCovariateNameMap(final Covariate[] requestedCovariates) {
+        final Map<Covariate, String> covariateNameMap = new HashMap<Covariate, String>(requestedCovariates.length);
+        for (final Covariate covariate : requestedCovariates)
+            covariateNameMap.put(covariate, parseCovariateName(covariate));
+        return covariateNameMap;
+    }
 
-                final EventType event = EventType.eventFrom(keys[keyIndex]);
-                reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), event.toString());
+    /**
+     * Get the report column names and formats for the recalibration table with the given index
+     */
+    private static List<Pair<String, String>> makeReportColumnNames(final int tableIndex, final Covariate[] requestedCovariates, final Map<Covariate, String> covariateNameMap) {
+        final ArrayList<Pair<String, String>> columnNames = new ArrayList<Pair<String, String>>(); // initialize the array to hold the column names
+        columnNames.add(new Pair<String, String>(covariateNameMap.get(requestedCovariates[0]), "%s")); // save the required covariate name so we can reference it in the future
+        if (tableIndex != RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal()) {
+            columnNames.add(new Pair<String, String>(covariateNameMap.get(requestedCovariates[1]), "%s")); // save the required covariate name so we can reference it in the future
+            if (tableIndex >= RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal()) {
+                columnNames.add(covariateValue);
+                columnNames.add(covariateName);
+            }
+        }
 
-                reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), datum.getEmpiricalQuality());
-                if (tableIndex == RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal())
-                    reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), datum.getEstimatedQReported()); // we only add the estimated Q reported in the RG table
-                reportTable.set(rowIndex, columnNames.get(columnIndex++).getFirst(), datum.getNumObservations());
-                reportTable.set(rowIndex, columnNames.get(columnIndex).getFirst(), datum.getNumMismatches());
+        columnNames.add(eventType); // the order of these column names is important here
+        columnNames.add(empiricalQuality);
+        if (tableIndex == RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal())
+            columnNames.add(estimatedQReported); // only the read group table needs the estimated Q reported
+        columnNames.add(nObservations);
+        columnNames.add(nErrors);
+        return columnNames;
+    }
 
-                rowIndex++;
+    /**
+     * Get the report values for one datum of the recalibration table with the given index, in the order of makeReportColumnNames()
+     */
+    private static Object[] makeReportRow(final int tableIndex, final int[] keys, final RecalDatum datum, final Covariate[] requestedCovariates, final Map<Covariate, String> covariateNameMap) {
+        final boolean isReadGroupTable = tableIndex == RecalibrationTables.TableType.READ_GROUP_TABLE.ordinal();
+        final boolean isOptionalTable = tableIndex >= RecalibrationTables.TableType.OPTIONAL_COVARIATE_TABLES_START.ordinal();
+        final Object[] values = new Object[isOptionalTable ? 8 : 6];
+
+        int columnIndex = 0;
+        int keyIndex = 0;
+        values[columnIndex++] = requestedCovariates[0].formatKey(keys[keyIndex++]);
+        if (!isReadGroupTable) {
+            values[columnIndex++] = requestedCovariates[1].formatKey(keys[keyIndex++]);
+            if (isOptionalTable) {
+                final Covariate covariate = requestedCovariates[tableIndex];
+
+                values[columnIndex++] = covariate.formatKey(keys[keyIndex++]);
+                values[columnIndex++] = covariateNameMap.get(covariate);
             }
-            result.add(reportTable);
         }
 
-        return result;
+        final EventType event = EventType.eventFrom(keys[keyIndex]);
+        values[columnIndex++] = event.toString();
+
+        values[columnIndex++] = datum.getEmpiricalQuality();
+        if (isReadGroupTable)
+            values[columnIndex++] = datum.getEstimatedQReported(); // we only add the estimated Q reported in the RG table
+        values[columnIndex++] = datum.getNumObservations();
+        values[columnIndex] = datum.getNumMismatches();
+
+        return values;
     }
 
     private static String parseCovariateName(final Covariate covariate) {
@@ -529,8 +620,33 @@ public class RecalUtils {
      * @param sortByCols True to use GATKReportTable.TableSortingWay.SORT_BY_COLUMN, false to use GATKReportTable.TableSortingWay.DO_NOT_SORT
      */
     public static void outputRecalibrationReport(final RecalibrationArgumentCollection RAC, final QuantizationInfo quantizationInfo, final RecalibrationTables recalibrationTables, final Covariate[] requestedCovariates, boolean sortByCols) {
-        final GATKReport report = createRecalibrationGATKReport(RAC.generateReportTable(covariateNames(requestedCovariates)), quantizationInfo.generateReportTable(sortByCols), generateReportTables(recalibrationTables, requestedCovariates, sortByCols));
-        report.print(RAC.RECAL_TABLE);
+        final GATKReportTable argumentTable = RAC.generateReportTable(covariateNames(requestedCovariates));
+        printRecalibrationReport(RAC.RECAL_TABLE, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates, sortByCols);
+        if ( RAC.BINARY_RECAL_TABLE_FILE != null )
+            BinaryRecalibrationReport.write(RAC.BINARY_RECAL_TABLE_FILE, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates);
+    }
+
+    /**
+     * Writes a consolidated GATK report to a stream.
+     *
+     * Unless the tables must be sorted, the recalibration tables are streamed straight from recalibrationTables
+     * to the output, without first being copied into in-memory GATKReportTables.
+     *
+     * @param out the stream to write the report to
+     * @param argumentTable Argument table
+     * @param quantizationInfo Quantization info
+     * @param recalibrationTables Recalibration tables
+     * @param requestedCovariates The list of requested covariates
+     * @param sortByCols True to use GATKReportTable.TableSortingWay.SORT_BY_COLUMN, false to use GATKReportTable.TableSortingWay.DO_NOT_SORT
+     */
+    public static void printRecalibrationReport(final PrintStream out, final GATKReportTable argumentTable, final QuantizationInfo quantizationInfo, final RecalibrationTables recalibrationTables, final Covariate[] requestedCovariates, final boolean sortByCols) {
+        if ( sortByCols ) {
+            createRecalibrationGATKReport(argumentTable, quantizationInfo.generateReportTable(true), generateReportTables(recalibrationTables, requestedCovariates, true)).print(out);
+        } else {
+            // the recalibration tables are named so that they follow the argument and quantization tables anyway
+            final GATKReport report = createRecalibrationGATKReport(argumentTable, quantizationInfo.generateReportTable(false), Collections.<GATKReportTable>emptyList());
+            report.print(out, generateStreamingReportTables(recalibrationTables, requestedCovariates));
+        }
     }
 
     /**
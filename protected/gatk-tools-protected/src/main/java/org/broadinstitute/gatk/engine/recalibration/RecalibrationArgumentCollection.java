@@ -93,6 +93,16 @@ public class RecalibrationArgumentCollection implements Cloneable {
     public File RECAL_TABLE_FILE = null;
     public PrintStream RECAL_TABLE;
 
+    /**
+     * Optionally also write the recalibration table in a compact binary format.  The binary table holds the same
+     * information as the text table, but it is much faster to load, which matters for large tables (e.g., with
+     * many read groups).  It can be given to -BQSR in place of the text table, and binary tables from scatter-gather
+     * runs are merged directly.  The text table remains the format for interchange and for the plotting scripts.
+     */
+    @Gather(BQSRGatherer.class)
+    @Output(fullName = "binary_recal_table", shortName = "binaryRecal", doc = "Also write the recalibration table in binary format to this file", required = false, defaultToStdout = false)
+    public File BINARY_RECAL_TABLE_FILE = null;
+
     /**
      * Note that the --list argument requires a fully resolved and correct command-line to work.
      */
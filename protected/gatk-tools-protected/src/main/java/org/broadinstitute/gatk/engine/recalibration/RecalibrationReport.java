@@ -87,14 +87,21 @@ public class RecalibrationReport {
     }
 
     public RecalibrationReport(final File recalFile, final SortedSet<String> allReadGroups) {
-        final GATKReport report = new GATKReport(recalFile);
-
-        argumentTable = report.getTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE);
+        final GATKReport report;
+        final BinaryRecalibrationReport binaryReport;
+        if ( BinaryRecalibrationReport.isBinaryReport(recalFile) ) {
+            report = null;
+            binaryReport = new BinaryRecalibrationReport(recalFile);
+            argumentTable = binaryReport.getArgumentTable();
+            quantizationInfo = binaryReport.getQuantizationInfo();
+        } else {
+            report = new GATKReport(recalFile);
+            binaryReport = null;
+            argumentTable = report.getTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE);
+            quantizationInfo = initializeQuantizationTable(report.getTable(RecalUtils.QUANTIZED_REPORT_TABLE_TITLE));
+        }
         RAC = initializeArgumentCollectionTable(argumentTable);
 
-        GATKReportTable quantizedTable = report.getTable(RecalUtils.QUANTIZED_REPORT_TABLE_TITLE);
-        quantizationInfo = initializeQuantizationTable(quantizedTable);
-
         Pair<ArrayList<Covariate>, ArrayList<Covariate>> covariates = RecalUtils.initializeCovariates(RAC); // initialize the required and optional covariates
         ArrayList<Covariate> requiredCovariates = covariates.getFirst();
         ArrayList<Covariate> optionalCovariates = covariates.getSecond();
@@ -117,6 +124,11 @@ public class RecalibrationReport {
 
         initializeReadGroupCovariates(allReadGroups);
 
+        if ( binaryReport != null ) {
+            binaryReport.readTables(recalibrationTables, requestedCovariates, optionalCovariateIndexes);
+            return;
+        }
+
         parseReadGroupTable(report.getTable(RecalUtils.READGROUP_REPORT_TABLE_TITLE), recalibrationTables.getReadGroupTable());
 
         parseQualityScoreTable(report.getTable(RecalUtils.QUALITY_SCORE_REPORT_TABLE_TITLE), recalibrationTables.getQualityScoreTable());
@@ -128,11 +140,14 @@ public class RecalibrationReport {
     /**
      * Gets the unique read groups in the recal file
      *
-     * @param recalFile the recal file as a GATK Report
+     * @param recalFile the recal file, either as a GATK Report or as a binary recalibration report
      * @return the unique read groups
      */
     public static SortedSet<String> getReadGroups(final File recalFile) {
-        return getReadGroups(new GATKReport(recalFile));
+        if ( BinaryRecalibrationReport.isBinaryReport(recalFile) )
+            return new BinaryRecalibrationReport(recalFile).getReadGroups();
+        // the read group table is one of the first tables in the report, so don't bother parsing the big tables after it
+        return getReadGroups(GATKReport.loadReportUpToTable(recalFile, RecalUtils.READGROUP_REPORT_TABLE_TITLE));
     }
 
     /**
@@ -403,6 +418,26 @@ public class RecalibrationReport {
         return RecalUtils.createRecalibrationGATKReport(argumentTable, quantizationInfo, recalibrationTables, requestedCovariates, RAC.SORT_BY_ALL_COLUMNS);
     }
 
+    /**
+     * Writes the recalibration report to a stream, streaming the recalibration tables directly when possible.
+     *
+     * Produces the same output as createGATKReport().print(out) without first building the full report in memory.
+     *
+     * @param out the stream to write the report to
+     */
+    public void printGATKReport(final PrintStream out) {
+        RecalUtils.printRecalibrationReport(out, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates, RAC.SORT_BY_ALL_COLUMNS);
+    }
+
+    /**
+     * Writes the recalibration report in the binary format of BinaryRecalibrationReport
+     *
+     * @param output the file to write the report to
+     */
+    public void writeBinaryReport(final File output) {
+        BinaryRecalibrationReport.write(output, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates);
+    }
+
     public RecalibrationArgumentCollection getRAC() {
         return RAC;
     }
@@ -113,4 +113,7 @@ public class ChromosomeCounts extends InfoFieldAnnotation implements StandardAnn
     }
 
     public List<VCFInfoHeaderLine> getDescriptions() { return Arrays.asList(ChromosomeCountConstants.descriptions); }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
@@ -102,7 +102,7 @@ public class Coverage extends InfoFieldAnnotation implements StandardAnnotation,
                 return null;
 
             for ( Map.Entry<String, AlignmentContext> sample : stratifiedContexts.entrySet() )
-                depth += sample.getValue().getBasePileup().depthOfCoverage();
+                depth += sample.getValue().getPileupStatistics().size();
         }
         else if (perReadAlleleLikelihoodMap != null) {
             if ( perReadAlleleLikelihoodMap.size() == 0 )
@@ -125,4 +125,7 @@ public class Coverage extends InfoFieldAnnotation implements StandardAnnotation,
     public List<VCFInfoHeaderLine> getDescriptions() {
         return Arrays.asList(VCFStandardHeaderLines.getInfoLine(getKeyNames().get(0)));
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
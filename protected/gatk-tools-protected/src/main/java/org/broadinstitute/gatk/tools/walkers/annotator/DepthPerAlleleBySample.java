@@ -166,4 +166,7 @@ public class DepthPerAlleleBySample extends GenotypeAnnotation implements Standa
     public List<VCFFormatHeaderLine> getDescriptions() {
         return Arrays.asList(VCFStandardHeaderLines.getFormatLine(getKeyNames().get(0)));
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
@@ -148,4 +148,7 @@ public class DepthPerSampleHC extends GenotypeAnnotation {
     public List<VCFFormatHeaderLine> getDescriptions() {
         return Collections.singletonList(VCFStandardHeaderLines.getFormatLine(VCFConstants.DEPTH_KEY));
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
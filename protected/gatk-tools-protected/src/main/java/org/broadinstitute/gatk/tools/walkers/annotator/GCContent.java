@@ -113,4 +113,7 @@ public class GCContent extends InfoFieldAnnotation {
         int sum = gc + at;
         return (100.0*gc) / (sum == 0 ? 1 : sum);
      }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
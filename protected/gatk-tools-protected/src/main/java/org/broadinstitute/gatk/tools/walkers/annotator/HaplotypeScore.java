@@ -462,4 +462,7 @@ public class HaplotypeScore extends InfoFieldAnnotation implements StandardAnnot
             return bases.clone();
         }
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
@@ -93,10 +93,10 @@ public class InbreedingCoeff extends InfoFieldAnnotation implements StandardAnno
 
     private final static Logger logger = Logger.getLogger(InbreedingCoeff.class);
     private static final int MIN_SAMPLES = 10;
-    private Set<String> founderIds;
-    private int sampleCount;
+    // set up on the first call, which may be made by any of several threads (see initializeFounderIds)
+    private volatile Set<String> founderIds;
     private boolean pedigreeCheckWarningLogged = false;
-    private boolean didUniquifiedSampleNameCheck = false;
+    private volatile boolean didUniquifiedSampleNameCheck = false;
 
     @Override
     public Map<String, Object> annotate(final RefMetaDataTracker tracker,
@@ -105,20 +105,10 @@ public class InbreedingCoeff extends InfoFieldAnnotation implements StandardAnno
                                         final Map<String, AlignmentContext> stratifiedContexts,
                                         final VariantContext vc,
                                         final Map<String, PerReadAlleleLikelihoodMap> perReadAlleleLikelihoodMap ) {
-        //If available, get the founder IDs and cache them. the IC will only be computed on founders then.
-        if(founderIds == null && walker != null) {
-            founderIds = ((Walker) walker).getSampleDB().getFounderIds();
-        }
-        //if none of the "founders" are in the vc samples, assume we uniquified the samples upstream and they are all founders
-        if (!didUniquifiedSampleNameCheck) {
-            checkSampleNames(vc);
-            didUniquifiedSampleNameCheck = true;
-        }
+        if (!didUniquifiedSampleNameCheck)
+            initializeFounderIds(walker, vc);
         if ( founderIds == null || founderIds.isEmpty() ) {
-            if ( !pedigreeCheckWarningLogged ) {
-                logger.warn("Annotation will not be calculated, must provide a valid PED file (-ped) from the command line.");
-                pedigreeCheckWarningLogged = true;
-            }
+            warnAboutMissingPedigree();
             return null;
         }
         else{
@@ -126,6 +116,31 @@ public class InbreedingCoeff extends InfoFieldAnnotation implements StandardAnno
         }
     }
 
+    // the annotation engine may be shared by the map calls of several threads (-nct), so the founders are set up once, under a lock
+    private synchronized void initializeFounderIds(final AnnotatorCompatible walker, final VariantContext vc) {
+        if (didUniquifiedSampleNameCheck)
+            return;
+        //If available, get the founder IDs and cache them. the IC will only be computed on founders then.
+        if(founderIds == null && walker != null) {
+            founderIds = ((Walker) walker).getSampleDB().getFounderIds();
+        }
+        //if none of the "founders" are in the vc samples, assume we uniquified the samples upstream and they are all founders
+        checkSampleNames(vc);
+        didUniquifiedSampleNameCheck = true;
+    }
+
+    private synchronized void warnAboutMissingPedigree() {
+        if ( !pedigreeCheckWarningLogged ) {
+            logger.warn("Annotation will not be calculated, must provide a valid PED file (-ped) from the command line.");
+            pedigreeCheckWarningLogged = true;
+        }
+    }
+
+    // only diploid samples with likelihoods count towards the IC
+    private static boolean isUsable(final Genotype g) {
+        return g.isCalled() && g.hasLikelihoods() && g.getPloidy() == 2;
+    }
+
     protected double calculateIC(final VariantContext vc, final GenotypesContext genotypes) {
 
         final boolean doMultiallelicMapping = !vc.isBiallelic();
@@ -135,10 +150,10 @@ public class InbreedingCoeff extends InfoFieldAnnotation implements StandardAnno
         double refCount = 0.0;
         double hetCount = 0.0;
         double homCount = 0.0;
-        sampleCount = 0; // number of samples that have likelihoods
+        int sampleCount = 0; // number of samples that have likelihoods
 
         for ( final Genotype g : genotypes ) {
-            if ( g.isCalled() && g.hasLikelihoods() && g.getPloidy() == 2)  // only work for diploid samples
+            if ( isUsable(g) )  // only work for diploid samples
                 sampleCount++;
             else
                 continue;
@@ -185,9 +200,13 @@ public class InbreedingCoeff extends InfoFieldAnnotation implements StandardAnno
         final GenotypesContext genotypes = (founderIds == null || founderIds.isEmpty()) ? vc.getGenotypes() : vc.getGenotypes(founderIds);
         if (genotypes == null || genotypes.size() < MIN_SAMPLES || !vc.isVariant())
             return null;
-        double F = calculateIC(vc, genotypes);
+        int sampleCount = 0;
+        for ( final Genotype g : genotypes )
+            if ( isUsable(g) )
+                sampleCount++;
         if (sampleCount < MIN_SAMPLES)
             return null;
+        double F = calculateIC(vc, genotypes);
         return Collections.singletonMap(getKeyNames().get(0), (Object)String.format("%.4f", F));
     }
 
@@ -132,7 +132,7 @@ public class QualByDepth extends InfoFieldAnnotation implements StandardAnnotati
                 final AlignmentContext context = stratifiedContexts.get(genotype.getSampleName());
                 if ( context == null )
                     continue;
-                standardDepth += context.getBasePileup().depthOfCoverage();
+                standardDepth += context.getPileupStatistics().size();
 
             } else if (perReadAlleleLikelihoodMap != null) {
                 final PerReadAlleleLikelihoodMap perReadAlleleLikelihoods = perReadAlleleLikelihoodMap.get(genotype.getSampleName());
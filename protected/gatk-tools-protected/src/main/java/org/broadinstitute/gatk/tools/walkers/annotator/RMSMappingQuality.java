@@ -64,7 +64,7 @@ import org.broadinstitute.gatk.utils.QualityUtils;
 import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFInfoHeaderLine;
 import htsjdk.variant.vcf.VCFStandardHeaderLines;
-import org.broadinstitute.gatk.utils.pileup.PileupElement;
+import org.broadinstitute.gatk.utils.pileup.PileupStatistics;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import htsjdk.variant.variantcontext.VariantContext;
 
@@ -94,30 +94,34 @@ public class RMSMappingQuality extends InfoFieldAnnotation implements StandardAn
                                         final VariantContext vc,
                                         final Map<String, PerReadAlleleLikelihoodMap> perReadAlleleLikelihoodMap ) {
 
-        final List<Integer> qualities = new ArrayList<>();
+        final double rms;
         if ( stratifiedContexts != null ) {
             if ( stratifiedContexts.size() == 0 )
                 return null;
 
+            long sumOfSquares = 0;
+            int nQualities = 0;
             for ( final Map.Entry<String, AlignmentContext> sample : stratifiedContexts.entrySet() ) {
-                final AlignmentContext context = sample.getValue();
-                for ( final PileupElement p : context.getBasePileup() )
-                    fillMappingQualitiesFromPileup(p.getRead().getMappingQuality(), qualities);
+                final PileupStatistics stats = sample.getValue().getPileupStatistics();
+                sumOfSquares += stats.getSumOfSquaredMappingQualities();
+                nQualities += stats.getNumberOfAvailableMappingQualities();
             }
+            rms = nQualities == 0 ? 0.0 : Math.sqrt((double)sumOfSquares / nQualities);
         }
         else if (perReadAlleleLikelihoodMap != null) {
             if ( perReadAlleleLikelihoodMap.size() == 0 )
                 return null;
 
+            final List<Integer> qualities = new ArrayList<>();
             for ( final PerReadAlleleLikelihoodMap perReadLikelihoods : perReadAlleleLikelihoodMap.values() ) {
                 for ( final GATKSAMRecord read : perReadLikelihoods.getStoredElements() )
                     fillMappingQualitiesFromPileup(read.getMappingQuality(), qualities);
             }
+            rms = MathUtils.rms(qualities);
         }
         else
             return null;
 
-        final double rms = MathUtils.rms(qualities);
         return Collections.singletonMap(getKeyNames().get(0), (Object)String.format("%.2f", rms));
     }
 
@@ -132,4 +136,7 @@ public class RMSMappingQuality extends InfoFieldAnnotation implements StandardAn
     public List<VCFInfoHeaderLine> getDescriptions() {
         return Arrays.asList(VCFStandardHeaderLines.getInfoLine(getKeyNames().get(0)));
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
@@ -66,7 +66,7 @@ import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import htsjdk.variant.vcf.VCFHeaderLine;
 import org.broadinstitute.gatk.utils.collections.Pair;
 import org.broadinstitute.gatk.utils.pileup.PileupElement;
-import org.broadinstitute.gatk.utils.pileup.ReadBackedPileup;
+import org.broadinstitute.gatk.utils.pileup.PileupStatistics;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypesContext;
@@ -81,6 +81,7 @@ import java.util.*;
 public abstract class RankSumTest extends InfoFieldAnnotation implements ActiveRegionBasedAnnotation {
     static final boolean DEBUG = false;
     private boolean useDithering = true;
+    private boolean correctForTies = false;
 
     public Map<String, Object> annotate(final RefMetaDataTracker tracker,
                                         final AnnotatorCompatible walker,
@@ -112,18 +113,15 @@ public abstract class RankSumTest extends InfoFieldAnnotation implements ActiveR
             // the old UG SNP-only path through the annotations
             if ( usePileup && stratifiedContexts != null ) {
                 final AlignmentContext context = stratifiedContexts.get(genotype.getSampleName());
-                if ( context != null ) {
-                    final ReadBackedPileup pileup = context.getBasePileup();
-                    if ( pileup != null )
-                        fillQualsFromPileup(vc.getAlleles(), pileup, refQuals, altQuals);
-                }
+                if ( context != null )
+                    fillQualsFromPileup(vc.getAlleles(), context.getPileupStatistics(), refQuals, altQuals);
             }
         }
 
         if ( refQuals.isEmpty() && altQuals.isEmpty() )
             return null;
 
-        final MannWhitneyU mannWhitneyU = new MannWhitneyU(useDithering);
+        final MannWhitneyU mannWhitneyU = new MannWhitneyU(MannWhitneyU.ExactMode.POINT, useDithering, correctForTies);
         for (final Double qual : altQuals) {
             mannWhitneyU.add(qual, MannWhitneyU.USet.SET1);
         }
@@ -151,24 +149,50 @@ public abstract class RankSumTest extends InfoFieldAnnotation implements ActiveR
         return map;
     }
 
+    private static final byte UNKNOWN_MATCH = 0;
+    private static final byte MATCHES_NEITHER = 1;
+    private static final byte MATCHES_REF = 2;
+    private static final byte MATCHES_ALT = 3;
+
     private void fillQualsFromPileup(final List<Allele> alleles,
-                                     final ReadBackedPileup pileup,
+                                     final PileupStatistics stats,
                                      final List<Double> refQuals,
                                      final List<Double> altQuals) {
-        for ( final PileupElement p : pileup ) {
+        // which allele each base matches, worked out the first time we see the base
+        final byte[] baseMatches = new byte[256];
+
+        for ( int i = 0; i < stats.size(); i++ ) {
+            final PileupElement p = stats.getElement(i);
             if ( isUsableBase(p) ) {
                 final Double value = getElementForPileupElement(p);
                 if ( value == null )
                     continue;
 
-                if ( alleles.get(0).equals(Allele.create(p.getBase(), true)) )
+                final int baseIndex = stats.getBase(i) & 0xFF;
+                if ( baseMatches[baseIndex] == UNKNOWN_MATCH )
+                    baseMatches[baseIndex] = getAlleleMatch(alleles, stats.getBase(i));
+
+                if ( baseMatches[baseIndex] == MATCHES_REF )
                     refQuals.add(value);
-                else if ( alleles.contains(Allele.create(p.getBase())) )
+                else if ( baseMatches[baseIndex] == MATCHES_ALT )
                     altQuals.add(value);
             }
         }
      }
 
+    /**
+     * Which of the alleles does base match?
+     *
+     * @param alleles the alleles, with the reference allele first
+     * @param base    the base
+     * @return MATCHES_REF, MATCHES_ALT or MATCHES_NEITHER
+     */
+    private static byte getAlleleMatch(final List<Allele> alleles, final byte base) {
+        if ( alleles.get(0).equals(Allele.create(base, true)) )
+            return MATCHES_REF;
+        return alleles.contains(Allele.create(base)) ? MATCHES_ALT : MATCHES_NEITHER;
+    }
+
     private void fillQualsFromLikelihoodMap(final List<Allele> alleles,
                                             final int refLoc,
                                             final PerReadAlleleLikelihoodMap likelihoodMap,
@@ -258,12 +282,22 @@ public abstract class RankSumTest extends InfoFieldAnnotation implements ActiveR
 
     /**
      * Initialize the rank sum test annotation using walker and engine information. Right now this checks to see if
-     * engine randomization is turned off, and if so does not dither.
+     * engine randomization is turned off, and if so does not dither, or if ties are to be corrected for instead.
      * @param walker            the walker
      * @param toolkit           the GATK engine
      * @param headerLines       the header lines
      */
     public void initialize ( AnnotatorCompatible walker, GenomeAnalysisEngine toolkit, Set<VCFHeaderLine> headerLines ) {
-        useDithering = ! toolkit.getArguments().disableDithering;
+        correctForTies = toolkit.getArguments().rankSumTieCorrection;
+        useDithering = ! toolkit.getArguments().disableDithering && ! correctForTies;
+    }
+
+    /**
+     * The rank sum tests can only be evaluated on several threads at once without dithering, which draws on the
+     * shared random number generator
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return ! useDithering;
     }
 }
\ No newline at end of file
@@ -132,4 +132,7 @@ public class SpanningDeletions extends InfoFieldAnnotation implements StandardUG
 
     @Override
     public List<VCFInfoHeaderLine> getDescriptions() { return Arrays.asList(GATKVCFHeaderLines.getInfoLine(getKeyNames().get(0))); }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
\ No newline at end of file
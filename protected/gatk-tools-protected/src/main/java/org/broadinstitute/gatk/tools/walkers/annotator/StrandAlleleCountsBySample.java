@@ -166,4 +166,6 @@ public class StrandAlleleCountsBySample extends GenotypeAnnotation {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
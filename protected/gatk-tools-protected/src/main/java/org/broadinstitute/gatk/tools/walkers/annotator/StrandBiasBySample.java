@@ -128,4 +128,7 @@ public class StrandBiasBySample extends GenotypeAnnotation {
     @Override
     public List<VCFFormatHeaderLine> getDescriptions() {
         return Collections.singletonList(GATKVCFHeaderLines.getFormatLine(getKeyNames().get(0))); }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
@@ -65,10 +65,9 @@ import org.broadinstitute.gatk.tools.walkers.annotator.interfaces.AnnotatorCompa
 import org.broadinstitute.gatk.tools.walkers.annotator.interfaces.InfoFieldAnnotation;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypesContext;
-import org.broadinstitute.gatk.utils.QualityUtils;
 import org.broadinstitute.gatk.utils.genotyper.MostLikelyAllele;
 import org.broadinstitute.gatk.utils.genotyper.PerReadAlleleLikelihoodMap;
-import org.broadinstitute.gatk.utils.pileup.PileupElement;
+import org.broadinstitute.gatk.utils.pileup.PileupStatistics;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 
@@ -207,17 +206,24 @@ public abstract class StrandBiasTest extends InfoFieldAnnotation {
                                                   final int minCount ) {
         int[][] table = new int[ARRAY_DIM][ARRAY_DIM];
 
+        // which allele each base matches, worked out the first time we see the base
+        final byte[] baseMatches = new byte[256];
+
         for (final Map.Entry<String, AlignmentContext> sample : stratifiedContexts.entrySet() ) {
             final int[] myTable = new int[ARRAY_SIZE];
-            for (final PileupElement p : sample.getValue().getBasePileup()) {
+            final PileupStatistics stats = sample.getValue().getPileupStatistics();
+            for ( int i = 0; i < stats.size(); i++ ) {
 
-                if ( ! isUsableBase(p) ) // ignore deletions and bad MQ
+                if ( ! stats.isUsableBase(i) ) // ignore deletions and bad MQ
                     continue;
 
-                if ( p.getQual() < minQScoreToConsider || p.getMappingQual() < minQScoreToConsider )
+                if ( stats.getQual(i) < minQScoreToConsider || stats.getMappingQual(i) < minQScoreToConsider )
                     continue;
 
-                updateTable(myTable, Allele.create(p.getBase(), false), p.getRead(), ref, allAlts);
+                final int baseIndex = stats.getBase(i) & 0xFF;
+                if ( baseMatches[baseIndex] == UNKNOWN_MATCH )
+                    baseMatches[baseIndex] = getAlleleMatch(Allele.create(stats.getBase(i), false), ref, allAlts);
+                updateTable(myTable, baseMatches[baseIndex], stats.isStrandless(i), stats.isNegativeStrand(i));
             }
 
             if ( passesMinimumThreshold( myTable, minCount ) ) {
@@ -287,30 +293,32 @@ public abstract class StrandBiasTest extends InfoFieldAnnotation {
     }
 
 
+    private static final byte UNKNOWN_MATCH = 0;
+    private static final byte MATCHES_NEITHER = 1;
+    private static final byte MATCHES_REF = 2;
+    private static final byte MATCHES_ALT = 3;
+
     /**
-     * Can the base in this pileup element be used in comparative tests?
-     *
-     * @param p the pileup element to consider
+     * Which of the alleles does allele match?
      *
-     * @return true if this base is part of a meaningful read for comparison, false otherwise
+     * @return MATCHES_REF, MATCHES_ALT or MATCHES_NEITHER
      */
-    private static boolean isUsableBase(final PileupElement p) {
-        return !( p.isDeletion() ||
-                p.getMappingQual() == 0 ||
-                p.getMappingQual() == QualityUtils.MAPPING_QUALITY_UNAVAILABLE ||
-                ((int) p.getQual()) < QualityUtils.MIN_USABLE_Q_SCORE);
+    private static byte getAlleleMatch(final Allele allele, final Allele ref, final List<Allele> allAlts) {
+        if ( allele.equals(ref, true) )
+            return MATCHES_REF;
+        return allAlts.contains(allele) ? MATCHES_ALT : MATCHES_NEITHER;
     }
 
     private static void updateTable(final int[] table, final Allele allele, final GATKSAMRecord read, final Allele ref, final List<Allele> allAlts) {
+        updateTable(table, getAlleleMatch(allele, ref, allAlts), read.isStrandless(), read.getReadNegativeStrandFlag());
+    }
 
-        final boolean matchesRef = allele.equals(ref, true);
-        final boolean matchesAlt = allele.equals(allAlts.get(0), true);
-        final boolean matchesAnyAlt = allAlts.contains(allele);
+    private static void updateTable(final int[] table, final byte alleleMatch, final boolean isStrandless, final boolean isNegativeStrand) {
 
-        if ( matchesRef || matchesAnyAlt ) {
-            final int offset = matchesRef ? 0 : ARRAY_DIM;
+        if ( alleleMatch == MATCHES_REF || alleleMatch == MATCHES_ALT ) {
+            final int offset = alleleMatch == MATCHES_REF ? 0 : ARRAY_DIM;
 
-            if ( read.isStrandless() ) {
+            if ( isStrandless ) {
                 // a strandless read counts as observations on both strand, at 50% weight, with a minimum of 1
                 // (the 1 is to ensure that a strandless read always counts as an observation on both strands, even
                 // if the read is only seen once, because it's a merged read or other)
@@ -318,7 +326,7 @@ public abstract class StrandBiasTest extends InfoFieldAnnotation {
                 table[offset + 1]++;
             } else {
                 // a normal read with an actual strand
-                final boolean isFW = !read.getReadNegativeStrandFlag();
+                final boolean isFW = !isNegativeStrand;
                 table[offset + (isFW ? 0 : 1)]++;
             }
         }
@@ -370,4 +378,7 @@ public abstract class StrandBiasTest extends InfoFieldAnnotation {
         table[1][1] = array[3];
         return table;
     }
+
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
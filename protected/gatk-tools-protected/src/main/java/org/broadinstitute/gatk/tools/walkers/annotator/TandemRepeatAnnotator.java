@@ -120,4 +120,6 @@ public class TandemRepeatAnnotator extends InfoFieldAnnotation implements Standa
                 GATKVCFConstants.REPEATS_PER_ALLELE_KEY);
     }
 
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
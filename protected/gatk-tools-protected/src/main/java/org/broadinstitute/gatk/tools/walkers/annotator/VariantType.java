@@ -110,4 +110,6 @@ public class VariantType extends InfoFieldAnnotation {
 
     public List<VCFInfoHeaderLine> getDescriptions() { return Arrays.asList(GATKVCFHeaderLines.getInfoLine(getKeyNames().get(0))); }
 
+    @Override
+    public boolean isThreadSafe() { return true; }
 }
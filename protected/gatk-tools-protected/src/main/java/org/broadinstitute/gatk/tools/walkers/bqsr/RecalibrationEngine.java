@@ -57,13 +57,20 @@ import org.broadinstitute.gatk.engine.recalibration.RecalDatum;
 import org.broadinstitute.gatk.engine.recalibration.RecalUtils;
 import org.broadinstitute.gatk.engine.recalibration.RecalibrationTables;
 import org.broadinstitute.gatk.utils.collections.NestedIntegerArray;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
 import org.broadinstitute.gatk.utils.recalibration.*;
 import org.broadinstitute.gatk.engine.recalibration.covariates.Covariate;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
+import org.broadinstitute.gatk.utils.threading.NamedThreadFactory;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class RecalibrationEngine {
     final protected Covariate[] covariates;
@@ -187,20 +194,22 @@ public class RecalibrationEngine {
         final NestedIntegerArray<RecalDatum> byQualTable = finalRecalibrationTables.getQualityScoreTable();
 
         // iterate over all values in the qual table
-        for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : byQualTable.getAllLeaves() ) {
-            final int rgKey = leaf.keys[0];
-            final int eventIndex = leaf.keys[2];
-            final RecalDatum rgDatum = byReadGroupTable.get(rgKey, eventIndex);
-            final RecalDatum qualDatum = leaf.value;
-
-            if ( rgDatum == null ) {
-                // create a copy of qualDatum, and initialize byReadGroup table with it
-                byReadGroupTable.put(new RecalDatum(qualDatum), rgKey, eventIndex);
-            } else {
-                // combine the qual datum with the existing datum in the byReadGroup table
-                rgDatum.combine(qualDatum);
+        byQualTable.visitAllLeaves(new NestedIntegerArray.LeafVisitor<RecalDatum>() {
+            @Override
+            public void visit(final int[] keys, final RecalDatum qualDatum) {
+                final int rgKey = keys[0];
+                final int eventIndex = keys[2];
+                final RecalDatum rgDatum = byReadGroupTable.get(rgKey, eventIndex);
+
+                if ( rgDatum == null ) {
+                    // create a copy of qualDatum, and initialize byReadGroup table with it
+                    byReadGroupTable.put(new RecalDatum(qualDatum), rgKey, eventIndex);
+                } else {
+                    // combine the qual datum with the existing datum in the byReadGroup table
+                    rgDatum.combine(qualDatum);
+                }
             }
-        }
+        });
 
         finalized = true;
     }
@@ -211,6 +220,10 @@ public class RecalibrationEngine {
      * Reuses one of the recalibration tables to hold the merged table, so this function can only be
      * called once in the engine.
      *
+     * Each covariate table is merged independently of the others, so when there is more than one thread-local
+     * table the merge is spread over up to one thread per thread-local table (i.e., the number of threads
+     * that were used to accumulate the data).
+     *
      * @return the merged recalibration table
      */
     @Requires("! finalized")
@@ -219,14 +232,35 @@ public class RecalibrationEngine {
             recalibrationTablesList.add( new RecalibrationTables(covariates, numReadGroups, maybeLogStream) );
         }
 
-        RecalibrationTables merged = null;
-        for ( final RecalibrationTables table : recalibrationTablesList ) {
-            if ( merged == null )
-                // fast path -- if there's only only one table, so just make it the merged one
-                merged = table;
-            else {
-                merged.combine(table);
+        // fast path -- if there's only only one table, so just make it the merged one
+        final RecalibrationTables merged = recalibrationTablesList.get(0);
+        if ( recalibrationTablesList.size() == 1 )
+            return merged;
+
+        final List<RecalibrationTables> toMerge = recalibrationTablesList.subList(1, recalibrationTablesList.size());
+        final int nThreads = Math.min(recalibrationTablesList.size(), merged.numTables());
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads, new NamedThreadFactory("BQSR-merge-thread-%d"));
+        try {
+            final List<Future<?>> results = new ArrayList<Future<?>>(merged.numTables());
+            for ( int i = 0; i < merged.numTables(); i++ ) {
+                final int tableIndex = i;
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for ( final RecalibrationTables table : toMerge )
+                            RecalUtils.combineTables(merged.getTable(tableIndex), table.getTable(tableIndex));
+                    }
+                }));
             }
+
+            for ( final Future<?> result : results )
+                result.get();
+        } catch ( InterruptedException e ) {
+            throw new ReviewedGATKException("Interrupted while merging recalibration tables", e);
+        } catch ( ExecutionException e ) {
+            throw new ReviewedGATKException("Failed to merge recalibration tables", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
 
         return merged;
@@ -336,64 +336,25 @@ public abstract class GeneralPloidyGenotypeLikelihoods {
     public static double[] subsetToAlleles(final double[] oldLikelihoods, final int numChromosomes,
                                                    final List<Allele> originalAlleles, final List<Allele> allelesToSubset) {
 
-        int newPLSize = GeneralPloidyGenotypeLikelihoods.getNumLikelihoodElements(allelesToSubset.size(), numChromosomes);
-        double[] newPLs = new double[newPLSize];
-
-
-        int idx = 0;
-        // First fill boolean array stating whether each original allele is present in new mapping
-        final boolean [] allelePresent = new boolean[originalAlleles.size()];
-        for ( Allele allele : originalAlleles )
-            allelePresent[idx++] = allelesToSubset.contains(allele);
-
-
         // compute mapping from old idx to new idx
         // This might be needed in case new allele set is not ordered in the same way as old set
         // Example. Original alleles: {T*,C,G,A}. New alleles: {G,C}. Permutation key = [2,1]
 
-        int[] permutationKey = new int[allelesToSubset.size()];
+        final int[] permutationKey = new int[allelesToSubset.size()];
         for (int k=0; k < allelesToSubset.size(); k++)
             // for each allele to subset, find corresponding index in original allele list
             permutationKey[k] = originalAlleles.indexOf(allelesToSubset.get(k));
 
-
         if (VERBOSE) {
             System.out.println("permutationKey:"+Arrays.toString(permutationKey));
         }
 
-        final SumIterator iterator = new SumIterator(originalAlleles.size(),numChromosomes);
-
-        while (iterator.hasNext()) {
-            // for each entry in logPL table, associated originally with allele count stored in vec[],
-            // see if this allele count conformation will be present in new logPL table.
-            // For entry to be present, elements in dimensions not present in requested allele list have to have count = 0
-            int[] pVec = iterator.getCurrentVector();
-            double pl = oldLikelihoods[iterator.getLinearIndex()];
-            
-            boolean keyPresent = true;
-            for (int k=0; k < allelePresent.length; k++)
-                if ( pVec[k]>0 && !allelePresent[k] )
-                    keyPresent = false;
-
-            if (keyPresent) {// skip to next entry in logPLs if this conformation is not present in subset
-
-                final int[] newCount = new int[allelesToSubset.size()];
-    
-                // map from old allele mapping count to new allele mapping
-                // In pseudo-Matlab notation: newCount = vec[permutationKey] for permutationKey vector
-                for (idx = 0; idx < newCount.length; idx++)
-                    newCount[idx] =  pVec[permutationKey[idx]];
-    
-                // get corresponding index from new count
-                int outputIdx = GeneralPloidyGenotypeLikelihoods.getLinearIndex(newCount, allelesToSubset.size(), numChromosomes);
-                newPLs[outputIdx] = pl;
-                if (VERBOSE) {
-                    System.out.println("Old Key:"+Arrays.toString(pVec));
-                    System.out.println("New Key:"+Arrays.toString(newCount));
-                }
-            }
-            iterator.next();
-        }
+        // the i-th new conformation is the old one with allele counts vec[permutationKey] and zeros elsewhere;
+        // that map only depends on the ploidy and the key so it is shared across samples and sites.
+        final int[] genotypeIndexMap = GenotypeLikelihoodCalculators.genotypeIndexMap(numChromosomes, originalAlleles.size(), permutationKey);
+        final double[] newPLs = new double[genotypeIndexMap.length];
+        for (int idx = 0; idx < newPLs.length; idx++)
+            newPLs[idx] = oldLikelihoods[genotypeIndexMap[idx]];
 
         return  newPLs;
     }
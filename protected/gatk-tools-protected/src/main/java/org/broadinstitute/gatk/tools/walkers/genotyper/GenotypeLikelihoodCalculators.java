@@ -52,6 +52,11 @@
 package org.broadinstitute.gatk.tools.walkers.genotyper;
 
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Genotype likelihood calculator utility.
@@ -427,4 +432,160 @@ public class GenotypeLikelihoodCalculators {
             ensureCapacity(alleleCount,ploidy);
         return alleleFirstGenotypeOffsetByPloidy[ploidy][alleleCount];
     }
+
+    /**
+     * Maximum number of genotype index maps kept in {@link #genotypeIndexMaps}; beyond that the least recently used
+     * ones are evicted until only {@link #RETAINED_CACHED_GENOTYPE_INDEX_MAPS} are left.
+     */
+    private static final int MAXIMUM_CACHED_GENOTYPE_INDEX_MAPS = 10000;
+
+    private static final int RETAINED_CACHED_GENOTYPE_INDEX_MAPS = MAXIMUM_CACHED_GENOTYPE_INDEX_MAPS * 3 / 4;
+
+    /**
+     * Genotype index maps already composed, shared by all threads.
+     *
+     * <p>
+     *     Lookups do not lock; they only stamp the entry with the current {@link #genotypeIndexMapClock}, which
+     *     advances when a new map is added. Eviction uses these stamps, so the order is approximate: entries used
+     *     between two additions look equally recent.
+     * </p>
+     */
+    private static final ConcurrentMap<GenotypeIndexMapKey, CachedGenotypeIndexMap> genotypeIndexMaps = new ConcurrentHashMap<>();
+
+    private static final AtomicLong genotypeIndexMapClock = new AtomicLong();
+
+    /**
+     * Set while a thread evicts entries from {@link #genotypeIndexMaps}, so that the others do not wait for it.
+     */
+    private static final AtomicBoolean evictingGenotypeIndexMaps = new AtomicBoolean();
+
+    /**
+     * Returns the genotype index map for an allele index recoding, as
+     * {@code getInstance(ploidy, alleleCount).genotypeIndexMap(oldToNewAlleleIndexMap)} would compose it.
+     *
+     * <p>
+     *     The few distinct recodings found in practice are seen over and over across sites and samples, so their maps
+     *     are composed once and cached for all threads. Callers must not modify the returned array.
+     * </p>
+     *
+     * @param ploidy the genotype ploidy.
+     * @param alleleCount the number of alleles in the original encoding.
+     * @param oldToNewAlleleIndexMap the ith entry indicates the index of the allele in the original encoding that
+     *                               corresponds to the ith allele index in the final encoding.
+     *
+     * @throws IllegalArgumentException under the same conditions as {@link GenotypeLikelihoodCalculator#genotypeIndexMap}.
+     *
+     * @return never {@code null}; the ith entry is the index of the original genotype that corresponds to the ith
+     *   genotype in the final encoding.
+     */
+    public static int[] genotypeIndexMap(final int ploidy, final int alleleCount, final int[] oldToNewAlleleIndexMap) {
+        if (oldToNewAlleleIndexMap == null)
+            throw new IllegalArgumentException("the input encoding array cannot be null");
+        final GenotypeIndexMapKey key = new GenotypeIndexMapKey(ploidy, alleleCount, oldToNewAlleleIndexMap);
+        final CachedGenotypeIndexMap cached = genotypeIndexMaps.get(key);
+        if (cached != null) {
+            cached.touch(genotypeIndexMapClock.get());
+            return cached.genotypeIndexMap;
+        }
+        final CachedGenotypeIndexMap composed = new CachedGenotypeIndexMap(
+                getInstance(ploidy, alleleCount).genotypeIndexMap(oldToNewAlleleIndexMap), genotypeIndexMapClock.incrementAndGet());
+        // another thread may have composed the same map in the meantime
+        final CachedGenotypeIndexMap previous = genotypeIndexMaps.putIfAbsent(key.copy(), composed);
+        if (previous != null)
+            return previous.genotypeIndexMap;
+        if (genotypeIndexMaps.size() > MAXIMUM_CACHED_GENOTYPE_INDEX_MAPS)
+            evictGenotypeIndexMaps();
+        return composed.genotypeIndexMap;
+    }
+
+    /**
+     * Evicts the least recently used genotype index maps, unless another thread is already doing so.
+     */
+    private static void evictGenotypeIndexMaps() {
+        if (!evictingGenotypeIndexMaps.compareAndSet(false, true))
+            return;
+        try {
+            final long[] lastUses = new long[genotypeIndexMaps.size()];
+            int count = 0;
+            for (final CachedGenotypeIndexMap cached : genotypeIndexMaps.values()) {
+                if (count == lastUses.length)
+                    break;
+                lastUses[count++] = cached.lastUse;
+            }
+            if (count <= RETAINED_CACHED_GENOTYPE_INDEX_MAPS)
+                return;
+            Arrays.sort(lastUses, 0, count);
+            final long oldestRetained = lastUses[count - RETAINED_CACHED_GENOTYPE_INDEX_MAPS];
+            final Iterator<CachedGenotypeIndexMap> it = genotypeIndexMaps.values().iterator();
+            while (it.hasNext())
+                if (it.next().lastUse < oldestRetained)
+                    it.remove();
+        } finally {
+            evictingGenotypeIndexMaps.set(false);
+        }
+    }
+
+    /**
+     * Empties the genotype index map cache; the cache is shared by the whole JVM so tests use this to start afresh.
+     */
+    static void clearGenotypeIndexMapCache() {
+        genotypeIndexMaps.clear();
+    }
+
+    /**
+     * Value of {@link #genotypeIndexMaps}.
+     */
+    private static final class CachedGenotypeIndexMap {
+        private final int[] genotypeIndexMap;
+        private volatile long lastUse;
+
+        private CachedGenotypeIndexMap(final int[] genotypeIndexMap, final long lastUse) {
+            this.genotypeIndexMap = genotypeIndexMap;
+            this.lastUse = lastUse;
+        }
+
+        private void touch(final long now) {
+            // hot entries are looked up by many threads; skip the write when the stamp is already current.
+            if (lastUse != now)
+                lastUse = now;
+        }
+    }
+
+    /**
+     * Key of {@link #genotypeIndexMaps}.
+     */
+    private static final class GenotypeIndexMapKey {
+        private final int ploidy;
+        private final int alleleCount;
+        private final int[] alleleIndexMap;
+        private final int hashCode;
+
+        private GenotypeIndexMapKey(final int ploidy, final int alleleCount, final int[] alleleIndexMap) {
+            this.ploidy = ploidy;
+            this.alleleCount = alleleCount;
+            this.alleleIndexMap = alleleIndexMap;
+            this.hashCode = (Arrays.hashCode(alleleIndexMap) * 31 + alleleCount) * 31 + ploidy;
+        }
+
+        /**
+         * Lookups use the caller's array as is; entries stored in the cache need their own copy.
+         */
+        private GenotypeIndexMapKey copy() {
+            return new GenotypeIndexMapKey(ploidy, alleleCount, alleleIndexMap.clone());
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) return true;
+            if (!(other instanceof GenotypeIndexMapKey)) return false;
+            final GenotypeIndexMapKey otherKey = (GenotypeIndexMapKey) other;
+            return hashCode == otherKey.hashCode && ploidy == otherKey.ploidy && alleleCount == otherKey.alleleCount
+                    && Arrays.equals(alleleIndexMap, otherKey.alleleIndexMap);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
\ No newline at end of file
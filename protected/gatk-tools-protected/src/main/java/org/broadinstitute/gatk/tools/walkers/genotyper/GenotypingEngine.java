@@ -508,7 +508,8 @@ public abstract class GenotypingEngine<Config extends StandardCallerArgumentColl
      * @return never {@code null}, an array with exactly <code>total-ploidy(vc) + 1</code> positions.
      */
     protected final double[] getAlleleFrequencyPriors( final VariantContext vc, final int defaultPloidy, final GenotypeLikelihoodsCalculationModel.Model model ) {
-        final int totalPloidy = GATKVariantContextUtils.totalPloidy(vc,defaultPloidy);
+        final MergedGenotypeMatrix matrix = MergedGenotypeMatrix.of(vc.getGenotypes());
+        final int totalPloidy = matrix != null ? matrix.totalPloidy(defaultPloidy) : GATKVariantContextUtils.totalPloidy(vc,defaultPloidy);
         switch (model) {
             case SNP:
             case GENERALPLOIDYSNP:
@@ -0,0 +1,437 @@
+/*
+* By downloading the PROGRAM you agree to the following terms of use:
+* 
+* BROAD INSTITUTE
+* SOFTWARE LICENSE AGREEMENT
+* FOR ACADEMIC NON-COMMERCIAL RESEARCH PURPOSES ONLY
+* 
+* This Agreement is made between the Broad Institute, Inc. with a principal address at 415 Main Street, Cambridge, MA 02142 (“BROAD”) and the LICENSEE and is effective at the date the downloading is completed (“EFFECTIVE DATE”).
+* 
+* WHEREAS, LICENSEE desires to license the PROGRAM, as defined hereinafter, and BROAD wishes to have this PROGRAM utilized in the public interest, subject only to the royalty-free, nonexclusive, nontransferable license rights of the United States Government pursuant to 48 CFR 52.227-14; and
+* WHEREAS, LICENSEE desires to license the PROGRAM and BROAD desires to grant a license on the following terms and conditions.
+* NOW, THEREFORE, in consideration of the promises and covenants made herein, the parties hereto agree as follows:
+* 
+* 1. DEFINITIONS
+* 1.1 PROGRAM shall mean copyright in the object code and source code known as GATK3 and related documentation, if any, as they exist on the EFFECTIVE DATE and can be downloaded from http://www.broadinstitute.org/gatk on the EFFECTIVE DATE.
+* 
+* 2. LICENSE
+* 2.1 Grant. Subject to the terms of this Agreement, BROAD hereby grants to LICENSEE, solely for academic non-commercial research purposes, a non-exclusive, non-transferable license to: (a) download, execute and display the PROGRAM and (b) create bug fixes and modify the PROGRAM. LICENSEE hereby automatically grants to BROAD a non-exclusive, royalty-free, irrevocable license to any LICENSEE bug fixes or modifications to the PROGRAM with unlimited rights to sublicense and/or distribute.  LICENSEE agrees to provide any such modifications and bug fixes to BROAD promptly upon their creation.
+* The LICENSEE may apply the PROGRAM in a pipeline to data owned by users other than the LICENSEE and provide these users the results of the PROGRAM provided LICENSEE does so for academic non-commercial purposes only. For clarification purposes, academic sponsored research is not a commercial use under the terms of this Agreement.
+* 2.2 No Sublicensing or Additional Rights. LICENSEE shall not sublicense or distribute the PROGRAM, in whole or in part, without prior written permission from BROAD. LICENSEE shall ensure that all of its users agree to the terms of this Agreement. LICENSEE further agrees that it shall not put the PROGRAM on a network, server, or other similar technology that may be accessed by anyone other than the LICENSEE and its employees and users who have agreed to the terms of this agreement.
+* 2.3 License Limitations. Nothing in this Agreement shall be construed to confer any rights upon LICENSEE by implication, estoppel, or otherwise to any computer software, trademark, intellectual property, or patent rights of BROAD, or of any other entity, except as expressly granted herein. LICENSEE agrees that the PROGRAM, in whole or part, shall not be used for any commercial purpose, including without limitation, as the basis of a commercial software or hardware product or to provide services. LICENSEE further agrees that the PROGRAM shall not be copied or otherwise adapted in order to circumvent the need for obtaining a license for use of the PROGRAM.
+* 
+* 3. PHONE-HOME FEATURE
+* LICENSEE expressly acknowledges that the PROGRAM contains an embedded automatic reporting system (“PHONE-HOME”) which is enabled by default upon download. Unless LICENSEE requests disablement of PHONE-HOME, LICENSEE agrees that BROAD may collect limited information transmitted by PHONE-HOME regarding LICENSEE and its use of the PROGRAM.  Such information shall include LICENSEE’S user identification, version number of the PROGRAM and tools being run, mode of analysis employed, and any error reports generated during run-time.  Collection of such information is used by BROAD solely to monitor usage rates, fulfill reporting requirements to BROAD funding agencies, drive improvements to the PROGRAM, and facilitate adjustments to PROGRAM-related documentation.
+* 
+* 4. OWNERSHIP OF INTELLECTUAL PROPERTY
+* LICENSEE acknowledges that title to the PROGRAM shall remain with BROAD. The PROGRAM is marked with the following BROAD copyright notice and notice of attribution to contributors. LICENSEE shall retain such notice on all copies. LICENSEE agrees to include appropriate attribution if any results obtained from use of the PROGRAM are included in any publication.
+* Copyright 2012-2014 Broad Institute, Inc.
+* Notice of attribution: The GATK3 program was made available through the generosity of Medical and Population Genetics program at the Broad Institute, Inc.
+* LICENSEE shall not use any trademark or trade name of BROAD, or any variation, adaptation, or abbreviation, of such marks or trade names, or any names of officers, faculty, students, employees, or agents of BROAD except as states above for attribution purposes.
+* 
+* 5. INDEMNIFICATION
+* LICENSEE shall indemnify, defend, and hold harmless BROAD, and their respective officers, faculty, students, employees, associated investigators and agents, and their respective successors, heirs and assigns, (Indemnitees), against any liability, damage, loss, or expense (including reasonable attorneys fees and expenses) incurred by or imposed upon any of the Indemnitees in connection with any claims, suits, actions, demands or judgments arising out of any theory of liability (including, without limitation, actions in the form of tort, warranty, or strict liability and regardless of whether such action has any factual basis) pursuant to any right or license granted under this Agreement.
+* 
+* 6. NO REPRESENTATIONS OR WARRANTIES
+* THE PROGRAM IS DELIVERED AS IS. BROAD MAKES NO REPRESENTATIONS OR WARRANTIES OF ANY KIND CONCERNING THE PROGRAM OR THE COPYRIGHT, EXPRESS OR IMPLIED, INCLUDING, WITHOUT LIMITATION, WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NONINFRINGEMENT, OR THE ABSENCE OF LATENT OR OTHER DEFECTS, WHETHER OR NOT DISCOVERABLE. BROAD EXTENDS NO WARRANTIES OF ANY KIND AS TO PROGRAM CONFORMITY WITH WHATEVER USER MANUALS OR OTHER LITERATURE MAY BE ISSUED FROM TIME TO TIME.
+* IN NO EVENT SHALL BROAD OR ITS RESPECTIVE DIRECTORS, OFFICERS, EMPLOYEES, AFFILIATED INVESTIGATORS AND AFFILIATES BE LIABLE FOR INCIDENTAL OR CONSEQUENTIAL DAMAGES OF ANY KIND, INCLUDING, WITHOUT LIMITATION, ECONOMIC DAMAGES OR INJURY TO PROPERTY AND LOST PROFITS, REGARDLESS OF WHETHER BROAD SHALL BE ADVISED, SHALL HAVE OTHER REASON TO KNOW, OR IN FACT SHALL KNOW OF THE POSSIBILITY OF THE FOREGOING.
+* 
+* 7. ASSIGNMENT
+* This Agreement is personal to LICENSEE and any rights or obligations assigned by LICENSEE without the prior written consent of BROAD shall be null and void.
+* 
+* 8. MISCELLANEOUS
+* 8.1 Export Control. LICENSEE gives assurance that it will comply with all United States export control laws and regulations controlling the export of the PROGRAM, including, without limitation, all Export Administration Regulations of the United States Department of Commerce. Among other things, these laws and regulations prohibit, or require a license for, the export of certain types of software to specified countries.
+* 8.2 Termination. LICENSEE shall have the right to terminate this Agreement for any reason upon prior written notice to BROAD. If LICENSEE breaches any provision hereunder, and fails to cure such breach within thirty (30) days, BROAD may terminate this Agreement immediately. Upon termination, LICENSEE shall provide BROAD with written assurance that the original and all copies of the PROGRAM have been destroyed, except that, upon prior written authorization from BROAD, LICENSEE may retain a copy for archive purposes.
+* 8.3 Survival. The following provisions shall survive the expiration or termination of this Agreement: Articles 1, 3, 4, 5 and Sections 2.2, 2.3, 7.3, and 7.4.
+* 8.4 Notice. Any notices under this Agreement shall be in writing, shall specifically refer to this Agreement, and shall be sent by hand, recognized national overnight courier, confirmed facsimile transmission, confirmed electronic mail, or registered or certified mail, postage prepaid, return receipt requested. All notices under this Agreement shall be deemed effective upon receipt.
+* 8.5 Amendment and Waiver; Entire Agreement. This Agreement may be amended, supplemented, or otherwise modified only by means of a written instrument signed by all parties. Any waiver of any rights or failure to act in a specific instance shall relate only to such instance and shall not be construed as an agreement to waive any rights or fail to act in any other instance, whether or not similar. This Agreement constitutes the entire agreement among the parties with respect to its subject matter and supersedes prior agreements or understandings between the parties relating to its subject matter.
+* 8.6 Binding Effect; Headings. This Agreement shall be binding upon and inure to the benefit of the parties and their respective permitted successors and assigns. All headings are for convenience only and shall not affect the meaning of any provision of this Agreement.
+* 8.7 Governing Law. This Agreement shall be construed, governed, interpreted and applied in accordance with the internal laws of the Commonwealth of Massachusetts, U.S.A., without regard to conflict of laws principles.
+*/
+
+package org.broadinstitute.gatk.tools.walkers.genotyper;
+
+import htsjdk.variant.variantcontext.*;
+import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
+
+import java.util.*;
+
+/**
+ * Primitive, columnar representation of the genotypes of a merged variant context.
+ *
+ * <p>
+ *     Merging gVCF records used to create a new {@link Genotype} per sample at every site even though most merged
+ *     sites are never emitted. Instead this class keeps the sample ploidies, PLs and ADs in flat {@code int} arrays,
+ *     which is all the allele-frequency calculation needs, and only creates genotype objects when the enclosing
+ *     {@link GenotypesContext} (see {@link #toGenotypesContext()}) is asked for them, typically when the site is
+ *     annotated or written out.
+ * </p>
+ *
+ * <p>
+ *     Each genotype is described as a template genotype to which no-call alleles of the sample ploidy, the sample
+ *     name and, when present, the matrix PLs and ADs are applied. Templates can themselves be the genotypes of
+ *     another matrix, so AF calculators can derive bi-allelic matrices without decoding the multi-allelic one.
+ * </p>
+ */
+public final class MergedGenotypeMatrix {
+
+    private final String[] sampleNames;
+    private final List<Genotype> templates;
+    private final int[] ploidies;
+
+    /**
+     * PLs of sample {@code i} are {@code pls[plStarts[i]] ... pls[plStarts[i + 1] - 1]}; an empty range means that
+     * the genotype keeps the PLs of its template.
+     */
+    private final int[] plStarts;
+    private final int[] pls;
+
+    /**
+     * Same layout as {@link #plStarts} for the AD values.
+     */
+    private final int[] adStarts;
+    private final int[] ads;
+
+    /**
+     * Sample indices in sample name order, lazily initialized.
+     */
+    private int[] sampleNameOrder;
+
+    private MergedGenotypeMatrix(final String[] sampleNames, final List<Genotype> templates, final int[] ploidies,
+                                 final int[] plStarts, final int[] pls, final int[] adStarts, final int[] ads) {
+        this.sampleNames = sampleNames;
+        this.templates = templates;
+        this.ploidies = ploidies;
+        this.plStarts = plStarts;
+        this.pls = pls;
+        this.adStarts = adStarts;
+        this.ads = ads;
+    }
+
+    /**
+     * Returns the matrix behind a genotypes context.
+     *
+     * @param genotypes the genotypes context.
+     * @return {@code null} if {@code genotypes} is not backed by a matrix or has already been decoded (and so
+     *   potentially modified).
+     */
+    public static MergedGenotypeMatrix of(final GenotypesContext genotypes) {
+        if ( !(genotypes instanceof LazyGenotypesContext) )
+            return null;
+        final LazyGenotypesContext lazy = (LazyGenotypesContext) genotypes;
+        if ( lazy.isLoaded() )
+            return null;
+        final Object data = lazy.getUnparsedGenotypeData();
+        return data instanceof MergedGenotypeMatrix ? (MergedGenotypeMatrix) data : null;
+    }
+
+    /**
+     * Returns a genotypes context that materializes the genotypes of this matrix on first access.
+     *
+     * @return never {@code null}.
+     */
+    public GenotypesContext toGenotypesContext() {
+        return new LazyGenotypesContext(PARSER, this, sampleNames.length);
+    }
+
+    /**
+     * @return number of samples in the matrix.
+     */
+    public int size() {
+        return sampleNames.length;
+    }
+
+    public String getSampleName(final int sampleIndex) {
+        return sampleNames[sampleIndex];
+    }
+
+    /**
+     * Returns the ploidy of a sample, that is the number of (no-call) alleles of its genotype.
+     */
+    public int getPloidy(final int sampleIndex) {
+        return ploidies[sampleIndex];
+    }
+
+    /**
+     * Sum of the ploidies of all samples, as in {@link GATKVariantContextUtils#totalPloidy}.
+     *
+     * @param defaultPloidy ploidy assumed for samples without alleles.
+     */
+    public int totalPloidy(final int defaultPloidy) {
+        int result = 0;
+        for ( final int ploidy : ploidies )
+            result += ploidy <= 0 ? defaultPloidy : ploidy;
+        return result;
+    }
+
+    /**
+     * Whether the genotype of a sample has PLs.
+     */
+    public boolean hasPL(final int sampleIndex) {
+        return plStarts[sampleIndex + 1] > plStarts[sampleIndex] || templates.get(sampleIndex).hasPL();
+    }
+
+    /**
+     * Returns a copy of the PLs of a sample genotype.
+     *
+     * @return {@code null} if the genotype has no PLs.
+     */
+    public int[] getPL(final int sampleIndex) {
+        final int from = plStarts[sampleIndex];
+        final int to = plStarts[sampleIndex + 1];
+        return from < to ? Arrays.copyOfRange(pls, from, to) : templates.get(sampleIndex).getPL();
+    }
+
+    /**
+     * Equivalent to {@link Genotype#isNonInformative()} on the materialized genotype.
+     */
+    public boolean isNonInformative(final int sampleIndex) {
+        final int from = plStarts[sampleIndex];
+        final int to = plStarts[sampleIndex + 1];
+        if ( from == to )
+            return templates.get(sampleIndex).isNonInformative();
+        for ( int i = from; i < to; i++ )
+            if ( pls[i] != 0 )
+                return false;
+        return true;
+    }
+
+    /**
+     * Equivalent to {@code getLikelihoods().getAsVector()} on the materialized genotype.
+     *
+     * @return {@code null} if the genotype has no likelihoods.
+     */
+    public double[] getLikelihoods(final int sampleIndex) {
+        final int from = plStarts[sampleIndex];
+        final int to = plStarts[sampleIndex + 1];
+        if ( from < to )
+            return GenotypeLikelihoods.fromPLs(Arrays.copyOfRange(pls, from, to)).getAsVector();
+        final Genotype template = templates.get(sampleIndex);
+        return template.hasLikelihoods() ? template.getLikelihoods().getAsVector() : null;
+    }
+
+    /**
+     * Returns the sample indices in the order {@link GenotypesContext#iterateInSampleNameOrder()} would visit them.
+     *
+     * @return never {@code null}; the caller must not modify it.
+     */
+    public int[] sampleNameOrder() {
+        if ( sampleNameOrder == null ) {
+            final Map<String, Integer> sampleNameToOffset = sampleNameToOffset();
+            final List<String> sortedNames = sortedSampleNames();
+            final int[] result = new int[sortedNames.size()];
+            for ( int i = 0; i < result.length; i++ )
+                result[i] = sampleNameToOffset.get(sortedNames.get(i));
+            sampleNameOrder = result;
+        }
+        return sampleNameOrder;
+    }
+
+    /**
+     * Derives a matrix whose genotypes are those of this matrix with new ploidies and PLs, as done by
+     * {@code new GenotypeBuilder(genotypes.get(i)).alleles(noCallAlleles(newPloidies[i])).PL(...)}.
+     *
+     * <p>{@code genotypes} are only decoded if something asks for the derived genotypes themselves.</p>
+     *
+     * @param genotypes the genotypes context created from this matrix.
+     * @param newPloidies the ploidy of each sample.
+     * @param hasNewPLs whether each sample gets new PLs; otherwise it keeps the ones from {@code genotypes}.
+     * @param newPLs {@code plCount} PLs per sample, in sample order, including samples without new PLs.
+     * @param plCount number of PLs of each sample in {@code newPLs}.
+     * @return never {@code null}.
+     */
+    public MergedGenotypeMatrix derive(final GenotypesContext genotypes, final int[] newPloidies, final boolean[] hasNewPLs,
+                                       final int[] newPLs, final int plCount) {
+        if ( genotypes.size() != sampleNames.length || newPloidies.length != sampleNames.length || hasNewPLs.length != sampleNames.length )
+            throw new IllegalArgumentException("the derived matrix must have the same number of samples");
+        final int[] derivedPLStarts = new int[sampleNames.length + 1];
+        final int[] derivedPLs = new int[newPLs.length];
+        int next = 0;
+        for ( int i = 0; i < sampleNames.length; i++ ) {
+            if ( hasNewPLs[i] ) {
+                System.arraycopy(newPLs, i * plCount, derivedPLs, next, plCount);
+                next += plCount;
+            }
+            derivedPLStarts[i + 1] = next;
+        }
+        return new MergedGenotypeMatrix(sampleNames, genotypes, newPloidies, derivedPLStarts, derivedPLs,
+                new int[sampleNames.length + 1], new int[0]);
+    }
+
+    /**
+     * Creates the genotype of a sample.
+     *
+     * @return never {@code null}.
+     */
+    public Genotype getGenotype(final int sampleIndex) {
+        final GenotypeBuilder builder = new GenotypeBuilder(templates.get(sampleIndex))
+                .alleles(GATKVariantContextUtils.noCallAlleles(ploidies[sampleIndex])).name(sampleNames[sampleIndex]);
+        if ( plStarts[sampleIndex + 1] > plStarts[sampleIndex] )
+            builder.PL(Arrays.copyOfRange(pls, plStarts[sampleIndex], plStarts[sampleIndex + 1]));
+        if ( adStarts[sampleIndex + 1] > adStarts[sampleIndex] )
+            builder.AD(Arrays.copyOfRange(ads, adStarts[sampleIndex], adStarts[sampleIndex + 1]));
+        return builder.make();
+    }
+
+    // mirrors GenotypesContext#ensureSampleNameMap: on repeated names the last genotype wins.
+    private Map<String, Integer> sampleNameToOffset() {
+        final Map<String, Integer> result = new HashMap<>(sampleNames.length);
+        for ( int i = 0; i < sampleNames.length; i++ )
+            result.put(sampleNames[i], i);
+        return result;
+    }
+
+    // mirrors GenotypesContext#ensureSampleOrdering.
+    private ArrayList<String> sortedSampleNames() {
+        final ArrayList<String> result = new ArrayList<>(Arrays.asList(sampleNames));
+        Collections.sort(result);
+        return result;
+    }
+
+    private static final LazyGenotypesContext.LazyParser PARSER = new LazyGenotypesContext.LazyParser() {
+        @Override
+        public LazyGenotypesContext.LazyData parse(final Object data) {
+            final MergedGenotypeMatrix matrix = (MergedGenotypeMatrix) data;
+            final ArrayList<Genotype> genotypes = new ArrayList<>(matrix.size());
+            for ( int i = 0; i < matrix.size(); i++ )
+                genotypes.add(matrix.getGenotype(i));
+            return new LazyGenotypesContext.LazyData(genotypes, matrix.sortedSampleNames(), matrix.sampleNameToOffset());
+        }
+    };
+
+    /**
+     * Accumulates the genotypes of a matrix one sample at a time.
+     */
+    public static final class Builder {
+
+        private final List<String> sampleNames;
+        private final List<Genotype> templates;
+        private int[] ploidies;
+        private int[] plStarts;
+        private int[] pls;
+        private int[] adStarts;
+        private int[] ads;
+        private int size;
+
+        /**
+         * @param expectedSampleCount initial capacity; the builder grows as needed.
+         */
+        public Builder(final int expectedSampleCount) {
+            final int capacity = Math.max(1, expectedSampleCount);
+            sampleNames = new ArrayList<>(capacity);
+            templates = new ArrayList<>(capacity);
+            ploidies = new int[capacity];
+            plStarts = new int[capacity + 1];
+            adStarts = new int[capacity + 1];
+            pls = new int[capacity * 3];
+            ads = new int[capacity * 2];
+        }
+
+        /**
+         * Adds a sample whose genotype keeps the template PLs and ADs.
+         *
+         * @param name the sample name.
+         * @param template the genotype to copy all other fields from.
+         * @param ploidy number of no-call alleles of the genotype.
+         */
+        public Builder add(final String name, final Genotype template, final int ploidy) {
+            return add(name, template, ploidy, null, null);
+        }
+
+        /**
+         * Adds a sample with new PLs and ADs.
+         *
+         * @param name the sample name.
+         * @param template the genotype to copy all other fields from.
+         * @param ploidy number of no-call alleles of the genotype.
+         * @param newPLs the PLs of the genotype, {@code null} to keep the template ones.
+         * @param newAD the AD of the genotype, {@code null} to keep the template one.
+         */
+        public Builder add(final String name, final Genotype template, final int ploidy, final int[] newPLs, final int[] newAD) {
+            startSample(name, template, ploidy);
+            if ( newPLs != null ) {
+                ensurePLCapacity(newPLs.length);
+                System.arraycopy(newPLs, 0, pls, plStarts[size], newPLs.length);
+                plStarts[size + 1] += newPLs.length;
+            }
+            if ( newAD != null ) {
+                ensureADCapacity(newAD.length);
+                System.arraycopy(newAD, 0, ads, adStarts[size], newAD.length);
+                adStarts[size + 1] += newAD.length;
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds a sample whose PLs and ADs are remapped from the template ones.
+         *
+         * <p>The i-th output PL is {@code template.getPL()[genotypeIndexMap[i]]} and the i-th output AD
+         * is {@code template.getAD()[alleleIndexMap[i]]}, or 0 if that index is beyond the template AD.
+         * The template AD is kept as is if the template has no PLs.</p>
+         *
+         * @param name the sample name.
+         * @param template the genotype to copy all other fields from.
+         * @param ploidy number of no-call alleles of the genotype.
+         * @param genotypeIndexMap genotype index map for the template ploidy.
+         * @param alleleIndexMap allele index map.
+         */
+        public Builder addRemapped(final String name, final Genotype template, final int ploidy,
+                                   final int[] genotypeIndexMap, final int[] alleleIndexMap) {
+            if ( !template.hasPL() )
+                return add(name, template, ploidy);
+            startSample(name, template, ploidy);
+            final int[] oldPLs = template.getPL();
+            ensurePLCapacity(genotypeIndexMap.length);
+            final int plStart = plStarts[size];
+            for ( int i = 0; i < genotypeIndexMap.length; i++ )
+                pls[plStart + i] = oldPLs[genotypeIndexMap[i]];
+            plStarts[size + 1] += genotypeIndexMap.length;
+            if ( template.hasAD() ) {
+                final int[] oldAD = template.getAD();
+                ensureADCapacity(alleleIndexMap.length);
+                final int adStart = adStarts[size];
+                for ( int i = 0; i < alleleIndexMap.length; i++ )
+                    ads[adStart + i] = alleleIndexMap[i] >= oldAD.length ? 0 : oldAD[alleleIndexMap[i]];
+                adStarts[size + 1] += alleleIndexMap.length;
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * @return never {@code null}.
+         */
+        public MergedGenotypeMatrix make() {
+            return new MergedGenotypeMatrix(sampleNames.toArray(new String[size]), templates,
+                    Arrays.copyOf(ploidies, size), Arrays.copyOf(plStarts, size + 1), pls,
+                    Arrays.copyOf(adStarts, size + 1), ads);
+        }
+
+        private void startSample(final String name, final Genotype template, final int ploidy) {
+            if ( size == ploidies.length ) {
+                final int capacity = size << 1;
+                ploidies = Arrays.copyOf(ploidies, capacity);
+                plStarts = Arrays.copyOf(plStarts, capacity + 1);
+                adStarts = Arrays.copyOf(adStarts, capacity + 1);
+            }
+            sampleNames.add(name);
+            templates.add(template);
+            ploidies[size] = ploidy;
+            plStarts[size + 1] = plStarts[size];
+            adStarts[size + 1] = adStarts[size];
+        }
+
+        private void ensurePLCapacity(final int extra) {
+            final int required = plStarts[size] + extra;
+            if ( required > pls.length )
+                pls = Arrays.copyOf(pls, Math.max(required, pls.length << 1));
+        }
+
+        private void ensureADCapacity(final int extra) {
+            final int required = adStarts[size] + extra;
+            if ( required > ads.length )
+                ads = Arrays.copyOf(ads, Math.max(required, ads.length << 1));
+        }
+    }
+}
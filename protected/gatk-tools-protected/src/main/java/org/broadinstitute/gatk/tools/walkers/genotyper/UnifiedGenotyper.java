@@ -214,6 +214,16 @@ public class UnifiedGenotyper extends LocusWalker<List<VariantCallContext>, Unif
     @Argument(fullName="excludeAnnotation", shortName="XA", doc="One or more specific annotations to exclude", required=false)
     protected List<String> annotationsToExclude = new ArrayList<>();
 
+    /**
+     * Evaluate the annotations of each variant concurrently, with this many threads. This pays off at sites with
+     * many samples or deep coverage. Only annotations that keep no state between variants and draw nothing from the
+     * random number generator are evaluated concurrently; the others (among them the rank sum tests, unless dithering
+     * is disabled, and QualByDepth) are still evaluated one after another, so the output is the same as with one thread.
+     */
+    @Advanced
+    @Argument(fullName="annotation_threads", shortName="annThreads", doc="Number of threads with which to evaluate the annotations of each variant", required=false, minValue=1)
+    protected int annotationThreads = 1;
+
     /**
      * If specified, all available annotations in the group will be applied. See the VariantAnnotator -list argument to view available groups.
      * Keep in mind that RODRequiringAnnotations are not intended to be used as a group, because they require specific ROD inputs.
@@ -224,6 +234,9 @@ public class UnifiedGenotyper extends LocusWalker<List<VariantCallContext>, Unif
     // the calculation arguments
     private UnifiedGenotypingEngine genotypingEngine = null;
 
+    // the annotation engine, kept so that its annotation threads can be shut down
+    private VariantAnnotatorEngine annotationEngine = null;
+
     // enable deletions in the pileup
     @Override
     public boolean includeReadsWithDeletionAtLoci() { return true; }
@@ -288,7 +301,8 @@ public class UnifiedGenotyper extends LocusWalker<List<VariantCallContext>, Unif
         if ( verboseWriter != null )
             verboseWriter.println("AFINFO\tLOC\tREF\tALT\tMAF\tF\tAFprior\tMLE\tMAP");
 
-        final VariantAnnotatorEngine annotationEngine = new VariantAnnotatorEngine(Arrays.asList(annotationClassesToUse), annotationsToUse, annotationsToExclude, this, getToolkit());
+        annotationEngine = new VariantAnnotatorEngine(Arrays.asList(annotationClassesToUse), annotationsToUse, annotationsToExclude, this, getToolkit());
+        annotationEngine.setAnnotationThreads(annotationThreads);
 
         final AFCalculatorProvider afCalcAFCalculatorProvider = FixedAFCalculatorProvider.createThreadSafeProvider(getToolkit(),UAC,logger);
         genotypingEngine = new UnifiedGenotypingEngine(UAC, samples, toolkit.getGenomeLocParser(), afCalcAFCalculatorProvider, toolkit.getArguments().BAQMode);
@@ -437,6 +451,7 @@ public class UnifiedGenotyper extends LocusWalker<List<VariantCallContext>, Unif
     }
 
     public void onTraversalDone(UGStatistics sum) {
+        annotationEngine.close();
         if ( metricsWriter != null ) {
             metricsWriter.println(String.format("Visited bases                                %d", sum.nBasesVisited));
             metricsWriter.println(String.format("Callable bases                               %d", sum.nBasesCallable));
@@ -54,6 +54,7 @@ package org.broadinstitute.gatk.tools.walkers.genotyper.afcalc;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.gatk.tools.walkers.genotyper.MergedGenotypeMatrix;
 
 /**
  * Instantiates Exact AF calculators given the required ploidy specs.
@@ -81,6 +82,10 @@ public abstract class AFCalculatorProvider {
 
         final GenotypesContext genotypes = variantContext.getGenotypes();
 
+        final MergedGenotypeMatrix matrix = MergedGenotypeMatrix.of(genotypes);
+        if ( matrix != null )
+            return getInstance(homogeneousPloidy(matrix, defaultPloidy), Math.min(variantContext.getNAlleles() - 1, maximumAltAlleles));
+
         final Genotype firstGenotype = genotypes.get(0);
         int ploidy = firstGenotype.getPloidy();
         if (ploidy <= 0) ploidy = defaultPloidy;
@@ -96,6 +101,21 @@ public abstract class AFCalculatorProvider {
         return getInstance(ploidy,Math.min(variantContext.getNAlleles() - 1, maximumAltAlleles));
     }
 
+    /**
+     * Same ploidy scan as {@link #getInstance(VariantContext, int, int)} on the genotypes of a merged gVCF record.
+     */
+    private static int homogeneousPloidy(final MergedGenotypeMatrix matrix, final int defaultPloidy) {
+        int ploidy = matrix.getPloidy(0);
+        if (ploidy <= 0) ploidy = defaultPloidy;
+        for (int i = 1 ; i < matrix.size(); i++) {
+            final int declaredPloidy = matrix.getPloidy(i);
+            final int actualPloidy = declaredPloidy <= 0 ? defaultPloidy : declaredPloidy;
+            if (actualPloidy != ploidy)
+                return AFCalculatorImplementation.UNBOUND_PLOIDY;
+        }
+        return ploidy;
+    }
+
     /**
      * Returns a AF calculator given the required homogeneous ploidy and allele count (including the reference).
      * @param ploidy the required ploidy.
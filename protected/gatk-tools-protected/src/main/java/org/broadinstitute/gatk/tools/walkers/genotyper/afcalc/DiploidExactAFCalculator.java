@@ -76,8 +76,12 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
         final int numSamples = genotypeLikelihoods.size()-1;
         final int numChr = 2*numSamples;
 
+        // sample likelihoods by genotype (PL index) and sample so that each ACset update walks a single array.
+        final double[][] likelihoodColumns = likelihoodColumns(genotypeLikelihoods, GenotypeLikelihoods.numLikelihoods(vc.getNAlleles(), 2));
+        final double[] log10Denominators = log10Denominators(numSamples);
+
         // queue of AC conformations to process
-        final LinkedList<ExactACset> ACqueue = new LinkedList<>();
+        final ArrayDeque<ExactACset> ACqueue = new ArrayDeque<>();
 
         // mapping of ExactACset indexes to the objects
         final HashMap<ExactACcounts, ExactACset> indexesToACset = new HashMap<>(numChr+1);
@@ -94,7 +98,7 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
             // compute log10Likelihoods
             final ExactACset set = ACqueue.remove();
 
-            calculateAlleleCountConformation(set, genotypeLikelihoods, numChr, ACqueue,
+            calculateAlleleCountConformation(set, likelihoodColumns, log10Denominators, numChr, ACqueue,
                     indexesToACset, log10AlleleFrequencyPriors,stateTracker);
 
             // clean up memory
@@ -106,6 +110,34 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
         return getResultFromFinalState(vc, log10AlleleFrequencyPriors, stateTracker);
     }
 
+    /**
+     * Transposes the per-sample likelihoods returned by {@link #getGLs} into one array per genotype.
+     *
+     * @param genotypeLikelihoods the likelihoods of each sample, including the dummy first one.
+     * @param numLikelihoods number of genotypes.
+     * @return never {@code null}; element {@code [PLindex][j]} is the likelihood of genotype {@code PLindex} for
+     *   the {@code j}th sample (1-based as in {@code genotypeLikelihoods}).
+     */
+    private static double[][] likelihoodColumns(final ArrayList<double[]> genotypeLikelihoods, final int numLikelihoods) {
+        final int size = genotypeLikelihoods.size();
+        final double[][] result = new double[numLikelihoods][size];
+        for ( int j = 1; j < size; j++ ) {
+            final double[] gl = genotypeLikelihoods.get(j);
+            for ( int PLindex = 0; PLindex < numLikelihoods; PLindex++ )
+                result[PLindex][j] = gl[PLindex];
+        }
+        return result;
+    }
+
+    /**
+     * Log10 of the number of ways of picking the genotype of the {@code j}th sample, {@code 2j * (2j - 1)}.
+     */
+    private static double[] log10Denominators(final int numSamples) {
+        final double[] result = new double[numSamples + 1];
+        for ( int j = 1; j <= numSamples; j++ )
+            result[j] = MathUtils.Log10Cache.get(2*j) + MathUtils.Log10Cache.get(2*j-1);
+        return result;
+    }
 
     @Override
     protected GenotypesContext reduceScopeGenotypes(final VariantContext vc, final int defaultPloidy, final List<Allele> allelesToUse) {
@@ -141,9 +173,10 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
     }
 
     private double calculateAlleleCountConformation(final ExactACset set,
-                                                    final ArrayList<double[]> genotypeLikelihoods,
+                                                    final double[][] likelihoodColumns,
+                                                    final double[] log10Denominators,
                                                     final int numChr,
-                                                    final LinkedList<ExactACset> ACqueue,
+                                                    final ArrayDeque<ExactACset> ACqueue,
                                                     final HashMap<ExactACcounts, ExactACset> indexesToACset,
                                                     final double[] log10AlleleFrequencyPriors,
                                                     final StateTracker stateTracker) {
@@ -152,7 +185,7 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
         //    System.out.printf(" *** computing LofK for set=%s%n", set.ACcounts);
 
         // compute the log10Likelihoods
-        computeLofK(set, genotypeLikelihoods, log10AlleleFrequencyPriors, stateTracker);
+        computeLofK(set, likelihoodColumns, log10Denominators, log10AlleleFrequencyPriors, stateTracker);
 
         final double log10LofK = set.getLog10Likelihoods()[set.getLog10Likelihoods().length-1];
 
@@ -176,7 +209,7 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
             ACcountsClone[allele]++;
             // to get to this conformation, a sample would need to be AB (remember that ref=0)
             final int PLindex = GenotypeLikelihoods.calculatePLindex(0, allele+1);
-            updateACset(ACcountsClone, numChr, set, PLindex, ACqueue, indexesToACset, genotypeLikelihoods);
+            updateACset(ACcountsClone, numChr, set, PLindex, ACqueue, indexesToACset, likelihoodColumns);
         }
 
         // add conformations for the k+2 case if it makes sense; note that the 2 new alleles may be the same or different
@@ -201,9 +234,9 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
 
             // IMPORTANT: we must first add the cases where the 2 new alleles are different so that the queue maintains its ordering
             for ( DependentSet dependent : differentAlleles )
-                updateACset(dependent.ACcounts, numChr, set, dependent.PLindex, ACqueue, indexesToACset, genotypeLikelihoods);
+                updateACset(dependent.ACcounts, numChr, set, dependent.PLindex, ACqueue, indexesToACset, likelihoodColumns);
             for ( DependentSet dependent : sameAlleles )
-                updateACset(dependent.ACcounts, numChr, set, dependent.PLindex, ACqueue, indexesToACset, genotypeLikelihoods);
+                updateACset(dependent.ACcounts, numChr, set, dependent.PLindex, ACqueue, indexesToACset, likelihoodColumns);
         }
 
         return log10LofK;
@@ -217,10 +250,11 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
                              final int PLsetIndex,
                              final Queue<ExactACset> ACqueue,
                              final HashMap<ExactACcounts, ExactACset> indexesToACset,
-                             final ArrayList<double[]> genotypeLikelihoods) {
+                             final double[][] likelihoodColumns) {
         final ExactACcounts index = new ExactACcounts(newSetCounts);
-        if ( !indexesToACset.containsKey(index) ) {
-            ExactACset set = new ExactACset(numChr/2 +1, index);
+        ExactACset set = indexesToACset.get(index);
+        if ( set == null ) {
+            set = new ExactACset(numChr/2 +1, index);
             indexesToACset.put(index, set);
             ACqueue.add(set);
         }
@@ -228,22 +262,25 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
         // push data from the dependency to the new set
         //if ( DEBUG )
         //    System.out.println(" *** pushing data from " + index + " to " + dependencySet.ACcounts);
-        pushData(indexesToACset.get(index), dependentSet, PLsetIndex, genotypeLikelihoods);
+        pushData(set, dependentSet, PLsetIndex, likelihoodColumns);
     }
 
     private void computeLofK(final ExactACset set,
-                             final ArrayList<double[]> genotypeLikelihoods,
+                             final double[][] likelihoodColumns,
+                             final double[] log10Denominators,
                              final double[] log10AlleleFrequencyPriors, final StateTracker stateTracker) {
 
-        set.getLog10Likelihoods()[0] = 0.0; // the zero case
+        final double[] log10Likelihoods = set.getLog10Likelihoods();
+        final double[] homRefLikelihoods = likelihoodColumns[HOM_REF_INDEX];
+        log10Likelihoods[0] = 0.0; // the zero case
         final int totalK = set.getACsum();
 
         // special case for k = 0 over all k
         if ( totalK == 0 ) {
-            for ( int j = 1; j < set.getLog10Likelihoods().length; j++ )
-                set.getLog10Likelihoods()[j] = set.getLog10Likelihoods()[j-1] + genotypeLikelihoods.get(j)[HOM_REF_INDEX];
+            for ( int j = 1; j < log10Likelihoods.length; j++ )
+                log10Likelihoods[j] = log10Likelihoods[j-1] + homRefLikelihoods[j];
 
-            final double log10Lof0 = set.getLog10Likelihoods()[set.getLog10Likelihoods().length-1];
+            final double log10Lof0 = log10Likelihoods[log10Likelihoods.length-1];
             stateTracker.setLog10LikelihoodOfAFzero(log10Lof0);
             stateTracker.setLog10PosteriorOfAFzero(log10Lof0 + log10AlleleFrequencyPriors[0]);
             return;
@@ -251,20 +288,17 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
 
         // if we got here, then k > 0 for at least one k.
         // the non-AA possible conformations were already dealt with by pushes from dependent sets;
-        // now deal with the AA case (which depends on previous cells in this column) and then update the L(j,k) value
-        for ( int j = 1; j < set.getLog10Likelihoods().length; j++ ) {
-
-            if ( totalK < 2*j-1 ) {
-                final double[] gl = genotypeLikelihoods.get(j);
-                final double conformationValue = MathUtils.Log10Cache.get(2*j-totalK) + MathUtils.Log10Cache.get(2*j-totalK-1) + set.getLog10Likelihoods()[j-1] + gl[HOM_REF_INDEX];
-                set.getLog10Likelihoods()[j] = MathUtils.approximateLog10SumLog10(set.getLog10Likelihoods()[j], conformationValue);
-            }
-
-            final double logDenominator = MathUtils.Log10Cache.get(2*j) + MathUtils.Log10Cache.get(2*j-1);
-            set.getLog10Likelihoods()[j] = set.getLog10Likelihoods()[j] - logDenominator;
+        // now deal with the AA case (which depends on previous cells in this column) and then update the L(j,k) value.
+        // The AA case is only possible once there are more chromosomes than alternate alleles (totalK < 2j - 1).
+        final int firstHomRefJ = Math.min((totalK + 1) / 2 + 1, log10Likelihoods.length);
+        for ( int j = 1; j < firstHomRefJ; j++ )
+            log10Likelihoods[j] = log10Likelihoods[j] - log10Denominators[j];
+        for ( int j = firstHomRefJ; j < log10Likelihoods.length; j++ ) {
+            final double conformationValue = MathUtils.Log10Cache.get(2*j-totalK) + MathUtils.Log10Cache.get(2*j-totalK-1) + log10Likelihoods[j-1] + homRefLikelihoods[j];
+            log10Likelihoods[j] = MathUtils.approximateLog10SumLog10(log10Likelihoods[j], conformationValue) - log10Denominators[j];
         }
 
-        double log10LofK = set.getLog10Likelihoods()[set.getLog10Likelihoods().length-1];
+        double log10LofK = log10Likelihoods[log10Likelihoods.length-1];
 
         // update the MLE if necessary
         stateTracker.updateMLEifNeeded(log10LofK, set.getACcounts().getCounts());
@@ -281,21 +315,16 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
     private void pushData(final ExactACset targetSet,
                           final ExactACset dependentSet,
                           final int PLsetIndex,
-                          final ArrayList<double[]> genotypeLikelihoods) {
+                          final double[][] likelihoodColumns) {
         final int totalK = targetSet.getACsum();
+        final double[] targetLikelihoods = targetSet.getLog10Likelihoods();
+        final double[] dependentLikelihoods = dependentSet.getLog10Likelihoods();
+        final double[] gl = likelihoodColumns[PLsetIndex];
+        final int[] ACcounts = targetSet.getACcounts().getCounts();
 
-        for ( int j = 1; j < targetSet.getLog10Likelihoods().length; j++ ) {
-
-            if ( totalK <= 2*j ) { // skip impossible conformations
-                final double[] gl = genotypeLikelihoods.get(j);
-                final double conformationValue =
-                        determineCoefficient(PLsetIndex, j, targetSet.getACcounts().getCounts(), totalK) + dependentSet.getLog10Likelihoods()[j-1] + gl[PLsetIndex];
-                targetSet.getLog10Likelihoods()[j] = MathUtils.approximateLog10SumLog10(targetSet.getLog10Likelihoods()[j], conformationValue);
-            }
-        }
-    }
+        // skip impossible conformations (totalK > 2j)
+        final int firstJ = Math.max(1, (totalK + 1) / 2);
 
-    private double determineCoefficient(int PLindex, final int j, final int[] ACcounts, final int totalK) {
         // the closed form representation generalized for multiple alleles is as follows:
         // AA: (2j - totalK) * (2j - totalK - 1)
         // AB: 2k_b * (2j - totalK)
@@ -303,31 +332,37 @@ public abstract class DiploidExactAFCalculator extends ExactAFCalculator {
         // BB: k_b * (k_b - 1)
         // BC: 2 * k_b * k_c
         // CC: k_c * (k_c - 1)
+        // only the het ref-alt coefficients depend on the sample j; the others are the same for the whole column.
 
         // find the 2 alleles that are represented by this PL index
-        GenotypeLikelihoods.GenotypeLikelihoodsAllelePair alleles = GenotypeLikelihoods.getAllelePair(PLindex);
+        final GenotypeLikelihoods.GenotypeLikelihoodsAllelePair alleles = GenotypeLikelihoods.getAllelePair(PLsetIndex);
 
         // *** note that throughout this method we subtract one from the alleleIndex because ACcounts ***
         // *** doesn't consider the reference allele whereas the GenotypeLikelihoods PL cache does.   ***
 
-        // the AX het case
-        if ( alleles.alleleIndex1 == 0 )
-            return MathUtils.Log10Cache.get(2*ACcounts[alleles.alleleIndex2-1]) + MathUtils.Log10Cache.get(2*j-totalK);
-
-        final int k_i = ACcounts[alleles.alleleIndex1-1];
-
-        // the hom var case (e.g. BB, CC, DD)
-        final double coeff;
-        if ( alleles.alleleIndex1 == alleles.alleleIndex2 ) {
-            coeff = MathUtils.Log10Cache.get(k_i) + MathUtils.Log10Cache.get(k_i - 1);
-        }
-        // the het non-ref case (e.g. BC, BD, CD)
-        else {
-            final int k_j = ACcounts[alleles.alleleIndex2-1];
-            coeff = LOG10_OF_2 + MathUtils.Log10Cache.get(k_i) + MathUtils.Log10Cache.get(k_j);
+        if ( alleles.alleleIndex1 == 0 ) {
+            // the AX het case
+            final double log10ACcount = MathUtils.Log10Cache.get(2*ACcounts[alleles.alleleIndex2-1]);
+            for ( int j = firstJ; j < targetLikelihoods.length; j++ ) {
+                final double conformationValue = log10ACcount + MathUtils.Log10Cache.get(2*j-totalK) + dependentLikelihoods[j-1] + gl[j];
+                targetLikelihoods[j] = MathUtils.approximateLog10SumLog10(targetLikelihoods[j], conformationValue);
+            }
+        } else {
+            final int k_i = ACcounts[alleles.alleleIndex1-1];
+
+            final double coeff;
+            // the hom var case (e.g. BB, CC, DD)
+            if ( alleles.alleleIndex1 == alleles.alleleIndex2 )
+                coeff = MathUtils.Log10Cache.get(k_i) + MathUtils.Log10Cache.get(k_i - 1);
+            // the het non-ref case (e.g. BC, BD, CD)
+            else
+                coeff = LOG10_OF_2 + MathUtils.Log10Cache.get(k_i) + MathUtils.Log10Cache.get(ACcounts[alleles.alleleIndex2-1]);
+
+            for ( int j = firstJ; j < targetLikelihoods.length; j++ ) {
+                final double conformationValue = coeff + dependentLikelihoods[j-1] + gl[j];
+                targetLikelihoods[j] = MathUtils.approximateLog10SumLog10(targetLikelihoods[j], conformationValue);
+            }
         }
-
-        return coeff;
     }
 
     @Override
@@ -51,6 +51,7 @@
 
 package org.broadinstitute.gatk.tools.walkers.genotyper.afcalc;
 
+import org.broadinstitute.gatk.tools.walkers.genotyper.MergedGenotypeMatrix;
 import org.broadinstitute.gatk.utils.MathUtils;
 import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
@@ -129,6 +130,18 @@ abstract class ExactAFCalculator extends AFCalculator {
         final ArrayList<double[]> genotypeLikelihoods = new ArrayList<>(GLs.size() + 1);
 
         if ( includeDummy ) genotypeLikelihoods.add(new double[]{0.0,0.0,0.0}); // dummy
+
+        // merged gVCF genotypes: read the likelihoods straight from the matrix without creating the genotypes.
+        final MergedGenotypeMatrix matrix = MergedGenotypeMatrix.of(GLs);
+        if ( matrix != null ) {
+            for ( final int sampleIndex : matrix.sampleNameOrder() ) {
+                final double[] gls = matrix.getLikelihoods(sampleIndex);
+                if ( gls != null && MathUtils.sum(gls) < GATKVariantContextUtils.SUM_GL_THRESH_NOCALL )
+                    genotypeLikelihoods.add(gls);
+            }
+            return genotypeLikelihoods;
+        }
+
         for ( Genotype sample : GLs.iterateInSampleNameOrder() ) {
             if ( sample.hasLikelihoods() ) {
                 final double[] gls = sample.getLikelihoods().getAsVector();
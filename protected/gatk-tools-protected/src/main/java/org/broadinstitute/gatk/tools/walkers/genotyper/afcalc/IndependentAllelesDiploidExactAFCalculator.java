@@ -55,6 +55,7 @@ import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import htsjdk.variant.variantcontext.*;
 import org.broadinstitute.gatk.tools.walkers.genotyper.GenotypeLikelihoodCalculators;
+import org.broadinstitute.gatk.tools.walkers.genotyper.MergedGenotypeMatrix;
 import org.broadinstitute.gatk.utils.MathUtils;
 import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 
@@ -200,6 +201,21 @@ import java.util.*;
             final double[] hetLikelihoods = new double[vc.getNAlleles() - 1];
             final double[] homAltLikelihoods = new double[genotypeCount - hetLikelihoods.length - 1];
             final double[] newLikelihoods = new double[3];
+            final MergedGenotypeMatrix matrix = MergedGenotypeMatrix.of(vc.getGenotypes());
+            if (matrix != null) {
+                final int sampleCount = matrix.size();
+                final int[] ploidies = new int[sampleCount];
+                final boolean[] hasNewPLs = new boolean[sampleCount];
+                final int[] newPLs = new int[sampleCount * 3];
+                for (int i = 0; i < sampleCount; i++) {
+                    ploidies[i] = matrix.getPloidy(i);
+                    if (combineAltAlleleLikelihoods(matrix.getPL(i), genotypeCount, newLikelihoods, hetLikelihoods, homAltLikelihoods)) {
+                        hasNewPLs[i] = true;
+                        System.arraycopy(GenotypeLikelihoods.fromLog10Likelihoods(newLikelihoods).getAsPLs(), 0, newPLs, i * 3, 3);
+                    }
+                }
+                return vcb.genotypesNoValidation(matrix.derive(vc.getGenotypes(), ploidies, hasNewPLs, newPLs, 3).toGenotypesContext()).make();
+            }
             final List<Genotype> newGenotypes = new ArrayList<>(vc.getNSamples());
             for (final Genotype oldGenotype : vc.getGenotypes()) {
                 final GenotypeBuilder gb = new GenotypeBuilder(oldGenotype);
@@ -217,7 +233,7 @@ import java.util.*;
                     }
                     gb.alleles(newAlleles);
                 }
-                if (combineAltAlleleLikelihoods(oldGenotype, genotypeCount, newLikelihoods, hetLikelihoods, homAltLikelihoods))
+                if (combineAltAlleleLikelihoods(oldGenotype.getPL(), genotypeCount, newLikelihoods, hetLikelihoods, homAltLikelihoods))
                     gb.PL(newLikelihoods);
                 newGenotypes.add(gb.make());
             }
@@ -302,18 +318,48 @@ import java.util.*;
             return rootVC;
         } else {
             final int nAlts = rootVC.getNAlleles() - 1;
-            final List<Genotype> biallelicGenotypes = new ArrayList<Genotype>(rootVC.getNSamples());
-            for ( final Genotype g : rootVC.getGenotypes() )
-                biallelicGenotypes.add(combineGLsPrecise(g, altAlleleIndex, nAlts));
-
             final VariantContextBuilder vcb = new VariantContextBuilder(rootVC);
             final Allele altAllele = rootVC.getAlternateAllele(altAlleleIndex - 1);
             vcb.alleles(Arrays.asList(rootVC.getReference(), altAllele));
+
+            final MergedGenotypeMatrix matrix = MergedGenotypeMatrix.of(rootVC.getGenotypes());
+            if ( matrix != null )
+                return vcb.genotypesNoValidation(biallelicCombinedGLs(matrix, rootVC.getGenotypes(), altAlleleIndex, nAlts).toGenotypesContext()).make();
+
+            final List<Genotype> biallelicGenotypes = new ArrayList<Genotype>(rootVC.getNSamples());
+            for ( final Genotype g : rootVC.getGenotypes() )
+                biallelicGenotypes.add(combineGLsPrecise(g, altAlleleIndex, nAlts));
             vcb.genotypes(biallelicGenotypes);
             return vcb.make();
         }
     }
 
+    /**
+     * Same as applying {@link #combineGLsPrecise} to every genotype of a merged gVCF record, but without creating
+     * any genotype.
+     *
+     * @param matrix the matrix behind {@code genotypes}.
+     * @param genotypes the multi-allelic genotypes.
+     * @param altIndex the index of the alt allele we wish to keep in the bialleic case -- with ref == 0
+     * @param nAlts the total number of alt alleles
+     * @return never {@code null}.
+     */
+    private static MergedGenotypeMatrix biallelicCombinedGLs(final MergedGenotypeMatrix matrix, final GenotypesContext genotypes,
+                                                             final int altIndex, final int nAlts) {
+        final int sampleCount = matrix.size();
+        final int[] ploidies = new int[sampleCount];
+        final boolean[] hasNewPLs = new boolean[sampleCount];
+        final int[] newPLs = new int[sampleCount * BIALLELIC_NON_INFORMATIVE_PLS.length];
+        Arrays.fill(ploidies, BIALLELIC_NOCALL.size());
+        Arrays.fill(hasNewPLs, true);
+        for ( int i = 0; i < sampleCount; i++ ) {
+            final int[] biallelicPLs = matrix.isNonInformative(i) ? BIALLELIC_NON_INFORMATIVE_PLS
+                    : GenotypeLikelihoods.fromLog10Likelihoods(combinePLsPrecise(matrix.getPL(i), altIndex, nAlts)).getAsPLs();
+            System.arraycopy(biallelicPLs, 0, newPLs, i * biallelicPLs.length, biallelicPLs.length);
+        }
+        return matrix.derive(genotypes, ploidies, hasNewPLs, newPLs, BIALLELIC_NON_INFORMATIVE_PLS.length);
+    }
+
     /**
      * Returns a new Genotype with the PLs of the multi-allelic original reduced to a bi-allelic case
      *
@@ -408,9 +454,15 @@ import java.util.*;
         if ( original.isNonInformative() )
             return new GenotypeBuilder(original).PL(BIALLELIC_NON_INFORMATIVE_PLS).alleles(BIALLELIC_NOCALL).make();
 
-        if ( altIndex < 1 || altIndex > nAlts ) throw new IllegalStateException("altIndex must be between 1 and nAlts " + nAlts);
+        final double[] GLs = combinePLsPrecise(original.getPL(), altIndex, nAlts);
+        return new GenotypeBuilder(original).PL(GLs).alleles(BIALLELIC_NOCALL).make();
+    }
 
-        final int[] pls = original.getPL();
+    /**
+     * Bi-allelic log10 likelihoods of {@link #combineGLsPrecise} given the multi-allelic PLs.
+     */
+    private static double[] combinePLsPrecise(final int[] pls, final int altIndex, final int nAlts) {
+        if ( altIndex < 1 || altIndex > nAlts ) throw new IllegalStateException("altIndex must be between 1 and nAlts " + nAlts);
 
         final int nAlleles = nAlts + 1;
 
@@ -437,8 +489,7 @@ import java.util.*;
         final double XB = MathUtils.log10sumLog10(XBvalues);
         final double XX = MathUtils.log10sumLog10(XXvalues);
 
-        final double[] GLs = new double[] { XX, XB, BB};
-        return new GenotypeBuilder(original).PL(GLs).alleles(BIALLELIC_NOCALL).make();
+        return new double[] { XX, XB, BB};
     }
 
     protected final List<AFCalculationResult> applyMultiAllelicPriors(final List<AFCalculationResult> conditionalPNonRefResults) {
@@ -512,10 +563,9 @@ import java.util.*;
                 log10pRefByAllele, sortedResultsWithThetaNPriors);
     }
 
-    private boolean combineAltAlleleLikelihoods(final Genotype g, final int plMaxIndex, final double[] dest,
+    private boolean combineAltAlleleLikelihoods(final int[] pls, final int plMaxIndex, final double[] dest,
                                                 final double[] hetLikelihoods, final double[] homAltLikelihoods) {
 
-        final int[] pls = g.getPL();
         if (pls == null)
             return false;
         int hetNextIndex = 0;
@@ -174,6 +174,10 @@ import java.util.*;
  *     -o output.raw.snps.indels.g.vcf
  * </pre>
  *
+ * <p>Naming the output file with the .g.bcf extension writes the GVCF as BCF2 instead, which is smaller and much
+ * faster to write than the text format for whole genomes, and is read by CombineGVCFs and GenotypeGVCFs like any
+ * other GVCF.</p>
+ *
  * <h4>Variant-only calling on DNAseq</h4>
  * <pre>
  *   java
@@ -304,6 +308,16 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
     @Argument(fullName="excludeAnnotation", shortName="XA", doc="One or more specific annotations to exclude", required=false)
     protected List<String> annotationsToExclude = new ArrayList<>(Arrays.asList(new String[]{}));
 
+    /**
+     * Evaluate the annotations of each variant concurrently, with this many threads. This pays off at sites with
+     * many samples or deep coverage. Only annotations that keep no state between variants and draw nothing from the
+     * random number generator are evaluated concurrently; the others (among them the rank sum tests, unless dithering
+     * is disabled, and QualByDepth) are still evaluated one after another, so the output is the same as with one thread.
+     */
+    @Advanced
+    @Argument(fullName="annotation_threads", shortName="annThreads", doc="Number of threads with which to evaluate the annotations of each variant", required=false, minValue=1)
+    protected int annotationThreads = 1;
+
     /**
      * Which groups of annotations to add to the output VCF file. The single value 'none' removes the default group. See
      * the VariantAnnotator -list argument to view available groups. Note that this usage is not recommended because
@@ -461,6 +475,9 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
     // the genotyping engine
     private HaplotypeCallerGenotypingEngine genotypingEngine = null;
 
+    // the annotation engine, kept so that its annotation threads can be shut down
+    private VariantAnnotatorEngine annotationEngine = null;
+
     // fasta reference reader to supplement the edges of the reference sequence
     protected CachingIndexedFastaSequenceFile referenceReader;
 
@@ -592,7 +609,8 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
 
         genotypingEngine = new HaplotypeCallerGenotypingEngine(HCAC, samplesList, genomeLocParser, FixedAFCalculatorProvider.createThreadSafeProvider(getToolkit(), HCAC,logger), !doNotRunPhysicalPhasing);
         // initialize the output VCF header
-        final VariantAnnotatorEngine annotationEngine = new VariantAnnotatorEngine(Arrays.asList(annotationClassesToUse), annotationsToUse, annotationsToExclude, this, getToolkit());
+        annotationEngine = new VariantAnnotatorEngine(Arrays.asList(annotationClassesToUse), annotationsToUse, annotationsToExclude, this, getToolkit());
+        annotationEngine.setAnnotationThreads(annotationThreads);
 
         final Set<VCFHeaderLine> headerInfo = new HashSet<>();
 
@@ -690,7 +708,7 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
             headerInfo.addAll(referenceConfidenceModel.getVCFHeaderLines());
             if ( HCAC.emitReferenceConfidence == ReferenceConfidenceMode.GVCF ) {
                 // A kluge to enforce the use of this indexing strategy - must set the gVCF indexing values if not a using a gVCF output file .
-                // An output gVCF file automatically sets the indexing values because it has the .g.vcf extension.
+                // An output gVCF file automatically sets the indexing values because it has the .g.vcf (or .g.bcf) extension.
                 if (!GATKVCFUtils.usingGVCFIndexingArguments(getToolkit().getArguments().variant_index_type, getToolkit().getArguments().variant_index_parameter) && !isGVCF()) {
                     throw new UserException.GVCFIndexException(GATKVCFUtils.DEFAULT_GVCF_INDEX_TYPE, GATKVCFUtils.DEFAULT_GVCF_INDEX_PARAMETER);
                 }
@@ -1080,6 +1098,7 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
         //TODO remove the need to call close here for debugging, the likelihood output stream should be managed
         //TODO (open & close) at the walker, not the engine.
         likelihoodCalculationEngine.close();
+        annotationEngine.close();
         logger.info("Ran local assembly on " + result + " active regions");
     }
 
@@ -1204,9 +1223,9 @@ public class HaplotypeCaller extends ActiveRegionWalker<List<VariantContext>, In
     /**
      * Is writing to an output GVCF file?
      *
-     * @return true if the VCF output file has a .g.vcf extension
+     * @return true if the VCF output file has a .g.vcf or .g.bcf extension
      */
     private boolean isGVCF() {
-            return ((VariantContextWriterStub) vcfWriter).getOutputFile().getName().endsWith("." + GATKVCFUtils.GVCF_EXT);
+            return GATKVCFUtils.isGVCFFile(((VariantContextWriterStub) vcfWriter).getOutputFile());
     }
 }
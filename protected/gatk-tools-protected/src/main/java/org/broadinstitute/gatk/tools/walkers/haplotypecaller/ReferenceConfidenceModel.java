@@ -72,6 +72,7 @@ import org.broadinstitute.gatk.utils.sam.AlignmentUtils;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
+import org.broadinstitute.gatk.utils.variant.HomoSapiensConstants;
 
 import java.io.File;
 import java.util.*;
@@ -304,6 +305,10 @@ public class ReferenceConfidenceModel {
     /**
      * Calculate the genotype likelihoods for the sample in pileup for being hom-ref contrasted with being ref vs. alt
      *
+     * Pileups that only support the reference, which are the vast majority of the sites outside active regions, are
+     * handled by {@link #calcGenotypeLikelihoodsOfHomRefPileup} when the genotyping model allows it; everything else goes
+     * through the genotyping model.  Both give exactly the same result.
+     *
      * @param sampleName target sample name.
      * @param ploidy target sample ploidy.
      * @param genotypingModel model to calculate likelihoods and genotypes.
@@ -316,6 +321,135 @@ public class ReferenceConfidenceModel {
     public RefVsAnyResult calcGenotypeLikelihoodsOfRefVsAny(final String sampleName, final int ploidy,
                                                         final GenotypingModel genotypingModel,
                                                         final ReadBackedPileup pileup, final byte refBase, final byte minBaseQual, final MathUtils.RunningAverage hqSoftClips) {
+        if ( genotypingModel instanceof InfiniteRandomMatingPopulationModel ) {
+            final RefVsAnyResult homRefResult = calcGenotypeLikelihoodsOfHomRefPileup(ploidy, pileup, refBase, minBaseQual);
+            if ( homRefResult != null )
+                return homRefResult;
+        }
+        return calcGenotypeLikelihoodsOfRefVsAnyWithModel(sampleName, ploidy, genotypingModel, pileup, refBase, minBaseQual, hqSoftClips);
+    }
+
+    /**
+     * Calculate the genotype likelihoods of a pileup in which every read supports the reference, without going through
+     * the genotyping model
+     *
+     * A read with base quality q that supports the reference contributes the same likelihood to a genotype with k copies of
+     * non-ref as any other such read with the same quality, so these contributions are looked up in a table built once per
+     * ploidy.  The table entries are computed with exactly the operations {@link GenotypeLikelihoodCalculator} uses for
+     * a read, and they are summed in pileup order starting from the same denominator, so the result is identical to that of
+     * {@link InfiniteRandomMatingPopulationModel}.
+     *
+     * @param ploidy target sample ploidy.
+     * @param pileup the read backed pileup containing the data we want to evaluate
+     * @param refBase the reference base at this pileup position
+     * @param minBaseQual the min base quality for a read in the pileup at the pileup position to be included in the calculation
+     * @return a RefVsAnyResult genotype call, or {@code null} if some read in the pileup may not support the reference
+     */
+    protected final RefVsAnyResult calcGenotypeLikelihoodsOfHomRefPileup(final int ploidy, final ReadBackedPileup pileup,
+                                                                         final byte refBase, final byte minBaseQual) {
+        final byte[] quals = new byte[pileup.getNumberOfElements()];
+        int readCount = 0;
+        for (final PileupElement p : pileup) {
+            if (p.isDeletion() || p.getBase() != refBase || p.isBeforeDeletionStart() || p.isAfterDeletionEnd()
+                    || p.isBeforeInsertion() || p.isAfterInsertion() || p.isNextToSoftClip())
+                return null;
+            final byte qual = p.getQual();
+            if (qual <= minBaseQual)
+                continue;
+            quals[readCount++] = qual;
+        }
+
+        final double[][] likelihoodByQual = homRefReadLikelihoods(ploidy);
+        final double denominator = readCount * likelihoodByQual[ploidy + 1][0];
+        final RefVsAnyResult result = new RefVsAnyResult(ploidy + 1);
+        for (int g = 0; g <= ploidy; g++) {
+            final double[] likelihoods = likelihoodByQual[g];
+            double s = - denominator;
+            for (int r = 0; r < readCount; r++)
+                s += likelihoods[quals[r] & 0xFF];
+            result.genotypeLikelihoods[g] = s;
+        }
+        result.AD_Ref_Any[0] = readCount;
+        return result;
+    }
+
+    /**
+     * Hom-ref read likelihood tables by ploidy, see {@link #homRefReadLikelihoods}.  Only grows, by copy, so it can be
+     * read without locking.
+     */
+    private static volatile double[][][] homRefReadLikelihoodsByPloidy = new double[HomoSapiensConstants.DEFAULT_PLOIDY + 1][][];
+
+    /**
+     * Get the likelihood of a read that supports the reference given each genotype of the reference and non-ref alleles
+     *
+     * @param ploidy the genotype ploidy
+     * @return a table whose entry [g][q & 0xFF] is the likelihood of a read with base quality q given the genotype with g
+     *   copies of non-ref, before division by the ploidy, and whose entry [ploidy + 1][0] is log10(ploidy)
+     */
+    private static double[][] homRefReadLikelihoods(final int ploidy) {
+        final double[][][] tables = homRefReadLikelihoodsByPloidy;
+        if (ploidy < tables.length && tables[ploidy] != null)
+            return tables[ploidy];
+        return initializeHomRefReadLikelihoods(ploidy);
+    }
+
+    private static synchronized double[][] initializeHomRefReadLikelihoods(final int ploidy) {
+        double[][][] tables = homRefReadLikelihoodsByPloidy;
+        if (ploidy < tables.length && tables[ploidy] != null)
+            return tables[ploidy];
+
+        // the same as the log10 cache of the GenotypeLikelihoodCalculator
+        final double[] log10 = new double[ploidy + 1];
+        for (int i = 0; i <= ploidy; i++)
+            log10[i] = Math.log10(i);
+
+        final double[][] result = new double[ploidy + 2][];
+        for (int g = 0; g <= ploidy; g++) {
+            result[g] = new double[256];
+            for (int q = 0; q < 256; q++) {
+                final double refLikelihood = QualityUtils.qualToProbLog10((byte) q);
+                final double nonRefLikelihood = QualityUtils.qualToErrorProbLog10((byte) q) + MathUtils.LOG_ONE_THIRD;
+                if (g == 0)
+                    result[g][q] = alleleLikelihoodComponent(refLikelihood, ploidy, log10);
+                else if (g == ploidy)
+                    result[g][q] = alleleLikelihoodComponent(nonRefLikelihood, ploidy, log10);
+                else
+                    result[g][q] = MathUtils.approximateLog10SumLog10(alleleLikelihoodComponent(refLikelihood, ploidy - g, log10),
+                            alleleLikelihoodComponent(nonRefLikelihood, g, log10));
+            }
+        }
+        result[ploidy + 1] = new double[]{ log10[ploidy] };
+
+        tables = Arrays.copyOf(tables, Math.max(tables.length, ploidy + 1));
+        tables[ploidy] = result;
+        homRefReadLikelihoodsByPloidy = tables;
+        return result;
+    }
+
+    /**
+     * The likelihood of a read given an allele present in a genotype {@code count} times, as the
+     * GenotypeLikelihoodCalculator computes it (a count of 1 is used as is rather than adding log10(1))
+     */
+    private static double alleleLikelihoodComponent(final double likelihood, final int count, final double[] log10) {
+        return count == 1 ? likelihood : likelihood + log10[count];
+    }
+
+    /**
+     * Calculate the genotype likelihoods for the sample in pileup for being hom-ref contrasted with being ref vs. alt,
+     * using the genotyping model
+     *
+     * @param sampleName target sample name.
+     * @param ploidy target sample ploidy.
+     * @param genotypingModel model to calculate likelihoods and genotypes.
+     * @param pileup the read backed pileup containing the data we want to evaluate
+     * @param refBase the reference base at this pileup position
+     * @param minBaseQual the min base quality for a read in the pileup at the pileup position to be included in the calculation
+     * @param hqSoftClips running average data structure (can be null) to collect information about the number of high quality soft clips
+     * @return a RefVsAnyResult genotype call.
+     */
+    protected final RefVsAnyResult calcGenotypeLikelihoodsOfRefVsAnyWithModel(final String sampleName, final int ploidy,
+                                                                              final GenotypingModel genotypingModel,
+                                                                              final ReadBackedPileup pileup, final byte refBase, final byte minBaseQual, final MathUtils.RunningAverage hqSoftClips) {
         final AlleleList<Allele> alleleList = new IndexedAlleleList<>(Allele.create(refBase,true), GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE);
         // Notice that the sample name is rather irrelevant as this information is never used, just need to be the same in both lines bellow.
 
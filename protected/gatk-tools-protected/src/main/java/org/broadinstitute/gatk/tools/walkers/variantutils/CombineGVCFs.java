@@ -53,11 +53,19 @@ package org.broadinstitute.gatk.tools.walkers.variantutils;
 
 import org.broadinstitute.gatk.utils.commandline.*;
 import org.broadinstitute.gatk.engine.CommandLineGATK;
+import org.broadinstitute.gatk.engine.datasources.rmd.ReferenceOrderedDataSource;
+import org.broadinstitute.gatk.engine.io.stubs.VariantContextWriterStub;
+import org.broadinstitute.gatk.utils.codecs.gvcfstore.GVCFStoreCodec;
 import org.broadinstitute.gatk.utils.contexts.AlignmentContext;
 import org.broadinstitute.gatk.utils.contexts.ReferenceContext;
+import org.broadinstitute.gatk.utils.gvcf.VariantSiteIndex;
 import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
+import org.broadinstitute.gatk.utils.refdata.utils.GATKFeature;
+import org.broadinstitute.gatk.utils.refdata.utils.LocationAwareSeekableRODIterator;
+import org.broadinstitute.gatk.utils.refdata.utils.RODRecordList;
 import org.broadinstitute.gatk.engine.walkers.Reference;
 import org.broadinstitute.gatk.engine.walkers.RodWalker;
+import org.broadinstitute.gatk.engine.walkers.TreeReducible;
 import org.broadinstitute.gatk.engine.walkers.Window;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.GenomeLocParser;
@@ -67,10 +75,12 @@ import org.broadinstitute.gatk.utils.help.HelpConstants;
 import org.broadinstitute.gatk.engine.GATKVCFUtils;
 import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import htsjdk.variant.variantcontext.*;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.vcf.*;
 
+import java.io.File;
 import java.util.*;
 
 /**
@@ -102,6 +112,38 @@ import java.util.*;
  *   -o cohort.g.vcf
  * </pre>
  *
+ * <h3>GVCF stores</h3>
+ * <p>
+ * If the output file has the .gvs extension, the gVCFs are ingested into a GVCF store instead: a binary, columnar,
+ * position-indexed file that GenotypeGVCFs reads with a single seek per interval however many samples it holds.  The
+ * reference blocks of each sample are stored as they were called rather than being broken up at every position where
+ * another sample has a record (unless bands are explicitly broken with the arguments below).  Since a store is read
+ * like any other gVCF, samples can be added to it incrementally by passing the existing store along with the new gVCFs:
+ * </p>
+ * <pre>
+ * java -jar GenomeAnalysisTK.jar \
+ *   -T CombineGVCFs \
+ *   -R reference.fasta \
+ *   --variant cohort.gvs \
+ *   --variant sample3.g.vcf \
+ *   -o cohort.v2.gvs
+ * </pre>
+ *
+ * <h3>Variant site index</h3>
+ * <p>
+ * With --variantSiteIndexOutput, the positions at which any of the samples has a true alternate allele are written to
+ * an index as well, which GenotypeGVCFs can read (with its --variantSiteIndex argument) to seek straight from one
+ * such position to the next in the combined output.
+ * </p>
+ *
+ * <h3>Multi-threading</h3>
+ * <p>
+ * CombineGVCFs supports -nt.  Each thread merges a different part of the genome, and reference blocks spanning the
+ * boundary between two parts are stitched back together, so the output is the same as with a single thread
+ * (including the bands broken by the arguments below).  This makes scattering jobs over intervals unnecessary just
+ * to speed things up.
+ * </p>
+ *
  * <h3>Caveat</h3>
  * <p>Only gVCF files produced by HaplotypeCaller (or CombineGVCFs) can be used as input for this tool. Some other
  * programs produce files that they call gVCFs but those lack some important information (accurate genotype likelihoods
@@ -110,7 +152,7 @@ import java.util.*;
  */
 @DocumentedGATKFeature( groupName = HelpConstants.DOCS_CAT_VARMANIP, extraDocs = {CommandLineGATK.class} )
 @Reference(window=@Window(start=0,stop=1))
-public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, CombineGVCFs.OverallState> {
+public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, CombineGVCFs.OverallState> implements TreeReducible<CombineGVCFs.OverallState> {
 
     protected final class PositionalState {
         final List<VariantContext> VCs;
@@ -133,7 +175,39 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
         GenomeLoc prevPos = null;
         byte refAfterPrevPos;
 
+        // the active VCs keyed by their end, i.e. the next position at which each of them changes the state
+        final PriorityQueue<VariantContext> ends = new PriorityQueue<>(11, new Comparator<VariantContext>() {
+            @Override
+            public int compare(final VariantContext vc1, final VariantContext vc2) {
+                return Integer.compare(vc1.getEnd(), vc2.getEnd());
+            }
+        });
+        final Set<VariantContext> active = Collections.newSetFromMap(new IdentityHashMap<VariantContext, Boolean>());
+        int nMultiAllelic = 0;
+
+        // the last position for which the state was brought up to date
+        String contig = null;
+        int lastPos = 0;
+
+        // while true the state is being rebuilt from positions already handled by a preceding shard: nothing is written
+        boolean replaying = false;
+
         public OverallState() {}
+
+        void add(final VariantContext vc) {
+            VCs.add(vc);
+            active.add(vc);
+            ends.add(vc);
+            if ( vc.getNAlleles() > 2 )
+                nMultiAllelic++;
+        }
+
+        void deactivate(final VariantContext vc) {
+            // the queue is cleaned up lazily, see nextEventPosition()
+            active.remove(vc);
+            if ( vc.getNAlleles() > 2 )
+                nMultiAllelic--;
+        }
     }
 
     /**
@@ -159,8 +233,30 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
     @Argument(fullName="breakBandsAtMultiplesOf", shortName="breakBandsAtMultiplesOf", doc = "If > 0, reference bands will be broken up at genomic positions that are multiples of this number", required=false)
     protected int multipleAtWhichToBreakBands = 0;
 
+    /**
+     * File to which the index of the positions at which any of the samples has a record with a true alternate allele
+     * should be written, for GenotypeGVCFs to visit only those positions of the output
+     */
+    @Advanced
+    @Argument(fullName="variantSiteIndexOutput", shortName="siteIndexOut", doc="File to which the index of the variant sites of the output should be written", required=false)
+    protected File variantSiteIndexOutputFile = null;
+
     private GenomeLocParser genomeLocParser;
 
+    // collects the variant sites for variantSiteIndexOutputFile
+    private VariantSiteIndex.Builder variantSiteIndexBuilder = null;
+
+    // are the input records written as they are into a GVCF store, without breaking up any reference blocks?
+    private boolean ingestIntoStore = false;
+
+    private IndexedFastaSequenceFile reference;
+
+    // the traversal intervals in order, or null for the whole genome
+    private List<GenomeLoc> intervals = null;
+
+    // the data sources of the variants, in the same order, for looking back from the start of a shard
+    private final List<ReferenceOrderedDataSource> variantSources = new ArrayList<>();
+
     public void initialize() {
         // take care of the VCF headers
         final Map<String, VCFHeader> vcfRods = GATKVCFUtils.getVCFHeadersFromRods(getToolkit());
@@ -177,10 +273,35 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
             variants.addAll(variantCollection.getRodBindings());
 
         genomeLocParser = getToolkit().getGenomeLocParser();
+        reference = getToolkit().getReferenceDataSource().getReference();
+        if ( getToolkit().getIntervals() != null )
+            intervals = new ArrayList<>(getToolkit().getIntervals());
+        for ( final RodBinding<VariantContext> variant : variants ) {
+            for ( final ReferenceOrderedDataSource source : getToolkit().getRodDataSources() ) {
+                if ( source.getName().equals(variant.getName()) )
+                    variantSources.add(source);
+            }
+        }
 
         // optimization to prevent mods when we always just want to break bands
         if ( multipleAtWhichToBreakBands == 1 )
             USE_BP_RESOLUTION = true;
+
+        ingestIntoStore = vcfWriter instanceof VariantContextWriterStub &&
+                GVCFStoreCodec.isStoreFile(((VariantContextWriterStub) vcfWriter).getOutputFile()) &&
+                ! USE_BP_RESOLUTION && multipleAtWhichToBreakBands <= 0;
+
+        if ( variantSiteIndexOutputFile != null )
+            variantSiteIndexBuilder = new VariantSiteIndex.Builder(genomeLocParser, samples, intervals);
+    }
+
+    /**
+     * The engine only needs to stop where a record starts; the positions in between at which the merged state
+     * changes (ends of records, band breaks) are worked out from the active records, see processEventsBefore()
+     */
+    @Override
+    public boolean visitRecordStartsOnly() {
+        return true;
     }
 
     public PositionalState map(final RefMetaDataTracker tracker, final ReferenceContext ref, final AlignmentContext context) {
@@ -199,21 +320,232 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
         if ( startingStates == null )
             return previousState;
 
+        if ( variantSiteIndexBuilder != null && VariantSiteIndex.isVariantSite(startingStates.VCs, startingStates.loc) )
+            variantSiteIndexBuilder.add(startingStates.loc);
+
+        // the store keeps the records of each sample as they are, and groups those of a position itself
+        if ( ingestIntoStore ) {
+            for ( final VariantContext vc : startingStates.VCs )
+                vcfWriter.add(vc);
+            return previousState;
+        }
+
+        // a shard traversed in parallel starts from scratch, so first rebuild the state left by the preceding one
+        if ( previousState.contig == null )
+            catchUpWithPrecedingShard(previousState, startingStates.loc);
+
+        visit(previousState, startingStates);
+        return previousState;
+    }
+
+    /**
+     * Not much to combine: each shard writes the records of its own positions, having rebuilt the state at its start
+     * in catchUpWithPrecedingShard(), so only the state at the end of the rightmost one matters
+     */
+    @Override
+    public OverallState treeReduce(final OverallState lhs, final OverallState rhs) {
+        return rhs.contig == null ? lhs : rhs;
+    }
+
+    /**
+     * Updates the state with the VCs starting at a visited position (and with the positions before it at which the
+     * state changes), writing out the merged records that end up being stopped
+     *
+     * @param previousState  the state to update
+     * @param startingStates the VCs starting at the visited position
+     */
+    private void visit(final OverallState previousState, final PositionalState startingStates) {
+        // only record starts are visited, so first catch up with the changes in between
+        processEventsBefore(previousState, startingStates.loc);
+
         if ( !startingStates.VCs.isEmpty() ) {
             if ( ! okayToSkipThisSite(startingStates, previousState) )
                 endPreviousStates(previousState, startingStates.loc.incPos(-1), startingStates, false);
-            previousState.VCs.addAll(startingStates.VCs);
+            for ( final VariantContext vc : startingStates.VCs )
+                previousState.add(vc);
             for(final VariantContext vc : previousState.VCs){
                 previousState.samples.addAll(vc.getSampleNames());
             }
 
         }
 
-        if ( breakBand(startingStates.loc) || containsEndingContext(previousState.VCs, startingStates.loc.getStart()) ) {
+        if ( breakBand(startingStates.loc) || containsEndingContext(previousState, startingStates.loc.getStart()) ) {
             endPreviousStates(previousState, startingStates.loc, startingStates, true);
         }
 
-        return previousState;
+        previousState.contig = startingStates.loc.getContig();
+        previousState.lastPos = startingStates.loc.getStart();
+    }
+
+    /**
+     * With -nt every shard starts out with an empty state, even though records of the preceding shard may extend into
+     * it.  What gets written from here on only depends on the records still active and on the last position written,
+     * so the state is rebuilt by replaying, without writing anything, the positions from the last start of a record
+     * spanning into this shard onwards, beginning with the records that were active there.  The engine visits the
+     * first position of a shard whenever records span it, so this is always where the replay ends.
+     *
+     * @param state the empty state of the shard
+     * @param loc   the first position visited in the shard
+     */
+    private void catchUpWithPrecedingShard(final OverallState state, final GenomeLoc loc) {
+        if ( loc.getStart() == 1 )
+            return;
+
+        // the VCs are only part of the state if their start was traversed
+        int replayStart = -1;
+        for ( final VariantContext vc : getVariants(loc.incPos(-1)) ) {
+            if ( vc.getEnd() >= loc.getStart() && firstTraversedPosition(vc.getChr(), vc.getStart()) == vc.getStart() )
+                replayStart = Math.max(replayStart, vc.getStart());
+        }
+        if ( replayStart < 0 )
+            return;
+
+        final List<VariantContext> VCs = getVariants(genomeLocParser.createGenomeLoc(loc.getContig(), Math.max(replayStart - 1, 1), loc.getStart() - 1));
+        Collections.sort(VCs, new Comparator<VariantContext>() {
+            @Override
+            public int compare(final VariantContext vc1, final VariantContext vc2) {
+                return Integer.compare(vc1.getStart(), vc2.getStart());
+            }
+        });
+
+        state.replaying = true;
+        state.contig = loc.getContig();
+        state.lastPos = replayStart - 1;
+        int i = 0;
+        for ( ; i < VCs.size() && VCs.get(i).getStart() < replayStart; i++ ) {
+            final VariantContext vc = VCs.get(i);
+            if ( vc.getEnd() >= replayStart && firstTraversedPosition(vc.getChr(), vc.getStart()) == vc.getStart() ) {
+                state.add(vc);
+                state.samples.addAll(vc.getSampleNames());
+            }
+        }
+        while ( i < VCs.size() ) {
+            final int start = VCs.get(i).getStart();
+            final List<VariantContext> startingVCs = new ArrayList<>();
+            for ( ; i < VCs.size() && VCs.get(i).getStart() == start; i++ ) {
+                if ( firstTraversedPosition(VCs.get(i).getChr(), start) == start )
+                    startingVCs.add(VCs.get(i));
+            }
+            if ( ! startingVCs.isEmpty() ) {
+                final GenomeLoc startLoc = genomeLocParser.createGenomeLoc(loc.getContig(), start);
+                visit(state, new PositionalState(startingVCs, getReferenceBases(startLoc), startLoc));
+            }
+        }
+        processEventsBefore(state, loc);
+        state.replaying = false;
+    }
+
+    /**
+     * @param interval the interval to query
+     * @return the VCs of all the inputs that overlap the interval, by input and then in the order of the files
+     */
+    private List<VariantContext> getVariants(final GenomeLoc interval) {
+        final List<VariantContext> VCs = new ArrayList<>();
+        for ( final ReferenceOrderedDataSource source : variantSources ) {
+            final LocationAwareSeekableRODIterator it = source.seek(interval);
+            try {
+                final RODRecordList records = it.seekForward(interval);
+                if ( records != null ) {
+                    for ( final GATKFeature record : records )
+                        VCs.add((VariantContext)record.getUnderlyingObject());
+                }
+            } finally {
+                source.close(it);
+            }
+        }
+        return VCs;
+    }
+
+    /**
+     * Brings the state up to date with all of the positions between the last visited one and the given one at which it
+     * changes, exactly as if each of the positions covered by a record had been visited: these are the ends of the
+     * active VCs and the band breaks, plus every position while a VC with real alternate alleles (or BP resolution)
+     * is active.  Positions at which nothing happens are skipped, so a run of unchanged reference blocks costs the
+     * same whatever its length.
+     *
+     * @param state the state to update
+     * @param next  the position about to be visited, or null to process all of the remaining changes
+     */
+    private void processEventsBefore(final OverallState state, final GenomeLoc next) {
+        if ( state.contig == null )
+            return;
+
+        final boolean sameContig = next != null && next.getContig().equals(state.contig);
+        for ( int pos = nextEventPosition(state); pos > 0 && ! (sameContig && pos >= next.getStart()); pos = nextEventPosition(state) ) {
+            // positions outside of the intervals would not have been visited
+            final int traversedPos = firstTraversedPosition(state.contig, pos);
+            if ( traversedPos < 0 )
+                break;
+            if ( traversedPos > pos ) {
+                state.lastPos = traversedPos - 1;
+                continue;
+            }
+
+            final GenomeLoc loc = genomeLocParser.createGenomeLoc(state.contig, pos);
+            endPreviousStates(state, loc, new PositionalState(Collections.<VariantContext>emptyList(), getReferenceBases(loc), loc), true);
+            state.lastPos = pos;
+        }
+
+        // the ends of records left on the previous contig can no longer change the state
+        if ( ! sameContig )
+            state.ends.clear();
+    }
+
+    /**
+     * Finds the first position after the last visited one at which the state changes
+     *
+     * @param state the current state
+     * @return the position, or -1 if none of the active VCs reaches beyond the last visited position
+     */
+    private int nextEventPosition(final OverallState state) {
+        final int pos = state.lastPos + 1;
+        while ( ! state.ends.isEmpty() && (state.ends.peek().getEnd() < pos || ! state.active.contains(state.ends.peek())) )
+            state.ends.poll();
+        if ( state.ends.isEmpty() )
+            return -1;
+
+        if ( USE_BP_RESOLUTION || state.nMultiAllelic > 0 )
+            return pos;
+
+        int eventPos = state.ends.peek().getEnd();
+        if ( multipleAtWhichToBreakBands > 0 )
+            eventPos = Math.min(eventPos, ((pos + multipleAtWhichToBreakBands) / multipleAtWhichToBreakBands) * multipleAtWhichToBreakBands - 1);
+        return eventPos;
+    }
+
+    /**
+     * Finds the first position at or after pos on the given contig that is part of the traversal
+     *
+     * @param contig the contig
+     * @param pos    the position
+     * @return pos if it is traversed, the start of the next interval on the contig otherwise, or -1 if there is none
+     */
+    private int firstTraversedPosition(final String contig, final int pos) {
+        if ( intervals == null )
+            return pos;
+
+        // the intervals are sorted and disjoint: find the first one not entirely before pos
+        final GenomeLoc loc = genomeLocParser.createGenomeLoc(contig, pos);
+        int low = 0, high = intervals.size();
+        while ( low < high ) {
+            final int mid = (low + high) >>> 1;
+            if ( intervals.get(mid).isBefore(loc) )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        if ( low == intervals.size() || ! intervals.get(low).getContig().equals(contig) )
+            return -1;
+        return Math.max(pos, intervals.get(low).getStart());
+    }
+
+    /**
+     * @param loc the position
+     * @return the reference bases at the position and the one after it (if the contig has one), like the reference context in map()
+     */
+    private byte[] getReferenceBases(final GenomeLoc loc) {
+        final int contigLength = genomeLocParser.getContigInfo(loc.getContig()).getSequenceLength();
+        return reference.getSubsequenceAt(loc.getContig(), loc.getStart(), Math.min(loc.getStart() + 1, contigLength)).getBases();
     }
 
     /**
@@ -246,33 +578,22 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
     }
 
     /**
-     * Does the given list of VariantContexts contain any whose context ends at the given position?
+     * Does the given state contain any VariantContext whose context ends (in terms of reference blocks, not necessarily
+     * formally) at the given position?  Note that for the purposes of this method/tool, deletions are considered to be
+     * single base events (as opposed to reference blocks), hence the check for the number of alleles (because we know
+     * there will always be a <NON_REF> allele).
      *
-     * @param VCs  list of VariantContexts
-     * @param pos  the position to check against
+     * @param state the state with the active VariantContexts
+     * @param pos   the position to check against
      * @return true if there are one or more VCs that end at pos, false otherwise
      */
-    private boolean containsEndingContext(final List<VariantContext> VCs, final int pos) {
-        if ( VCs == null ) throw new IllegalArgumentException("The list of VariantContexts cannot be null");
-
-        for ( final VariantContext vc : VCs ) {
-            if ( isEndingContext(vc, pos) )
-                return true;
-        }
-        return false;
-    }
+    private boolean containsEndingContext(final OverallState state, final int pos) {
+        if ( state.nMultiAllelic > 0 )
+            return true;
 
-    /**
-     * Does the given variant context end (in terms of reference blocks, not necessarily formally) at the given position.
-     * Note that for the purposes of this method/tool, deletions are considered to be single base events (as opposed to
-     * reference blocks), hence the check for the number of alleles (because we know there will always be a <NON_REF> allele).
-     *
-     * @param vc   the variant context
-     * @param pos  the position to query against
-     * @return true if this variant context "ends" at this position, false otherwise
-     */
-    private boolean isEndingContext(final VariantContext vc, final int pos) {
-        return vc.getNAlleles() > 2 || vc.getEnd() == pos;
+        while ( ! state.ends.isEmpty() && (state.ends.peek().getEnd() < pos || ! state.active.contains(state.ends.peek())) )
+            state.ends.poll();
+        return ! state.ends.isEmpty() && state.ends.peek().getEnd() == pos;
     }
 
     /**
@@ -291,8 +612,9 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
 
         final List<VariantContext> stoppedVCs = new ArrayList<>(state.VCs.size());
 
-        for ( int i = state.VCs.size() - 1; i >= 0; i-- ) {
-            final VariantContext vc = state.VCs.get(i);
+        final ListIterator<VariantContext> it = state.VCs.listIterator(state.VCs.size());
+        while ( it.hasPrevious() ) {
+            final VariantContext vc = it.previous();
             //the VC for the previous state will be stopped if its position is previous to the current position or it we've moved to a new contig
             if ( vc.getStart() <= pos.getStart() || !vc.getChr().equals(pos.getContig())) {
 
@@ -301,14 +623,16 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
                 // if it was ending anyways, then remove it from the future state
                 if ( vc.getEnd() == pos.getStart()) {
                     state.samples.removeAll(vc.getSampleNames());
-                    state.VCs.remove(i);
+                    it.remove();
+                    state.deactivate(vc);
                     continue; //don't try to remove twice
                 }
 
                 //if ending vc is the same sample as a starting VC, then remove it from the future state
                 if(startingStates.VCs.size() > 0 && !atCurrentPosition && startingStates.samples.containsAll(vc.getSampleNames())) {
                     state.samples.removeAll(vc.getSampleNames());
-                    state.VCs.remove(i);
+                    it.remove();
+                    state.deactivate(vc);
                 }
             }
         }
@@ -318,6 +642,12 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
         //NOTE: BP resolution with have current position == state.prevPos because it gets output via a different control flow
         if ( !stoppedVCs.isEmpty() &&  (state.prevPos == null || pos.isPast(state.prevPos) )) {
             final GenomeLoc gLoc = genomeLocParser.createGenomeLoc(stoppedVCs.get(0).getChr(), pos.getStart());
+            if ( state.replaying ) {
+                // the record was written by the preceding shard
+                state.prevPos = gLoc;
+                state.refAfterPrevPos = refNextBase;
+                return;
+            }
 
             // we need the specialized merge if the site contains anything other than ref blocks
             final VariantContext mergedVC;
@@ -389,8 +719,16 @@ public class CombineGVCFs extends RodWalker<CombineGVCFs.PositionalState, Combin
 
     @Override
     public void onTraversalDone(final OverallState state) {
+        processEventsBefore(state, null);
+
         // there shouldn't be any state left unless the user cut in the middle of a gVCF block
         if ( !state.VCs.isEmpty() )
             logger.warn("You have asked for an interval that cuts in the middle of one or more gVCF blocks. Please note that this will cause you to lose records that don't end within your interval.");
+
+        if ( variantSiteIndexBuilder != null ) {
+            final VariantSiteIndex index = variantSiteIndexBuilder.make();
+            index.write(variantSiteIndexOutputFile);
+            logger.info(String.format("Wrote the %d variant sites of the output to %s", index.size(), variantSiteIndexOutputFile));
+        }
     }
 }
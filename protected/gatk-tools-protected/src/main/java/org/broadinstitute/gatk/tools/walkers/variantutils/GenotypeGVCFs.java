@@ -64,6 +64,7 @@ import org.broadinstitute.gatk.utils.genotyper.IndexedSampleList;
 import org.broadinstitute.gatk.utils.genotyper.SampleList;
 import org.broadinstitute.gatk.utils.genotyper.SampleListUtils;
 import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
+import org.broadinstitute.gatk.engine.walkers.NanoSchedulable;
 import org.broadinstitute.gatk.engine.walkers.Reference;
 import org.broadinstitute.gatk.engine.walkers.RodWalker;
 import org.broadinstitute.gatk.engine.walkers.TreeReducible;
@@ -73,8 +74,11 @@ import org.broadinstitute.gatk.tools.walkers.annotator.interfaces.AnnotatorCompa
 import org.broadinstitute.gatk.tools.walkers.genotyper.*;
 import org.broadinstitute.gatk.tools.walkers.genotyper.afcalc.GeneralPloidyFailOverAFCalculatorProvider;
 import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.codecs.gvcfstore.GVCFStoreCodec;
 import org.broadinstitute.gatk.engine.SampleUtils;
 import org.broadinstitute.gatk.utils.commandline.*;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.gvcf.VariantSiteIndex;
 import org.broadinstitute.gatk.utils.help.DocumentedGATKFeature;
 import org.broadinstitute.gatk.utils.help.HelpConstants;
 import org.broadinstitute.gatk.engine.GATKVCFUtils;
@@ -82,6 +86,7 @@ import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
 import org.broadinstitute.gatk.utils.variant.GATKVCFHeaderLines;
 import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
 
+import java.io.File;
 import java.util.*;
 
 /**
@@ -115,6 +120,47 @@ import java.util.*;
  *   -o output.vcf
  * </pre>
  *
+ * <p>
+ * A GVCF store written by CombineGVCFs (see there) can be passed with --variant as well, in place of or alongside
+ * gVCF files.
+ * </p>
+ *
+ * <h3>Variant site index</h3>
+ * <p>
+ * Across many samples almost every position of the gVCFs is covered by reference blocks only, and nothing is emitted
+ * there.  With --variantSiteIndexOutput the positions at which any sample has a true alternate allele are written
+ * to an index at the end of the run, and subsequent runs over the same inputs can read it with --variantSiteIndex to
+ * seek straight from one such position to the next.  CombineGVCFs can write the index of its output as well.
+ * </p>
+ * <pre>
+ * java -jar GenomeAnalysisTK.jar \
+ *   -T GenotypeGVCFs \
+ *   -R reference.fasta \
+ *   --variant cohort.g.vcf \
+ *   --variantSiteIndexOutput cohort.sites \
+ *   -o output.vcf
+ *
+ * java -jar GenomeAnalysisTK.jar \
+ *   -T GenotypeGVCFs \
+ *   -R reference.fasta \
+ *   --variant cohort.g.vcf \
+ *   --variantSiteIndex cohort.sites \
+ *   -L 20:10,000,000-20,000,000 \
+ *   -o output.20_10M_20M.vcf
+ * </pre>
+ * <p>
+ * The index only records the samples and the intervals it was built for, which are checked when it is read.  It is
+ * up to the user to pass it only with the inputs it was built from: sites added to the inputs afterwards are missed.
+ * </p>
+ *
+ * <h3>Multi-threading</h3>
+ * <p>
+ * GenotypeGVCFs supports -nct, which is usually the better choice: sites are merged, genotyped and annotated on
+ * worker threads while the records are written out in order from a single writer, so expensive multi-allelic sites
+ * are spread over the cores without any temporary output to merge.  The genotypes of the input records are decoded
+ * before they are handed to the worker threads.  -nt is supported too.
+ * </p>
+ *
  * <h3>Caveat</h3>
  * <p>Only gVCF files produced by HaplotypeCaller (or CombineGVCFs) can be used as input for this tool. Some other
  * programs produce files that they call gVCFs but those lack some important information (accurate genotype likelihoods
@@ -128,7 +174,7 @@ import java.util.*;
 @DocumentedGATKFeature( groupName = HelpConstants.DOCS_CAT_VARDISC, extraDocs = {CommandLineGATK.class} )
 @Reference(window=@Window(start=-10,stop=10))
 @SuppressWarnings("unused")
-public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWriter> implements AnnotatorCompatible, TreeReducible<VariantContextWriter> {
+public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWriter> implements AnnotatorCompatible, TreeReducible<VariantContextWriter>, NanoSchedulable {
 
     /**
      * The gVCF files to merge together
@@ -136,6 +182,18 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
     @Input(fullName="variant", shortName = "V", doc="One or more input gVCF files", required=true)
     public List<RodBindingCollection<VariantContext>> variantCollections;
     final private List<RodBinding<VariantContext>> variants = new ArrayList<>();
+    // the variants split into the gVCF files and the GVCF stores, which hold overlapping records for their samples
+    final private List<RodBinding<VariantContext>> gvcfVariants = new ArrayList<>();
+    final private List<RodBinding<VariantContext>> storeVariants = new ArrayList<>();
+
+    // per store, the sample names of the records spanning the last site each thread visited
+    final private ThreadLocal<Map<RodBinding<VariantContext>, Map<VariantContext, Set<String>>>> storeRecordSamples =
+            new ThreadLocal<Map<RodBinding<VariantContext>, Map<VariantContext, Set<String>>>>() {
+                @Override
+                protected Map<RodBinding<VariantContext>, Map<VariantContext, Set<String>>> initialValue() {
+                    return new HashMap<>();
+                }
+            };
 
     @Output(doc="File to which variants should be written")
     protected VariantContextWriter vcfWriter = null;
@@ -143,6 +201,24 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
     @Argument(fullName="includeNonVariantSites", shortName="allSites", doc="Include loci found to be non-variant after genotyping", required=false)
     public boolean INCLUDE_NON_VARIANTS = false;
 
+    /**
+     * An index of the positions at which any of the samples has a record with a true alternate allele, as written by
+     * --variantSiteIndexOutput here or by CombineGVCFs from the same inputs.  Only those positions are visited; the
+     * index must have been built for the same samples and over (at least) the intervals given.  It cannot be used with
+     * --includeNonVariantSites, which genotypes every position.
+     */
+    @Advanced
+    @Argument(fullName="variantSiteIndex", shortName="siteIndex", doc="Index of the variant sites of the input, to visit only those sites", required=false)
+    public File variantSiteIndexFile = null;
+
+    /**
+     * File to which the index of the positions at which any of the samples has a record with a true alternate allele
+     * is written at the end of the run, for later runs over the same inputs to pass with --variantSiteIndex
+     */
+    @Advanced
+    @Argument(fullName="variantSiteIndexOutput", shortName="siteIndexOut", doc="File to which the index of the variant sites of the input should be written", required=false)
+    public File variantSiteIndexOutputFile = null;
+
     /**
      * Uniquify all sample names (intended for use with multiple inputs for the same sample)
      */
@@ -173,6 +249,11 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
     // the annotation engine
     private VariantAnnotatorEngine annotationEngine;
 
+    // the variant sites to visit, or null to visit every site
+    private VariantSiteIndex variantSiteIndex = null;
+    // collects the variant sites for variantSiteIndexOutputFile
+    private VariantSiteIndex.Builder variantSiteIndexBuilder = null;
+
     public List<RodBinding<VariantContext>> getCompRodBindings() { return Collections.emptyList(); }
     public RodBinding<VariantContext> getSnpEffRodBinding() { return null; }
     public List<RodBinding<VariantContext>> getResourceRodBindings() { return Collections.emptyList(); }
@@ -192,6 +273,9 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
                 }
             }
         }
+        for ( final RodBinding<VariantContext> rb : variants )
+            (GVCFStoreCodec.isStoreBinding(rb) ? storeVariants : gvcfVariants).add(rb);
+
         //RodBinding tags are used in sample uniquification
         if (inputsAreTagged)
             logger.warn("Output uniquified VCF may not be suitable for input to CombineSampleData because input VCF(s) contain tags.");
@@ -207,6 +291,7 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
             mergeType = GATKVariantContextUtils.GenotypeMergeType.REQUIRE_UNIQUE;
 
         final SampleList samples = new IndexedSampleList(SampleUtils.getSampleList(vcfRods, mergeType));
+
         // create the genotyping engine
         genotypingEngine = new UnifiedGenotypingEngine(createUAC(), samples, toolkit.getGenomeLocParser(), GeneralPloidyFailOverAFCalculatorProvider.createThreadSafeProvider(toolkit, genotypeArgs, logger),
                 toolkit.getArguments().BAQMode);
@@ -231,20 +316,126 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
         final VCFHeader vcfHeader = new VCFHeader(headerLines, sampleNameSet);
         vcfWriter.writeHeader(vcfHeader);
 
+        if ( variantSiteIndexFile != null )
+            initializeVariantSiteIndex(sampleNameSet);
+        if ( variantSiteIndexOutputFile != null )
+            variantSiteIndexBuilder = new VariantSiteIndex.Builder(toolkit.getGenomeLocParser(), sampleNameSet, toolkit.getIntervals());
+
         logger.info("Notice that the -ploidy parameter is ignored in " + getClass().getSimpleName() + " tool as this is automatically determined by the input variant files");
     }
 
+    private void initializeVariantSiteIndex(final Set<String> sampleNameSet) {
+        if ( INCLUDE_NON_VARIANTS )
+            throw new UserException.BadArgumentValue("variantSiteIndex", "cannot be used with --includeNonVariantSites, which genotypes every site");
+        if ( variantSiteIndexOutputFile != null )
+            throw new UserException.BadArgumentValue("variantSiteIndexOutput", "cannot be used with --variantSiteIndex, whose sites are the only ones visited");
+
+        final GenomeAnalysisEngine toolkit = getToolkit();
+        variantSiteIndex = VariantSiteIndex.read(variantSiteIndexFile, toolkit.getGenomeLocParser());
+        if ( ! variantSiteIndex.getSamples().equals(sampleNameSet) )
+            throw new UserException.BadArgumentValue("variantSiteIndex", "the index " + variantSiteIndexFile + " was built for other samples than those of the input");
+        if ( ! variantSiteIndex.covers(toolkit.getIntervals()) )
+            throw new UserException.BadArgumentValue("variantSiteIndex", "the index " + variantSiteIndexFile + " does not cover all of the intervals to genotype");
+        logger.info(String.format("Visiting only the %d variant sites of %s", variantSiteIndex.size(), variantSiteIndexFile));
+    }
+
+    /**
+     * With a variant site index, only record starts need to be visited for the traversal to seek from one variant site
+     * to the next; otherwise every covered site is visited as usual
+     */
+    @Override
+    public boolean visitRecordStartsOnly() {
+        return variantSiteIndex != null;
+    }
+
+    /**
+     * The gVCF blocks span many sites, whose map calls all merge their genotypes
+     */
+    @Override
+    public boolean decodeGenotypesBeforeMap() {
+        return true;
+    }
+
+    /**
+     * With a variant site index, skips straight to the next site at which a record with a true alternate allele starts
+     */
+    @Override
+    public GenomeLoc nextLocusToVisit(final GenomeLoc loc) {
+        return variantSiteIndex == null ? loc : variantSiteIndex.nextSite(loc);
+    }
+
     public VariantContext map(final RefMetaDataTracker tracker, final ReferenceContext ref, final AlignmentContext context) {
         if ( tracker == null ) // RodWalkers can make funky map calls
             return null;
 
         final GenomeLoc loc = ref.getLocus();
-        final VariantContext combinedVC = ReferenceConfidenceVariantContextMerger.merge(tracker.getPrioritizedValue(variants, loc), loc, INCLUDE_NON_VARIANTS ? ref.getBase() : null, true, uniquifySamples);
+        final List<VariantContext> VCs = tracker.getPrioritizedValue(gvcfVariants, loc);
+        for ( final RodBinding<VariantContext> store : storeVariants )
+            VCs.addAll(getStoreValues(tracker, store, loc));
+        if ( variantSiteIndexBuilder != null && VariantSiteIndex.isVariantSite(VCs, loc) )
+            variantSiteIndexBuilder.add(loc);
+        final VariantContext combinedVC = ReferenceConfidenceVariantContextMerger.merge(VCs, loc, INCLUDE_NON_VARIANTS ? ref.getBase() : null, true, uniquifySamples);
         if ( combinedVC == null )
             return null;
         return regenotypeVC(tracker, ref, combinedVC);
     }
 
+    /**
+     * Gets the records of a GVCF store for the given site: for each of its samples, the record starting at the site
+     * if there is one and otherwise one spanning it.  This is what getPrioritizedValue() does for each gVCF, but the
+     * records of the different samples of a store overlap each other.
+     *
+     * @param tracker  the ref tracker
+     * @param store    the rod binding of the store
+     * @param loc      the site
+     * @return a non-null list of records with no sample in more than one of them
+     */
+    private List<VariantContext> getStoreValues(final RefMetaDataTracker tracker, final RodBinding<VariantContext> store, final GenomeLoc loc) {
+        final List<VariantContext> starting = tracker.getValues(store, loc);
+        final List<VariantContext> spanning = tracker.getValues(store);
+        if ( starting.size() == spanning.size() )
+            return starting;
+
+        // the same records span many sites, so keep the sample set of each while it spans the sites of this thread
+        final Map<RodBinding<VariantContext>, Map<VariantContext, Set<String>>> storeSamples = storeRecordSamples.get();
+        final Map<VariantContext, Set<String>> previousRecordSamples = storeSamples.get(store);
+        final Map<VariantContext, Set<String>> recordSamples = new IdentityHashMap<>(spanning.size());
+        for ( final VariantContext vc : spanning ) {
+            Set<String> samples = previousRecordSamples == null ? null : previousRecordSamples.get(vc);
+            if ( samples == null )
+                samples = vc.getSampleNames();
+            recordSamples.put(vc, samples);
+        }
+        storeSamples.put(store, recordSamples);
+
+        final List<VariantContext> VCs = new ArrayList<>(starting);
+        final Set<String> samplesSeen = new HashSet<>();
+        for ( final VariantContext vc : starting )
+            samplesSeen.addAll(recordSamples.get(vc));
+
+        for ( final VariantContext vc : spanning ) {
+            if ( vc.getStart() == loc.getStart() )
+                continue;
+            final Set<String> samples = recordSamples.get(vc);
+            int nUnseen = 0;
+            for ( final String sample : samples )
+                if ( ! samplesSeen.contains(sample) )
+                    nUnseen++;
+            if ( nUnseen == 0 )
+                continue;
+            if ( nUnseen == samples.size() ) {
+                VCs.add(vc);
+                samplesSeen.addAll(samples);
+            } else {
+                final Set<String> unseen = new HashSet<>(samples);
+                unseen.removeAll(samplesSeen);
+                VCs.add(vc.subContextFromSamples(unseen, false));
+                samplesSeen.addAll(unseen);
+            }
+        }
+        return VCs;
+    }
+
     /**
      * Re-genotype (and re-annotate) a combined genomic VC
      *
@@ -258,6 +449,11 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
 
         VariantContext result = originalVC;
 
+        // sites without alternate alleles are monomorphic whatever the genotypes are, so leave them (and their lazily
+        // created genotypes) alone unless we have to emit them
+        if ( !result.isVariant() && !INCLUDE_NON_VARIANTS )
+            return null;
+
         // only re-genotype polymorphic sites
         if ( result.isVariant() ) {
             VariantContext regenotypedVC = genotypingEngine.calculateGenotypes(result);
@@ -421,5 +617,11 @@ public class GenotypeGVCFs extends RodWalker<VariantContext, VariantContextWrite
     }
 
     @Override
-    public void onTraversalDone(final VariantContextWriter writer) {}
+    public void onTraversalDone(final VariantContextWriter writer) {
+        if ( variantSiteIndexBuilder != null ) {
+            final VariantSiteIndex index = variantSiteIndexBuilder.make();
+            index.write(variantSiteIndexOutputFile);
+            logger.info(String.format("Wrote the %d variant sites of the input to %s", index.size(), variantSiteIndexOutputFile));
+        }
+    }
 }
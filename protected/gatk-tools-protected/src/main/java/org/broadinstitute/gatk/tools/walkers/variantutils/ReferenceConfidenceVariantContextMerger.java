@@ -54,6 +54,7 @@ package org.broadinstitute.gatk.tools.walkers.variantutils;
 import htsjdk.variant.variantcontext.*;
 import htsjdk.variant.vcf.VCFConstants;
 import org.broadinstitute.gatk.tools.walkers.genotyper.GenotypeLikelihoodCalculators;
+import org.broadinstitute.gatk.tools.walkers.genotyper.MergedGenotypeMatrix;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.MathUtils;
 import org.broadinstitute.gatk.utils.Utils;
@@ -111,7 +112,10 @@ public class ReferenceConfidenceVariantContextMerger {
         final Set<String> rsIDs = new LinkedHashSet<>(1); // most of the time there's one id
         int depth = 0;
         final Map<String, List<Comparable>> annotationMap = new LinkedHashMap<>();
-        final GenotypesContext genotypes = GenotypesContext.create();
+        int sampleCount = 0;
+        for ( final VariantContext vc : VCs )
+            sampleCount += vc.getNSamples();
+        final MergedGenotypeMatrix.Builder genotypes = new MergedGenotypeMatrix.Builder(sampleCount);
 
         // In this list we hold the mapping of each variant context alleles.
         final List<Pair<VariantContext,List<Allele>>> vcAndNewAllelePairs = new ArrayList<>(VCs.size());
@@ -181,7 +185,7 @@ public class ReferenceConfidenceVariantContextMerger {
         // note that in order to calculate the end position, we need a list of alleles that doesn't include anything symbolic
         final VariantContextBuilder builder = new VariantContextBuilder().source(name).id(ID).alleles(allelesList)
                 .chr(loc.getContig()).start(loc.getStart()).computeEndFromAlleles(nonSymbolicAlleles(allelesList), loc.getStart(), loc.getStart())
-                .genotypes(genotypes).unfiltered().attributes(new TreeMap<>(attributes)).log10PError(CommonInfo.NO_LOG10_PERROR);  // we will need to re-genotype later
+                .genotypesNoValidation(genotypes.make().toGenotypesContext()).unfiltered().attributes(new TreeMap<>(attributes)).log10PError(CommonInfo.NO_LOG10_PERROR);  // we will need to re-genotype later
 
         return builder.make();
     }
@@ -338,16 +342,20 @@ public class ReferenceConfidenceVariantContextMerger {
     }
 
     /**
-     * Merge into the context a new genotype represented by the given VariantContext for the provided list of target alleles.
+     * Merge into the matrix a new genotype represented by the given VariantContext for the provided list of target alleles.
      * This method assumes that none of the alleles in the VC overlaps with any of the alleles in the set.
      *
-     * @param mergedGenotypes       the genotypes context to add to
+     * <p>The allele index map is the same for all the genotypes in the VC and the genotype index map only depends on
+     * the ploidy, so both are looked up at most once per VC; genotype index maps come from the global cache in
+     * {@link GenotypeLikelihoodCalculators#genotypeIndexMap(int, int, int[])}.</p>
+     *
+     * @param mergedGenotypes       the genotype matrix to add to
      * @param VC                    the Variant Context for the sample
      * @param remappedAlleles       the list of remapped alleles for the sample
      * @param targetAlleles         the list of target alleles
      * @param samplesAreUniquified  true if sample names have been uniquified
      */
-    private static void mergeRefConfidenceGenotypes(final GenotypesContext mergedGenotypes,
+    private static void mergeRefConfidenceGenotypes(final MergedGenotypeMatrix.Builder mergedGenotypes,
                                                     final VariantContext VC,
                                                     final List<Allele> remappedAlleles,
                                                     final List<Allele> targetAlleles,
@@ -357,7 +365,7 @@ public class ReferenceConfidenceVariantContextMerger {
         // we need to get a map done (lazily inside the loop) for each ploidy, up to the maximum possible.
         final int[][] genotypeIndexMapsByPloidy = new int[maximumPloidy + 1][];
         final int maximumAlleleCount = Math.max(remappedAlleles.size(),targetAlleles.size());
-        int[] perSampleIndexesOfRelevantAlleles;
+        int[] indexesOfRelevantAlleles = null;
 
         for ( final Genotype g : VC.getGenotypes() ) {
             final String name;
@@ -366,44 +374,18 @@ public class ReferenceConfidenceVariantContextMerger {
             else
                name = g.getSampleName();
             final int ploidy = g.getPloidy();
-            final GenotypeBuilder genotypeBuilder = new GenotypeBuilder(g).alleles(GATKVariantContextUtils.noCallAlleles(g.getPloidy()));
-            genotypeBuilder.name(name);
             if (g.hasPL()) {
-                // lazy initialization of the genotype index map by ploidy.
-                perSampleIndexesOfRelevantAlleles = getIndexesOfRelevantAlleles(remappedAlleles, targetAlleles, VC.getStart(), g);
-                final int[] genotypeIndexMapByPloidy = genotypeIndexMapsByPloidy[ploidy] == null
-                            ? GenotypeLikelihoodCalculators.getInstance(ploidy, maximumAlleleCount).genotypeIndexMap(perSampleIndexesOfRelevantAlleles)
-                            : genotypeIndexMapsByPloidy[ploidy];
-                final int[] PLs = generatePL(g, genotypeIndexMapByPloidy);
-                final int[] AD = g.hasAD() ? generateAD(g.getAD(), perSampleIndexesOfRelevantAlleles) : null;
-                genotypeBuilder.PL(PLs).AD(AD);
-            }
-            mergedGenotypes.add(genotypeBuilder.make());
+                // lazy initialization of the allele and genotype index maps.
+                if (indexesOfRelevantAlleles == null)
+                    indexesOfRelevantAlleles = getIndexesOfRelevantAlleles(remappedAlleles, targetAlleles, VC.getStart(), g);
+                if (genotypeIndexMapsByPloidy[ploidy] == null)
+                    genotypeIndexMapsByPloidy[ploidy] = GenotypeLikelihoodCalculators.genotypeIndexMap(ploidy, maximumAlleleCount, indexesOfRelevantAlleles);
+                mergedGenotypes.addRemapped(name, g, ploidy, genotypeIndexMapsByPloidy[ploidy], indexesOfRelevantAlleles);
+            } else
+                mergedGenotypes.add(name, g, ploidy);
         }
     }
 
-    /**
-     * Composes a new likelihood array given the original genotype and the genotype index map.
-     *
-     * @param g the original genotype.
-     * @param genotypeIndexMapByPloidy genotype index map. The ith element indicates what genotype in {@code g} corresponds
-     *                                 to the ith genotype in the return likelihoods array.
-     *
-     * @throws NullPointerException if {@code g} or {@code genotypeIndexMapByPloidy} is {@code null}, or if {@code g}
-     *    does not contain likelihoods.
-     * @throws IndexOutOfBoundsException if {@code genotypeIndexMapByPloidy} contain non valid
-     *  genotype indices given the likelihood array in {@code g}.
-     *
-     * @return never {@code null} but an array of exactly {@code genotypeIndexMapByPloidy.length} positions.
-     */
-    private static int[] generatePL(final Genotype g, final int[] genotypeIndexMapByPloidy) {
-        final int[] PLs = new int[genotypeIndexMapByPloidy.length];
-        final int[] oldPLs = g.getPL();
-        for (int i = 0; i < PLs.length; i++)
-            PLs[i] = oldPLs[genotypeIndexMapByPloidy[i]];
-        return PLs;
-    }
-
     /**
      * Determines the allele mapping from myAlleles to the targetAlleles, substituting the generic "<ALT>" as appropriate.
      * If the myAlleles set does not contain "<ALT>" as an allele, it throws an exception.
@@ -55,10 +55,8 @@ import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFHeaderLine;
-import org.broadinstitute.gatk.utils.MathUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Helper class for calculating a GQ band in the GVCF writer
@@ -73,12 +71,18 @@ import java.util.List;
  * Time: 9:41 AM
  */
 final class HomRefBlock {
+    /** GQs are capped at this value, the max. of 99 emission */
+    private final static int MAX_GQ = 99;
+
+    /** DPs below this value are kept as counts, the rest verbatim */
+    private final static int COUNTED_DP_RANGE = 128;
+
     private final VariantContext startingVC;
     private int stop;
     private final int minGQ, maxGQ;
     private int[] minPLs = null;
-    final private List<Integer> GQs = new ArrayList<>(100);
-    final private List<Integer> DPs = new ArrayList<>(100);
+    final private IntDistribution GQs = new IntDistribution(MAX_GQ + 1);
+    final private IntDistribution DPs = new IntDistribution(COUNTED_DP_RANGE);
     private final Allele ref;
     private final int ploidy;
 
@@ -131,7 +135,7 @@ final class HomRefBlock {
             throw new IllegalArgumentException("cannot add a genotype with a different ploidy: " + g.getPloidy() + " != " + ploidy);
 
         if( minPLs == null )
-            minPLs = g.getPL();
+            minPLs = g.getPL().clone();
         else { // otherwise take the min with the provided genotype's PLs
             final int[] PL = g.getPL();
             if (PL.length != minPLs.length)
@@ -141,7 +145,7 @@ final class HomRefBlock {
                     minPLs[i] = PL[i];
         }
         stop = pos;
-        GQs.add(Math.min(g.getGQ(), 99)); // cap the GQs by the max. of 99 emission
+        GQs.add(Math.min(g.getGQ(), MAX_GQ)); // cap the GQs by the max. of 99 emission
         DPs.add(Math.max(g.getDP(),0));
     }
 
@@ -155,13 +159,13 @@ final class HomRefBlock {
     }
 
     /** Get the min GQ observed within this band */
-    public int getMinGQ() { return MathUtils.arrayMin(GQs); }
+    public int getMinGQ() { return GQs.min(); }
     /** Get the median GQ observed within this band */
-    public int getMedianGQ() { return MathUtils.median(GQs); }
+    public int getMedianGQ() { return GQs.median(); }
     /** Get the min DP observed within this band */
-    public int getMinDP() { return MathUtils.arrayMin(DPs); }
+    public int getMinDP() { return DPs.min(); }
     /** Get the median DP observed within this band */
-    public int getMedianDP() { return MathUtils.median(DPs); }
+    public int getMedianDP() { return DPs.median(); }
     /** Get the min PLs observed within this band, can be null if no PLs have yet been observed */
     public int[] getMinPLs() { return minPLs; }
 
@@ -200,4 +204,64 @@ final class HomRefBlock {
     public int getPloidy() {
         return ploidy;
     }
+
+    /**
+     * The values added to a band, without boxing
+     *
+     * Values in [0, countedRange) are kept as a count per value, which covers all of the GQs and nearly all of the DPs
+     * of a band in a fixed amount of memory.  Anything else is kept verbatim.  min() and median() give the same
+     * results as MathUtils.arrayMin() and MathUtils.median() on the list of values.
+     */
+    private static final class IntDistribution {
+        private final int[] counts;
+        private int[] others = new int[0];
+        private int nOthers = 0;
+        private int size = 0;
+
+        private IntDistribution(final int countedRange) {
+            counts = new int[countedRange];
+        }
+
+        public void add(final int value) {
+            if ( value >= 0 && value < counts.length )
+                counts[value]++;
+            else {
+                if ( nOthers == others.length )
+                    others = Arrays.copyOf(others, Math.max(8, 2 * nOthers));
+                others[nOthers++] = value;
+            }
+            size++;
+        }
+
+        public int min() {
+            if ( size == 0 ) throw new IllegalArgumentException("Array must be non-null and non-empty");
+            int min = Integer.MAX_VALUE;
+            for ( int i = 0; i < nOthers; i++ )
+                if ( others[i] < min ) min = others[i];
+            for ( int value = 0; value < counts.length && value < min; value++ )
+                if ( counts[value] > 0 ) return value;
+            return min;
+        }
+
+        /**
+         * @return the value at index size / 2 of the sorted values, as MathUtils.median() does
+         */
+        public int median() {
+            if ( size == 0 ) throw new IllegalArgumentException("Array cannot have size 0");
+            final int[] sortedOthers = Arrays.copyOf(others, nOthers);
+            Arrays.sort(sortedOthers);
+
+            // the sorted values are the negative others, then the counted values, then the remaining others
+            int index = size / 2;
+            int nNegative = 0;
+            while ( nNegative < nOthers && sortedOthers[nNegative] < 0 ) nNegative++;
+            if ( index < nNegative ) return sortedOthers[index];
+            index -= nNegative;
+            for ( int value = 0; value < counts.length; value++ ) {
+                if ( index < counts[value] ) return value;
+                index -= counts[value];
+            }
+            return sortedOthers[nNegative + index];
+        }
+    }
 }
@@ -0,0 +1,336 @@
+/*
+* By downloading the PROGRAM you agree to the following terms of use:
+* 
+* BROAD INSTITUTE
+* SOFTWARE LICENSE AGREEMENT
+* FOR ACADEMIC NON-COMMERCIAL RESEARCH PURPOSES ONLY
+* 
+* This Agreement is made between the Broad Institute, Inc. with a principal address at 415 Main Street, Cambridge, MA 02142 (“BROAD”) and the LICENSEE and is effective at the date the downloading is completed (“EFFECTIVE DATE”).
+* 
+* WHEREAS, LICENSEE desires to license the PROGRAM, as defined hereinafter, and BROAD wishes to have this PROGRAM utilized in the public interest, subject only to the royalty-free, nonexclusive, nontransferable license rights of the United States Government pursuant to 48 CFR 52.227-14; and
+* WHEREAS, LICENSEE desires to license the PROGRAM and BROAD desires to grant a license on the following terms and conditions.
+* NOW, THEREFORE, in consideration of the promises and covenants made herein, the parties hereto agree as follows:
+* 
+* 1. DEFINITIONS
+* 1.1 PROGRAM shall mean copyright in the object code and source code known as GATK3 and related documentation, if any, as they exist on the EFFECTIVE DATE and can be downloaded from http://www.broadinstitute.org/gatk on the EFFECTIVE DATE.
+* 
+* 2. LICENSE
+* 2.1 Grant. Subject to the terms of this Agreement, BROAD hereby grants to LICENSEE, solely for academic non-commercial research purposes, a non-exclusive, non-transferable license to: (a) download, execute and display the PROGRAM and (b) create bug fixes and modify the PROGRAM. LICENSEE hereby automatically grants to BROAD a non-exclusive, royalty-free, irrevocable license to any LICENSEE bug fixes or modifications to the PROGRAM with unlimited rights to sublicense and/or distribute.  LICENSEE agrees to provide any such modifications and bug fixes to BROAD promptly upon their creation.
+* The LICENSEE may apply the PROGRAM in a pipeline to data owned by users other than the LICENSEE and provide these users the results of the PROGRAM provided LICENSEE does so for academic non-commercial purposes only. For clarification purposes, academic sponsored research is not a commercial use under the terms of this Agreement.
+* 2.2 No Sublicensing or Additional Rights. LICENSEE shall not sublicense or distribute the PROGRAM, in whole or in part, without prior written permission from BROAD. LICENSEE shall ensure that all of its users agree to the terms of this Agreement. LICENSEE further agrees that it shall not put the PROGRAM on a network, server, or other similar technology that may be accessed by anyone other than the LICENSEE and its employees and users who have agreed to the terms of this agreement.
+* 2.3 License Limitations. Nothing in this Agreement shall be construed to confer any rights upon LICENSEE by implication, estoppel, or otherwise to any computer software, trademark, intellectual property, or patent rights of BROAD, or of any other entity, except as expressly granted herein. LICENSEE agrees that the PROGRAM, in whole or part, shall not be used for any commercial purpose, including without limitation, as the basis of a commercial software or hardware product or to provide services. LICENSEE further agrees that the PROGRAM shall not be copied or otherwise adapted in order to circumvent the need for obtaining a license for use of the PROGRAM.
+* 
+* 3. PHONE-HOME FEATURE
+* LICENSEE expressly acknowledges that the PROGRAM contains an embedded automatic reporting system (“PHONE-HOME”) which is enabled by default upon download. Unless LICENSEE requests disablement of PHONE-HOME, LICENSEE agrees that BROAD may collect limited information transmitted by PHONE-HOME regarding LICENSEE and its use of the PROGRAM.  Such information shall include LICENSEE’S user identification, version number of the PROGRAM and tools being run, mode of analysis employed, and any error reports generated during run-time.  Collection of such information is used by BROAD solely to monitor usage rates, fulfill reporting requirements to BROAD funding agencies, drive improvements to the PROGRAM, and facilitate adjustments to PROGRAM-related documentation.
+* 
+* 4. OWNERSHIP OF INTELLECTUAL PROPERTY
+* LICENSEE acknowledges that title to the PROGRAM shall remain with BROAD. The PROGRAM is marked with the following BROAD copyright notice and notice of attribution to contributors. LICENSEE shall retain such notice on all copies. LICENSEE agrees to include appropriate attribution if any results obtained from use of the PROGRAM are included in any publication.
+* Copyright 2012-2014 Broad Institute, Inc.
+* Notice of attribution: The GATK3 program was made available through the generosity of Medical and Population Genetics program at the Broad Institute, Inc.
+* LICENSEE shall not use any trademark or trade name of BROAD, or any variation, adaptation, or abbreviation, of such marks or trade names, or any names of officers, faculty, students, employees, or agents of BROAD except as states above for attribution purposes.
+* 
+* 5. INDEMNIFICATION
+* LICENSEE shall indemnify, defend, and hold harmless BROAD, and their respective officers, faculty, students, employees, associated investigators and agents, and their respective successors, heirs and assigns, (Indemnitees), against any liability, damage, loss, or expense (including reasonable attorneys fees and expenses) incurred by or imposed upon any of the Indemnitees in connection with any claims, suits, actions, demands or judgments arising out of any theory of liability (including, without limitation, actions in the form of tort, warranty, or strict liability and regardless of whether such action has any factual basis) pursuant to any right or license granted under this Agreement.
+* 
+* 6. NO REPRESENTATIONS OR WARRANTIES
+* THE PROGRAM IS DELIVERED AS IS. BROAD MAKES NO REPRESENTATIONS OR WARRANTIES OF ANY KIND CONCERNING THE PROGRAM OR THE COPYRIGHT, EXPRESS OR IMPLIED, INCLUDING, WITHOUT LIMITATION, WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NONINFRINGEMENT, OR THE ABSENCE OF LATENT OR OTHER DEFECTS, WHETHER OR NOT DISCOVERABLE. BROAD EXTENDS NO WARRANTIES OF ANY KIND AS TO PROGRAM CONFORMITY WITH WHATEVER USER MANUALS OR OTHER LITERATURE MAY BE ISSUED FROM TIME TO TIME.
+* IN NO EVENT SHALL BROAD OR ITS RESPECTIVE DIRECTORS, OFFICERS, EMPLOYEES, AFFILIATED INVESTIGATORS AND AFFILIATES BE LIABLE FOR INCIDENTAL OR CONSEQUENTIAL DAMAGES OF ANY KIND, INCLUDING, WITHOUT LIMITATION, ECONOMIC DAMAGES OR INJURY TO PROPERTY AND LOST PROFITS, REGARDLESS OF WHETHER BROAD SHALL BE ADVISED, SHALL HAVE OTHER REASON TO KNOW, OR IN FACT SHALL KNOW OF THE POSSIBILITY OF THE FOREGOING.
+* 
+* 7. ASSIGNMENT
+* This Agreement is personal to LICENSEE and any rights or obligations assigned by LICENSEE without the prior written consent of BROAD shall be null and void.
+* 
+* 8. MISCELLANEOUS
+* 8.1 Export Control. LICENSEE gives assurance that it will comply with all United States export control laws and regulations controlling the export of the PROGRAM, including, without limitation, all Export Administration Regulations of the United States Department of Commerce. Among other things, these laws and regulations prohibit, or require a license for, the export of certain types of software to specified countries.
+* 8.2 Termination. LICENSEE shall have the right to terminate this Agreement for any reason upon prior written notice to BROAD. If LICENSEE breaches any provision hereunder, and fails to cure such breach within thirty (30) days, BROAD may terminate this Agreement immediately. Upon termination, LICENSEE shall provide BROAD with written assurance that the original and all copies of the PROGRAM have been destroyed, except that, upon prior written authorization from BROAD, LICENSEE may retain a copy for archive purposes.
+* 8.3 Survival. The following provisions shall survive the expiration or termination of this Agreement: Articles 1, 3, 4, 5 and Sections 2.2, 2.3, 7.3, and 7.4.
+* 8.4 Notice. Any notices under this Agreement shall be in writing, shall specifically refer to this Agreement, and shall be sent by hand, recognized national overnight courier, confirmed facsimile transmission, confirmed electronic mail, or registered or certified mail, postage prepaid, return receipt requested. All notices under this Agreement shall be deemed effective upon receipt.
+* 8.5 Amendment and Waiver; Entire Agreement. This Agreement may be amended, supplemented, or otherwise modified only by means of a written instrument signed by all parties. Any waiver of any rights or failure to act in a specific instance shall relate only to such instance and shall not be construed as an agreement to waive any rights or fail to act in any other instance, whether or not similar. This Agreement constitutes the entire agreement among the parties with respect to its subject matter and supersedes prior agreements or understandings between the parties relating to its subject matter.
+* 8.6 Binding Effect; Headings. This Agreement shall be binding upon and inure to the benefit of the parties and their respective permitted successors and assigns. All headings are for convenience only and shall not affect the meaning of any provision of this Agreement.
+* 8.7 Governing Law. This Agreement shall be construed, governed, interpreted and applied in accordance with the internal laws of the Commonwealth of Massachusetts, U.S.A., without regard to conflict of laws principles.
+*/
+
+package org.broadinstitute.gatk.utils.gvcf;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.GenomeLocParser;
+import org.broadinstitute.gatk.utils.GenomeLocSortedSet;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The positions at which any sample of a cohort has a gVCF record with a true alternate allele
+ *
+ * <p>
+ * Across thousands of gVCFs almost every position is covered by reference blocks only, and GenotypeGVCFs emits
+ * nothing there: a site is only genotyped where some record starts with an alternate allele other than
+ * &lt;NON_REF&gt;.  This index lists those positions, so that the traversal can seek straight from one to the next
+ * (see RodWalker.nextLocusToVisit).  It is tied to the samples it was built for and to the intervals it covers.
+ * </p>
+ *
+ * <h2>File format</h2>
+ * <p>
+ * All numbers are big-endian and all strings are in modified UTF-8, as written by {@link DataOutputStream}.
+ * </p>
+ * <pre>
+ *     file      := "VSI" version:byte nSamples:int sample:string^nSamples coverage nContigs:int contig^nContigs
+ *     coverage  := -1:int (the whole genome) | n:int (contig:string start:int stop:int)^n
+ *     contig    := name:string nSites:int delta:varint^nSites
+ * </pre>
+ * <p>
+ * The positions of a contig are stored in increasing order as the differences to the previous one (to 0 for the
+ * first), 7 bits per byte with the high bit set on all but the last byte.
+ * </p>
+ */
+public final class VariantSiteIndex {
+    final static byte[] MAGIC = {'V', 'S', 'I'};
+    final static byte VERSION = 1;
+
+    private final GenomeLocParser parser;
+    private final Set<String> samples;
+    // the intervals the index was built over, or null for the whole genome
+    private final GenomeLocSortedSet coverage;
+    private final Map<String, int[]> sitesByContig;
+
+    private VariantSiteIndex(final GenomeLocParser parser, final Set<String> samples, final GenomeLocSortedSet coverage, final Map<String, int[]> sitesByContig) {
+        this.parser = parser;
+        this.samples = samples;
+        this.coverage = coverage;
+        this.sitesByContig = sitesByContig;
+    }
+
+    /**
+     * Should the site be visited when genotyping, i.e. does any of the records start there with a true alternate allele?
+     *
+     * @param VCs  the records spanning the site
+     * @param loc  the site
+     * @return true if at least one of the records starting at loc has an alternate allele other than &lt;NON_REF&gt;
+     */
+    public static boolean isVariantSite(final Collection<VariantContext> VCs, final GenomeLoc loc) {
+        if ( VCs == null ) throw new IllegalArgumentException("The list of VariantContexts cannot be null");
+
+        for ( final VariantContext vc : VCs ) {
+            if ( vc.getStart() != loc.getStart() )
+                continue;
+            for ( final Allele allele : vc.getAlternateAlleles() )
+                if ( ! allele.equals(GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE) )
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the samples the index was built for
+     */
+    public Set<String> getSamples() {
+        return Collections.unmodifiableSet(samples);
+    }
+
+    /**
+     * Does the index hold every variant site of the given intervals?
+     *
+     * @param intervals the intervals to check, or null for the whole genome
+     * @return true if the index was built over all of the intervals, false otherwise
+     */
+    public boolean covers(final Collection<GenomeLoc> intervals) {
+        if ( coverage == null )
+            return true;
+        if ( intervals == null )
+            return false;
+        return new GenomeLocSortedSet(parser, intervals).subtractRegions(coverage).isEmpty();
+    }
+
+    /**
+     * Finds the first variant site at or after the given locus on its contig
+     *
+     * @param loc the locus to start from
+     * @return a single-base locus, or null if there are no more variant sites on the contig
+     */
+    public GenomeLoc nextSite(final GenomeLoc loc) {
+        final int[] sites = sitesByContig.get(loc.getContig());
+        if ( sites == null )
+            return null;
+
+        int i = Arrays.binarySearch(sites, loc.getStart());
+        if ( i < 0 )
+            i = -i - 1;
+        return i == sites.length ? null : parser.createGenomeLoc(loc.getContig(), sites[i]);
+    }
+
+    /**
+     * @return the total number of variant sites in the index
+     */
+    public long size() {
+        long size = 0;
+        for ( final int[] sites : sitesByContig.values() )
+            size += sites.length;
+        return size;
+    }
+
+    /**
+     * Writes the index to a file
+     *
+     * @param file the file to write
+     */
+    public void write(final File file) {
+        try ( final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))) ) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(samples.size());
+            for ( final String sample : samples )
+                out.writeUTF(sample);
+
+            if ( coverage == null )
+                out.writeInt(-1);
+            else {
+                out.writeInt(coverage.size());
+                for ( final GenomeLoc interval : coverage ) {
+                    out.writeUTF(interval.getContig());
+                    out.writeInt(interval.getStart());
+                    out.writeInt(interval.getStop());
+                }
+            }
+
+            out.writeInt(sitesByContig.size());
+            for ( final Map.Entry<String, int[]> contig : sitesByContig.entrySet() ) {
+                out.writeUTF(contig.getKey());
+                out.writeInt(contig.getValue().length);
+                int previous = 0;
+                for ( final int site : contig.getValue() ) {
+                    writeVarInt(out, site - previous);
+                    previous = site;
+                }
+            }
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(file, "the variant site index could not be written", e);
+        }
+    }
+
+    /**
+     * Reads an index written by write()
+     *
+     * @param file   the file to read
+     * @param parser the parser for the loci of the index
+     * @return a non-null index
+     */
+    public static VariantSiteIndex read(final File file, final GenomeLocParser parser) {
+        try ( final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))) ) {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if ( ! Arrays.equals(magic, MAGIC) )
+                throw new UserException.MalformedFile(file, "this is not a variant site index");
+            final byte version = in.readByte();
+            if ( version != VERSION )
+                throw new UserException.MalformedFile(file, "variant site index version " + version + " is not supported, only version " + VERSION + " is");
+
+            final Set<String> samples = new LinkedHashSet<>();
+            for ( int n = in.readInt(); n > 0; n-- )
+                samples.add(in.readUTF());
+
+            GenomeLocSortedSet coverage = null;
+            final int nIntervals = in.readInt();
+            if ( nIntervals >= 0 ) {
+                coverage = new GenomeLocSortedSet(parser);
+                for ( int n = nIntervals; n > 0; n-- )
+                    coverage.addRegion(parser.createGenomeLoc(in.readUTF(), in.readInt(), in.readInt()));
+            }
+
+            final Map<String, int[]> sitesByContig = new LinkedHashMap<>();
+            for ( int n = in.readInt(); n > 0; n-- ) {
+                final String contig = in.readUTF();
+                final int[] sites = new int[in.readInt()];
+                int previous = 0;
+                for ( int i = 0; i < sites.length; i++ ) {
+                    previous += readVarInt(in);
+                    sites[i] = previous;
+                }
+                sitesByContig.put(contig, sites);
+            }
+            return new VariantSiteIndex(parser, samples, coverage, sitesByContig);
+        } catch ( EOFException e ) {
+            throw new UserException.MalformedFile(file, "the variant site index is truncated", e);
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    private static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+        while ( (value & ~0x7F) != 0 ) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int value = 0;
+        for ( int shift = 0; ; shift += 7 ) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ( (b & 0x80) == 0 )
+                return value;
+        }
+    }
+
+    /**
+     * Collects the variant sites of a traversal, from any number of threads and in any order
+     */
+    public static final class Builder {
+        private final GenomeLocParser parser;
+        private final Set<String> samples;
+        private final GenomeLocSortedSet coverage;
+        private final Map<String, int[]> sitesByContig = new LinkedHashMap<>();
+        private final Map<String, Integer> sizeByContig = new HashMap<>();
+
+        /**
+         * @param parser    the parser for the loci of the index
+         * @param samples   the samples of the records the sites are taken from
+         * @param intervals the intervals being traversed, or null for the whole genome
+         */
+        public Builder(final GenomeLocParser parser, final Collection<String> samples, final Collection<GenomeLoc> intervals) {
+            if ( parser == null ) throw new IllegalArgumentException("parser cannot be null");
+            if ( samples == null ) throw new IllegalArgumentException("samples cannot be null");
+            this.parser = parser;
+            this.samples = new TreeSet<>(samples);
+            this.coverage = intervals == null ? null : new GenomeLocSortedSet(parser, intervals);
+        }
+
+        /**
+         * Adds a variant site; adding it more than once is harmless
+         *
+         * @param site the site
+         */
+        public synchronized void add(final GenomeLoc site) {
+            final Integer size = sizeByContig.get(site.getContig());
+            final int n = size == null ? 0 : size;
+            int[] sites = sitesByContig.get(site.getContig());
+            if ( sites == null || n == sites.length ) {
+                sites = sites == null ? new int[1024] : Arrays.copyOf(sites, 2 * n);
+                sitesByContig.put(site.getContig(), sites);
+            }
+            sites[n] = site.getStart();
+            sizeByContig.put(site.getContig(), n + 1);
+        }
+
+        /**
+         * @return the index of the sites added so far
+         */
+        public synchronized VariantSiteIndex make() {
+            final Map<String, int[]> sorted = new LinkedHashMap<>();
+            for ( final Map.Entry<String, int[]> contig : sitesByContig.entrySet() ) {
+                final int[] sites = Arrays.copyOf(contig.getValue(), sizeByContig.get(contig.getKey()));
+                Arrays.sort(sites);
+                int n = 0;
+                for ( int i = 0; i < sites.length; i++ )
+                    if ( n == 0 || sites[i] != sites[n - 1] )
+                        sites[n++] = sites[i];
+                sorted.put(contig.getKey(), Arrays.copyOf(sites, n));
+            }
+            return new VariantSiteIndex(parser, samples, coverage, sorted);
+        }
+    }
+}
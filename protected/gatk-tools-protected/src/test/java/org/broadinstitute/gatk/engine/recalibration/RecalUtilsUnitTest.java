@@ -51,17 +51,23 @@
 
 package org.broadinstitute.gatk.engine.recalibration;
 
+import org.broadinstitute.gatk.engine.recalibration.covariates.Covariate;
 import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.QualityUtils;
 import org.broadinstitute.gatk.utils.Utils;
 import org.broadinstitute.gatk.utils.collections.NestedIntegerArray;
+import org.broadinstitute.gatk.utils.recalibration.EventType;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 public final class RecalUtilsUnitTest extends BaseTest {
     private class Row {
@@ -169,6 +175,35 @@ public final class RecalUtilsUnitTest extends BaseTest {
         combined.add(new Row(row));
     }
 
+    @Test
+    public void testStreamingReportMatchesReport() {
+        final Covariate[] covariates = RecalibrationTestUtils.makeInitializedStandardCovariates();
+        final RecalibrationTables tables = new RecalibrationTables(covariates, 2);
+        final Random random = new Random(42);
+        for ( int i = 0; i < 1000; i++ ) {
+            final int rg = random.nextInt(2);
+            final int qual = random.nextInt(QualityUtils.MAX_SAM_QUAL_SCORE);
+            final int event = random.nextInt(EventType.values().length);
+            final double isError = random.nextInt(10) == 0 ? 1.0 : 0.0;
+            RecalUtils.incrementDatumOrPutIfNecessary(tables.getReadGroupTable(), (byte)qual, isError, rg, event);
+            RecalUtils.incrementDatumOrPutIfNecessary(tables.getQualityScoreTable(), (byte)qual, isError, rg, qual, event);
+            RecalUtils.incrementDatumOrPutIfNecessary(tables.getTable(2), (byte)qual, isError, rg, qual, random.nextInt(covariates[2].maximumKeyValue() + 1), event);
+            RecalUtils.incrementDatumOrPutIfNecessary(tables.getTable(3), (byte)qual, isError, rg, qual, random.nextInt(covariates[3].maximumKeyValue() + 1), event);
+        }
+
+        final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
+        final QuantizationInfo quantizationInfo = new QuantizationInfo(tables, RAC.QUANTIZING_LEVELS);
+        final String covariateNames = RecalUtils.covariateNames(covariates);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        RecalUtils.createRecalibrationGATKReport(RAC.generateReportTable(covariateNames), quantizationInfo, tables, covariates, false).print(new PrintStream(expected));
+
+        final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        RecalUtils.printRecalibrationReport(new PrintStream(streamed), RAC.generateReportTable(covariateNames), quantizationInfo, tables, covariates, false);
+
+        Assert.assertEquals(streamed.toString(), expected.toString());
+    }
+
     public NestedIntegerArray<RecalDatum> makeTable(final List<Row> rows) {
         final NestedIntegerArray<RecalDatum> x = new NestedIntegerArray<RecalDatum>(3, 3);
         for ( final Row r : rows )
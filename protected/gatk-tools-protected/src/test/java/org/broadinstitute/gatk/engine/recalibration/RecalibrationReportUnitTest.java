@@ -53,8 +53,10 @@ package org.broadinstitute.gatk.engine.recalibration;
 
 import org.broadinstitute.gatk.engine.recalibration.covariates.*;
 import org.broadinstitute.gatk.utils.recalibration.EventType;
+import org.broadinstitute.gatk.utils.BaseTest;
 import org.broadinstitute.gatk.utils.QualityUtils;
 import org.broadinstitute.gatk.utils.collections.NestedIntegerArray;
+import org.broadinstitute.gatk.utils.report.GATKReportTable;
 import org.broadinstitute.gatk.utils.sam.GATKSAMReadGroupRecord;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import org.broadinstitute.gatk.utils.sam.ReadUtils;
@@ -62,6 +64,9 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.util.*;
 
 /**
@@ -163,6 +168,69 @@ public class RecalibrationReportUnitTest {
         Assert.assertEquals(nKeys, expectedKeys);
     }
 
+    @Test
+    public void testBinaryReportRecalibratesLikeTextReport() throws FileNotFoundException, CloneNotSupportedException {
+        final int length = 100;
+        final Random random = new Random(42);
+        final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
+
+        final ReadGroupCovariate rgCovariate = new ReadGroupCovariate();
+        final QualityScoreCovariate qsCovariate = new QualityScoreCovariate();
+        final ContextCovariate cxCovariate = new ContextCovariate();
+        final CycleCovariate cyCovariate = new CycleCovariate();
+        final Covariate[] requestedCovariates = new Covariate[] {rgCovariate, qsCovariate, cxCovariate, cyCovariate};
+        for ( final Covariate covariate : requestedCovariates )
+            covariate.initialize(RAC);
+
+        final GATKSAMReadGroupRecord rg = new GATKSAMReadGroupRecord("id");
+        rg.setPlatform("illumina");
+        final GATKSAMRecord read = ReadUtils.createRandomRead(length, false);
+        read.setReadGroup(rg);
+        final byte[] readQuals = new byte[length];
+        for ( int i = 0; i < length; i++ )
+            readQuals[i] = (byte)(10 + random.nextInt(30));
+        read.setBaseQualities(readQuals);
+
+        // error counts and estimated reported qualities with more digits than the text report keeps
+        final RecalibrationTables recalibrationTables = new RecalibrationTables(requestedCovariates);
+        final ReadCovariates rc = RecalUtils.computeCovariates(read, requestedCovariates);
+        for ( int offset = 0; offset < length; offset++ ) {
+            for ( final EventType errorMode : EventType.values() ) {
+                final int[] keys = rc.getKeySet(offset, errorMode);
+                for ( int tableIndex = 0; tableIndex < recalibrationTables.numTables(); tableIndex++ ) {
+                    if ( keys[tableIndex] < 0 )
+                        continue;
+                    final long nObservations = 1000 + random.nextInt(10000);
+                    final RecalDatum datum = new RecalDatum(nObservations, random.nextDouble() * nObservations / 20, (byte)keys[1]);
+                    datum.setEstimatedQReported(keys[1] + random.nextDouble());
+                    final int[] tableKeys = tableIndex < 2 ? Arrays.copyOf(keys, tableIndex + 1) : new int[] {keys[0], keys[1], keys[tableIndex]};
+                    final int[] keysWithEvent = Arrays.copyOf(tableKeys, tableKeys.length + 1);
+                    keysWithEvent[tableKeys.length] = errorMode.ordinal();
+                    recalibrationTables.getTable(tableIndex).put(datum, keysWithEvent);
+                }
+            }
+        }
+
+        final QuantizationInfo quantizationInfo = new QuantizationInfo(recalibrationTables, RAC.QUANTIZING_LEVELS);
+        final GATKReportTable argumentTable = RAC.generateReportTable(RecalUtils.covariateNames(requestedCovariates));
+        final File textReport = BaseTest.createTempFile("binaryReportTest", ".table");
+        final PrintStream out = new PrintStream(textReport);
+        RecalUtils.printRecalibrationReport(out, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates, false);
+        out.close();
+        final File binaryReport = BaseTest.createTempFile("binaryReportTest", ".bin");
+        BinaryRecalibrationReport.write(binaryReport, argumentTable, quantizationInfo, recalibrationTables, requestedCovariates);
+
+        final GATKSAMRecord fromText = (GATKSAMRecord)read.clone();
+        new BaseRecalibration(textReport, 0, false, QualityUtils.MIN_USABLE_Q_SCORE, false, -1.0).recalibrateRead(fromText);
+        ReadCovariates.clearKeysCache();
+        final GATKSAMRecord fromBinary = (GATKSAMRecord)read.clone();
+        new BaseRecalibration(binaryReport, 0, false, QualityUtils.MIN_USABLE_Q_SCORE, false, -1.0).recalibrateRead(fromBinary);
+
+        Assert.assertEquals(fromBinary.getBaseQualities(), fromText.getBaseQualities());
+        Assert.assertEquals(fromBinary.getBaseInsertionQualities(), fromText.getBaseInsertionQualities());
+        Assert.assertEquals(fromBinary.getBaseDeletionQualities(), fromText.getBaseDeletionQualities());
+    }
+
     private static int expectedNumberOfKeys (int readLength, int indelContextSize, int mismatchesContextSize) {
         final int numCovariates = 4;
         final int numTables = 3;
@@ -112,6 +112,26 @@ public class VariantAnnotatorIntegrationTest extends WalkerTest {
         executeTest("test file has annotations, asking for annotations, #2", spec);
     }
 
+    @Test
+    public void testAnnotationThreads() {
+        // the same annotations as with a single annotation thread, dithering and all
+        WalkerTestSpec spec = new WalkerTestSpec(
+                baseTestString() + standardAnnotations + "-annThreads 4 --variant " + privateTestDir + "vcfexample3.vcf -I " + validationDataLocation + "NA12878.1kg.p2.chr1_10mb_11_mb.SLX.bam -L 1:10,000,000-10,050,000", 1,
+                Arrays.asList("c367bf7cebd7b26305f8d4736788aec8"));
+        executeTest("test annotating with 4 annotation threads", spec);
+    }
+
+    @Test
+    public void testAnnotationThreadsWithoutDithering() {
+        // without dithering the rank sum tests are evaluated on the annotation threads too
+        final String args = baseTestString() + standardAnnotations + "-disableDithering --variant " + privateTestDir + "vcfexample3.vcf -I " + validationDataLocation + "NA12878.1kg.p2.chr1_10mb_11_mb.SLX.bam -L 1:10,000,000-10,050,000";
+        final File oneThread = executeTest("test annotating without dithering with 1 annotation thread",
+                new WalkerTestSpec(args + " -annThreads 1", 1, Arrays.asList(""))).getFirst().get(0);
+        final File fourThreads = executeTest("test annotating without dithering with 4 annotation threads",
+                new WalkerTestSpec(args + " -annThreads 4", 1, Arrays.asList(""))).getFirst().get(0);
+        Assert.assertEquals(getMd5DB().calculateFileMD5(fourThreads), getMd5DB().calculateFileMD5(oneThread));
+    }
+
     @Test
     public void testNoAnnotsNotAsking1() {
         WalkerTestSpec spec = new WalkerTestSpec(
@@ -52,6 +52,8 @@
 package org.broadinstitute.gatk.tools.walkers.bqsr;
 
 import org.broadinstitute.gatk.engine.recalibration.BQSRGatherer;
+import org.broadinstitute.gatk.engine.recalibration.BinaryRecalibrationReport;
+import org.broadinstitute.gatk.engine.recalibration.RecalibrationReport;
 import org.broadinstitute.gatk.utils.BaseTest;
 import org.broadinstitute.gatk.utils.report.GATKReport;
 import org.broadinstitute.gatk.utils.report.GATKReportTable;
@@ -60,6 +62,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -137,6 +141,32 @@ public class BQSRGathererUnitTest extends BaseTest {
         testReports(originalReport, calculatedReport);
     }
 
+    @Test(enabled = true)
+    public void testGatherBinaryBQSR() throws FileNotFoundException {
+        BQSRGatherer gatherer = new BQSRGatherer();
+        List<File> recalFiles = new LinkedList<File> ();
+        for ( final File recal : Arrays.asList(recal1, recal2, recal3, recal4, recal5, recalEmpty) ) {
+            final File binaryRecal = BaseTest.createTempFile("BQSRgathererTest", ".bin");
+            new RecalibrationReport(recal).writeBinaryReport(binaryRecal);
+            recalFiles.add(binaryRecal);
+        }
+
+        final File output = BaseTest.createTempFile("BQSRgathererTest", ".bin");
+        gatherer.gather(recalFiles, output);
+        Assert.assertTrue(BinaryRecalibrationReport.isBinaryReport(output), "binary inputs should be gathered into a binary report");
+
+        // the binary report must hold exactly what the text report would have
+        final File textOutput = BaseTest.createTempFile("BQSRgathererTest", ".table");
+        final PrintStream out = new PrintStream(textOutput);
+        new RecalibrationReport(output).printGATKReport(out);
+        out.close();
+
+        GATKReport originalReport = new GATKReport(recal_original);
+        GATKReport calculatedReport = new GATKReport(textOutput);
+
+        testReports(originalReport, calculatedReport);
+    }
+
     private void testReports(final GATKReport originalReport, final GATKReport calculatedReport) {
 
         // test the Arguments table
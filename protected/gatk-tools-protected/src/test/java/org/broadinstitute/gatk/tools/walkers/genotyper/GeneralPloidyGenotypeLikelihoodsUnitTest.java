@@ -194,6 +194,41 @@ public class GeneralPloidyGenotypeLikelihoodsUnitTest {
   */
         Assert.assertEquals(newGLs,new double[]{5.0,4.0,2.0});
     }
+    @Test
+    public void testSubsetToAllelesMatchesSumIteratorOrder() {
+        final List<Allele> originalAlleles = Arrays.asList(Allele.create("T",true), Allele.create("C",false),
+                Allele.create("A",false), Allele.create("G",false));
+        final List<List<Allele>> subsets = Arrays.asList(
+                Arrays.asList(originalAlleles.get(0), originalAlleles.get(2)),
+                Arrays.asList(originalAlleles.get(0), originalAlleles.get(3), originalAlleles.get(1)),
+                Arrays.asList(originalAlleles.get(3), originalAlleles.get(1)),
+                originalAlleles);
+
+        for (int ploidy = 1; ploidy <= 4; ploidy++) {
+            final int numLikelihoods = GeneralPloidyGenotypeLikelihoods.getNumLikelihoodElements(originalAlleles.size(), ploidy);
+            final double[] oldLikelihoods = new double[numLikelihoods];
+            for (int k = 0; k < numLikelihoods; k++)
+                oldLikelihoods[k] = -k;
+
+            for (final List<Allele> subset : subsets) {
+                // expected values: conformations with no counts outside the subset, re-indexed by the subset order.
+                final double[] expected = new double[GeneralPloidyGenotypeLikelihoods.getNumLikelihoodElements(subset.size(), ploidy)];
+                final GeneralPloidyGenotypeLikelihoods.SumIterator iterator = new GeneralPloidyGenotypeLikelihoods.SumIterator(originalAlleles.size(), ploidy);
+                while (iterator.hasNext()) {
+                    final int[] counts = iterator.getCurrentVector();
+                    final int[] newCounts = new int[subset.size()];
+                    int total = 0;
+                    for (int k = 0; k < newCounts.length; k++)
+                        total += newCounts[k] = counts[originalAlleles.indexOf(subset.get(k))];
+                    if (total == ploidy)
+                        expected[GeneralPloidyGenotypeLikelihoods.getLinearIndex(newCounts, subset.size(), ploidy)] = oldLikelihoods[iterator.getLinearIndex()];
+                    iterator.next();
+                }
+                Assert.assertEquals(GeneralPloidyGenotypeLikelihoods.subsetToAlleles(oldLikelihoods, ploidy, originalAlleles, subset), expected);
+            }
+        }
+    }
+
     @Test
     public void testIndexIterator() {
         int[] seed = new int[]{1,2,3,4};
@@ -169,6 +169,49 @@ public class GenotypeLikelihoodCalculatorUnitTest {
         }
     }
 
+    @Test(dataProvider = "ploidyAndMaximumAlleleAndNewMaximumAlleleData")
+    public void testCachedGenotypeIndexMap(final int ploidy, final int oldAlleleCount, final int newAlleleCount) {
+        final Random rnd = Utils.getRandomGenerator();
+        final int maxAlleleCount = Math.max(oldAlleleCount,newAlleleCount);
+        final int[] alleleMap = new int[newAlleleCount];
+        for (int i = 0; i < alleleMap.length; i++)
+            alleleMap[i] = rnd.nextInt(oldAlleleCount);
+
+        final int[] expected = GenotypeLikelihoodCalculators.getInstance(ploidy,maxAlleleCount).genotypeIndexMap(alleleMap);
+        final int[] cached = GenotypeLikelihoodCalculators.genotypeIndexMap(ploidy, maxAlleleCount, alleleMap);
+        Assert.assertEquals(cached, expected);
+        // the cache must not hold on to the caller's array.
+        final int[] alleleMapCopy = alleleMap.clone();
+        Arrays.fill(alleleMap, 0);
+        Assert.assertSame(GenotypeLikelihoodCalculators.genotypeIndexMap(ploidy, maxAlleleCount, alleleMapCopy), cached);
+    }
+
+    @Test
+    public void testCachedGenotypeIndexMapEvictsLeastRecentlyUsed() {
+        // the cache is shared by the whole JVM; start from an empty one and leave it empty for the other tests.
+        GenotypeLikelihoodCalculators.clearGenotypeIndexMapCache();
+        try {
+            final int[] used = GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, new int[] {1, 0});
+            final int[] unused = GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, new int[] {0, 2});
+
+            // more distinct recodings than the cache holds, while one of the two maps above keeps being looked up.
+            final int[] alleleMap = new int[4];
+            for (int i = 0; i < 12 * 12 * 12 * 12; i++) {
+                for (int j = 0, rest = i; j < alleleMap.length; j++, rest /= 12)
+                    alleleMap[j] = rest % 12;
+                GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, alleleMap);
+                if (i % 100 == 0)
+                    Assert.assertSame(GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, new int[] {1, 0}), used);
+            }
+
+            Assert.assertSame(GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, new int[] {1, 0}), used);
+            final int[] recomposed = GenotypeLikelihoodCalculators.genotypeIndexMap(2, 12, new int[] {0, 2});
+            Assert.assertNotSame(recomposed, unused);
+            Assert.assertEquals(recomposed, unused);
+        } finally {
+            GenotypeLikelihoodCalculators.clearGenotypeIndexMapCache();
+        }
+    }
 
     // Simple inefficient calculation of the genotype count given the ploidy.
     private int calculateGenotypeCount(final int ploidy, final int alleleCount) {
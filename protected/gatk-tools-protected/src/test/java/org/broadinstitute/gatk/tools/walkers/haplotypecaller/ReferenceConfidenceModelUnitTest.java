@@ -367,6 +367,52 @@ public class ReferenceConfidenceModelUnitTest extends BaseTest {
         }
     }
 
+    @DataProvider(name = "HomRefPileupData")
+    public Object[][] makeHomRefPileupData() {
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final int ploidy : Arrays.asList(1, 2, 3, 4) )
+            for ( final int depth : Arrays.asList(0, 1, 2, 10, 100) )
+                for ( final boolean withMismatch : Arrays.asList(false, true) )
+                    if ( depth > 0 || ! withMismatch )
+                        tests.add(new Object[]{ploidy, depth, withMismatch});
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "HomRefPileupData")
+    public void testHomRefPileupMatchesModel(final int ploidy, final int depth, final boolean withMismatch) {
+        final GenotypingModel genotypingModel = new InfiniteRandomMatingPopulationModel();
+        final Random random = Utils.getRandomGenerator();
+        final int readLength = 11;
+        final int offset = readLength / 2;
+        final byte refBase = 'A';
+
+        final List<GATKSAMRecord> reads = new ArrayList<>(depth);
+        for ( int i = 0; i < depth; i++ ) {
+            final byte[] bases = Utils.dupBytes(refBase, readLength);
+            final byte[] quals = new byte[readLength];
+            for ( int j = 0; j < readLength; j++ )
+                quals[j] = (byte) random.nextInt(61); // includes quals below the min base quality
+            if ( withMismatch && i == depth / 2 )
+                bases[offset] = 'C';
+            reads.add(ArtificialSAMUtils.createArtificialRead(header, "read" + i, 0, 1, bases, quals, readLength + "M"));
+        }
+        final ReadBackedPileup pileup = new ReadBackedPileupImpl(parser.createGenomeLoc("chr1", 1 + offset, 1 + offset), reads, offset);
+
+        final RefVsAnyResult expected = model.calcGenotypeLikelihoodsOfRefVsAnyWithModel(sample, ploidy, genotypingModel, pileup, refBase, (byte) 6, null);
+        final RefVsAnyResult homRef = model.calcGenotypeLikelihoodsOfHomRefPileup(ploidy, pileup, refBase, (byte) 6);
+        if ( withMismatch ) {
+            Assert.assertNull(homRef);
+        } else {
+            Assert.assertNotNull(homRef);
+            Assert.assertTrue(Arrays.equals(homRef.genotypeLikelihoods, expected.genotypeLikelihoods), Arrays.toString(homRef.genotypeLikelihoods) + " != " + Arrays.toString(expected.genotypeLikelihoods));
+            Assert.assertTrue(Arrays.equals(homRef.AD_Ref_Any, expected.AD_Ref_Any));
+        }
+
+        final RefVsAnyResult actual = model.calcGenotypeLikelihoodsOfRefVsAny(sample, ploidy, genotypingModel, pileup, refBase, (byte) 6, null);
+        Assert.assertTrue(Arrays.equals(actual.genotypeLikelihoods, expected.genotypeLikelihoods), Arrays.toString(actual.genotypeLikelihoods) + " != " + Arrays.toString(expected.genotypeLikelihoods));
+        Assert.assertTrue(Arrays.equals(actual.AD_Ref_Any, expected.AD_Ref_Any));
+    }
+
     private void checkReferenceModelResult(final RefConfData data, final List<VariantContext> contexts, final List<Integer> expectedDPs, final List<VariantContext> calls) {
         Assert.assertNotNull(contexts);
 
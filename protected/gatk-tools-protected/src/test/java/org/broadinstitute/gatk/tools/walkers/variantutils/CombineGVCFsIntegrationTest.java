@@ -187,6 +187,64 @@ public class CombineGVCFsIntegrationTest extends WalkerTest {
         Assert.assertEquals(third.getGenotypes().size(), 2);
     }
 
+    /**
+     * NA1 has abutting blocks at 1001-1010 and 1011-1020, then a deletion at 1021-1023 and a block at 1024-1040.
+     * NA2 has blocks at 1001-1005, 1006-1022 (overlapping both blocks of NA1 and ending within the deletion) and 1023-1040.
+     */
+    private static String blocksTestString(final String args) {
+        return "-T CombineGVCFs -R " + exampleFASTA + " -o %s --no_cmdline_in_header -V "
+                + publicTestDir + "combineGVCFsBlocks.1.g.vcf -V " + publicTestDir + "combineGVCFsBlocks.2.g.vcf" + args;
+    }
+
+    @Test
+    public void testOverlappingAndAbuttingBlocks() throws Exception {
+        final WalkerTestSpec spec = new WalkerTestSpec(blocksTestString(" -L chr1:1001-1020"), 1, Arrays.asList(""));
+        spec.disableShadowBCF();
+        final File gVCF = executeTest("testOverlappingAndAbuttingBlocks", spec).first.get(0);
+        final List<VariantContext> allVCs = GATKVCFUtils.readVCF(gVCF).getSecond();
+
+        Assert.assertEquals(allVCs.size(), 3, "Observed: " + allVCs);
+        final int[][] expectedBlocks = { {1001, 1005}, {1006, 1010}, {1011, 1020} };
+        for ( int i = 0; i < expectedBlocks.length; i++ ) {
+            final VariantContext vc = allVCs.get(i);
+            Assert.assertEquals(vc.getStart(), expectedBlocks[i][0]);
+            Assert.assertEquals(vc.getEnd(), expectedBlocks[i][1]);
+            Assert.assertEquals(vc.getNAlleles(), 2);
+            Assert.assertEquals(vc.getGenotypes().size(), 2);
+            Assert.assertTrue(vc.getGenotype("NA1").isNoCall());
+            Assert.assertTrue(vc.getGenotype("NA2").isNoCall());
+        }
+    }
+
+    @Test
+    public void testDeletionSpanningBlockEnd() throws Exception {
+        final WalkerTestSpec spec = new WalkerTestSpec(blocksTestString(" -L chr1:1001-1040"), 1, Arrays.asList(""));
+        spec.disableShadowBCF();
+        final File gVCF = executeTest("testDeletionSpanningBlockEnd", spec).first.get(0);
+        final List<VariantContext> allVCs = GATKVCFUtils.readVCF(gVCF).getSecond();
+
+        Assert.assertTrue(allVCs.size() > 4, "Observed: " + allVCs);
+
+        final VariantContext deletion = allVCs.get(3);
+        Assert.assertEquals(deletion.getStart(), 1021);
+        Assert.assertEquals(deletion.getEnd(), 1023);
+        Assert.assertEquals(deletion.getNAlleles(), 3);
+        Assert.assertEquals(deletion.getGenotypes().size(), 2);
+
+        // the block of NA2 ending within the deletion must still be cut there, and nothing may be lost after it
+        boolean cutAtBlockEnd = false;
+        int lastEnd = deletion.getStart();
+        for ( final VariantContext vc : allVCs.subList(4, allVCs.size()) ) {
+            Assert.assertTrue(vc.getStart() > deletion.getStart(), "Observed: " + allVCs);
+            Assert.assertEquals(vc.getGenotypes().size(), 2);
+            if ( vc.getEnd() == 1022 )
+                cutAtBlockEnd = true;
+            lastEnd = vc.getEnd();
+        }
+        Assert.assertTrue(cutAtBlockEnd, "Observed: " + allVCs);
+        Assert.assertEquals(lastEnd, 1040);
+    }
+
     @Test
     public void testMD5s() throws Exception {
         final String cmd = baseTestString(" -L 1:69485-69791");
@@ -211,6 +269,46 @@ public class CombineGVCFsIntegrationTest extends WalkerTest {
         executeTest("testBreakBlocks", spec);
     }
 
+    // the abutting intervals are not merged, so that each one is a shard of its own: the blocks at 1:69498-69506 and
+    // 1:69512-69634 and the deletion at 1:69772-69776 span the boundaries between them
+    private static final String SHARDED_INTERVALS = " -im OVERLAPPING_ONLY -L 1:69485-69501 -L 1:69502-69600 -L 1:69601-69774 -L 1:69775-69791";
+
+    @Test
+    public void testMultiThreaded() throws Exception {
+        for ( final int nt : Arrays.asList(1, 4) ) {
+            // same output as testMD5s, which traverses the same positions as a single shard
+            final WalkerTestSpec spec = new WalkerTestSpec(baseTestString(SHARDED_INTERVALS + " -nt " + nt), 1, Arrays.asList("83ea9f4a9aadb1218c21c9d3780e8009"));
+            spec.disableShadowBCF();
+            executeTest("testMultiThreaded with -nt " + nt, spec);
+        }
+    }
+
+    @Test
+    public void testMultiThreadedBreakBlocks() throws Exception {
+        for ( final int nt : Arrays.asList(1, 4) ) {
+            // same output as testBreakBlocks
+            final WalkerTestSpec spec = new WalkerTestSpec(baseTestString(SHARDED_INTERVALS + " --breakBandsAtMultiplesOf 5 -nt " + nt), 1, Arrays.asList("6626ff272e7e76fba091f5bde4a1f963"));
+            spec.disableShadowBCF();
+            executeTest("testMultiThreadedBreakBlocks with -nt " + nt, spec);
+        }
+    }
+
+    @Test
+    public void testMultiThreadedBlockAndDeletionSpanningShards() throws Exception {
+        final WalkerTestSpec unsharded = new WalkerTestSpec(blocksTestString(" -L chr1:1001-1040"), 1, Arrays.asList(""));
+        unsharded.disableShadowBCF();
+        final String expected = getMd5DB().calculateFileMD5(executeTest("testMultiThreadedBlockAndDeletionSpanningShards unsharded", unsharded).getFirst().get(0));
+
+        // the block of NA1 at 1011-1020 spans the first boundary, its deletion at 1021-1023 the second one
+        final String shardedIntervals = " -im OVERLAPPING_ONLY -L chr1:1001-1015 -L chr1:1016-1021 -L chr1:1022-1040";
+        for ( final int nt : Arrays.asList(1, 4) ) {
+            final WalkerTestSpec spec = new WalkerTestSpec(blocksTestString(shardedIntervals + " -nt " + nt), 1, Arrays.asList(""));
+            spec.disableShadowBCF();
+            final File gVCF = executeTest("testMultiThreadedBlockAndDeletionSpanningShards with -nt " + nt, spec).getFirst().get(0);
+            Assert.assertEquals(getMd5DB().calculateFileMD5(gVCF), expected, "Output with -nt " + nt + " differs from the single shard output");
+        }
+    }
+
     @Test
     public void testSpanningDeletions() {
         WalkerTestSpec spec = new WalkerTestSpec(
@@ -57,6 +57,8 @@ import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFCodec;
 import org.broadinstitute.gatk.engine.walkers.WalkerTest;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.io.IOUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -65,6 +67,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class GenotypeGVCFsIntegrationTest extends WalkerTest {
@@ -156,6 +159,113 @@ public class GenotypeGVCFsIntegrationTest extends WalkerTest {
         executeTest("combineSingleSamplePipelineGVCFHierarchical", spec);
     }
 
+    @Test(enabled = true)
+    public void combineSingleSamplePipelineGVCFMultiThreaded() {
+        // same output as combineSingleSamplePipelineGVCF, whatever the number of threads
+        for ( final int nct : Arrays.asList(1, 4) ) {
+            WalkerTestSpec spec = new WalkerTestSpec(
+                    baseTestString(" -V:sample1 " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                            " -V:sample2 " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                            " -V:sample3 " + privateTestDir + "combine.single.sample.pipeline.3.vcf" +
+                            " -L 20:10,000,000-20,000,000 -nct " + nct, b37KGReference),
+                    1,
+                    Arrays.asList("bf3c1982ab6ffee410cb6a1fff6e7105"));
+            executeTest("combineSingleSamplePipelineGVCF with -nct " + nct, spec);
+        }
+    }
+
+    @Test(enabled = true)
+    public void combineSingleSamplePipelineGVCFHierarchicalMultiThreaded() {
+        // the reference blocks of the combined gVCF span many sites, whose map calls run concurrently with -nct
+        for ( final int nct : Arrays.asList(1, 4) ) {
+            WalkerTestSpec spec = new WalkerTestSpec(
+                    baseTestString(" -V " + privateTestDir + "combine.single.sample.pipeline.combined.vcf" +
+                            " -V:sample1 " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                            " -V:sample2 " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                            " -V:sample3 " + privateTestDir + "combine.single.sample.pipeline.3.vcf" +
+                            " -L 20:10,000,000-20,000,000 -nct " + nct, b37KGReference),
+                    1,
+                    Arrays.asList("7c93d82758bfb6e7efec257ef8a46217"));
+            executeTest("combineSingleSamplePipelineGVCFHierarchical with -nct " + nct, spec);
+        }
+    }
+
+    @Test(enabled = true)
+    public void combineSingleSamplePipelineGVCFStore() {
+        // ingesting the gVCFs into a GVCF store with CombineGVCFs and genotyping the store gives the same output as
+        // genotyping the gVCFs (see combineSingleSamplePipelineGVCF), also when the store records are read concurrently
+        final File store = new File(IOUtils.tempDir("combineSingleSamplePipelineGVCFStore", ""), "combined.gvs");
+        executeTest("combineSingleSamplePipelineGVCFStore writing the store", new WalkerTestSpec(
+                "-T CombineGVCFs --no_cmdline_in_header -R " + b37KGReference +
+                        " -V:sample1 " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                        " -V:sample2 " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                        " -V:sample3 " + privateTestDir + "combine.single.sample.pipeline.3.vcf" +
+                        " -L 20:10,000,000-20,000,000 -o " + store.getAbsolutePath(),
+                0,
+                Collections.<String>emptyList()));
+        Assert.assertTrue(store.length() > 0, "the GVCF store was not written");
+
+        for ( final int nct : Arrays.asList(1, 4) ) {
+            WalkerTestSpec spec = new WalkerTestSpec(
+                    baseTestString(" -V " + store.getAbsolutePath() + " -L 20:10,000,000-20,000,000 -nct " + nct, b37KGReference),
+                    1,
+                    Arrays.asList("bf3c1982ab6ffee410cb6a1fff6e7105"));
+            executeTest("combineSingleSamplePipelineGVCFStore with -nct " + nct, spec);
+        }
+    }
+
+    private static String singleSamplePipelineString(final String args) {
+        return baseTestString(" -V:sample1 " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                " -V:sample2 " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                " -V:sample3 " + privateTestDir + "combine.single.sample.pipeline.3.vcf" + args, b37KGReference);
+    }
+
+    @Test(enabled = true)
+    public void testVariantSiteIndex() {
+        final File index = createTempFile("genotypeGVCFs", ".sites");
+
+        // writing the index leaves the output unchanged (see combineSingleSamplePipelineGVCF) ...
+        final WalkerTestSpec write = new WalkerTestSpec(
+                singleSamplePipelineString(" -L 20:10,000,000-20,000,000 --variantSiteIndexOutput " + index.getAbsolutePath()),
+                1,
+                Arrays.asList("bf3c1982ab6ffee410cb6a1fff6e7105"));
+        executeTest("testVariantSiteIndex writing the index", write);
+
+        // ... and so does visiting only its sites
+        final WalkerTestSpec read = new WalkerTestSpec(
+                singleSamplePipelineString(" -L 20:10,000,000-20,000,000 --variantSiteIndex " + index.getAbsolutePath()),
+                1,
+                Arrays.asList("bf3c1982ab6ffee410cb6a1fff6e7105"));
+        executeTest("testVariantSiteIndex reading the index", read);
+
+        // also over part of the intervals the index was built for
+        final String subInterval = " -L 20:12,000,000-14,000,000";
+        final File withoutIndex = executeTest("testVariantSiteIndex without the index over a sub-interval",
+                new WalkerTestSpec(singleSamplePipelineString(subInterval), 1, Arrays.asList(""))).getFirst().get(0);
+        final File withIndex = executeTest("testVariantSiteIndex with the index over a sub-interval",
+                new WalkerTestSpec(singleSamplePipelineString(subInterval + " --variantSiteIndex " + index.getAbsolutePath()), 1, Arrays.asList(""))).getFirst().get(0);
+        Assert.assertEquals(getMd5DB().calculateFileMD5(withIndex), getMd5DB().calculateFileMD5(withoutIndex));
+
+        // but not outside of them
+        executeTest("testVariantSiteIndex outside of its intervals", new WalkerTestSpec(
+                singleSamplePipelineString(" -L 20:9,000,000-11,000,000 --variantSiteIndex " + index.getAbsolutePath()),
+                1,
+                UserException.BadArgumentValue.class));
+    }
+
+    @Test(enabled = true)
+    public void testVariantSiteIndexWithAllSites() {
+        final File index = createTempFile("genotypeGVCFs", ".sites");
+        executeTest("testVariantSiteIndexWithAllSites writing the index", new WalkerTestSpec(
+                singleSamplePipelineString(" -L 20:10,000,000-11,000,000 --variantSiteIndexOutput " + index.getAbsolutePath()),
+                1,
+                Arrays.asList("")));
+        executeTest("testVariantSiteIndexWithAllSites", new WalkerTestSpec(
+                singleSamplePipelineString(" -L 20:10,000,000-11,000,000 -allSites --variantSiteIndex " + index.getAbsolutePath()),
+                1,
+                UserException.BadArgumentValue.class));
+    }
+
     @Test(enabled = true)
     public void combineSingleSamplePipelineGVCF_addDbsnp() {
         WalkerTestSpec spec = new WalkerTestSpec(
@@ -279,6 +389,25 @@ public class GenotypeGVCFsIntegrationTest extends WalkerTest {
 
     }
 
+    @Test
+    public void testUniquifiedSamplesMultiThreaded() {
+        // same output as testUniquifiedSamples, whatever the number of threads: with 10 samples InbreedingCoeff
+        // is calculated, and the annotations are shared by the map calls running concurrently with -nct
+        for ( final int nct : Arrays.asList(1, 4) ) {
+            WalkerTestSpec spec = new WalkerTestSpec(
+                    baseTestString(" -V:sample1 " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                            " -V:sample1B " + privateTestDir + "combine.single.sample.pipeline.1.vcf" +
+                            " -V:sample2 " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                            " -V:sample2B " + privateTestDir + "combine.single.sample.pipeline.2.vcf" +
+                            " -V:combined1 " + privateTestDir + "combine.single.sample.pipeline.combined.vcf" +
+                            " -V:combined2 " + privateTestDir + "combine.single.sample.pipeline.combined.vcf" +
+                            " --uniquifySamples -nct " + nct, b37KGReference),
+                    1,
+                    Arrays.asList("9a472c4e101fff4892efb9255c5cd8b3"));
+            executeTest("testUniquifiedSamples with -nct " + nct, spec);
+        }
+    }
+
     /**
      * Returns a list of attribute values from a VCF file
      *
@@ -56,6 +56,8 @@ import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.MathUtils;
+import org.broadinstitute.gatk.utils.Utils;
 import org.broadinstitute.gatk.utils.variant.HomoSapiensConstants;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -65,6 +67,7 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 public class HomRefBlockUnitTest extends BaseTest {
     VariantContext vc;
@@ -131,6 +134,29 @@ public class HomRefBlockUnitTest extends BaseTest {
         assertValues(band, 1000, 1000, 99, 99);
     }
 
+    @Test
+    public void testMinMedianOfLongBands() {
+        final Random random = Utils.getRandomGenerator();
+        for ( final int size : Arrays.asList(1, 2, 3, 10, 101, 1000) ) {
+            for ( final int maxDP : Arrays.asList(5, 100, 1000) ) {
+                final HomRefBlock band = new HomRefBlock(vc, 0, 100, HomoSapiensConstants.DEFAULT_PLOIDY);
+                final GenotypeBuilder gb = new GenotypeBuilder("NA12878");
+                gb.alleles(vc.getAlleles());
+
+                final List<Integer> DPs = new ArrayList<>(size);
+                final List<Integer> GQs = new ArrayList<>(size);
+                for ( int i = 0; i < size; i++ ) {
+                    final int DP = random.nextInt(maxDP);
+                    final int GQ = random.nextInt(200);
+                    band.add(vc.getStart() + i, gb.DP(DP).GQ(GQ).PL(new int[]{0,GQ,100}).make());
+                    DPs.add(DP);
+                    GQs.add(Math.min(GQ, 99));
+                }
+                assertValues(band, MathUtils.arrayMin(DPs), MathUtils.median(DPs), MathUtils.arrayMin(GQs), MathUtils.median(GQs));
+            }
+        }
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testBadAdd() {
         final HomRefBlock band = new HomRefBlock(vc, 10, 20, HomoSapiensConstants.DEFAULT_PLOIDY);
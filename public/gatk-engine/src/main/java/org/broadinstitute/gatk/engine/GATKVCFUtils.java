@@ -72,6 +72,9 @@ public class GATKVCFUtils {
     // GVCF file extension
     public final static String GVCF_EXT = "g.vcf";
 
+    // GVCF file extension for BCF2 output
+    public final static String GVCF_BCF_EXT = "g.bcf";
+
     // Message for using the deprecated --variant_index_type or --variant_index_parameter arguments.
     public final static String DEPRECATED_INDEX_ARGS_MSG = "Naming your output file using the .g.vcf extension will automatically set the appropriate values " +
             " for --variant_index_type and --variant_index_parameter";
@@ -389,7 +392,7 @@ public class GATKVCFUtils {
             indexType = variantIndexType;
             indexParameter = variantIndexParameter;
             logger.warn(DEPRECATED_INDEX_ARGS_MSG);
-        } else if (outputFile.getName().endsWith("."  + GVCF_EXT)) {
+        } else if (isGVCFFile(outputFile)) {
             indexType = DEFAULT_GVCF_INDEX_TYPE;
             indexParameter = DEFAULT_GVCF_INDEX_PARAMETER;
         }
@@ -397,6 +400,17 @@ public class GATKVCFUtils {
         return getIndexCreator(indexType, indexParameter, outputFile, sequenceDictionary);
     }
 
+    /**
+     * Check if a file is named as a GVCF file, with either the text (.g.vcf) or the BCF2 (.g.bcf) extension
+     *
+     * @param file the file
+     * @return true if the file has a GVCF extension, false otherwise
+     */
+    public static boolean isGVCFFile(final File file) {
+        final String name = file.getName();
+        return name.endsWith("." + GVCF_EXT) || name.endsWith("." + GVCF_BCF_EXT);
+    }
+
     /**
      * Check if not using the default indexing arguments' values
      *
@@ -498,6 +498,8 @@ public class GenomeAnalysisEngine {
         DownsamplingMethod walkerMethod = WalkerManager.getDownsamplingMethod(walker);
 
         DownsamplingMethod method = commandLineMethod != null ? commandLineMethod : walkerMethod;
+        if ( argCollection.downsampleBeforeDecoding && method != null )
+            method = method.beforeDecoding();
         checkCompatibilityWithWalker(method, walker);
         return method;
     }
@@ -521,6 +523,14 @@ public class GenomeAnalysisEngine {
                             "only insignificant improvements in memory usage in most cases.",
                     DownsamplingMethod.MINIMUM_SAFE_COVERAGE_TARGET_FOR_LOCUS_BASED_TRAVERSALS));
         }
+
+        // Locus traversals downsampling to coverage by sample do so in LocusIteratorByState, never before decoding
+        if ( isLocusTraversal && method.beforeDecoding && type == DownsampleType.BY_SAMPLE && toCoverage != null ) {
+            throw new UserException.BadArgumentValue("downsample_before_decoding",
+                    "locus-based traversals (ie., Locus and ActiveRegion walkers) downsampling to coverage by sample " +
+                    "level their loci to -dcov as they are traversed, so the reads cannot be downsampled before decoding. " +
+                    "Either drop -dsbd or downsample to a fraction of the reads with -dfrac instead.");
+        }
     }
 
     protected void setDownsamplingMethod(DownsamplingMethod method) {
@@ -151,6 +151,14 @@ public class GATKArgumentCollection {
     @Hidden
     @Argument(fullName = "disableDithering",doc="Completely eliminates randomized dithering from rank sum tests.")
     public boolean disableDithering = false;
+    /**
+     * Rather than dithering ties in the rank sum tests, give all the tied observations the mid-rank of their run of ties,
+     * and correct the variance of the normal approximation for the ties. This makes the rank sum tests deterministic,
+     * but changes their values wherever there are ties, which are common with discrete values such as base qualities.
+     */
+    @Hidden
+    @Argument(fullName = "rankSumTieCorrection",doc="Use mid-ranks and a tie-corrected variance for ties in the rank sum tests instead of dithering them.", required = false)
+    public boolean rankSumTieCorrection = false;
     /**
      * This will truncate the run but without exiting with a failure. By default the value is interpreted in minutes, but this can be changed with the maxRuntimeUnits argument.
      */
@@ -205,6 +213,21 @@ public class GATKArgumentCollection {
               required = false, minValue = 0)
     public Integer downsampleCoverage = null;
 
+    /**
+     * Normally reads are fully decoded and run through the read filters before they are downsampled, so that
+     * the downsampling target applies to the reads that survive filtering. With very deep data (e.g. amplicons
+     * at thousands of x with -dcov 250) nearly all of that decoding is thrown away. With this argument the reads
+     * are instead downsampled as they come out of the BAM, using only their positions, flags and samples, so the
+     * bases and qualities of the discarded reads are never parsed. The catch is that reads
+     * removed afterwards by the read filters are not replaced, so the resulting coverage can fall below the target.
+     * This only has an effect when some kind of downsampling is in use, and is an error for locus walkers downsampling
+     * to coverage, whose loci are leveled to -dcov as they are traversed.
+     */
+    @Advanced
+    @Argument(fullName = "downsample_before_decoding", shortName = "dsbd",
+              doc = "Downsample reads as they are decoded, before read filtering", required = false)
+    public boolean downsampleBeforeDecoding = false;
+
     /**
      * Gets the downsampling method explicitly specified by the user. If the user didn't specify
      * a default downsampling mechanism, return the default.
@@ -228,6 +251,7 @@ public class GATKArgumentCollection {
         downsamplingType = method.type;
         downsampleCoverage = method.toCoverage;
         downsampleFraction = method.toFraction;
+        downsampleBeforeDecoding = method.beforeDecoding;
     }
 
     // --------------------------------------------------------------------------------------------------------------
@@ -244,6 +268,13 @@ public class GATKArgumentCollection {
     @Advanced
     @Argument(fullName = "baqGapOpenPenalty", shortName="baqGOP", doc="BAQ gap open penalty", required = false, minValue = 0)
     public double BAQGOP = BAQ.DEFAULT_GOP;
+    /**
+     *  The FLAT_BAND implementation computes exactly the same BAQ values as the ORIGINAL one, but reuses its
+     *  HMM matrices across reads, which makes it considerably faster.
+     */
+    @Advanced
+    @Argument(fullName = "baqHMMImplementation", shortName="baqHMM", doc="Implementation of the HMM to use for BAQ calculation", required = false)
+    public BAQ.HMMImplementation BAQHMMImplementation = BAQ.HMMImplementation.ORIGINAL;
 
     // --------------------------------------------------------------------------------------------------------------
     //
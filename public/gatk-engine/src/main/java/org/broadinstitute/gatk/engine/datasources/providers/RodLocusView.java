@@ -25,11 +25,16 @@
 
 package org.broadinstitute.gatk.engine.datasources.providers;
 
+import org.broadinstitute.gatk.engine.walkers.RodWalker;
 import org.broadinstitute.gatk.utils.contexts.AlignmentContext;
 import org.broadinstitute.gatk.engine.datasources.rmd.ReferenceOrderedDataSource;
 import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+import org.broadinstitute.gatk.utils.refdata.utils.GATKFeature;
 import org.broadinstitute.gatk.utils.refdata.utils.LocationAwareSeekableRODIterator;
 import org.broadinstitute.gatk.utils.refdata.utils.RODRecordList;
+import org.broadinstitute.gatk.utils.refdata.RODRecordListImpl;
+import org.broadinstitute.gatk.utils.refdata.SeekableRODIterator;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.collections.RODMergingIterator;
 import org.broadinstitute.gatk.utils.pileup.ReadBackedPileupImpl;
@@ -50,6 +55,35 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
     GenomeLoc lastLoc = null;
     RODRecordList interval = null;
 
+    /**
+     * If true, only the loci at which at least one record starts are visited; see SeekableRODIterator.setRecordStartsOnly
+     */
+    private final boolean recordStartsOnly;
+
+    /**
+     * When visiting record starts only, the last list returned by each track, keyed by track name.  A track is not
+     * advanced at loci where none of its records start, so its records spanning the locus have to come from here.
+     * The first and last loci of the shard are visited too if records span them, so that walkers following the
+     * extent of the records themselves know where the shard begins and can bring their state up to its end.
+     */
+    private final Map<String, RODRecordList> lastListByTrack = new LinkedHashMap<String, RODRecordList>();
+
+    /**
+     * When visiting record starts only, the walker to ask which of those loci to visit (see RodWalker.nextLocusToVisit),
+     * or null to visit all of them
+     */
+    private final RodWalker<?, ?> walker;
+
+    /**
+     * The iterators of the tracks other than the interval, for seeking forward past the loci the walker skips
+     */
+    private final List<LocationAwareSeekableRODIterator> trackIterators = new ArrayList<LocationAwareSeekableRODIterator>();
+
+    /**
+     * A locus at which a record starts that the tracks were sought forward to, and which is to be visited next
+     */
+    private GenomeLoc pendingSite = null;
+
     /**
      * The data sources along with their current states.
      */
@@ -68,7 +102,35 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
      * @param provider
      */
     public RodLocusView( LocusShardDataProvider provider ) {
+        this(provider, false);
+    }
+
+    /**
+     * Create a new view of reference-ordered data.
+     *
+     * @param provider
+     * @param recordStartsOnly if true, visit only the loci at which at least one record starts instead of every
+     *                         covered locus; the tracker at each visited locus still holds all records spanning it
+     */
+    public RodLocusView( LocusShardDataProvider provider, boolean recordStartsOnly ) {
+        this(provider, recordStartsOnly, null);
+    }
+
+    /**
+     * Create a new view of reference-ordered data for a walker, visiting record starts only if the walker wants to
+     * and then only those the walker does not skip.
+     *
+     * @param provider
+     * @param walker the walker the view is traversed for
+     */
+    public RodLocusView( LocusShardDataProvider provider, RodWalker<?, ?> walker ) {
+        this(provider, walker.visitRecordStartsOnly(), walker.visitRecordStartsOnly() ? walker : null);
+    }
+
+    private RodLocusView( LocusShardDataProvider provider, boolean recordStartsOnly, RodWalker<?, ?> walker ) {
         super(provider);
+        this.recordStartsOnly = recordStartsOnly;
+        this.walker = walker;
 
         GenomeLoc loc = provider.getLocus();
 
@@ -80,7 +142,13 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
             // the iterator to immediately before it, so that it can be added to the merging iterator primed for
             // next() to return the first real ROD in this shard
             LocationAwareSeekableRODIterator it = dataSource.seek(provider.getLocus());
-            it.seekForward(genomeLocParser.createGenomeLoc(loc.getContig(), loc.getStart()-1));
+            if ( it instanceof SeekableRODIterator )
+                ((SeekableRODIterator)it).setRecordStartsOnly(recordStartsOnly);
+            else if ( recordStartsOnly )
+                throw new ReviewedGATKException("Visiting record starts only requires a SeekableRODIterator but got " + it.getClass().getSimpleName());
+            final RODRecordList spanningShardStart = it.seekForward(genomeLocParser.createGenomeLoc(loc.getContig(), loc.getStart()-1));
+            if ( recordStartsOnly && spanningShardStart != null && ! dataSource.getName().equals(INTERVAL_ROD_NAME) )
+                lastListByTrack.put(spanningShardStart.getName(), spanningShardStart);
 
             states.add(new ReferenceOrderedDataState(dataSource,it));            
 
@@ -91,6 +159,7 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
                 interval = it.next();
             } else {
                 iterators.add( it );
+                trackIterators.add( it );
             }
         }
 
@@ -105,11 +174,103 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
     }
 
     public boolean hasNext() {
-        if ( ! rodQueue.hasNext() )
-            return false;
+        // the first locus of the shard is visited before skipping anything, so that the records spanning it are known
+        if ( pendingSite == null && (lastLoc != null || peekShardBoundary() == null) )
+            skipToLocusToVisit();
+        if ( pendingSite != null )
+            return true;
+
+        if ( ! rodQueue.hasNext() || rodQueue.peekLocation().isPast(locus) )
+            return peekShardBoundary() != null;
         else {
-            return ! rodQueue.peekLocation().isPast(locus);
+            return true;
+        }
+    }
+
+    /**
+     * When visiting record starts only, finds the shard boundary to be visited next, if any
+     *
+     * @return the first locus of the shard if it has not been visited yet, no record starts there and records span it;
+     *         the last locus of the shard if no more records start in the shard, it has not been visited yet and
+     *         records span it; null otherwise
+     */
+    private GenomeLoc peekShardBoundary() {
+        if ( ! recordStartsOnly )
+            return null;
+
+        final GenomeLoc nextStart = rodQueue.hasNext() && ! rodQueue.peekLocation().isPast(locus) ? rodQueue.peekLocation() : null;
+        if ( lastLoc == null ) {
+            final GenomeLoc shardStart = locus.getStartLocation();
+            if ( (nextStart == null || nextStart.isPast(shardStart)) && isSpannedByRecords(shardStart) )
+                return shardStart;
+        }
+        if ( nextStart == null && (lastLoc == null || lastLoc.getStart() < locus.getStop()) ) {
+            final GenomeLoc shardEnd = locus.getStopLocation();
+            if ( isSpannedByRecords(shardEnd) )
+                return shardEnd;
+        }
+        return null;
+    }
+
+    /**
+     * Skips the record starts the walker has no use for, seeking the tracks forward to the locus it wants instead.
+     * Stops when the next record start is to be visited, when the tracks have been sought to a locus at which a
+     * record starts (pendingSite), or when there is nothing left to visit in the shard.
+     */
+    private void skipToLocusToVisit() {
+        if ( walker == null )
+            return;
+
+        while ( rodQueue.hasNext() && ! rodQueue.peekLocation().isPast(locus) ) {
+            final GenomeLoc nextStart = rodQueue.peekLocation();
+            final GenomeLoc target = walker.nextLocusToVisit(nextStart);
+            if ( target == null || target.getStart() > locus.getStop() ) {
+                // nothing left to visit in this shard; the tracks are not read any further
+                rodQueue = new RODMergingIterator();
+                return;
+            }
+            if ( ! target.getContig().equals(nextStart.getContig()) || target.getStart() < nextStart.getStart() )
+                throw new ReviewedGATKException("The locus to visit instead of " + nextStart + " must be at or after it on the same contig, but the walker returned " + target);
+            if ( target.getStart() == nextStart.getStart() )
+                return;
+
+            seekForwardTo(genomeLocParser.createGenomeLoc(target.getContig(), target.getStart()));
+            if ( pendingSite != null )
+                return;
+        }
+    }
+
+    /**
+     * Seeks all tracks forward to site, skipping the records that start before it, and sets pendingSite if a record
+     * starts there.  The records spanning site become the last lists of their tracks.
+     *
+     * @param site the locus to seek to, after the last visited one
+     */
+    private void seekForwardTo(final GenomeLoc site) {
+        lastListByTrack.clear();
+        boolean recordStartsHere = false;
+        for ( final LocationAwareSeekableRODIterator it : trackIterators ) {
+            final RODRecordList spanning = it.seekForward(site);
+            if ( spanning == null )
+                continue;
+            lastListByTrack.put(spanning.getName(), spanning);
+            for ( final GATKFeature record : spanning )
+                if ( record.getLocation().getStart() == site.getStart() )
+                    recordStartsHere = true;
         }
+
+        // the merging iterator caches where each track goes next, so it has to be rebuilt
+        rodQueue = new RODMergingIterator(new LinkedList<Iterator<RODRecordList>>(trackIterators));
+        if ( recordStartsHere )
+            pendingSite = site;
+    }
+
+    private boolean isSpannedByRecords(final GenomeLoc site) {
+        for ( final RODRecordList list : lastListByTrack.values() )
+            for ( final GATKFeature record : list )
+                if ( record.getLocation().getContig().equals(site.getContig()) && record.getLocation().getStart() <= site.getStart() && record.getLocation().getStop() >= site.getStart() )
+                    return true;
+        return false;
     }
 
     /**
@@ -119,6 +280,25 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
      */
     public AlignmentContext next() {
         if ( DEBUG ) System.out.printf("In RodLocusView.next()...%n");
+        if ( ! hasNext() )
+            throw new NoSuchElementException("No more loci in the shard " + locus);
+        if ( pendingSite != null ) {
+            final GenomeLoc site = pendingSite;
+            pendingSite = null;
+            allTracksHere = getTracksSpanningSite(Collections.<RODRecordList>emptyList(), site);
+            long skippedBases = getSkippedBases( site );
+            lastLoc = site;
+            return new AlignmentContext(site, new ReadBackedPileupImpl(site), skippedBases);
+        }
+
+        final GenomeLoc shardBoundary = peekShardBoundary();
+        if ( shardBoundary != null ) {
+            allTracksHere = getTracksSpanningSite(Collections.<RODRecordList>emptyList(), shardBoundary);
+            long skippedBases = getSkippedBases( shardBoundary );
+            lastLoc = shardBoundary;
+            return new AlignmentContext(shardBoundary, new ReadBackedPileupImpl(shardBoundary), skippedBases);
+        }
+
         RODRecordList datum = rodQueue.next();
         if ( DEBUG ) System.out.printf("In RodLocusView.next(); datum = %s...%n", datum.getLocation());
 
@@ -127,6 +307,8 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
         allTracksHere = getSpanningTracks(datum);
         GenomeLoc rodSite = datum.getLocation();
         GenomeLoc site = genomeLocParser.createGenomeLoc( rodSite.getContig(), rodSite.getStart(), rodSite.getStart());
+        if ( recordStartsOnly )
+            allTracksHere = getTracksSpanningSite(allTracksHere, site);
 
         if ( DEBUG ) System.out.printf("rodLocusView.next() is at %s%n", site);
 
@@ -140,6 +322,36 @@ public class RodLocusView extends LocusView implements ReferenceOrderedView {
         return rodQueue.allElementsLTE(marker);
     }
 
+    /**
+     * Combines the lists of the tracks advanced to site with the records of the other tracks still spanning it
+     *
+     * @param advancedTracks the lists of the tracks that have a record starting at site
+     * @param site the locus being visited
+     * @return a list per track that has at least one record spanning site
+     */
+    private Collection<RODRecordList> getTracksSpanningSite(final Collection<RODRecordList> advancedTracks, final GenomeLoc site) {
+        for ( final RODRecordList list : advancedTracks )
+            lastListByTrack.put(list.getName(), list);
+
+        final List<RODRecordList> tracks = new LinkedList<RODRecordList>();
+        final Iterator<RODRecordList> it = lastListByTrack.values().iterator();
+        while ( it.hasNext() ) {
+            final RODRecordList list = it.next();
+            final List<GATKFeature> spanning = new ArrayList<GATKFeature>(list.size());
+            for ( final GATKFeature record : list )
+                if ( record.getLocation().getContig().equals(site.getContig()) && record.getLocation().getStop() >= site.getStart() )
+                    spanning.add(record);
+
+            if ( spanning.isEmpty() )
+                it.remove();
+            else if ( spanning.size() == list.size() )
+                tracks.add(list);
+            else
+                tracks.add(new RODRecordListImpl(list.getName(), spanning, site));
+        }
+        return tracks;
+    }
+
     /**
      * Returns the number of reference bases that have been skipped:
      *
@@ -617,6 +617,10 @@ public class SAMDataSource {
         // Set up merging to dynamically merge together multiple BAMs.
         Map<SamReader,CloseableIterator<SAMRecord>> iteratorMap = new HashMap<>();
 
+        // When downsampling before decoding, the records stay undecoded through the merge and downsampling,
+        // and only the ones that are kept are converted into fully decoded GATKSAMRecords.
+        final boolean downsampleBeforeDecoding = isDownsamplingBeforeDecoding(shard instanceof LocusShard);
+
         for(SAMReaderID id: getReaderIDs()) {
             CloseableIterator<SAMRecord> iterator;
 
@@ -653,7 +657,8 @@ public class SAMDataSource {
 
             // At the moment, too many other classes to change for GATKSAMRecordIterator converter.
             // Force the compiler to just let the conversion happen, since generics are erased anyway.
-            iterator = (CloseableIterator<SAMRecord>)(Object)new GATKSAMRecordIterator(iterator);
+            if ( ! downsampleBeforeDecoding )
+                iterator = (CloseableIterator<SAMRecord>)(Object)new GATKSAMRecordIterator(iterator);
             iterator = new MalformedBAMErrorReformatingIterator(id.getSamFile(), iterator);
             if(shard.getGenomeLocs().size() > 0)
                 iterator = new IntervalOverlapFilteringIterator(iterator,shard.getGenomeLocs());
@@ -662,6 +667,14 @@ public class SAMDataSource {
         }
 
         MergingSamRecordIterator mergingIterator = readers.createMergingIterator(iteratorMap);
+        GATKSAMIterator mergedIterator = new ReleasingIterator(readers, GATKSAMIteratorAdapter.adapt(mergingIterator));
+
+        // The downsamplers only look at the positions, flags and read groups of the records, so this leaves
+        // the bases, qualities and cigars of the records they discard unparsed (the tags are parsed when the read
+        // group is needed, i.e. when downsampling by sample).  The reads that are discarded here are never seen
+        // by the read filters, nor counted in the read metrics.
+        if ( downsampleBeforeDecoding )
+            mergedIterator = GATKSAMIteratorAdapter.adapt((CloseableIterator<SAMRecord>)(Object)new GATKSAMRecordIterator(applyDownsamplingIterator(mergedIterator)));
 
         // The readMetrics object being passed in should be that of this dataSource and NOT the shard: the dataSource's
         // metrics is intended to keep track of the reads seen (and hence passed to the CountingFilteringIterator when
@@ -669,7 +682,7 @@ public class SAMDataSource {
         return applyDecoratingIterators(readMetrics,
                 enableVerification,
                 readProperties.useOriginalBaseQualities(),
-                new ReleasingIterator(readers, GATKSAMIteratorAdapter.adapt(mergingIterator)),
+                mergedIterator,
                 readProperties.getValidationExclusionList().contains(ValidationExclusion.TYPE.NO_READ_ORDER_VERIFICATION),
                 readProperties.getSupplementalFilters(),
                 readProperties.getReadTransformers(),
@@ -743,7 +756,21 @@ public class SAMDataSource {
                                                         byte defaultBaseQualities,
                                                         boolean isLocusBasedTraversal ) {
 
-        // Always apply the ReadFormattingIterator before both ReadFilters and ReadTransformers. At a minimum,
+        // The leading read filters that only look at the fixed-length fields of the reads can be applied before
+        // anything else, so that the reads they throw away never have their cigars, bases, qualities or tags decoded.
+        // Only the leading ones, as the rest of the filters may depend on being applied in the order requested.
+        final List<ReadFilter> fixedLengthFieldFilters = new ArrayList<>();
+        final List<ReadFilter> remainingFilters = new ArrayList<>();
+        for ( final ReadFilter filter : supplementalFilters ) {
+            if ( remainingFilters.isEmpty() && filter.usesOnlyFixedLengthFields() )
+                fixedLengthFieldFilters.add(filter);
+            else
+                remainingFilters.add(filter);
+        }
+        if ( ! fixedLengthFieldFilters.isEmpty() )
+            wrappedIterator = GATKSAMIteratorAdapter.adapt(new CountingFilteringIterator(readMetrics,wrappedIterator,fixedLengthFieldFilters));
+
+        // Always apply the ReadFormattingIterator before the remaining ReadFilters and ReadTransformers. At a minimum,
         // this will consolidate the cigar strings into canonical form. This has to be done before the read
         // filtering, because not all read filters will behave correctly with things like zero-length cigar
         // elements. If useOriginalBaseQualities is true or defaultBaseQualities >= 0, this iterator will also
@@ -752,7 +779,7 @@ public class SAMDataSource {
 
         // Read Filters: these are applied BEFORE downsampling, so that we downsample within the set of reads
         // that actually survive filtering. Otherwise we could get much less coverage than requested.
-        wrappedIterator = GATKSAMIteratorAdapter.adapt(new CountingFilteringIterator(readMetrics,wrappedIterator,supplementalFilters));
+        wrappedIterator = GATKSAMIteratorAdapter.adapt(new CountingFilteringIterator(readMetrics,wrappedIterator,remainingFilters,fixedLengthFieldFilters.isEmpty()));
 
         // Downsampling:
 
@@ -760,13 +787,9 @@ public class SAMDataSource {
         // will be invoked downstream from us in LocusIteratorByState. This improves performance by avoiding
         // splitting/re-assembly of the read stream at this stage, and also allows for partial downsampling
         // of individual reads.
-        boolean assumeDownstreamLIBSDownsampling = isLocusBasedTraversal &&
-                                                   readProperties.getDownsamplingMethod().type == DownsampleType.BY_SAMPLE &&
-                                                   readProperties.getDownsamplingMethod().toCoverage != null;
-
         // Apply downsampling iterators here only in cases where we know that LocusIteratorByState won't be
-        // doing any downsampling downstream of us
-        if ( ! assumeDownstreamLIBSDownsampling ) {
+        // doing any downsampling downstream of us, and we haven't already downsampled while decoding
+        if ( ! isDownsamplingInLocusIterator(isLocusBasedTraversal) && ! isDownsamplingBeforeDecoding(isLocusBasedTraversal) ) {
             wrappedIterator = applyDownsamplingIterator(wrappedIterator);
         }
 
@@ -785,6 +808,38 @@ public class SAMDataSource {
         return wrappedIterator;
     }
 
+    /**
+     * Will LocusIteratorByState downsample the reads of this traversal?
+     *
+     * For locus traversals where we're downsampling to coverage by sample, assume that the downsamplers
+     * will be invoked downstream from us in LocusIteratorByState. This improves performance by avoiding
+     * splitting/re-assembly of the read stream at this stage, and also allows for partial downsampling
+     * of individual reads.
+     *
+     * @param isLocusBasedTraversal true if we're dealing with a read stream from a LocusShard
+     * @return true if the reads are downsampled by LocusIteratorByState rather than here
+     */
+    private boolean isDownsamplingInLocusIterator(final boolean isLocusBasedTraversal) {
+        return isLocusBasedTraversal &&
+               readProperties.getDownsamplingMethod().type == DownsampleType.BY_SAMPLE &&
+               readProperties.getDownsamplingMethod().toCoverage != null;
+    }
+
+    /**
+     * Are we downsampling the reads as they are decoded, before read filtering?
+     *
+     * Not when LocusIteratorByState does the downsampling: -dcov then keeps meaning the coverage it levels
+     * the loci to, rather than applying on top of a first round of positional downsampling.  The engine rejects
+     * -dsbd for those traversals, so it is never silently dropped here.
+     *
+     * @param isLocusBasedTraversal true if we're dealing with a read stream from a LocusShard
+     * @return true if the downsampling method asks for downsampling before decoding and it is done here
+     */
+    private boolean isDownsamplingBeforeDecoding(final boolean isLocusBasedTraversal) {
+        return readProperties.getDownsamplingMethod() != null && readProperties.getDownsamplingMethod().beforeDecoding &&
+               ! isDownsamplingInLocusIterator(isLocusBasedTraversal);
+    }
+
     protected GATKSAMIterator applyDownsamplingIterator( GATKSAMIterator wrappedIterator ) {
         if ( readProperties.getDownsamplingMethod() == null ||
              readProperties.getDownsamplingMethod().type == DownsampleType.NONE ) {
@@ -52,6 +52,7 @@ public class BAQReadTransformer extends ReadTransformer {
         this.cmode = engine.getArguments().BAQMode;
         this.qmode = mode.QualityMode();
         baqHMM = new BAQ(engine.getArguments().BAQGOP);
+        baqHMM.setHMMImplementation(engine.getArguments().BAQHMMImplementation);
 
         if ( qmode == BAQ.QualityMode.DONT_MODIFY )
             throw new ReviewedGATKException("BUG: shouldn't create BAQ transformer with quality mode DONT_MODIFY");
@@ -44,6 +44,7 @@ public class CountingFilteringIterator implements CloseableIterator<SAMRecord> {
     private final Iterator<SAMRecord> iterator;
     private final List<CountingReadFilter> filters = new ArrayList<>();
     private SAMRecord next = null;
+    private final boolean countReadsSeen;
 
     // wrapper around ReadFilters to count the number of filtered reads
     private final class CountingReadFilter extends ReadFilter {
@@ -71,9 +72,23 @@ public class CountingFilteringIterator implements CloseableIterator<SAMRecord> {
      * @param filters    the filter (which may be a FilterAggregator)
      */
     public CountingFilteringIterator(ReadMetrics metrics, Iterator<SAMRecord> iterator, Collection<ReadFilter> filters) {
+        this(metrics, iterator, filters, true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param metrics   metrics to accumulate on the nature of filtered reads.
+     * @param iterator  the backing iterator
+     * @param filters    the filter (which may be a FilterAggregator)
+     * @param countReadsSeen should the reads coming out of the backing iterator be counted as seen?  False when
+     *                       they have already been counted by an earlier CountingFilteringIterator.
+     */
+    public CountingFilteringIterator(ReadMetrics metrics, Iterator<SAMRecord> iterator, Collection<ReadFilter> filters, boolean countReadsSeen) {
         this.globalRuntimeMetrics = metrics;
         privateRuntimeMetrics = new ReadMetrics();
         this.iterator = iterator;
+        this.countReadsSeen = countReadsSeen;
         for ( final ReadFilter filter : filters )
             this.filters.add(new CountingReadFilter(filter));
         next = getNextRecord();
@@ -132,7 +147,8 @@ public class CountingFilteringIterator implements CloseableIterator<SAMRecord> {
 
             // update only the private copy of the metrics so that we don't need to worry about race conditions
             // that can arise when trying to update the global copy; it was agreed that this is the cleanest solution.
-            privateRuntimeMetrics.incrementNumReadsSeen();
+            if ( countReadsSeen )
+                privateRuntimeMetrics.incrementNumReadsSeen();
 
             boolean filtered = false;
             for(SamRecordFilter filter: filters) {
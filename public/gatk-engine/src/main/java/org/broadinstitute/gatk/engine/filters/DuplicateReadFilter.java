@@ -88,4 +88,9 @@ public class DuplicateReadFilter extends DisableableReadFilter {
     public boolean filterOut( final SAMRecord read ) {
         return read.getDuplicateReadFlag();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
@@ -40,4 +40,9 @@ public class FailsVendorQualityCheckFilter extends ReadFilter {
     public boolean filterOut( final SAMRecord read ) {
         return read.getReadFailsVendorQualityCheckFlag();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
@@ -59,4 +59,9 @@ public class MappingQualityFilter extends ReadFilter {
     public boolean filterOut(SAMRecord rec) {
         return (rec.getMappingQuality() < MIN_MAPPING_QUALTY_SCORE);
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
@@ -54,5 +54,9 @@ public class MappingQualityUnavailableFilter extends ReadFilter {
     public boolean filterOut(SAMRecord rec) {
         return (rec.getMappingQuality() == QualityUtils.MAPPING_QUALITY_UNAVAILABLE);
     }
-}
 
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
@@ -52,5 +52,9 @@ public class MappingQualityZeroFilter extends ReadFilter {
     public boolean filterOut(SAMRecord rec) {
         return (rec.getMappingQuality() == 0);
     }
-}
 
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
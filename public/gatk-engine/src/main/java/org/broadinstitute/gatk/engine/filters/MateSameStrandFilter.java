@@ -62,4 +62,9 @@ public class MateSameStrandFilter extends ReadFilter {
         return (! read.getReadPairedFlag() ) || read.getMateUnmappedFlag() || read.getDuplicateReadFlag() ||
                 read.getReadFailsVendorQualityCheckFlag() || (read.getMateNegativeStrandFlag() == read.getReadNegativeStrandFlag());
     }
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
 }
@@ -56,4 +56,9 @@ public class MaxInsertSizeFilter extends ReadFilter {
     public boolean filterOut(SAMRecord record) {
         return (record.getReadPairedFlag() && (record.getInferredInsertSize() > maxInsertSize || record.getInferredInsertSize() < -1*maxInsertSize));
     }
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
 }
@@ -53,4 +53,9 @@ public class NotPrimaryAlignmentFilter extends ReadFilter {
     public boolean filterOut( final SAMRecord read ) {
         return read.getNotPrimaryAlignmentFlag();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
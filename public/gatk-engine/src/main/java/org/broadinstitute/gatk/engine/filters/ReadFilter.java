@@ -44,6 +44,17 @@ public abstract class ReadFilter implements SamRecordFilter {
      */
     public void initialize(GenomeAnalysisEngine engine) {}
 
+    /**
+     * Does this filter only look at the fixed-length fields of a read (its flags, positions, mapping quality
+     * and insert size), and never at its cigar, bases, qualities or tags?  Such filters can be applied before
+     * the rest of the read has been decoded and formatted.
+     *
+     * @return true if this filter only looks at the fixed-length fields of a read
+     */
+    public boolean usesOnlyFixedLengthFields() {
+        return false;
+    }
+
 
     /**
      * Determines whether a pair of SAMRecord matches this filter
@@ -59,4 +59,8 @@ public class ReadStrandFilter extends ReadFilter {
         return read.getReadNegativeStrandFlag() != filterForward;
     }
 
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
 }
@@ -53,4 +53,9 @@ public class UnmappedReadFilter extends ReadFilter {
     public boolean filterOut( final SAMRecord read ) {
         return read.getReadUnmappedFlag() || read.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean usesOnlyFixedLengthFields() {
+        return true;
+    }
+}
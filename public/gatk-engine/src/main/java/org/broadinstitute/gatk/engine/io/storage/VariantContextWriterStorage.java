@@ -31,6 +31,8 @@ import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.Feature;
 import htsjdk.tribble.FeatureCodec;
 import org.broadinstitute.gatk.engine.io.stubs.VariantContextWriterStub;
+import org.broadinstitute.gatk.utils.codecs.gvcfstore.GVCFStoreCodec;
+import org.broadinstitute.gatk.utils.codecs.gvcfstore.GVCFStoreWriter;
 import org.broadinstitute.gatk.utils.refdata.tracks.FeatureManager;
 import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
 import org.broadinstitute.gatk.utils.exceptions.UserException;
@@ -131,6 +133,10 @@ public class VariantContextWriterStorage implements Storage<VariantContextWriter
             throw new UserException.CouldNotCreateOutputFile(file, "Unable to open target output stream", ex);
         }
 
+        // GVCF stores are indexed when they are first read, like any other uncompressed file without an index
+        if ( GVCFStoreCodec.isStoreFile(file) )
+            return new GVCFStoreWriter(file, stream, stub.getMasterSequenceDictionary());
+
         EnumSet<Options> options = stub.getWriterOptions(indexOnTheFly);
         VariantContextWriter writer = VariantContextWriterFactory.create(file, this.stream, stub.getMasterSequenceDictionary(), stub.getIndexCreator(), options);
 
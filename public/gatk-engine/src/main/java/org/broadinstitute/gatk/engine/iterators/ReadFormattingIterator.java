@@ -29,6 +29,7 @@ import htsjdk.samtools.SAMRecord;
 import org.apache.log4j.Logger;
 import org.broadinstitute.gatk.utils.iterators.GATKSAMIterator;
 import org.broadinstitute.gatk.utils.sam.AlignmentUtils;
+import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 
 /**
  * An iterator which does post-processing of a read, including potentially wrapping
@@ -106,6 +107,11 @@ public class ReadFormattingIterator implements GATKSAMIterator {
     public SAMRecord next() {
         SAMRecord rec = wrappedIterator.next();
 
+        // The reads that get here have passed the filters on fixed-length fields, and are mostly kept: decode them
+        // fully now, so that they stop holding on to the BAM records they were created from
+        if ( rec instanceof GATKSAMRecord )
+            ((GATKSAMRecord)rec).decodeAll();
+
         // Always consolidate the cigar string into canonical form, collapsing zero-length / repeated cigar elements.
         // Downstream code (like LocusIteratorByState) cannot necessarily handle non-consolidated cigar strings.
         rec.setCigar(AlignmentUtils.consolidateCigar(rec.getCigar()));
@@ -25,13 +25,19 @@
 
 package org.broadinstitute.gatk.engine.traversals;
 
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
 import org.broadinstitute.gatk.engine.WalkerManager;
 import org.broadinstitute.gatk.utils.contexts.AlignmentContext;
 import org.broadinstitute.gatk.utils.contexts.ReferenceContext;
 import org.broadinstitute.gatk.engine.datasources.providers.*;
 import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
+import org.broadinstitute.gatk.utils.refdata.utils.GATKFeature;
+import org.broadinstitute.gatk.utils.refdata.utils.RODRecordList;
 import org.broadinstitute.gatk.engine.walkers.DataSource;
 import org.broadinstitute.gatk.engine.walkers.LocusWalker;
+import org.broadinstitute.gatk.engine.walkers.RodWalker;
 import org.broadinstitute.gatk.engine.walkers.Walker;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.nanoScheduler.NSMapFunction;
@@ -126,7 +132,7 @@ public class TraverseLociNano<M,T> extends TraversalEngine<M,T,LocusWalker<M,T>,
         else if( dataSource == DataSource.REFERENCE ) //|| ! GenomeAnalysisEngine.instance.getArguments().enableRodWalkers )
             return new AllLocusView(dataProvider);
         else if( dataSource == DataSource.REFERENCE_ORDERED_DATA )
-            return new RodLocusView(dataProvider);
+            return walker instanceof RodWalker ? new RodLocusView(dataProvider, (RodWalker<?, ?>)walker) : new RodLocusView(dataProvider);
         else
             throw new UnsupportedOperationException("Unsupported traversal type: " + dataSource);
     }
@@ -140,7 +146,9 @@ public class TraverseLociNano<M,T> extends TraversalEngine<M,T,LocusWalker<M,T>,
         final TraverseLociMap myMap = new TraverseLociMap(walker);
         final TraverseLociReduce myReduce = new TraverseLociReduce(walker);
 
-        final MapDataIterator inputIterator = new MapDataIterator(locusView, referenceView, referenceOrderedDataView);
+        final boolean decodeGenotypes = nanoScheduler.getnThreads() > 1
+                && walker instanceof RodWalker && ((RodWalker<M, T>) walker).decodeGenotypesBeforeMap();
+        final MapDataIterator inputIterator = new MapDataIterator(locusView, referenceView, referenceOrderedDataView, decodeGenotypes);
         final T result = nanoScheduler.execute(inputIterator, myMap, sum, myReduce);
 
         return new TraverseResults<T>(inputIterator.numIterations, result);
@@ -154,12 +162,14 @@ public class TraverseLociNano<M,T> extends TraversalEngine<M,T,LocusWalker<M,T>,
         final LocusView locusView;
         final LocusReferenceView referenceView;
         final ReferenceOrderedView referenceOrderedDataView;
+        final boolean decodeGenotypes;
         int numIterations = 0;
 
-        private MapDataIterator(LocusView locusView, LocusReferenceView referenceView, ReferenceOrderedView referenceOrderedDataView) {
+        private MapDataIterator(LocusView locusView, LocusReferenceView referenceView, ReferenceOrderedView referenceOrderedDataView, boolean decodeGenotypes) {
             this.locusView = locusView;
             this.referenceView = referenceView;
             this.referenceOrderedDataView = referenceOrderedDataView;
+            this.decodeGenotypes = decodeGenotypes;
         }
 
         @Override
@@ -180,6 +190,8 @@ public class TraverseLociNano<M,T> extends TraversalEngine<M,T,LocusWalker<M,T>,
 
             // Iterate forward to get all reference ordered data covering this location
             final RefMetaDataTracker tracker = referenceOrderedDataView.getReferenceOrderedDataAtLocus(location);
+            if ( decodeGenotypes )
+                decodeGenotypes(tracker);
 
             numIterations++;
             return new MapData(locus, refContext,  tracker);
@@ -191,6 +203,29 @@ public class TraverseLociNano<M,T> extends TraversalEngine<M,T,LocusWalker<M,T>,
         }
     }
 
+    /**
+     * Fully decodes the genotypes of the variants in the tracker, on the input thread.  A record spanning several
+     * loci is handed to the map calls of all of them, which may run at the same time on different threads, and
+     * neither lazy genotype parsing (whose codec shares its parsing buffers among all of its records) nor the lazily
+     * built sample indexes of the genotypes are thread-safe.  Decoded here, the records are only read from then on.
+     *
+     * @param tracker the tracker about to be handed to a map call
+     */
+    private static void decodeGenotypes(final RefMetaDataTracker tracker) {
+        for ( final RODRecordList track : tracker.getBoundRodTracks() ) {
+            for ( final GATKFeature feature : track ) {
+                final Object record = feature.getUnderlyingObject();
+                if ( ! (record instanceof VariantContext) )
+                    continue;
+                final GenotypesContext genotypes = ((VariantContext) record).getGenotypes();
+                if ( genotypes instanceof LazyGenotypesContext )
+                    ((LazyGenotypesContext) genotypes).decode();
+                genotypes.getSampleNames();
+                genotypes.getSampleNamesOrderedByName();
+            }
+        }
+    }
+
     @Override
     public void shutdown() {
         nanoScheduler.shutdown();
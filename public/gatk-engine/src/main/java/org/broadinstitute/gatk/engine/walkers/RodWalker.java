@@ -25,6 +25,8 @@
 
 package org.broadinstitute.gatk.engine.walkers;
 
+import org.broadinstitute.gatk.utils.GenomeLoc;
+
 /**
  * Created by IntelliJ IDEA.
  * User: mdepristo
@@ -36,4 +38,42 @@ package org.broadinstitute.gatk.engine.walkers;
 @Requires({DataSource.REFERENCE, DataSource.REFERENCE_ORDERED_DATA})
 @Allows({DataSource.REFERENCE, DataSource.REFERENCE_ORDERED_DATA})
 public abstract class RodWalker<MapType, ReduceType> extends LocusWalker<MapType, ReduceType> {
+    /**
+     * Should the traversal visit only the loci at which at least one record starts, rather than every locus
+     * covered by a record?  The tracker at each visited locus still holds all of the records spanning it.
+     * Walkers that follow the extent of the records themselves can override this so that they are not
+     * called at every base of long records such as gVCF reference blocks.  In that mode the first and last loci
+     * of each shard are visited as well whenever records span them, so that the walker can tell where a shard
+     * starts and bring its state up to where the shard ends.
+     *
+     * @return false by default, so that every covered locus is visited
+     */
+    public boolean visitRecordStartsOnly() {
+        return false;
+    }
+
+    /**
+     * When visiting record starts only, lets the walker skip loci it has no use for.  Before each locus at which a
+     * record starts is visited, the walker is asked where to go instead; the tracks are then sought forward to the
+     * returned locus, without reading any of the records in between, and it is visited if a record starts there.
+     * The loci visited at shard boundaries (see visitRecordStartsOnly) are not subject to this.
+     *
+     * @param loc the next locus at which a record starts
+     * @return loc itself to visit it, a later locus on the same contig to skip to, or null to skip the rest of the contig
+     */
+    public GenomeLoc nextLocusToVisit(final GenomeLoc loc) {
+        return loc;
+    }
+
+    /**
+     * Should the genotypes of the variant records be fully decoded on the input thread before the records are handed
+     * to map?  With -nct, a record spanning several loci is seen by the map calls of all of them, possibly at the same
+     * time, and lazy genotype decoding is not thread-safe.  Walkers whose map calls read the genotypes of such records
+     * should override this; for the others the decoding would only be wasted on the input thread.
+     *
+     * @return false by default; only consulted when map runs on several threads
+     */
+    public boolean decodeGenotypesBeforeMap() {
+        return false;
+    }
 }
\ No newline at end of file
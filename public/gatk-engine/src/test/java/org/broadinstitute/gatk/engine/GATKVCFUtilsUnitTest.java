@@ -156,4 +156,12 @@ public class GATKVCFUtilsUnitTest extends BaseTest {
             Assert.assertEquals(dimension, spec.expectedDimension, "Wrong dimension");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIsGVCFFile() {
+        Assert.assertTrue(GATKVCFUtils.isGVCFFile(new File("sample.g.vcf")));
+        Assert.assertTrue(GATKVCFUtils.isGVCFFile(new File("sample.g.bcf")));
+        Assert.assertFalse(GATKVCFUtils.isGVCFFile(new File("sample.vcf")));
+        Assert.assertFalse(GATKVCFUtils.isGVCFFile(new File("sample.bcf")));
+    }
+}
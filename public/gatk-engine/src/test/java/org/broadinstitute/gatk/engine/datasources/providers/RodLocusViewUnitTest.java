@@ -0,0 +1,151 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.engine.datasources.providers;
+
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.gatk.engine.datasources.reads.MockLocusShard;
+import org.broadinstitute.gatk.engine.datasources.reads.Shard;
+import org.broadinstitute.gatk.engine.datasources.rmd.ReferenceOrderedDataSource;
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.GenomeLocParser;
+import org.broadinstitute.gatk.utils.commandline.RodBinding;
+import org.broadinstitute.gatk.utils.commandline.Tags;
+import org.broadinstitute.gatk.utils.fasta.CachingIndexedFastaSequenceFile;
+import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
+import org.broadinstitute.gatk.utils.refdata.tracks.RMDTrackBuilder;
+import org.broadinstitute.gatk.utils.refdata.utils.RMDTriplet;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test the loci visited by the RodLocusView, in particular the shard boundaries visited when only record starts are.
+ */
+public class RodLocusViewUnitTest extends BaseTest {
+    private static IndexedFastaSequenceFile seq;
+    private GenomeLocParser genomeLocParser;
+    private RMDTrackBuilder builder;
+
+    // NA1: blocks at 1001-1010 and 1011-1020, a deletion at 1021-1023 and a block at 1024-1040
+    private final RodBinding<VariantContext> NA1 = new RodBinding<VariantContext>(VariantContext.class, "NA1");
+    // NA2: blocks at 1001-1005, 1006-1022 and 1023-1040
+    private final RodBinding<VariantContext> NA2 = new RodBinding<VariantContext>(VariantContext.class, "NA2");
+
+    @BeforeClass
+    public void init() throws FileNotFoundException {
+        seq = new CachingIndexedFastaSequenceFile(new File(exampleFASTA));
+        genomeLocParser = new GenomeLocParser(seq);
+        // disable auto-index creation/locking in the RMDTrackBuilder for tests
+        builder = new RMDTrackBuilder(seq.getSequenceDictionary(),genomeLocParser,null,true,null);
+    }
+
+    private ReferenceOrderedDataSource createDataSource(final String name, final String fileName) {
+        final RMDTriplet triplet = new RMDTriplet(name,"VCF",publicTestDir + fileName,RMDTriplet.RMDStorageType.FILE,new Tags());
+        return new ReferenceOrderedDataSource(triplet,builder,seq.getSequenceDictionary(),genomeLocParser,false);
+    }
+
+    private RodLocusView createView(final int start, final int stop, final boolean recordStartsOnly) {
+        final Shard shard = new MockLocusShard(genomeLocParser,Collections.singletonList(genomeLocParser.createGenomeLoc("chr1",start,stop)));
+        final LocusShardDataProvider provider = new LocusShardDataProvider(shard, null, genomeLocParser, shard.getGenomeLocs().get(0), null, seq,
+                Arrays.asList(createDataSource("NA1","combineGVCFsBlocks.1.g.vcf"),createDataSource("NA2","combineGVCFsBlocks.2.g.vcf")));
+        return new RodLocusView(provider, recordStartsOnly);
+    }
+
+    private static List<Integer> visitAll(final RodLocusView view) {
+        final List<Integer> visited = new ArrayList<Integer>();
+        while ( view.hasNext() )
+            visited.add(view.next().getLocation().getStart());
+        return visited;
+    }
+
+    @DataProvider(name = "RecordStartsOnly")
+    public Object[][] makeRecordStartsOnlyData() {
+        return new Object[][]{
+                // records start at the first locus of the shard, which is not visited twice; they all end at its last
+                {1001, 1040, Arrays.asList(1001, 1006, 1011, 1021, 1023, 1024, 1040)},
+                // records span the first and last loci of the shard
+                {1010, 1030, Arrays.asList(1010, 1011, 1021, 1023, 1024, 1030)},
+                // the last locus of the shard is also a record start
+                {1015, 1024, Arrays.asList(1015, 1021, 1023, 1024)},
+                // records span only the first locus of the shard
+                {1035, 1045, Arrays.asList(1035)},
+                // records span only the last locus of the shard
+                {990, 1002, Arrays.asList(1001, 1002)},
+                // no records in the shard at all
+                {1041, 1050, Collections.<Integer>emptyList()}
+        };
+    }
+
+    @Test(dataProvider = "RecordStartsOnly")
+    public void testRecordStartsAndShardBoundaries(final int start, final int stop, final List<Integer> expected) {
+        Assert.assertEquals(visitAll(createView(start, stop, true)), expected);
+    }
+
+    @Test
+    public void testEveryCoveredLocusByDefault() {
+        final List<Integer> expected = new ArrayList<Integer>();
+        for ( int i = 1010; i <= 1030; i++ )
+            expected.add(i);
+        Assert.assertEquals(visitAll(createView(1010, 1030, false)), expected);
+    }
+
+    @Test
+    public void testTrackerHoldsRecordsSpanningShardBoundaries() {
+        final RodLocusView view = createView(1010, 1030, true);
+
+        // the first locus of the shard: both tracks have a block spanning it, though neither starts there
+        GenomeLoc loc = view.next().getLocation();
+        Assert.assertEquals(loc.getStart(), 1010);
+        RefMetaDataTracker tracker = view.getReferenceOrderedDataAtLocus(loc);
+        Assert.assertEquals(tracker.getFirstValue(NA1).getStart(), 1001);
+        Assert.assertEquals(tracker.getFirstValue(NA2).getStart(), 1006);
+
+        // a record start of NA1, at which the block of NA2 is still there although its track was not advanced
+        loc = view.next().getLocation();
+        Assert.assertEquals(loc.getStart(), 1011);
+        tracker = view.getReferenceOrderedDataAtLocus(loc);
+        Assert.assertEquals(tracker.getFirstValue(NA1).getStart(), 1011);
+        Assert.assertEquals(tracker.getFirstValue(NA2).getStart(), 1006);
+
+        // the last locus of the shard holds the last blocks of both tracks
+        while ( view.hasNext() )
+            loc = view.next().getLocation();
+        Assert.assertEquals(loc.getStart(), 1030);
+        tracker = view.getReferenceOrderedDataAtLocus(loc);
+        Assert.assertEquals(tracker.getFirstValue(NA1).getStart(), 1024);
+        Assert.assertEquals(tracker.getFirstValue(NA2).getStart(), 1023);
+    }
+}
@@ -27,9 +27,15 @@ package org.broadinstitute.gatk.engine.downsampling;
 
 import org.broadinstitute.gatk.engine.walkers.WalkerTest;
 import org.broadinstitute.gatk.utils.downsampling.DownsamplingMethod;
+import org.apache.commons.io.FileUtils;
 import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
 public class DownsamplingIntegrationTest extends WalkerTest {
 
     @Test
@@ -42,4 +48,51 @@ public class DownsamplingIntegrationTest extends WalkerTest {
         );
         executeTest("testDetectLowDcovValueWithLocusTraversal", spec);
     }
+
+    @Test
+    public void testDownsampleBeforeDecodingRejectedWithLocusTraversalDcov() {
+        final WalkerTest.WalkerTestSpec spec = new WalkerTest.WalkerTestSpec(
+            "-T TestCountLociWalker -R " + publicTestDir + "exampleFASTA.fasta -I " + publicTestDir + "exampleBAM.bam -o %s " +
+            "-dcov " + DownsamplingMethod.MINIMUM_SAFE_COVERAGE_TARGET_FOR_LOCUS_BASED_TRAVERSALS + " -dsbd",
+            1,
+            UserException.BadArgumentValue.class
+        );
+        executeTest("testDownsampleBeforeDecodingRejectedWithLocusTraversalDcov", spec);
+    }
+
+    @Test
+    public void testDownsampleBeforeDecodingWithLocusTraversalFraction() {
+        final WalkerTest.WalkerTestSpec spec = new WalkerTest.WalkerTestSpec(
+            "-T TestCountLociWalker -R " + publicTestDir + "exampleFASTA.fasta -I " + publicTestDir + "exampleBAM.bam -o %s " +
+            "-dfrac 0.5 -dsbd",
+            1,
+            Arrays.asList("")
+        );
+        executeTest("testDownsampleBeforeDecodingWithLocusTraversalFraction", spec);
+    }
+
+    @Test
+    public void testDownsampleBeforeDecodingKeepingAllReads() {
+        final String args = "-T TestCountReadsWalker -R " + publicTestDir + "exampleFASTA.fasta -I " + publicTestDir + "exampleBAM.bam -o %s";
+        final File withoutDownsampling = executeTest("testDownsampleBeforeDecodingKeepingAllReads without downsampling",
+                new WalkerTest.WalkerTestSpec(args, 1, Arrays.asList(""))).getFirst().get(0);
+        final File beforeDecoding = executeTest("testDownsampleBeforeDecodingKeepingAllReads before decoding",
+                new WalkerTest.WalkerTestSpec(args + " -dfrac 1.0 -dsbd", 1, Arrays.asList(""))).getFirst().get(0);
+
+        Assert.assertEquals(getMd5DB().calculateFileMD5(beforeDecoding), getMd5DB().calculateFileMD5(withoutDownsampling));
+    }
+
+    @Test
+    public void testDownsampleBeforeDecodingToCoverage() throws IOException {
+        final String args = "-T TestCountReadsWalker -R " + publicTestDir + "exampleFASTA.fasta -I " + publicTestDir + "exampleBAM.bam -o %s";
+        final File withoutDownsampling = executeTest("testDownsampleBeforeDecodingToCoverage without downsampling",
+                new WalkerTest.WalkerTestSpec(args, 1, Arrays.asList(""))).getFirst().get(0);
+        final File beforeDecoding = executeTest("testDownsampleBeforeDecodingToCoverage before decoding",
+                new WalkerTest.WalkerTestSpec(args + " -dcov 1 -dsbd", 1, Arrays.asList(""))).getFirst().get(0);
+
+        final long nReads = Long.parseLong(FileUtils.readFileToString(withoutDownsampling).trim());
+        final long nDownsampledReads = Long.parseLong(FileUtils.readFileToString(beforeDecoding).trim());
+        Assert.assertTrue(nDownsampledReads > 0 && nDownsampledReads < nReads,
+                "downsampling " + nReads + " reads to coverage 1 before decoding kept " + nDownsampledReads);
+    }
 }
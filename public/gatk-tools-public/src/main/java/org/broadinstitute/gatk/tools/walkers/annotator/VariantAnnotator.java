@@ -149,6 +149,16 @@ public class VariantAnnotator extends RodWalker<Integer, Integer> implements Ann
     @Argument(fullName="excludeAnnotation", shortName="XA", doc="One or more specific annotations to exclude", required=false)
     protected List<String> annotationsToExclude = new ArrayList<>();
 
+    /**
+     * Evaluate the annotations of each variant concurrently, with this many threads. This pays off at sites with
+     * many samples or deep coverage. Only annotations that keep no state between variants and draw nothing from the
+     * random number generator are evaluated concurrently; the others (among them the rank sum tests, unless dithering
+     * is disabled, and QualByDepth) are still evaluated one after another, so the output is the same as with one thread.
+     */
+    @Advanced
+    @Argument(fullName="annotation_threads", shortName="annThreads", doc="Number of threads with which to evaluate the annotations of each variant", required=false, minValue=1)
+    protected int annotationThreads = 1;
+
     /**
      * If specified, all available annotations in the group will be applied. See the VariantAnnotator -list argument
      * to view available groups. Keep in mind that RODRequiringAnnotations are not intended to be used as a group,
@@ -225,6 +235,7 @@ public class VariantAnnotator extends RodWalker<Integer, Integer> implements Ann
         else
             engine = new VariantAnnotatorEngine(annotationGroupsToUse, annotationsToUse, annotationsToExclude, this, getToolkit());
         engine.initializeExpressions(expressionsToUse);
+        engine.setAnnotationThreads(annotationThreads);
 
         // setup the header fields
         // note that if any of the definitions conflict with our new ones, then we want to overwrite the old ones
@@ -339,6 +350,7 @@ public class VariantAnnotator extends RodWalker<Integer, Integer> implements Ann
      * @param result  the number of loci seen.
      */
     public void onTraversalDone(Integer result) {
+        engine.close();
         logger.info("Processed " + result + " loci.\n");
     }
 }
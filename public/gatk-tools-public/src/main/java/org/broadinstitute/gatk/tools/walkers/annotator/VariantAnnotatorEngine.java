@@ -38,12 +38,15 @@ import org.broadinstitute.gatk.utils.refdata.RefMetaDataTracker;
 import org.broadinstitute.gatk.tools.walkers.annotator.interfaces.*;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.commandline.RodBinding;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
 import org.broadinstitute.gatk.utils.exceptions.UserException;
 import org.broadinstitute.gatk.utils.genotyper.PerReadAlleleLikelihoodMap;
 import org.broadinstitute.gatk.utils.genotyper.ReadLikelihoods;
+import org.broadinstitute.gatk.utils.threading.NamedThreadFactory;
 import org.broadinstitute.gatk.utils.variant.GATKVariantContextUtils;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 
 public class VariantAnnotatorEngine {
@@ -60,6 +63,10 @@ public class VariantAnnotatorEngine {
     // Map of info field name to info field
     private final Map<String, VCFInfoHeaderLine> hInfoMap = new HashMap<>();
 
+    // evaluates the annotations of each variant concurrently; null if they are evaluated one after another
+    private ExecutorService annotationExecutor = null;
+    private int nAnnotationThreads = 1;
+
     protected static class VAExpression {
 
         public String fullName, fieldName;
@@ -101,6 +108,55 @@ public class VariantAnnotatorEngine {
         initializeDBs(toolkit);
     }
 
+    /**
+     * Evaluate the annotations of each variant concurrently, with nThreads threads.
+     *
+     * Only the annotations that declare themselves thread-safe (see VariantAnnotatorAnnotation.isThreadSafe) are
+     * evaluated on the annotation threads; the info field annotations are evaluated independently of each other,
+     * and the genotype annotations for blocks of samples independently of each other, provided that all of them
+     * are thread-safe.  All other annotations are evaluated one after another, in the requested order, on the
+     * calling thread, so the resulting annotations are the same as when nThreads is 1.  Call close() once done.
+     *
+     * Independently of this, the engine itself may be shared by several calling threads; annotations that are not
+     * thread-safe are then evaluated by one of them at a time.
+     *
+     * @param nThreads the number of threads to use; 1 evaluates the annotations one after another
+     */
+    public void setAnnotationThreads(final int nThreads) {
+        if ( nThreads < 1 ) throw new IllegalArgumentException("nThreads must be >= 1 but got " + nThreads);
+
+        if ( annotationExecutor != null )
+            annotationExecutor.shutdown();
+
+        nAnnotationThreads = nThreads;
+        if ( nThreads == 1 ) {
+            annotationExecutor = null;
+        } else {
+            // daemon threads, so that a walker that fails before calling close() doesn't keep the JVM alive
+            final ThreadFactory namedThreadFactory = new NamedThreadFactory("annotation-thread-%d");
+            annotationExecutor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = namedThreadFactory.newThread(r);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Shut down the threads used to evaluate the annotations, if any.  The engine evaluates the annotations one
+     * after another from then on.
+     */
+    public void close() {
+        if ( annotationExecutor != null ) {
+            annotationExecutor.shutdown();
+            annotationExecutor = null;
+        }
+        nAnnotationThreads = 1;
+    }
+
     public void makeHeaderInfoMap(final Set<VCFHeaderLine> hInfo ){
         for ( VCFHeaderLine hLine : hInfo ) {
             if ( hLine instanceof VCFInfoHeaderLine )
@@ -203,10 +259,26 @@ public class VariantAnnotatorEngine {
         annotateExpressions(tracker, ref.getLocus(), vc, infoAnnotations);
 
         // go through all the requested info annotationTypes
-        for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
-            final Map<String, Object> annotationsFromCurrentType = annotationType.annotate(tracker, walker, ref, stratifiedContexts, vc, perReadAlleleLikelihoodMap);
-            if ( annotationsFromCurrentType != null )
-                infoAnnotations.putAll(annotationsFromCurrentType);
+        if ( annotationExecutor == null ) {
+            for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
+                final Map<String, Object> annotationsFromCurrentType = annotate(annotationType, tracker, ref, stratifiedContexts, vc, perReadAlleleLikelihoodMap);
+                if ( annotationsFromCurrentType != null )
+                    infoAnnotations.putAll(annotationsFromCurrentType);
+            }
+        } else {
+            final List<Callable<Map<String, Object>>> annotationCalls = new ArrayList<>(requestedInfoAnnotations.size());
+            for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
+                annotationCalls.add(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() {
+                        return annotate(annotationType, tracker, ref, stratifiedContexts, vc, perReadAlleleLikelihoodMap);
+                    }
+                });
+            }
+            for ( final Map<String, Object> annotationsFromCurrentType : invokeConcurrently(requestedInfoAnnotations, annotationCalls) ) {
+                if ( annotationsFromCurrentType != null )
+                    infoAnnotations.putAll(annotationsFromCurrentType);
+            }
         }
 
         // generate a new annotated VC
@@ -237,13 +309,34 @@ public class VariantAnnotatorEngine {
         final Map<String, Object> infoAnnotations = new LinkedHashMap<>(vc.getAttributes());
 
         // go through all the requested info annotationTypes
-        for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
-            if ( !(annotationType instanceof ActiveRegionBasedAnnotation) )
-                continue;
+        if ( annotationExecutor == null ) {
+            for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
+                if ( !(annotationType instanceof ActiveRegionBasedAnnotation) )
+                    continue;
 
-            final Map<String, Object> annotationsFromCurrentType = annotationType.annotate(referenceContext, perReadAlleleLikelihoodMap, vc);
-            if ( annotationsFromCurrentType != null ) {
-                infoAnnotations.putAll(annotationsFromCurrentType);
+                final Map<String, Object> annotationsFromCurrentType = annotateForActiveRegion(annotationType, referenceContext, perReadAlleleLikelihoodMap, vc);
+                if ( annotationsFromCurrentType != null ) {
+                    infoAnnotations.putAll(annotationsFromCurrentType);
+                }
+            }
+        } else {
+            final List<InfoFieldAnnotation> activeRegionAnnotations = new ArrayList<>(requestedInfoAnnotations.size());
+            final List<Callable<Map<String, Object>>> annotationCalls = new ArrayList<>(requestedInfoAnnotations.size());
+            for ( final InfoFieldAnnotation annotationType : requestedInfoAnnotations ) {
+                if ( !(annotationType instanceof ActiveRegionBasedAnnotation) )
+                    continue;
+
+                activeRegionAnnotations.add(annotationType);
+                annotationCalls.add(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() {
+                        return annotateForActiveRegion(annotationType, referenceContext, perReadAlleleLikelihoodMap, vc);
+                    }
+                });
+            }
+            for ( final Map<String, Object> annotationsFromCurrentType : invokeConcurrently(activeRegionAnnotations, annotationCalls) ) {
+                if ( annotationsFromCurrentType != null )
+                    infoAnnotations.putAll(annotationsFromCurrentType);
             }
         }
 
@@ -257,6 +350,59 @@ public class VariantAnnotatorEngine {
         return annotateDBs(tracker, annotated);
     }
 
+    /**
+     * Evaluate the calls of thread-safe annotations with the annotation executor, and the others one after another
+     * on this thread while they run, returning their results in the order of the calls
+     *
+     * @param annotations the annotations evaluated by the calls
+     * @param calls the calls to evaluate, one per annotation
+     * @return a non-null list of the results of the calls
+     */
+    private <T> List<T> invokeConcurrently(final List<? extends VariantAnnotatorAnnotation> annotations, final List<Callable<T>> calls) {
+        final boolean[] threadSafe = new boolean[calls.size()];
+        for ( int i = 0; i < calls.size(); i++ )
+            threadSafe[i] = annotations.get(i).isThreadSafe();
+        return invokeConcurrently(calls, threadSafe);
+    }
+
+    /**
+     * Evaluate the thread-safe calls with the annotation executor, and the others one after another on this thread
+     * while they run, returning their results in the order of the calls
+     *
+     * @param calls the calls to evaluate
+     * @param threadSafe whether each of the calls may be evaluated on an annotation thread
+     * @return a non-null list of the results of the calls
+     */
+    private <T> List<T> invokeConcurrently(final List<Callable<T>> calls, final boolean[] threadSafe) {
+        final List<Future<T>> futures = new ArrayList<>(calls.size());
+        for ( int i = 0; i < calls.size(); i++ )
+            futures.add(threadSafe[i] ? annotationExecutor.submit(calls.get(i)) : null);
+
+        final List<T> results = new ArrayList<>(calls.size());
+        try {
+            for ( int i = 0; i < calls.size(); i++ )
+                results.add(futures.get(i) == null ? calls.get(i).call() : null);
+            for ( int i = 0; i < calls.size(); i++ ) {
+                if ( futures.get(i) != null )
+                    results.set(i, futures.get(i).get());
+            }
+        } catch ( final ExecutionException e ) {
+            // rethrow exceptions such as UserExceptions as they are
+            if ( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException)e.getCause();
+            if ( e.getCause() instanceof Error )
+                throw (Error)e.getCause();
+            throw new ReviewedGATKException("Failed to evaluate the annotations", e.getCause());
+        } catch ( final InterruptedException e ) {
+            throw new ReviewedGATKException("Interrupted while evaluating the annotations", e);
+        } catch ( final RuntimeException e ) {
+            throw e;
+        } catch ( final Exception e ) {
+            throw new ReviewedGATKException("Failed to evaluate the annotations", e);
+        }
+        return results;
+    }
+
     /**
      * Annotate the ID field and other DBs for the given Variant Context
      *
@@ -406,22 +552,98 @@ public class VariantAnnotatorEngine {
             return vc.getGenotypes();
 
         final GenotypesContext genotypes = GenotypesContext.create(vc.getNSamples());
-        for ( final Genotype genotype : vc.getGenotypes() ) {
-            AlignmentContext context = null;
-            PerReadAlleleLikelihoodMap perReadAlleleLikelihoodMap = null;
-            if (stratifiedContexts != null)
-                context = stratifiedContexts.get(genotype.getSampleName());
-            if (stratifiedPerReadAlleleLikelihoodMap != null)
-                perReadAlleleLikelihoodMap = stratifiedPerReadAlleleLikelihoodMap.get(genotype.getSampleName());
+        if ( annotationExecutor == null || vc.getNSamples() < 2 || ! allThreadSafe(requestedGenotypeAnnotations) ) {
+            for ( final Genotype genotype : vc.getGenotypes() )
+                genotypes.add(annotateGenotype(tracker, ref, stratifiedContexts, vc, stratifiedPerReadAlleleLikelihoodMap, genotype));
+            return genotypes;
+        }
+
+        // annotate the genotypes in one block of samples per thread
+        final List<Genotype> genotypesToAnnotate = new ArrayList<>(vc.getGenotypes());
+        final int blockSize = (genotypesToAnnotate.size() + nAnnotationThreads - 1) / nAnnotationThreads;
+        final List<Callable<List<Genotype>>> annotationCalls = new ArrayList<>(nAnnotationThreads);
+        for ( int blockStart = 0; blockStart < genotypesToAnnotate.size(); blockStart += blockSize ) {
+            final List<Genotype> block = genotypesToAnnotate.subList(blockStart, Math.min(blockStart + blockSize, genotypesToAnnotate.size()));
+            annotationCalls.add(new Callable<List<Genotype>>() {
+                @Override
+                public List<Genotype> call() {
+                    final List<Genotype> annotatedBlock = new ArrayList<>(block.size());
+                    for ( final Genotype genotype : block )
+                        annotatedBlock.add(annotateGenotype(tracker, ref, stratifiedContexts, vc, stratifiedPerReadAlleleLikelihoodMap, genotype));
+                    return annotatedBlock;
+                }
+            });
+        }
+        final boolean[] threadSafe = new boolean[annotationCalls.size()];
+        Arrays.fill(threadSafe, true);
+        for ( final List<Genotype> annotatedBlock : invokeConcurrently(annotationCalls, threadSafe) )
+            genotypes.addAll(annotatedBlock);
 
+        return genotypes;
+    }
 
-            final GenotypeBuilder gb = new GenotypeBuilder(genotype);
-            for ( final GenotypeAnnotation annotation : requestedGenotypeAnnotations ) {
+    private static boolean allThreadSafe(final List<? extends VariantAnnotatorAnnotation> annotations) {
+        for ( final VariantAnnotatorAnnotation annotation : annotations ) {
+            if ( ! annotation.isThreadSafe() )
+                return false;
+        }
+        return true;
+    }
+
+    private Genotype annotateGenotype(final RefMetaDataTracker tracker,
+                                      final ReferenceContext ref, final Map<String, AlignmentContext> stratifiedContexts,
+                                      final VariantContext vc,
+                                      final Map<String,PerReadAlleleLikelihoodMap> stratifiedPerReadAlleleLikelihoodMap,
+                                      final Genotype genotype) {
+        AlignmentContext context = null;
+        PerReadAlleleLikelihoodMap perReadAlleleLikelihoodMap = null;
+        if (stratifiedContexts != null)
+            context = stratifiedContexts.get(genotype.getSampleName());
+        if (stratifiedPerReadAlleleLikelihoodMap != null)
+            perReadAlleleLikelihoodMap = stratifiedPerReadAlleleLikelihoodMap.get(genotype.getSampleName());
+
+
+        final GenotypeBuilder gb = new GenotypeBuilder(genotype);
+        for ( final GenotypeAnnotation annotation : requestedGenotypeAnnotations ) {
+            if ( annotation.isThreadSafe() ) {
                 annotation.annotate(tracker, walker, ref, context, vc, genotype, gb, perReadAlleleLikelihoodMap);
+            } else {
+                synchronized ( annotation ) {
+                    annotation.annotate(tracker, walker, ref, context, vc, genotype, gb, perReadAlleleLikelihoodMap);
+                }
             }
-            genotypes.add(gb.make());
         }
+        return gb.make();
+    }
 
-        return genotypes;
+    /**
+     * Evaluate an info field annotation.  The engine may be called by several threads at once (e.g. from the map
+     * calls of a walker run with -nct), so annotations that are not thread-safe are evaluated under their own lock.
+     */
+    private Map<String, Object> annotate(final InfoFieldAnnotation annotationType,
+                                         final RefMetaDataTracker tracker,
+                                         final ReferenceContext ref,
+                                         final Map<String, AlignmentContext> stratifiedContexts,
+                                         final VariantContext vc,
+                                         final Map<String, PerReadAlleleLikelihoodMap> perReadAlleleLikelihoodMap) {
+        if ( annotationType.isThreadSafe() )
+            return annotationType.annotate(tracker, walker, ref, stratifiedContexts, vc, perReadAlleleLikelihoodMap);
+        synchronized ( annotationType ) {
+            return annotationType.annotate(tracker, walker, ref, stratifiedContexts, vc, perReadAlleleLikelihoodMap);
+        }
+    }
+
+    /**
+     * Evaluate an info field annotation for an active region, under its own lock if it is not thread-safe (see annotate)
+     */
+    private Map<String, Object> annotateForActiveRegion(final InfoFieldAnnotation annotationType,
+                                                        final ReferenceContext referenceContext,
+                                                        final Map<String, PerReadAlleleLikelihoodMap> perReadAlleleLikelihoodMap,
+                                                        final VariantContext vc) {
+        if ( annotationType.isThreadSafe() )
+            return annotationType.annotate(referenceContext, perReadAlleleLikelihoodMap, vc);
+        synchronized ( annotationType ) {
+            return annotationType.annotate(referenceContext, perReadAlleleLikelihoodMap, vc);
+        }
     }
 }
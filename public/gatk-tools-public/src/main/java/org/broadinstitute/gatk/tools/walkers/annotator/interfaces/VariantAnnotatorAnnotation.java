@@ -40,4 +40,10 @@ public abstract class VariantAnnotatorAnnotation {
 
     // initialization method (optional for subclasses, and therefore non-abstract)
     public void initialize ( AnnotatorCompatible walker, GenomeAnalysisEngine toolkit, Set<VCFHeaderLine> headerLines ) { }
+
+    // can this annotation be evaluated on several threads at once (see VariantAnnotatorEngine.setAnnotationThreads)?
+    // Only if it keeps no state between calls and draws nothing from the shared random number generator, so
+    // annotations have to opt in (optional for subclasses, and therefore non-abstract).  The engine evaluates the
+    // others under a lock on the annotation, since it may itself be called from several threads (-nct)
+    public boolean isThreadSafe() { return false; }
 }
\ No newline at end of file
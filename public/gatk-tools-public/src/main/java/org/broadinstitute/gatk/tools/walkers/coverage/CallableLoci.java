@@ -40,10 +40,14 @@ import org.broadinstitute.gatk.utils.exceptions.UserException;
 import org.broadinstitute.gatk.utils.help.DocumentedGATKFeature;
 import org.broadinstitute.gatk.utils.help.HelpConstants;
 import org.broadinstitute.gatk.utils.pileup.PileupElement;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.*;
 
 
 /**
@@ -71,7 +75,8 @@ import java.io.PrintStream;
  * <p/>
  * <h3>Input</h3>
  * <p>
- * A BAM file containing <b>exactly one sample</b>.
+ * A BAM file containing <b>exactly one sample</b>, or BAM files with any number of samples when --perSampleOutputDirectory
+ * is given.
  * </p>
  * <p/>
  * <h3>Output</h3>
@@ -117,6 +122,20 @@ import java.io.PrintStream;
  *         POOR_MAPPING_QUALITY 2906
  * </pre>
  *
+ * <h3>Multi-sample mode</h3>
+ * <p>
+ * With --perSampleOutputDirectory the callable states of all samples are computed in a single traversal.  Each
+ * sample's BED file is written to SAMPLE.callable.bed in that directory (sample names containing a path separator
+ * are rejected), the summary table has a column for each sample, and the main output becomes a matrix with a row
+ * for each interval in which no sample changes state and a column with the CalledState ordinal of each sample:
+ * </p>
+ * <pre>
+ *     ##states=0=REF_N,1=CALLABLE,2=NO_COVERAGE,3=LOW_COVERAGE,4=EXCESSIVE_COVERAGE,5=POOR_MAPPING_QUALITY
+ *     #CHROM START END NA12878 NA12891 NA12892
+ *     20 9999999 10000864 1 1 3
+ *     20 10000864 10000985 5 1 3
+ * </pre>
+ *
  * @author Mark DePristo
  * @since May 7, 2010
  */
@@ -192,6 +211,18 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
     @Argument(fullName = "format", shortName = "format", doc = "Output format", required = false)
     OutputFormat outputFormat = OutputFormat.BED;
 
+    /**
+     * Compute the callable state of every sample in the input in a single traversal, instead of requiring a single
+     * sample.  Each sample's BED file is written into this directory, and the main output becomes a matrix of the
+     * states of all samples (see above).  Only the BED format is supported in this mode.
+     */
+    @Advanced
+    @Argument(fullName = "perSampleOutputDirectory", shortName = "perSampleDir", doc = "Compute the callable state of every sample, writing a BED file for each into this directory", required = false)
+    File perSampleOutputDirectory = null;
+
+    // in multi-sample mode, the number of completed runs we buffer over all samples before appending them to their BED files
+    private static final int MAX_BUFFERED_RUNS = 1000000;
+
     public enum OutputFormat {
         /**
          * The output will be written as a BED file.  There's a BED element for each
@@ -243,10 +274,25 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
         return true;
     }
 
+    // multi-sample mode only: the samples, the index of the sample of each read group, and each sample's runs and BED file
+    private List<String> samples = null;
+    private Map<String,Integer> sampleIndexByReadGroup;
+    private CallableStateRunBuffer[] runBuffers;
+    private File[] sampleBEDFiles;
+    private String[] contigNames;
+    private int bufferedRuns = 0;
+
+    // multi-sample mode only: per-sample depths at the current locus, reused between loci
+    private int[] rawDepths, QCDepths, lowMAPQDepths;
+
     @Override
     public void initialize() {
-        if (getSampleDB().getSamples().size() != 1) {
-            throw new UserException.BadArgumentValue("-I", "CallableLoci only works for a single sample, but multiple samples were found in the provided BAM files: " + getSampleDB().getSamples());
+        if ( perSampleOutputDirectory == null ) {
+            if (getSampleDB().getSamples().size() != 1) {
+                throw new UserException.BadArgumentValue("-I", "CallableLoci only works for a single sample, but multiple samples were found in the provided BAM files: " + getSampleDB().getSamples() + ". Use --perSampleOutputDirectory to process them all at once.");
+            }
+        } else {
+            initializeSamples();
         }
 
         try {
@@ -257,20 +303,96 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
         }
     }
 
+    private void initializeSamples() {
+        if ( outputFormat != OutputFormat.BED )
+            throw new UserException.BadArgumentValue("format", "only BED output is supported with --perSampleOutputDirectory");
+        if ( ! perSampleOutputDirectory.isDirectory() && ! perSampleOutputDirectory.mkdirs() )
+            throw new UserException.CouldNotCreateOutputFile(perSampleOutputDirectory, "the directory could not be created");
+
+        // the samples of the read groups that have one, sorted by name
+        final Set<String> headerSamples = new TreeSet<String>();
+        for ( final SAMReadGroupRecord rg : getToolkit().getSAMFileHeader().getReadGroups() ) {
+            if ( rg.getSample() != null )
+                headerSamples.add(rg.getSample());
+        }
+        samples = new ArrayList<String>(headerSamples);
+        final Map<String,Integer> sampleIndices = new HashMap<String,Integer>(samples.size());
+        for ( final String sample : samples )
+            sampleIndices.put(sample, sampleIndices.size());
+        sampleIndexByReadGroup = new HashMap<String,Integer>();
+        for ( final SAMReadGroupRecord rg : getToolkit().getSAMFileHeader().getReadGroups() ) {
+            // read groups without a sample are left out, and rejected if any of their reads turn up (see mapSamples)
+            if ( rg.getSample() != null )
+                sampleIndexByReadGroup.put(rg.getReadGroupId(), sampleIndices.get(rg.getSample()));
+        }
+
+        runBuffers = new CallableStateRunBuffer[samples.size()];
+        sampleBEDFiles = new File[samples.size()];
+        for ( int i = 0; i < samples.size(); i++ ) {
+            runBuffers[i] = new CallableStateRunBuffer();
+            sampleBEDFiles[i] = new File(perSampleOutputDirectory, samples.get(i) + ".callable.bed");
+            // a sample name with a path separator (e.g. ../x) would write its BED file outside of the directory
+            if ( ! perSampleOutputDirectory.equals(sampleBEDFiles[i].getParentFile()) )
+                throw new UserException.BadArgumentValue("perSampleOutputDirectory", "the name of sample " + samples.get(i) +
+                        " contains a path separator, so it cannot be used as the name of its BED file");
+            try {
+                new PrintStream(sampleBEDFiles[i]).close(); // start each file empty, as the runs are appended to it
+            } catch (FileNotFoundException e) {
+                throw new UserException.CouldNotCreateOutputFile(sampleBEDFiles[i], e);
+            }
+        }
+
+        final SAMSequenceDictionary dictionary = getToolkit().getMasterSequenceDictionary();
+        contigNames = new String[dictionary.size()];
+        for ( int i = 0; i < contigNames.length; i++ )
+            contigNames[i] = dictionary.getSequence(i).getSequenceName();
+
+        rawDepths = new int[samples.size()];
+        QCDepths = new int[samples.size()];
+        lowMAPQDepths = new int[samples.size()];
+
+        final StringBuilder states = new StringBuilder("##states=");
+        for ( final CalledState state : CalledState.values() )
+            states.append(state.ordinal() == 0 ? "" : ",").append(state.ordinal()).append('=').append(state);
+        out.println(states);
+
+        final StringBuilder header = new StringBuilder("#CHROM\tSTART\tEND");
+        for ( final String sample : samples )
+            header.append('\t').append(sample);
+        out.println(header);
+    }
+
     protected static class Integrator {
         final long counts[] = new long[CalledState.values().length];
         CallableBaseState state = null;
+
+        // multi-sample mode only: the counts of each sample, by sample index; state is then the current matrix row
+        final long sampleCounts[][];
+
+        public Integrator(final int nSamples) {
+            sampleCounts = new long[nSamples][CalledState.values().length];
+        }
     }
 
     protected static class CallableBaseState implements HasGenomeLocation {
         final public GenomeLocParser genomeLocParser;
         public GenomeLoc loc;
         final public CalledState state;
+        // in multi-sample mode, the ordinal of the CalledState of each sample, by sample index, and state is null
+        final public byte[] statesBySample;
 
         public CallableBaseState(GenomeLocParser genomeLocParser, GenomeLoc loc, CalledState state) {
             this.genomeLocParser = genomeLocParser;
             this.loc = loc;
             this.state = state;
+            this.statesBySample = null;
+        }
+
+        public CallableBaseState(GenomeLocParser genomeLocParser, GenomeLoc loc, byte[] statesBySample) {
+            this.genomeLocParser = genomeLocParser;
+            this.loc = loc;
+            this.state = null;
+            this.statesBySample = statesBySample;
         }
 
         public GenomeLoc getLocation() {
@@ -302,6 +424,9 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
 
     @Override
     public CallableBaseState map(RefMetaDataTracker tracker, ReferenceContext ref, AlignmentContext context) {
+        if ( samples != null )
+            return mapSamples(ref, context);
+
         CalledState state;
 
         if ( BaseUtils.isNBase(ref.getBase())) {
@@ -321,29 +446,74 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
             }
 
             //System.out.printf("%s rawdepth = %d QCDepth = %d lowMAPQ = %d%n", context.getLocation(), rawDepth, QCDepth, lowMAPQDepth);
-            if (rawDepth == 0) {
-                state = CalledState.NO_COVERAGE;
-            } else if (rawDepth >= minDepthLowMAPQ && MathUtils.ratio(lowMAPQDepth, rawDepth) >= maxLowMAPQFraction) {
-                state = CalledState.POOR_MAPPING_QUALITY;
-            } else if (QCDepth < minDepth) {
-                state = CalledState.LOW_COVERAGE;
-            } else if (rawDepth >= maxDepth && maxDepth != -1) {
-                state = CalledState.EXCESSIVE_COVERAGE;
-            } else {
-                state = CalledState.CALLABLE;
-            }
+            state = getCalledState(rawDepth, QCDepth, lowMAPQDepth);
         }
 
         return new CallableBaseState(getToolkit().getGenomeLocParser(), context.getLocation(), state);
     }
 
+    private CalledState getCalledState(final int rawDepth, final int QCDepth, final int lowMAPQDepth) {
+        if (rawDepth == 0) {
+            return CalledState.NO_COVERAGE;
+        } else if (rawDepth >= minDepthLowMAPQ && MathUtils.ratio(lowMAPQDepth, rawDepth) >= maxLowMAPQFraction) {
+            return CalledState.POOR_MAPPING_QUALITY;
+        } else if (QCDepth < minDepth) {
+            return CalledState.LOW_COVERAGE;
+        } else if (rawDepth >= maxDepth && maxDepth != -1) {
+            return CalledState.EXCESSIVE_COVERAGE;
+        } else {
+            return CalledState.CALLABLE;
+        }
+    }
+
+    /**
+     * Computes the state of every sample at the locus in a single pass over the pileup
+     */
+    private CallableBaseState mapSamples(final ReferenceContext ref, final AlignmentContext context) {
+        final byte[] statesBySample = new byte[samples.size()];
+
+        if ( BaseUtils.isNBase(ref.getBase()) ) {
+            Arrays.fill(statesBySample, (byte) CalledState.REF_N.ordinal());
+        } else {
+            Arrays.fill(rawDepths, 0);
+            Arrays.fill(QCDepths, 0);
+            Arrays.fill(lowMAPQDepths, 0);
+            for (PileupElement e : context.getBasePileup()) {
+                final SAMReadGroupRecord rg = e.getRead().getReadGroup();
+                if ( rg == null )
+                    throw new UserException.ReadMissingReadGroup(e.getRead());
+                final Integer sample = sampleIndexByReadGroup.get(rg.getReadGroupId());
+                if ( sample == null )
+                    throw new UserException.MalformedBAM(e.getRead(), String.format("Read %s has read group %s, which either isn't in the header or has no sample (SM) tag; every read group needs a sample to compute per-sample callable loci",
+                            e.getRead().getReadName(), rg.getReadGroupId()));
+
+                rawDepths[sample]++;
+
+                if (e.getMappingQual() <= maxLowMAPQ)
+                    lowMAPQDepths[sample]++;
+
+                if (e.getMappingQual() >= minMappingQuality && (e.getQual() >= minBaseQuality || e.isDeletion())) {
+                    QCDepths[sample]++;
+                }
+            }
+
+            for ( int sample = 0; sample < statesBySample.length; sample++ )
+                statesBySample[sample] = (byte) getCalledState(rawDepths[sample], QCDepths[sample], lowMAPQDepths[sample]).ordinal();
+        }
+
+        return new CallableBaseState(getToolkit().getGenomeLocParser(), context.getLocation(), statesBySample);
+    }
+
     @Override
     public Integrator reduceInit() {
-        return new Integrator();
+        return new Integrator(samples == null ? 0 : samples.size());
     }
 
     @Override
     public Integrator reduce(CallableBaseState state, Integrator integrator) {
+        if ( samples != null )
+            return reduceSamples(state, integrator);
+
         // update counts
         integrator.counts[state.getState().ordinal()]++;
 
@@ -365,6 +535,60 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
         return integrator;
     }
 
+    private Integrator reduceSamples(CallableBaseState state, Integrator integrator) {
+        final GenomeLoc loc = state.getLocation();
+        final byte[] statesBySample = state.statesBySample;
+        for ( int sample = 0; sample < statesBySample.length; sample++ ) {
+            integrator.sampleCounts[sample][statesBySample[sample]]++;
+            if ( runBuffers[sample].add(loc.getContigIndex(), loc.getStart(), statesBySample[sample]) )
+                bufferedRuns++;
+        }
+
+        if ( bufferedRuns >= MAX_BUFFERED_RUNS )
+            writeRunBuffers();
+
+        // a matrix row holds while every sample stays in the same state
+        if (integrator.state == null)
+            integrator.state = state;
+        else if (loc.getContigIndex() != integrator.state.getLocation().getContigIndex() ||
+                loc.getStart() != integrator.state.getLocation().getStop() + 1 ||
+                ! Arrays.equals(statesBySample, integrator.state.statesBySample)) {
+            printMatrixRow(integrator.state);
+            integrator.state = state;
+        } else {
+            integrator.state.update(loc);
+        }
+
+        return integrator;
+    }
+
+    private void printMatrixRow(final CallableBaseState row) {
+        final GenomeLoc loc = row.getLocation();
+        final StringBuilder line = new StringBuilder();
+        line.append(loc.getContig()).append('\t').append(loc.getStart()-1).append('\t').append(loc.getStop());
+        for ( final byte sampleState : row.statesBySample )
+            line.append('\t').append(sampleState);
+        out.println(line);
+    }
+
+    /**
+     * Appends the buffered runs of each sample to its BED file, opening only one file at a time
+     */
+    private void writeRunBuffers() {
+        for ( int sample = 0; sample < runBuffers.length; sample++ ) {
+            if ( runBuffers[sample].size() == 0 )
+                continue;
+            try {
+                final PrintStream bedOut = new PrintStream(new FileOutputStream(sampleBEDFiles[sample], true));
+                runBuffers[sample].writeBED(bedOut, contigNames);
+                bedOut.close();
+            } catch (FileNotFoundException e) {
+                throw new UserException.CouldNotCreateOutputFile(sampleBEDFiles[sample], e);
+            }
+        }
+        bufferedRuns = 0;
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////////////
     // INTERVAL ON TRAVERSAL DONE
@@ -372,6 +596,11 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
 
     @Override
     public void onTraversalDone(Integrator result) {
+        if ( samples != null ) {
+            onTraversalDoneSamples(result);
+            return;
+        }
+
         // print out the last state
         if (result != null) {
             if (outputFormat == OutputFormat.BED)  // get the last interval
@@ -389,4 +618,30 @@ public class CallableLoci extends LocusWalker<CallableLoci.CallableBaseState, Ca
             }
         }
     }
-}
\ No newline at end of file
+
+    private void onTraversalDoneSamples(Integrator result) {
+        if ( result.state != null )
+            printMatrixRow(result.state);
+
+        for ( final CallableStateRunBuffer runBuffer : runBuffers )
+            runBuffer.closeRun();
+        writeRunBuffers();
+
+        try {
+            PrintStream summaryOut = new PrintStream(summaryFile);
+            summaryOut.printf("%30s", "state");
+            for ( final String sample : samples )
+                summaryOut.printf(" %s", sample);
+            summaryOut.printf("%n");
+            for (CalledState state : CalledState.values()) {
+                summaryOut.printf("%30s", state);
+                for ( final long[] counts : result.sampleCounts )
+                    summaryOut.printf(" %d", counts[state.ordinal()]);
+                summaryOut.printf("%n");
+            }
+            summaryOut.close();
+        } catch (FileNotFoundException e) {
+            throw new UserException.CouldNotCreateOutputFile(summaryFile, e);
+        }
+    }
+}
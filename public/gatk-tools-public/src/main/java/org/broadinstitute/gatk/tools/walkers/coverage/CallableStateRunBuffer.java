@@ -0,0 +1,120 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.tools.walkers.coverage;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Run-length encoded callable states of a single sample, held in primitive arrays
+ *
+ * <p>
+ * Consecutive loci in the same state are collapsed into a single run as they are added.  Once a run is complete it
+ * is moved into the buffer, where it stays until the buffer is written out, so that many samples can be followed in
+ * a single traversal without keeping an output file open for each of them.
+ * </p>
+ */
+class CallableStateRunBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the completed runs
+    private int[] contigs = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] stops = new int[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // the run still being extended, if currentContig != -1
+    private int currentContig = -1;
+    private int currentStart;
+    private int currentStop;
+    private byte currentState;
+
+    /**
+     * Adds the state of the sample at a locus, extending the current run if the locus follows it and is in the same state
+     *
+     * @param contig the contig index of the locus
+     * @param position the position of the locus
+     * @param state the ordinal of the sample's CalledState at the locus
+     * @return true if the locus completed the previous run
+     */
+    public boolean add(final int contig, final int position, final byte state) {
+        if ( contig == currentContig && position == currentStop + 1 && state == currentState ) {
+            currentStop = position;
+            return false;
+        }
+
+        final boolean completedRun = currentContig != -1;
+        closeRun();
+        currentContig = contig;
+        currentStart = position;
+        currentStop = position;
+        currentState = state;
+        return completedRun;
+    }
+
+    /**
+     * Moves the current run, if any, into the buffer of completed runs
+     */
+    public void closeRun() {
+        if ( currentContig == -1 )
+            return;
+
+        if ( size == starts.length ) {
+            final int capacity = 2 * size;
+            contigs = Arrays.copyOf(contigs, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        contigs[size] = currentContig;
+        starts[size] = currentStart;
+        stops[size] = currentStop;
+        states[size] = currentState;
+        size++;
+        currentContig = -1;
+    }
+
+    /**
+     * @return the number of completed runs in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the completed runs in the buffer as BED records, and empties the buffer
+     *
+     * @param out the stream to write to
+     * @param contigNames the name of each contig, by contig index
+     */
+    public void writeBED(final PrintStream out, final String[] contigNames) {
+        final CallableLoci.CalledState[] calledStates = CallableLoci.CalledState.values();
+        for ( int i = 0; i < size; i++ )
+            out.printf("%s\t%d\t%d\t%s%n", contigNames[contigs[i]], starts[i]-1, stops[i], calledStates[states[i]]);
+        size = 0;
+    }
+}
@@ -137,6 +137,41 @@ public class CoverageUtils {
     public static Map<SAMReadGroupRecord,int[]> getBaseCountsByReadGroup(AlignmentContext context, int minMapQ, int maxMapQ, byte minBaseQ, byte maxBaseQ, CountPileupType countType) {
         Map<SAMReadGroupRecord, int[]> countsByRG = new HashMap<SAMReadGroupRecord,int[]>();
 
+        for (PileupElement e : getCountedElements(context, minMapQ, maxMapQ, minBaseQ, maxBaseQ, countType)) {
+            SAMReadGroupRecord readGroup = getReadGroup(e.getRead());
+            if (!countsByRG.keySet().contains(readGroup))
+                countsByRG.put(readGroup, new int[6]);
+
+            updateCounts(countsByRG.get(readGroup), e);
+        }
+
+        return countsByRG;
+    }
+
+    /**
+     * Returns the counts of bases in the context that pass the filters, by read group, in a single array with no
+     * per-locus maps. The counts of the read group with index i in readGroupIndices, indexed by the index fields
+     * of BaseUtils, are at [i*6, i*6+6).
+     *
+     * @param readGroupIndices the index of each read group, by read group id
+     * @return the base counts by read group index
+     */
+    public static int[] getBaseCountsByReadGroupIndex(AlignmentContext context, int minMapQ, int maxMapQ, byte minBaseQ, byte maxBaseQ, CountPileupType countType, Map<String,Integer> readGroupIndices) {
+        int[] counts = new int[readGroupIndices.size() * 6];
+
+        for (PileupElement e : getCountedElements(context, minMapQ, maxMapQ, minBaseQ, maxBaseQ, countType)) {
+            SAMReadGroupRecord readGroup = getReadGroup(e.getRead());
+            Integer index = readGroupIndices.get(readGroup.getReadGroupId());
+            if ( index == null )
+                throw new UserException.MalformedBAM(e.getRead(), "Read "+e.getRead().getReadName()+" has read group "+readGroup.getReadGroupId()+", which is not in the header");
+
+            updateCounts(counts, index * 6, e);
+        }
+
+        return counts;
+    }
+
+    private static List<PileupElement> getCountedElements(AlignmentContext context, int minMapQ, int maxMapQ, byte minBaseQ, byte maxBaseQ, CountPileupType countType) {
         List<PileupElement> countPileup = new LinkedList<PileupElement>();
         FragmentCollection<PileupElement> fpile;
 
@@ -200,15 +235,7 @@ public class CoverageUtils {
                 throw new UserException("Must use valid CountPileupType");
         }
 
-        for (PileupElement e : countPileup) {
-            SAMReadGroupRecord readGroup = getReadGroup(e.getRead());
-            if (!countsByRG.keySet().contains(readGroup))
-                countsByRG.put(readGroup, new int[6]);
-
-            updateCounts(countsByRG.get(readGroup), e);
-        }
-
-        return countsByRG;
+        return countPileup;
     }
 
     private static boolean countElement(PileupElement e, int minMapQ, int maxMapQ, byte minBaseQ, byte maxBaseQ) {
@@ -216,16 +243,19 @@ public class CoverageUtils {
     }
 
     private static void updateCounts(int[] counts, PileupElement e) {
+        updateCounts(counts, 0, e);
+    }
+
+    private static void updateCounts(int[] counts, int offset, PileupElement e) {
         if ( e.isDeletion() ) {
-            counts[BaseUtils.Base.D.ordinal()]++;
+            counts[offset + BaseUtils.Base.D.ordinal()]++;
         } else if ( BaseUtils.basesAreEqual(BaseUtils.Base.N.base, e.getBase()) ) {
-            counts[BaseUtils.Base.N.ordinal()]++;
+            counts[offset + BaseUtils.Base.N.ordinal()]++;
         } else {
-            try {
-                counts[BaseUtils.simpleBaseToBaseIndex(e.getBase())]++;
-            } catch (ArrayIndexOutOfBoundsException exc) {
+            final int baseIndex = BaseUtils.simpleBaseToBaseIndex(e.getBase());
+            if ( baseIndex < 0 )
                 throw new ReviewedGATKException("Expected a simple base, but actually received"+(char)e.getBase());
-            }
+            counts[offset + baseIndex]++;
         }
     }
 
@@ -110,7 +110,7 @@ import java.util.*;
 @By(DataSource.REFERENCE)
 @PartitionBy(PartitionType.NONE)
 @Downsample(by= DownsampleType.NONE, toCoverage=Integer.MAX_VALUE)
-public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map<String,int[]>>, CoveragePartitioner> implements TreeReducible<CoveragePartitioner> {
+public class DepthOfCoverage extends LocusWalker<int[], CoveragePartitioner> implements TreeReducible<CoveragePartitioner> {
     private final static Logger logger = Logger.getLogger(DepthOfCoverage.class);
 
     /**
@@ -254,6 +254,14 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
     String separator = "\t";
     Map<DoCOutputType.Partition,List<String>> orderCheck = new HashMap<DoCOutputType.Partition,List<String>>();
 
+    // the read groups of the header, whose base counts map() returns in this order
+    List<SAMReadGroupRecord> readGroups;
+    Map<String,Integer> readGroupIndices;
+
+    // when reducing by interval, the interval currently being reduced and the running total over the completed ones
+    private CoveragePartitioner currentIntervalCoverage = null;
+    private CoveragePartitioner cumulativeCoverage = null;
+
     ////////////////////////////////////////////////////////////////////////////////////
     // STANDARD WALKER METHODS
     ////////////////////////////////////////////////////////////////////////////////////
@@ -327,6 +335,12 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
             }
             Collections.sort(orderCheck.get(type));
         }
+
+        readGroups = getToolkit().getSAMFileHeader().getReadGroups();
+        readGroupIndices = new HashMap<String,Integer>(readGroups.size());
+        for ( SAMReadGroupRecord rg : readGroups ) {
+            readGroupIndices.put(rg.getReadGroupId(),readGroupIndices.size());
+        }
     }
 
     private HashSet<String> getSamplesFromToolKit( Collection<DoCOutputType.Partition> types ) {
@@ -382,38 +396,74 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
     }
 
     public CoveragePartitioner reduceInit() {
+        CoveragePartitioner aggro = newCoveragePartitioner(omitLocusTable);
+
+        // Reducing by interval, the engine starts a fresh reduce for each interval once the previous one is complete,
+        // so fold that one into the running total now instead of merging them all at the end; the per-interval
+        // summaries don't need its locus table, which is the bulk of its memory with many samples.
+        //
+        // This side effect is only sound because the intervals are reduced one after another, on one thread: the
+        // MicroScheduler refuses -nt for walkers that reduce by interval, so there is no treeReduce of intervals
+        // and no reduceInit for an interval while another one is still being reduced.
+        if ( isReducingByInterval() ) {
+            if ( getToolkit().getArguments().numberOfDataThreads > 1 )
+                throw new ReviewedGATKException("Intervals can only be folded into the running total when they are reduced one after another, without -nt");
+            if ( currentIntervalCoverage != null ) {
+                foldIntoCumulativeCoverage(currentIntervalCoverage);
+            }
+            currentIntervalCoverage = aggro;
+        }
+
+        return aggro;
+    }
+
+    private CoveragePartitioner newCoveragePartitioner(boolean withoutLocusTable) {
         CoveragePartitioner aggro = new CoveragePartitioner(partitionTypes,start,stop,nBins);
         for (DoCOutputType.Partition t : partitionTypes ) {
             aggro.addIdentifiers(t,getSamplesFromToolKit(t));
         }
-        aggro.initialize(includeDeletions,omitLocusTable);
+        aggro.initialize(includeDeletions,withoutLocusTable);
+        aggro.initializeReadGroups(readGroups);
         checkOrder(aggro);
         return aggro;
     }
 
-    public Map<DoCOutputType.Partition,Map<String,int[]>> map(RefMetaDataTracker tracker, ReferenceContext ref, AlignmentContext context) {
+    private boolean isReducingByInterval() {
+        // the same condition under which the engine hands us one reduce per interval
+        return isReduceByInterval() && getToolkit().getIntervals() != null;
+    }
+
+    private void foldIntoCumulativeCoverage(CoveragePartitioner intervalCoverage) {
+        if ( cumulativeCoverage == null ) {
+            cumulativeCoverage = newCoveragePartitioner(omitLocusTable);
+        }
+        cumulativeCoverage.merge(intervalCoverage);
+        intervalCoverage.dropLocusCounts();
+    }
+
+    public int[] map(RefMetaDataTracker tracker, ReferenceContext ref, AlignmentContext context) {
         if (includeRefNBases || BaseUtils.isRegularBase(ref.getBase())) {
             if ( ! omitDepthOutput ) {
                 getCorrectStream(null, DoCOutputType.Aggregation.locus, DoCOutputType.FileType.summary).printf("%s",ref.getLocus()); // yes: print locus in map, and the rest of the info in reduce (for eventual cumulatives)
                 //System.out.printf("\t[log]\t%s",ref.getLocus());
             }
 
-            return CoverageUtils.getBaseCountsByPartition(context,minMappingQuality,maxMappingQuality,minBaseQuality,maxBaseQuality,countType,partitionTypes);
+            return CoverageUtils.getBaseCountsByReadGroupIndex(context,minMappingQuality,maxMappingQuality,minBaseQuality,maxBaseQuality,countType,readGroupIndices);
         } else {
             return null;
         }
     }
 
-    public CoveragePartitioner reduce(Map<DoCOutputType.Partition,Map<String,int[]>> thisMap, CoveragePartitioner prevReduce) {
-        if ( thisMap != null ) { // skip sites we didn't want to include in the calculation (ref Ns)
+    public CoveragePartitioner reduce(int[] countsByReadGroup, CoveragePartitioner prevReduce) {
+        if ( countsByReadGroup != null ) { // skip sites we didn't want to include in the calculation (ref Ns)
+            prevReduce.update(countsByReadGroup);
+
             if ( ! omitDepthOutput ) {
                 //checkOrder(prevReduce); // tests prevReduce.getIdentifiersByType().get(t) against the initialized header order
-                printDepths(getCorrectStream(null, DoCOutputType.Aggregation.locus, DoCOutputType.FileType.summary),thisMap,prevReduce.getIdentifiersByType());
-                // this is an additional iteration through thisMap, plus dealing with IO, so should be much slower without
+                printDepths(getCorrectStream(null, DoCOutputType.Aggregation.locus, DoCOutputType.FileType.summary),prevReduce);
+                // this is an additional iteration through the counts, plus dealing with IO, so should be much slower without
                 // turning on omit
             }
-
-            prevReduce.update(thisMap); // note that in "useBoth" cases, this method alters the thisMap object
         }
 
         return prevReduce;
@@ -448,17 +498,10 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
             throw new UserException.CommandLineException("Cannot reduce by interval without a list of intervals. Please provide an interval list using the -L argument.");
         }
 
-        onTraversalDone(mergeAll(statsByInterval));
-
-    }
-
-    public CoveragePartitioner mergeAll(List<Pair<GenomeLoc, CoveragePartitioner>> stats) {
-        CoveragePartitioner first = stats.remove(0).second;
-        for ( Pair<GenomeLoc, CoveragePartitioner> iStat : stats ) {
-            treeReduce(first,iStat.second);
-        }
+        // the last interval has not been folded into the running total yet
+        foldIntoCumulativeCoverage(currentIntervalCoverage);
+        onTraversalDone(cumulativeCoverage);
 
-        return first;
     }
 
     private DepthOfCoverageStats printIntervalStats(List<Pair<GenomeLoc, CoveragePartitioner>> statsByInterval, PrintStream summaryOut, PrintStream statsOut, DoCOutputType.Partition type) {
@@ -894,20 +937,21 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
         return 100*( (double) above )/( above + below );
     }
 
-    private void printDepths(PrintStream stream, Map<DoCOutputType.Partition,Map<String,int[]>> countsBySampleByType, Map<DoCOutputType.Partition,List<String>> identifiersByType) {
+    private void printDepths(PrintStream stream, CoveragePartitioner coverage) {
+        Map<DoCOutputType.Partition,List<String>> identifiersByType = coverage.getIdentifiersByType();
         // get the depths per sample and build up the output string while tabulating total and average coverage
         StringBuilder perSampleOutput = new StringBuilder();
         int tDepth = 0;
         boolean depthCounted = false;
         for (DoCOutputType.Partition type : partitionTypes ) {
-            Map<String,int[]> countsByID = countsBySampleByType.get(type);
-            for ( String s : identifiersByType.get(type) ) {
+            int[] counts = coverage.getLocusBaseCounts(type);
+            for ( int index : coverage.getSortedIdentifierIndices(type) ) {
                 perSampleOutput.append(separator);
-                long dp = (countsByID != null && countsByID.keySet().contains(s)) ? sumArray(countsByID.get(s)) : 0 ;
+                long dp = sumArray(counts, index * 6);
                 perSampleOutput.append(dp);
                 if ( printBaseCounts ) {
                     perSampleOutput.append(separator);
-                    perSampleOutput.append(baseCounts(countsByID != null ? countsByID.get(s) : null ));
+                    perSampleOutput.append(baseCounts(counts, index * 6));
                 }
                 if ( ! depthCounted ) {
                     tDepth += dp;
@@ -924,18 +968,15 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
         stream.printf("%s%n",perSampleOutput);
     }
 
-    private long sumArray(int[] array) {
+    private long sumArray(int[] array, int offset) {
         long i = 0;
-        for ( int j : array ) {
-            i += j;
+        for ( int j = offset; j < offset + 6; j++ ) {
+            i += array[j];
         }
         return i;
     }
 
-    private String baseCounts(int[] counts) {
-        if ( counts == null ) {
-            counts = new int[6];
-        }
+    private String baseCounts(int[] counts, int offset) {
         StringBuilder s = new StringBuilder();
         int nbases = 0;
         for ( byte b : BaseUtils.EXTENDED_BASES ) {
@@ -943,7 +984,7 @@ public class DepthOfCoverage extends LocusWalker<Map<DoCOutputType.Partition,Map
             if ( includeDeletions || b != BaseUtils.Base.D.base ) {
                 s.append((char)b);
                 s.append(":");
-                s.append(counts[BaseUtils.extendedBaseToBaseIndex(b)]);
+                s.append(counts[offset + BaseUtils.extendedBaseToBaseIndex(b)]);
                 if ( nbases < 6 ) {
                     s.append(" ");
                 }
@@ -1058,6 +1099,12 @@ class CoveragePartitioner {
     private Map<DoCOutputType.Partition,DepthOfCoverageStats> coverageProfiles;
     private Map<DoCOutputType.Partition,List<String>> identifiersByType;
     private Set<String> allIdentifiers;
+
+    // by partition type: the index in its statistics of each read group's identifier, the base counts by identifier
+    // index at the current locus, and the identifier indices in sorted identifier order
+    private Map<DoCOutputType.Partition,int[]> identifierIndexByReadGroup;
+    private Map<DoCOutputType.Partition,int[]> locusBaseCounts;
+    private Map<DoCOutputType.Partition,int[]> sortedIdentifierIndices;
     public CoveragePartitioner(Collection<DoCOutputType.Partition> typesToUse, int start, int stop, int nBins) {
         coverageProfiles = new TreeMap<DoCOutputType.Partition,DepthOfCoverageStats>();
         identifiersByType = new HashMap<DoCOutputType.Partition,List<String>>();
@@ -1099,9 +1146,69 @@ class CoveragePartitioner {
         }
     }
 
-    public void update(Map<DoCOutputType.Partition,Map<String,int[]>> countsByIdentifierByType) {
+    /**
+     * Prepares the tables that take the base counts by read group given to update() to base counts by identifier
+     * @param readGroups the read groups, in the order of their counts
+     */
+    public void initializeReadGroups(List<SAMReadGroupRecord> readGroups) {
+        identifierIndexByReadGroup = new HashMap<DoCOutputType.Partition,int[]>();
+        locusBaseCounts = new HashMap<DoCOutputType.Partition,int[]>();
+        sortedIdentifierIndices = new HashMap<DoCOutputType.Partition,int[]>();
+        for ( DoCOutputType.Partition t : types ) {
+            DepthOfCoverageStats stats = coverageProfiles.get(t);
+            int[] identifierIndices = new int[readGroups.size()];
+            for ( int rg = 0; rg < readGroups.size(); rg++ ) {
+                identifierIndices[rg] = stats.getSampleIndex(CoverageUtils.getTypeID(readGroups.get(rg),t));
+            }
+            identifierIndexByReadGroup.put(t,identifierIndices);
+            locusBaseCounts.put(t,new int[stats.getNumberOfSamples() * 6]);
+
+            List<String> identifiers = identifiersByType.get(t);
+            int[] sortedIndices = new int[identifiers.size()];
+            for ( int i = 0; i < sortedIndices.length; i++ ) {
+                sortedIndices[i] = stats.getSampleIndex(identifiers.get(i));
+            }
+            sortedIdentifierIndices.put(t,sortedIndices);
+        }
+    }
+
+    /**
+     * Adds a locus to the statistics of every partition type
+     * @param countsByReadGroup the base counts at the locus by read group index, as from CoverageUtils.getBaseCountsByReadGroupIndex
+     */
+    public void update(int[] countsByReadGroup) {
+        for ( DoCOutputType.Partition t : types ) {
+            int[] identifierIndices = identifierIndexByReadGroup.get(t);
+            int[] counts = locusBaseCounts.get(t);
+            Arrays.fill(counts,0);
+            for ( int rg = 0; rg < identifierIndices.length; rg++ ) {
+                int from = rg * 6;
+                int to = identifierIndices[rg] * 6;
+                for ( int base = 0; base < 6; base++ ) {
+                    counts[to + base] += countsByReadGroup[from + base];
+                }
+            }
+            coverageProfiles.get(t).update(counts);
+        }
+    }
+
+    /**
+     * @return the base counts of the last locus given to update(), by identifier index of the partition type
+     */
+    public int[] getLocusBaseCounts(DoCOutputType.Partition t) {
+        return locusBaseCounts.get(t);
+    }
+
+    /**
+     * @return the index of each identifier of the partition type in its statistics, in the order of getIdentifiersByType()
+     */
+    public int[] getSortedIdentifierIndices(DoCOutputType.Partition t) {
+        return sortedIdentifierIndices.get(t);
+    }
+
+    public void dropLocusCounts() {
         for ( DoCOutputType.Partition t : types ) {
-            coverageProfiles.get(t).update(countsByIdentifierByType.get(t));
+            coverageProfiles.get(t).dropLocusCounts();
         }
     }
 
@@ -26,9 +26,12 @@
 package org.broadinstitute.gatk.tools.walkers.coverage;
 
 import org.broadinstitute.gatk.utils.BaseUtils;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
 import org.broadinstitute.gatk.utils.exceptions.UserException;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -50,10 +53,14 @@ public class DepthOfCoverageStats {
     // STANDARD DATA
     ////////////////////////////////////////////////////////////////////////////////////
 
-    private Map<String,long[]> granularHistogramBySample; // holds the counts per each bin
-    private Map<String,Long> totalCoverages; // holds total coverage per sample
+    // per-sample data is held in columns indexed by the order in which the samples were added; sampleIndices maps each
+    // sample to its column, and its iteration order is the order in which the samples are reported
+    private Map<String,Integer> sampleIndices;
+    private int nSamples;
+    private long[][] granularHistograms; // holds the counts per each bin, by sample index
+    private long[] totalCoverages; // holds total coverage, by sample index
     private int[] binLeftEndpoints; // describes the left endpoint for each bin
-    private long[][] locusCoverageCounts; // holds counts of number of bases with >=X samples at >=Y coverage
+    private long[][] locusCountsBySampleCount; // holds counts of number of bases with exactly X samples at >=Y coverage
     private boolean tabulateLocusCounts = false;
     private long nLoci; // number of loci seen
     private long totalDepthOfCoverage;
@@ -63,8 +70,8 @@ public class DepthOfCoverageStats {
     // TEMPORARY DATA ( not worth re-instantiating )
     ////////////////////////////////////////////////////////////////////////////////////
 
-    private int[] locusHistogram; // holds a histogram for each locus; reset after each update() call
-    private int totalLocusDepth; // holds the total depth of coverage for each locus; reset after each update() call
+    private int[] samplesByBin; // holds the number of samples whose depth falls in each bin; reset after each update() call
+    private int[] depthBySample = new int[0]; // holds the depth of each sample for update(int[])
 
     ////////////////////////////////////////////////////////////////////////////////////
     // STATIC METHODS
@@ -103,60 +110,49 @@ public class DepthOfCoverageStats {
 
     public DepthOfCoverageStats(int[] leftEndpoints) {
         this.binLeftEndpoints = leftEndpoints;
-        granularHistogramBySample = new HashMap<String,long[]>();
-        totalCoverages = new HashMap<String,Long>();
+        sampleIndices = new HashMap<String,Integer>();
+        nSamples = 0;
+        granularHistograms = new long[0][];
+        totalCoverages = new long[0];
         nLoci = 0;
-        totalLocusDepth = 0;
         totalDepthOfCoverage = 0;
     }
 
     public DepthOfCoverageStats(DepthOfCoverageStats cloneMe) {
         this.binLeftEndpoints = cloneMe.binLeftEndpoints;
-        granularHistogramBySample = new TreeMap<String,long[]>();
-        totalCoverages = new TreeMap<String,Long>();
-        for ( String s : cloneMe.getAllSamples() ) {
-            granularHistogramBySample.put(s,new long[cloneMe.getHistograms().get(s).length]);
-            for ( int i = 0; i < granularHistogramBySample.get(s).length; i++ ) {
-                granularHistogramBySample.get(s)[i] = cloneMe.getHistograms().get(s)[i];
-            }
-            totalCoverages.put(s,cloneMe.totalCoverages.get(s));
+        sampleIndices = new TreeMap<String,Integer>(cloneMe.sampleIndices);
+        nSamples = cloneMe.nSamples;
+        granularHistograms = new long[nSamples][];
+        for ( int i = 0; i < nSamples; i++ ) {
+            granularHistograms[i] = cloneMe.granularHistograms[i].clone();
         }
+        totalCoverages = cloneMe.totalCoverages.clone();
 
         this.includeDeletions = cloneMe.includeDeletions;
         if ( cloneMe.tabulateLocusCounts ) {
-            this.locusCoverageCounts = new long[cloneMe.locusCoverageCounts.length][cloneMe.locusCoverageCounts[0].length];
+            this.locusCountsBySampleCount = new long[cloneMe.locusCountsBySampleCount.length][cloneMe.locusCountsBySampleCount[0].length];
+            this.samplesByBin = new int[cloneMe.samplesByBin.length];
         }
-        //this.granularHistogramBySample = cloneMe.granularHistogramBySample;
-        //this.totalCoverages = cloneMe.totalCoverages;
         this.nLoci = cloneMe.nLoci;
         this.totalDepthOfCoverage = cloneMe.totalDepthOfCoverage;
         this.tabulateLocusCounts = cloneMe.tabulateLocusCounts;
     }
 
     public void addSample(String sample) {
-        if ( granularHistogramBySample.containsKey(sample) ) {
+        if ( sampleIndices.containsKey(sample) ) {
             return;
         }
 
-        long[] binCounts = new long[this.binLeftEndpoints.length+1];
-        for ( int b = 0; b < binCounts.length; b ++ ) {
-            binCounts[b] = 0;
-        }
-
-        granularHistogramBySample.put(sample,binCounts);
-        totalCoverages.put(sample,0l);
+        granularHistograms = Arrays.copyOf(granularHistograms, nSamples+1);
+        granularHistograms[nSamples] = new long[this.binLeftEndpoints.length+1];
+        totalCoverages = Arrays.copyOf(totalCoverages, nSamples+1);
+        sampleIndices.put(sample,nSamples);
+        nSamples++;
     }
 
     public void initializeLocusCounts() {
-        locusCoverageCounts = new long[granularHistogramBySample.size()][binLeftEndpoints.length+1];
-        locusHistogram = new int[binLeftEndpoints.length+1];
-        for ( int b = 0; b < binLeftEndpoints.length+1; b ++ ) {
-            for ( int a = 0; a < granularHistogramBySample.size(); a ++ ) {
-                locusCoverageCounts[a][b] = 0;
-            }
-            locusHistogram[b] = 0;
-        }
-
+        locusCountsBySampleCount = new long[nSamples+1][binLeftEndpoints.length+1];
+        samplesByBin = new int[binLeftEndpoints.length+1];
         tabulateLocusCounts = true;
     }
 
@@ -164,59 +160,95 @@ public class DepthOfCoverageStats {
         includeDeletions = true;
     }
 
+    /**
+     * Stops tabulating the number of loci by number of samples and coverage, releasing the table
+     */
+    public void dropLocusCounts() {
+        locusCountsBySampleCount = null;
+        samplesByBin = null;
+        tabulateLocusCounts = false;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////
     // UPDATE METHODS
     ////////////////////////////////////////////////////////////////////////////////////
 
     public void updateDepths(Map<String,Integer> depthBySample) {
-        int b;
-        for ( String sample : granularHistogramBySample.keySet() ) {
-            if ( depthBySample.containsKey(sample) ) {
-                b = updateSample(sample,depthBySample.get(sample));
-                totalLocusDepth += depthBySample.get(sample);
-            } else {
-                b = updateSample(sample,0);
+        final int[] depths = new int[nSamples];
+        for ( Map.Entry<String,Integer> sampleDepth : depthBySample.entrySet() ) {
+            final Integer index = sampleIndices.get(sampleDepth.getKey());
+            if ( index != null ) {
+                depths[index] = sampleDepth.getValue();
             }
+        }
+        this.updateDepths(depths);
+    }
+
+    /**
+     * Adds a locus to the statistics
+     * @param depthBySample the depth of each sample at the locus, indexed as in getSampleIndex
+     */
+    public void updateDepths(int[] depthBySample) {
+        long totalLocusDepth = 0;
+        for ( int sample = 0; sample < nSamples; sample++ ) {
+            final int depth = depthBySample[sample];
+            final int b = updateSample(sample,depth);
+            totalLocusDepth += depth;
 
             if ( tabulateLocusCounts ) {
-                for ( int i = 0; i <= b; i ++ ) {
-                    locusHistogram[i]++;
-                }
+                samplesByBin[b]++;
             }
         }
-        updateLocusCounts(locusHistogram);
+        updateLocusCounts(samplesByBin);
 
         nLoci++;
         totalDepthOfCoverage += totalLocusDepth;
-        totalLocusDepth = 0;
     }
 
     public void update(Map<String,int[]> countsBySample) {
         if ( countsBySample == null ) {
-            this.updateDepths(new HashMap<String,Integer>(1));
+            this.updateDepths(new int[nSamples]);
             return;
         }
+        final int[] counts = new int[nSamples * BaseUtils.EXTENDED_BASES.length];
+        for ( Map.Entry<String,int[]> sampleCounts : countsBySample.entrySet() ) {
+            final Integer index = sampleIndices.get(sampleCounts.getKey());
+            if ( index != null ) {
+                System.arraycopy(sampleCounts.getValue(), 0, counts, index * BaseUtils.EXTENDED_BASES.length, BaseUtils.EXTENDED_BASES.length);
+            }
+        }
+        this.update(counts);
+    }
+
+    /**
+     * Adds a locus to the statistics
+     * @param countsBySample the counts of each extended base (see BaseUtils.extendedBaseToBaseIndex) of each sample at the
+     *                       locus, with those of the sample with index i at [i*6, i*6+6)
+     */
+    public void update(int[] countsBySample) {
         // todo -- do we want to do anything special regarding base count or deletion statistics?
-        HashMap<String,Integer> depthBySample = new HashMap<String,Integer>();
-        // todo -- needs fixing with advent of new baseutils functionality using ENUMS and handling N,D
-        for ( String s : countsBySample.keySet() ) {
+        final int nBases = BaseUtils.EXTENDED_BASES.length;
+        final int deletionIndex = BaseUtils.extendedBaseToBaseIndex(BaseUtils.Base.D.base);
+        if ( depthBySample.length < nSamples ) {
+            depthBySample = new int[nSamples];
+        }
+        for ( int sample = 0; sample < nSamples; sample++ ) {
             int total = 0;
-            int[] counts = countsBySample.get(s);
-            for ( byte base : BaseUtils.EXTENDED_BASES ) {
-                if ( includeDeletions || ! ( base == BaseUtils.Base.D.base) ) { // note basesAreEqual assigns TRUE to (N,D) as both have simple index -1
-                    total += counts[BaseUtils.extendedBaseToBaseIndex(base)];
+            for ( int base = 0; base < nBases; base++ ) {
+                if ( includeDeletions || base != deletionIndex ) {
+                    total += countsBySample[sample*nBases + base];
                 }
             }
-            depthBySample.put(s,total);
+            depthBySample[sample] = total;
         }
-        
+
         this.updateDepths(depthBySample);
     }
 
-    private int updateSample(String sample, int depth) {
-        totalCoverages.put(sample,totalCoverages.get(sample)+depth);
+    private int updateSample(int sample, int depth) {
+        totalCoverages[sample] += depth;
 
-        long[] granularBins = granularHistogramBySample.get(sample);
+        long[] granularBins = granularHistograms[sample];
         for ( int b = 0; b < binLeftEndpoints.length; b ++ ) {
             if ( depth < binLeftEndpoints[b] ) {
                 granularBins[b]++;
@@ -231,53 +263,53 @@ public class DepthOfCoverageStats {
     public void merge(DepthOfCoverageStats newStats) {
         this.mergeSamples(newStats);
         if ( this.tabulateLocusCounts && newStats.tabulateLocusCounts ) {
-            this.mergeLocusCounts(newStats.getLocusCounts());
+            this.mergeLocusCounts(newStats.locusCountsBySampleCount);
         }
         nLoci += newStats.getTotalLoci();
         totalDepthOfCoverage += newStats.getTotalCoverage();
     }
 
     private void mergeSamples(DepthOfCoverageStats otherStats) {
-        Map<String,long[]> otherHistogram = otherStats.getHistograms();
-        Map<String,Double> otherMeans = otherStats.getMeans();
-        for ( String s : this.getAllSamples() ) {
-            long[] internalCounts = granularHistogramBySample.get(s);
-            long[] externalCounts = otherHistogram.get(s);
+        for ( Map.Entry<String,Integer> sampleIndex : sampleIndices.entrySet() ) {
+            final int otherIndex = otherStats.sampleIndices.get(sampleIndex.getKey());
+            long[] internalCounts = granularHistograms[sampleIndex.getValue()];
+            long[] externalCounts = otherStats.granularHistograms[otherIndex];
             for ( int b = 0; b < internalCounts.length; b++ ) {
                 internalCounts[b] += externalCounts[b];
             }
 
-            this.totalCoverages.put(s, this.totalCoverages.get(s) + otherStats.totalCoverages.get(s));
+            this.totalCoverages[sampleIndex.getValue()] += otherStats.totalCoverages[otherIndex];
         }
     }
 
     private void mergeLocusCounts( long[][] otherCounts ) {
-        for ( int a = 0; a < locusCoverageCounts.length; a ++ ) {
-            for ( int b = 0; b < locusCoverageCounts[0].length; b ++ ) {
-                locusCoverageCounts[a][b] += otherCounts[a][b];
+        for ( int a = 0; a < locusCountsBySampleCount.length; a ++ ) {
+            for ( int b = 0; b < locusCountsBySampleCount[0].length; b ++ ) {
+                locusCountsBySampleCount[a][b] += otherCounts[a][b];
             }
         }
     }
 
     /*
      * Update locus counts -- takes an array in which the number of samples
-     * with depth ABOVE [i] is held. So if the bin left endpoints were 2, 5, 10
+     * with depth in bin [i] is held. So if the bin left endpoints were 2, 5, 10
      * then we'd have an array that represented:
-     * [# samples with depth 0 - inf], [# samples with depth 2 - inf],
-     * [# samples with depth 5 - inf], [# samples with depth 10-inf];
+     * [# samples with depth 0 - 1], [# samples with depth 2 - 4],
+     * [# samples with depth 5 - 9], [# samples with depth 10-inf];
      *
-     * this is
-     * @argument cumulativeSamplesByDepthBin - see above
+     * Summing it from the top gives the number of samples with depth ABOVE each
+     * left endpoint, and we count the locus once for that number of samples in
+     * each bin, so a locus costs O(bins) rather than O(samples * bins).
+     * @argument samplesByDepthBin - see above
      */
-    private void updateLocusCounts(int[] cumulativeSamplesByDepthBin) {
+    private void updateLocusCounts(int[] samplesByDepthBin) {
         if ( tabulateLocusCounts ) {
-            for ( int bin = 0; bin < cumulativeSamplesByDepthBin.length; bin ++ ) {
-                int numSamples = cumulativeSamplesByDepthBin[bin];
-                for ( int i = 0; i < numSamples; i ++ ) {
-                    locusCoverageCounts[i][bin]++;
-                }
+            int numSamples = 0;
+            for ( int bin = samplesByDepthBin.length-1; bin >= 0; bin -- ) {
+                numSamples += samplesByDepthBin[bin];
+                locusCountsBySampleCount[numSamples][bin]++;
 
-                cumulativeSamplesByDepthBin[bin] = 0; // reset counts in advance of next update()
+                samplesByDepthBin[bin] = 0; // reset counts in advance of next update()
             }
         }
     }
@@ -287,10 +319,30 @@ public class DepthOfCoverageStats {
     ////////////////////////////////////////////////////////////////////////////////////
 
     public Map<String,long[]> getHistograms() {
-        return granularHistogramBySample;
+        final Map<String,long[]> histograms = new LinkedHashMap<String,long[]>();
+        for ( Map.Entry<String,Integer> sampleIndex : sampleIndices.entrySet() ) {
+            histograms.put(sampleIndex.getKey(),granularHistograms[sampleIndex.getValue()]);
+        }
+        return histograms;
     }
 
+    /**
+     * @return the number of bases with >=X samples at >=Y coverage, indexed by [X-1][Y]
+     */
     public long[][] getLocusCounts() {
+        if ( locusCountsBySampleCount == null ) {
+            return null;
+        }
+
+        final int nBins = locusCountsBySampleCount[0].length;
+        final long[][] locusCoverageCounts = new long[nSamples][nBins];
+        for ( int bin = 0; bin < nBins; bin++ ) {
+            long atLeast = 0;
+            for ( int a = nSamples; a > 0; a-- ) {
+                atLeast += locusCountsBySampleCount[a][bin];
+                locusCoverageCounts[a-1][bin] = atLeast;
+            }
+        }
         return locusCoverageCounts;
     }
 
@@ -300,15 +352,19 @@ public class DepthOfCoverageStats {
 
     public Map<String,Double> getMeans() {
         HashMap<String,Double> means = new HashMap<String,Double>();
-        for ( String s : getAllSamples() ) {
-            means.put(s,( (double)totalCoverages.get(s))/( (double) nLoci ));
+        for ( Map.Entry<String,Integer> sampleIndex : sampleIndices.entrySet() ) {
+            means.put(sampleIndex.getKey(),( (double)totalCoverages[sampleIndex.getValue()])/( (double) nLoci ));
         }
 
         return means;
     }
 
     public Map<String,Long> getTotals() {
-        return totalCoverages;
+        final Map<String,Long> totals = new LinkedHashMap<String,Long>();
+        for ( Map.Entry<String,Integer> sampleIndex : sampleIndices.entrySet() ) {
+            totals.put(sampleIndex.getKey(),totalCoverages[sampleIndex.getValue()]);
+        }
+        return totals;
     }
 
     public long getTotalLoci() {
@@ -316,7 +372,23 @@ public class DepthOfCoverageStats {
     }
 
     public Set<String> getAllSamples() {
-        return granularHistogramBySample.keySet();
+        return sampleIndices.keySet();
+    }
+
+    /**
+     * @param sample a sample added with addSample
+     * @return the index of the sample's data in the arrays given to update() and updateDepths()
+     */
+    public int getSampleIndex(String sample) {
+        final Integer index = sampleIndices.get(sample);
+        if ( index == null ) {
+            throw new ReviewedGATKException("Sample "+sample+" was never added to these statistics");
+        }
+        return index;
+    }
+
+    public int getNumberOfSamples() {
+        return nSamples;
     }
 
     public double getTotalMeanCoverage() {
@@ -328,7 +400,7 @@ public class DepthOfCoverageStats {
     }
 
     public double[] getCoverageProportions(String sample) {
-        long[] hist = granularHistogramBySample.get(sample);
+        long[] hist = granularHistograms[getSampleIndex(sample)];
         double[] distribution = new double[hist.length];
         long count = 0;
         for ( int i = hist.length-1; i >= 0; i -- ) {
@@ -26,8 +26,14 @@
 package org.broadinstitute.gatk.tools.walkers.coverage;
 
 import org.broadinstitute.gatk.engine.walkers.WalkerTest;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.io.IOUtils;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
 import java.util.Arrays;
 
 public class CallableLociIntegrationTest extends WalkerTest {
@@ -66,4 +72,46 @@ public class CallableLociIntegrationTest extends WalkerTest {
                 Arrays.asList("7f79ad8195c4161060463eeb21d2bb11", "7ee269e5f4581a924529a356cc806e55"));
         executeTest("formatBed lots of arguments", spec);
     }
+
+    @Test
+    public void testCallableLociPerSampleMatchesSingleSampleRuns() {
+        final String[] bams = {
+                validationDataLocation + "NA12878.1kg.p2.chr1_10mb_11_mb.SLX.bam",
+                validationDataLocation + "NA12892.SLX.SRP000031.2009_06.selected.1Mb.1RG.bam"};
+        final String[] samples = {"NA12878", "NA12892"};
+        final String args = "-R " + b36KGReference + " -T CallableLoci -L 1:10,000,000-10,200,000 -dt NONE -o %s -summary %s";
+
+        final File perSampleDir = IOUtils.tempDir("CallableLociPerSample", "");
+        perSampleDir.deleteOnExit();
+        executeTest("perSample", new WalkerTestSpec(args + " -I " + bams[0] + " -I " + bams[1] + " -perSampleDir " + perSampleDir.getAbsolutePath(),
+                2, Arrays.asList("", "")));
+
+        for ( int i = 0; i < bams.length; i++ ) {
+            final File singleSampleBED = executeTest("singleSample " + samples[i], new WalkerTestSpec(args + " -I " + bams[i] + " -format BED",
+                    2, Arrays.asList("", ""))).getFirst().get(0);
+            final File perSampleBED = new File(perSampleDir, samples[i] + ".callable.bed");
+            perSampleBED.deleteOnExit();
+            Assert.assertTrue(perSampleBED.exists(), "missing " + perSampleBED);
+            Assert.assertEquals(getMd5DB().calculateFileMD5(perSampleBED), getMd5DB().calculateFileMD5(singleSampleBED),
+                    "the BED file of " + samples[i] + " differs from its single-sample run");
+        }
+    }
+
+    @Test
+    public void testCallableLociPerSampleRejectsPathsInSampleNames() throws FileNotFoundException {
+        final String bam = validationDataLocation + "NA12878.1kg.p2.chr1_10mb_11_mb.SLX.bam";
+        final File sampleRenameMapFile = createTempFile("CallableLociSampleRenameMap", ".txt");
+        final PrintWriter writer = new PrintWriter(sampleRenameMapFile);
+        writer.println(bam + "  ../escaped");
+        writer.close();
+
+        final File perSampleDir = IOUtils.tempDir("CallableLociPerSample", "");
+        perSampleDir.deleteOnExit();
+        final WalkerTestSpec spec = new WalkerTestSpec("-R " + b36KGReference + " -T CallableLoci -I " + bam +
+                " --sample_rename_mapping_file " + sampleRenameMapFile.getAbsolutePath() +
+                " -L 1:10,000,000-10,000,100 -perSampleDir " + perSampleDir.getAbsolutePath() + " -o %s -summary %s",
+                2, UserException.BadArgumentValue.class);
+        executeTest("perSample with a path in a sample name", spec);
+        Assert.assertFalse(new File(perSampleDir.getParentFile(), "escaped.callable.bed").exists());
+    }
 }
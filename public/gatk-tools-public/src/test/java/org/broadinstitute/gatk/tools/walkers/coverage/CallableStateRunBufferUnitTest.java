@@ -0,0 +1,72 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.tools.walkers.coverage;
+
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class CallableStateRunBufferUnitTest extends BaseTest {
+    private static final byte CALLABLE = (byte) CallableLoci.CalledState.CALLABLE.ordinal();
+    private static final byte NO_COVERAGE = (byte) CallableLoci.CalledState.NO_COVERAGE.ordinal();
+
+    @Test
+    public void testRunsAreCollapsedAndWritten() {
+        final CallableStateRunBuffer buffer = new CallableStateRunBuffer();
+        Assert.assertFalse(buffer.add(0, 1, CALLABLE));
+        Assert.assertFalse(buffer.add(0, 2, CALLABLE));
+        Assert.assertTrue(buffer.add(0, 3, NO_COVERAGE));  // state change
+        Assert.assertTrue(buffer.add(0, 5, NO_COVERAGE));  // gap
+        Assert.assertTrue(buffer.add(1, 6, NO_COVERAGE));  // contig change
+        Assert.assertEquals(buffer.size(), 3);
+        buffer.closeRun();
+        Assert.assertEquals(buffer.size(), 4);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(bytes);
+        buffer.writeBED(out, new String[]{"1", "2"});
+        out.close();
+        final String nl = String.format("%n");
+        Assert.assertEquals(bytes.toString(),
+                "1\t0\t2\tCALLABLE" + nl +
+                "1\t2\t3\tNO_COVERAGE" + nl +
+                "1\t4\t5\tNO_COVERAGE" + nl +
+                "2\t5\t6\tNO_COVERAGE" + nl);
+        Assert.assertEquals(buffer.size(), 0);
+    }
+
+    @Test
+    public void testBufferGrows() {
+        final CallableStateRunBuffer buffer = new CallableStateRunBuffer();
+        for ( int i = 1; i <= 1000; i++ )
+            buffer.add(0, i, i % 2 == 0 ? CALLABLE : NO_COVERAGE);
+        buffer.closeRun();
+        Assert.assertEquals(buffer.size(), 1000);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.tools.walkers.coverage;
+
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class DepthOfCoverageStatsUnitTest extends BaseTest {
+    private static final String[] SAMPLES = {"NA12878", "NA12891", "NA12892", "NA19240"};
+
+    private static DepthOfCoverageStats makeStats(final int[] endpoints) {
+        final DepthOfCoverageStats stats = new DepthOfCoverageStats(endpoints);
+        for ( final String sample : SAMPLES )
+            stats.addSample(sample);
+        stats.initializeLocusCounts();
+        return stats;
+    }
+
+    private static int binOf(final int depth, final int[] endpoints) {
+        int bin = 0;
+        while ( bin < endpoints.length && depth >= endpoints[bin] )
+            bin++;
+        return bin;
+    }
+
+    @Test
+    public void testColumnarUpdatesMatchPerSampleCounts() {
+        final int[] endpoints = DepthOfCoverageStats.calculateBinEndpoints(1, 50, 10);
+        final DepthOfCoverageStats byArray = makeStats(endpoints);
+        final DepthOfCoverageStats byMap = makeStats(endpoints);
+        final DepthOfCoverageStats secondHalf = makeStats(endpoints);
+
+        // the number of loci with at least X samples at coverage >= Y, tallied the obvious way
+        final long[][] expectedLocusCounts = new long[SAMPLES.length][endpoints.length+1];
+        final long[] expectedTotals = new long[SAMPLES.length];
+
+        final Random random = new Random(13);
+        final int nLoci = 1000;
+        for ( int locus = 0; locus < nLoci; locus++ ) {
+            final int[] counts = new int[SAMPLES.length * 6];
+            final Map<String,int[]> countsBySample = new HashMap<String,int[]>();
+            final int[] samplesAtLeast = new int[endpoints.length+1];
+            for ( final String sample : SAMPLES ) {
+                final int[] sampleCounts = new int[6];
+                for ( int base = 0; base < 4; base++ )
+                    sampleCounts[base] = random.nextInt(16);
+                sampleCounts[5] = random.nextInt(3); // deletions, which aren't counted
+                countsBySample.put(sample, sampleCounts);
+
+                final int index = byArray.getSampleIndex(sample);
+                System.arraycopy(sampleCounts, 0, counts, index * 6, 6);
+
+                final int depth = sampleCounts[0] + sampleCounts[1] + sampleCounts[2] + sampleCounts[3];
+                expectedTotals[index] += depth;
+                for ( int bin = 0; bin <= binOf(depth, endpoints); bin++ )
+                    samplesAtLeast[bin]++;
+            }
+            for ( int bin = 0; bin < samplesAtLeast.length; bin++ )
+                for ( int atLeast = 0; atLeast < samplesAtLeast[bin]; atLeast++ )
+                    expectedLocusCounts[atLeast][bin]++;
+
+            byMap.update(countsBySample);
+            if ( locus < nLoci / 2 )
+                byArray.update(counts);
+            else
+                secondHalf.update(counts);
+        }
+        byArray.merge(secondHalf);
+
+        for ( final DepthOfCoverageStats stats : Arrays.asList(byArray, byMap) ) {
+            Assert.assertEquals(stats.getTotalLoci(), nLoci);
+            for ( final String sample : SAMPLES ) {
+                Assert.assertEquals((long) stats.getTotals().get(sample), expectedTotals[stats.getSampleIndex(sample)]);
+                Assert.assertTrue(Arrays.equals(stats.getHistograms().get(sample), byMap.getHistograms().get(sample)), sample);
+            }
+            for ( int row = 0; row < SAMPLES.length; row++ )
+                Assert.assertTrue(Arrays.equals(stats.getLocusCounts()[row], expectedLocusCounts[row]), "at least " + (row+1) + " samples");
+        }
+    }
+}
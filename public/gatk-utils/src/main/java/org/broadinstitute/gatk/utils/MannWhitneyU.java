@@ -35,9 +35,13 @@ import org.apache.commons.math.distribution.NormalDistributionImpl;
 import org.broadinstitute.gatk.utils.collections.Pair;
 import org.broadinstitute.gatk.utils.exceptions.GATKException;
 
-import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -49,21 +53,50 @@ public class MannWhitneyU {
     private static NormalDistribution APACHE_NORMAL = new NormalDistributionImpl(0.0,1.0,1e-2);
     private static double LNSQRT2PI = Math.log(Math.sqrt(2.0*Math.PI));
 
-    private TreeSet<Pair<Number,USet>> observations;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // exact null distributions of U, indexed by u, for each (n,m) that has been asked for (see getExactDistribution)
+    private static final ConcurrentHashMap<Long,double[]> EXACT_DISTRIBUTIONS = new ConcurrentHashMap<Long,double[]>();
+
+    // the observations, in the order in which they were added, kept as primitives and only ranked when a
+    // statistic is requested
+    private double[] observations = new double[INITIAL_CAPACITY];
+    private boolean[] inSet1 = new boolean[INITIAL_CAPACITY];
     private int sizeSet1;
     private int sizeSet2;
+    private final boolean dither;
+    private final boolean correctForTies;
     private ExactMode exactMode;
 
-    public MannWhitneyU(ExactMode mode, boolean dither) {
-        if ( dither )
-            observations = new TreeSet<Pair<Number,USet>>(new DitheringComparator());
-        else
-            observations = new TreeSet<Pair<Number,USet>>(new NumberedPairComparator());
+    // cached ranking of the observations, valid until the next observation is added.  The U counts are doubled
+    // so that the half counted for each tied (set 1, set 2) pair stays integral
+    private boolean ranked;
+    private long twiceUSet1;
+    private long twiceUSet2;
+    private long tieCorrection;
+
+    /**
+     * @param mode whether the exact p-values are point probabilities or cumulative
+     * @param dither whether ties are broken at random
+     * @param correctForTies whether tied observations instead all get the mid-rank of their run of ties, with the
+     *                       variance of the normal approximation corrected for them (tied data then always uses
+     *                       that approximation).  Without it, ties that aren't dithered are collapsed into one
+     *                       observation, as they always have been
+     */
+    public MannWhitneyU(ExactMode mode, boolean dither, boolean correctForTies) {
+        if ( dither && correctForTies ) throw new IllegalArgumentException("Ties can either be dithered or corrected for, not both");
         sizeSet1 = 0;
         sizeSet2 = 0;
+        ranked = false;
+        this.dither = dither;
+        this.correctForTies = correctForTies;
         exactMode = mode;
     }
 
+    public MannWhitneyU(ExactMode mode, boolean dither) {
+        this(mode,dither,false);
+    }
+
     public MannWhitneyU() {
         this(ExactMode.POINT,true);
     }
@@ -82,16 +115,33 @@ public class MannWhitneyU {
      * @param set: whether the observation comes from set 1 or set 2
      */
     public void add(Number n, USet set) {
-        observations.add(new Pair<Number,USet>(n,set));
+        add(n.doubleValue(), set);
+    }
+
+    /**
+     * Add an observation without boxing it
+     * @param n: the observation
+     * @param set: whether the observation comes from set 1 or set 2
+     */
+    public void add(double n, USet set) {
+        final int size = sizeSet1 + sizeSet2;
+        if ( size == observations.length ) {
+            observations = Arrays.copyOf(observations, 2 * size);
+            inSet1 = Arrays.copyOf(inSet1, 2 * size);
+        }
+        observations[size] = n;
+        inSet1[size] = set == USet.SET1;
         if ( set == USet.SET1 ) {
             ++sizeSet1;
         } else {
             ++sizeSet2;
         }
+        ranked = false;
     }
 
     public Pair<Long,Long> getR1R2() {
-        long u1 = calculateOneSidedU(observations,MannWhitneyU.USet.SET1);
+        rank();
+        long u1 = twiceUSet1 / 2;
         long n1 = sizeSet1*(sizeSet1+1)/2;
         long r1 = u1 + n1;
         long n2 = sizeSet2*(sizeSet2+1)/2;
@@ -108,9 +158,10 @@ public class MannWhitneyU {
      * @return - u-based z-approximation, and p-value associated with the test (p-value is exact for small n,m)
      */
     @Requires({"lessThanOther != null"})
-    @Ensures({"validateObservations(observations) || Double.isNaN(result.getFirst())","result != null", "! Double.isInfinite(result.getFirst())", "! Double.isInfinite(result.getSecond())"})
+    @Ensures({"validateObservations() || Double.isNaN(result.getFirst())","result != null", "! Double.isInfinite(result.getFirst())", "! Double.isInfinite(result.getSecond())"})
     public Pair<Double,Double> runOneSidedTest(USet lessThanOther) {
-        long u = calculateOneSidedU(observations, lessThanOther);
+        rank();
+        long twiceU = lessThanOther == USet.SET1 ? twiceUSet1 : twiceUSet2;
         int n = lessThanOther == USet.SET1 ? sizeSet1 : sizeSet2;
         int m = lessThanOther == USet.SET1 ? sizeSet2 : sizeSet1;
         if ( n == 0 || m == 0 ) {
@@ -118,10 +169,14 @@ public class MannWhitneyU {
             return new Pair<Double,Double>(Double.NaN,Double.NaN);
         }
 
+        // the exact distributions don't allow for ties, so tied data always goes to the tie-corrected approximation
+        if ( tieCorrection > 0 )
+            return calculatePNormalApproximation(n, m, twiceU / 2.0, tieCorrection, false);
+
         // the null hypothesis is that {N} is stochastically less than {M}, so U has counted
         // occurrences of {M}s before {N}s. We would expect that this should be less than (n*m+1)/2 under
         // the null hypothesis, so we want to integrate from K=0 to K=U for cumulative cases. Always.
-        return calculateP(n, m, u, false, exactMode);
+        return calculateP(n, m, twiceU / 2, false, exactMode);
     }
 
     /**
@@ -132,15 +187,19 @@ public class MannWhitneyU {
     @Ensures({"result != null", "! Double.isInfinite(result.getFirst())", "! Double.isInfinite(result.getSecond())"})
     //@Requires({"validateObservations(observations)"})
     public Pair<Double,Double> runTwoSidedTest() {
-        Pair<Long,USet> uPair = calculateTwoSidedU(observations);
-        long u = uPair.first;
+        rank();
+        // see calculateTwoSidedU: the lower of the two U counts, labelled by the set it was counted against
+        Pair<Long,USet> uPair = twiceUSet2 < twiceUSet1 ? new Pair<Long,USet>(twiceUSet2,USet.SET1) : new Pair<Long,USet>(twiceUSet1,USet.SET2);
+        long twiceU = uPair.first;
         int n = uPair.second == USet.SET1 ? sizeSet1 : sizeSet2;
         int m = uPair.second == USet.SET1 ? sizeSet2 : sizeSet1;
         if ( n == 0 || m == 0 ) {
             // test is uninformative as one or both sets have no observations
             return new Pair<Double,Double>(Double.NaN,Double.NaN);
         }
-        return calculateP(n, m, u, true, exactMode);
+        if ( tieCorrection > 0 )
+            return calculatePNormalApproximation(n, m, twiceU / 2.0, tieCorrection, true);
+        return calculateP(n, m, twiceU / 2, true, exactMode);
     }
 
     /**
@@ -191,7 +250,22 @@ public class MannWhitneyU {
     @Requires({"m > 0","n > 0"})
     @Ensures({"result != null", "! Double.isInfinite(result.getFirst())", "! Double.isInfinite(result.getSecond())"})
     public static Pair<Double,Double> calculatePNormalApproximation(int n,int m,long u, boolean twoSided) {
-        double z = getZApprox(n,m,u);
+        return calculatePNormalApproximation(n, m, u, 0L, twoSided);
+    }
+
+    /**
+     * Uses a normal approximation to the U statistic, with the variance corrected for ties, in order to return a cdf p-value
+     * @param n - The number of entries in the stochastically smaller (dominant) set
+     * @param m - The number of entries in the stochastically larger (dominated) set
+     * @param u - the Mann-Whitney U value, counting tied pairs as one half
+     * @param tieCorrection - the sum of t^3 - t over the sizes t of each run of tied observations
+     * @param twoSided - whether the test should be two sided
+     * @return p-value associated with the normal approximation
+     */
+    @Requires({"m > 0","n > 0","tieCorrection >= 0"})
+    @Ensures({"result != null", "! Double.isInfinite(result.getFirst())", "! Double.isInfinite(result.getSecond())"})
+    public static Pair<Double,Double> calculatePNormalApproximation(int n, int m, double u, long tieCorrection, boolean twoSided) {
+        double z = getZApprox(n,m,u,tieCorrection);
         if ( twoSided ) {
             return new Pair<Double,Double>(z,2.0*(z < 0 ? STANDARD_NORMAL.cdf(z) : 1.0-STANDARD_NORMAL.cdf(z)));
         } else {
@@ -204,13 +278,19 @@ public class MannWhitneyU {
      * @param n - The number of entries in the stochastically smaller (dominant) set
      * @param m - The number of entries in the stochastically larger (dominated) set
      * @param u - the Mann-Whitney U value
+     * @param tieCorrection - the sum of t^3 - t over the sizes t of each run of tied observations
      * @return the asymptotic z-approximation corresponding to the MWU p-value for n < m
      */
     @Requires({"m > 0","n > 0"})
     @Ensures({"! Double.isNaN(result)", "! Double.isInfinite(result)"})
-    private static double getZApprox(int n, int m, long u) {
+    private static double getZApprox(int n, int m, double u, long tieCorrection) {
+        final long size = ((long) n) + m;
         double mean = ( ((long)m)*n+1.0)/2;
-        double var = (((long) n)*m*(n+m+1.0))/12;
+        double var = (((long) n)*m*(n+m+1.0 - ((double) tieCorrection)/(size*(size-1))))/12;
+        if ( var <= 0.0 ) {
+            // every observation is tied, so there is no evidence either way
+            return 0.0;
+        }
         double z = ( u - mean )/Math.sqrt(var);
         return z;
     }
@@ -255,6 +335,133 @@ public class MannWhitneyU {
         return coef*Arithmetic.binomial(n,k)*Math.pow(z-k,n) + uniformSumHelper(z,m,n,k+1);
     }
 
+    /**
+     * Ranks the observations of both sets in a single merge over their sorted values, caching the doubled
+     * U counts and the tie correction until another observation is added.
+     *
+     * When correcting for ties, the observations in a run of ties all get the mid-rank of the run: each tied
+     * (set 1, set 2) pair counts one half towards both U counts, and the run contributes t^3 - t to the tie
+     * correction of the variance.
+     *
+     * Otherwise, when there are ties, they must be handled exactly as the tree of observations this class used
+     * to keep handled them: dithered ties drawing the same coin flips from the shared random generator in the
+     * same order, or the annotations (and everything else that draws from the generator afterwards) would change,
+     * and other ties collapsed.  The tree's order depends on its shape, so in that case the observations are
+     * replayed into one, in the order in which they were added; see rankAsTree.  The ties are looked for
+     * before sorting, so that the sort and merge aren't done just to be thrown away.
+     */
+    @Ensures({"ranked", "twiceUSet1 + twiceUSet2 <= 2L * sizeSet1 * sizeSet2"})
+    private void rank() {
+        if ( ranked )
+            return;
+
+        if ( ! correctForTies && hasTies() ) {
+            rankAsTree();
+            return;
+        }
+
+        final double[] set1 = new double[sizeSet1];
+        final double[] set2 = new double[sizeSet2];
+        int n1 = 0;
+        int n2 = 0;
+        for ( int k = 0; k < sizeSet1 + sizeSet2; k++ ) {
+            if ( inSet1[k] )
+                set1[n1++] = observations[k];
+            else
+                set2[n2++] = observations[k];
+        }
+        Arrays.sort(set1);
+        Arrays.sort(set2);
+
+        long set2BeforeSet1 = 0;
+        long set1BeforeSet2 = 0;
+        long ties = 0;
+        int i = 0;
+        int j = 0;
+        while ( i < sizeSet1 || j < sizeSet2 ) {
+            final double value = j == sizeSet2 || ( i < sizeSet1 && Double.compare(set1[i], set2[j]) <= 0 ) ? set1[i] : set2[j];
+            int tied1 = 0;
+            while ( i + tied1 < sizeSet1 && Double.compare(set1[i + tied1], value) == 0 )
+                tied1++;
+            int tied2 = 0;
+            while ( j + tied2 < sizeSet2 && Double.compare(set2[j + tied2], value) == 0 )
+                tied2++;
+
+            // everything in the other set before this run of ties precedes all of it
+            set2BeforeSet1 += 2L * tied1 * j;
+            set1BeforeSet2 += 2L * tied2 * i;
+
+            final long tied = tied1 + tied2;
+            set2BeforeSet1 += ((long) tied1) * tied2;
+            set1BeforeSet2 += ((long) tied1) * tied2;
+            ties += tied * tied * tied - tied;
+
+            i += tied1;
+            j += tied2;
+        }
+
+        // without ties the tree ordered its observations without any coin flips, bar the one it drew when
+        // checking its first observation against itself
+        if ( ! correctForTies && dither && sizeSet1 + sizeSet2 > 0 )
+            Utils.getRandomGenerator().nextBoolean();
+
+        twiceUSet1 = set2BeforeSet1;
+        twiceUSet2 = set1BeforeSet2;
+        tieCorrection = correctForTies ? ties : 0;
+        ranked = true;
+    }
+
+    /**
+     * @return true if any two observations, of either set, have the same value (as Double.compare sees it)
+     */
+    private boolean hasTies() {
+        // Double.equals agrees with Double.compare, unlike ==, on -0.0 and NaN
+        final Set<Double> values = new HashSet<Double>(2 * (sizeSet1 + sizeSet2));
+        for ( int k = 0; k < sizeSet1 + sizeSet2; k++ )
+            if ( ! values.add(observations[k]) )
+                return true;
+        return false;
+    }
+
+    /**
+     * Ranks the observations by adding them, in the order in which they were added here, to a tree ordered by
+     * value that breaks ties with a coin flip when dithering, and otherwise keeps only the first of the tied
+     * observations, just as this class used to keep them.
+     */
+    private void rankAsTree() {
+        final double[] values = observations;
+        final Random random = dither ? Utils.getRandomGenerator() : null;
+        final TreeSet<Integer> tree = new TreeSet<Integer>(new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer left, final Integer right) {
+                final int comp = Double.compare(values[left], values[right]);
+                if ( comp != 0 || random == null ) { return comp; }
+                return random.nextBoolean() ? -1 : 1;
+            }
+        });
+        for ( int k = 0; k < sizeSet1 + sizeSet2; k++ )
+            tree.add(k);
+
+        long set2BeforeSet1 = 0;
+        long set1BeforeSet2 = 0;
+        int set1SeenSoFar = 0;
+        int set2SeenSoFar = 0;
+        for ( final int k : tree ) {
+            if ( inSet1[k] ) {
+                set2BeforeSet1 += set2SeenSoFar;
+                ++set1SeenSoFar;
+            } else {
+                set1BeforeSet2 += set1SeenSoFar;
+                ++set2SeenSoFar;
+            }
+        }
+
+        twiceUSet1 = 2 * set2BeforeSet1;
+        twiceUSet2 = 2 * set1BeforeSet2;
+        tieCorrection = 0;
+        ranked = true;
+    }
+
     /**
      * Calculates the U-statistic associated with a two-sided test (e.g. the RV from which one set is drawn
      * stochastically dominates the RV from which the other set is drawn); two-sidedness is accounted for
@@ -394,17 +601,45 @@ public class MannWhitneyU {
      * @return recursive p-value
      */
     private static double cpr(int n, int m, long u) {
-        if ( u < 0 ) {
+        if ( u < 0 || u > ((long) n)*m ) {
             return 0.0;
         }
+        return getExactDistribution(n,m)[(int) u];
+    }
+
+    /**
+     * Gets the exact null distribution of U for n set-1 and m set-2 entries, computing and memoizing it (and the
+     * distributions it depends upon) the first time it is asked for.  Entry u is built from the same recursion
+     * as before, p(n,m,u) = n/(n+m) * p(n-1,m,u-m) + m/(n+m) * p(n,m-1,u), but each (n,m) is now evaluated once
+     * for all u rather than once per path through the recursion.
+     * @param n: number of set-1 entries
+     * @param m: number of set-2 entries
+     * @return the probability of each u from 0 to n*m; callers must not modify it
+     */
+    @Requires({"n >= 0","m >= 0"})
+    @Ensures({"result != null","result.length == n*m+1"})
+    private static double[] getExactDistribution(int n, int m) {
+        final Long key = (((long) n) << 32) | m;
+        final double[] cached = EXACT_DISTRIBUTIONS.get(key);
+        if ( cached != null )
+            return cached;
+
+        final double[] distribution = new double[n*m+1];
         if ( m == 0 || n == 0 ) {
             // there are entries in set 1 or set 2, so no set-2 entry can precede a set-1 entry; thus u must be zero.
-            // note that this exists only for edification, as when we reach this point, the coefficient on this term is zero anyway
-            return ( u == 0 ) ? 1.0 : 0.0;
+            distribution[0] = 1.0;
+        } else {
+            final double[] fewerSet1 = getExactDistribution(n-1,m);
+            final double[] fewerSet2 = getExactDistribution(n,m-1);
+            for ( int u = 0; u < distribution.length; u++ ) {
+                final double pFewerSet1 = u >= m && u-m < fewerSet1.length ? fewerSet1[u-m] : 0.0;
+                final double pFewerSet2 = u < fewerSet2.length ? fewerSet2[u] : 0.0;
+                distribution[u] = (((double)n)/(n+m))*pFewerSet1 + (((double)m)/(n+m))*pFewerSet2;
+            }
         }
 
-
-        return (((double)n)/(n+m))*cpr(n-1,m,u-m) + (((double)m)/(n+m))*cpr(n,m-1,u);
+        final double[] previous = EXACT_DISTRIBUTIONS.putIfAbsent(key, distribution);
+        return previous == null ? distribution : previous;
     }
 
     private static double cumulativeCPR(int n, int m, long u ) {
@@ -415,19 +650,22 @@ public class MannWhitneyU {
         double p = 0.0;
         // optimization using symmetry, use the least amount of sums possible
         long uSym = ( u <= n*m/2 ) ? u : ((long)n)*m-u;
-        for ( long uu = 0; uu < uSym; uu++ ) {
-            p += cpr(n,m,uu);
+        final double[] distribution = getExactDistribution(n,m);
+        for ( long uu = 0; uu < uSym && uu < distribution.length; uu++ ) {
+            p += distribution[(int) uu];
         }
         // correct by 1.0-p if the optimization above was used (e.g. 1-right tail = left tail)
         return (u <= n*m/2) ? p : 1.0-p;
     }
 
     /**
-     * hook into the data tree, for testing purposes only
-     * @return  observations
+     * hook into the U statistics, for testing purposes only
+     * @param dominator - the set that is hypothesized to be stochastically dominating
+     * @return the number of times an observation of the other set precedes one of dominator (see calculateOneSidedU)
      */
-    protected TreeSet<Pair<Number,USet>> getObservations() {
-        return observations;
+    protected long getOneSidedU(USet dominator) {
+        rank();
+        return ( dominator == USet.SET1 ? twiceUSet1 : twiceUSet2 ) / 2;
     }
 
     /**
@@ -438,6 +676,17 @@ public class MannWhitneyU {
         return new Pair<Integer,Integer>(sizeSet1,sizeSet2);
     }
 
+    /**
+     * Validates that our observations are in the correct format for a MWU test -- this is only called by the contracts API during testing
+     * @return true iff the observations are valid (no INFs or NaNs, at least one data point in each set)
+     */
+    protected boolean validateObservations() {
+        for ( int i = 0; i < sizeSet1 + sizeSet2; i++ )
+            if ( Double.isNaN(observations[i]) || Double.isInfinite(observations[i]) )
+                return false;
+        return sizeSet1 > 0 && sizeSet2 > 0;
+    }
+
     /**
      * Validates that observations are in the correct format for a MWU test -- this is only called by the contracts API during testing
      * @param tree - the collection of labeled observations
@@ -465,42 +714,6 @@ public class MannWhitneyU {
             return ! seenInvalid && seen1 && seen2;
     }
 
-    /**
-     * A comparator class which uses dithering on tie-breaking to ensure that the internal treeset drops no values
-     * and to ensure that rank ties are broken at random.
-     */
-    private static class DitheringComparator implements Comparator<Pair<Number,USet>>, Serializable {
-
-        public DitheringComparator() {}
-
-        @Override
-        public boolean equals(Object other) { return false; }
-
-        @Override
-        public int compare(Pair<Number,USet> left, Pair<Number,USet> right) {
-            double comp = Double.compare(left.first.doubleValue(),right.first.doubleValue());
-            if ( comp > 0 ) { return 1; }
-            if ( comp < 0 ) { return -1; }
-            return Utils.getRandomGenerator().nextBoolean() ? -1 : 1;
-        }
-    }
-
-    /**
-     * A comparator that reaches into the pair and compares numbers without tie-braking.
-     */
-    private static class NumberedPairComparator implements Comparator<Pair<Number,USet>>, Serializable {
-
-        public NumberedPairComparator() {}
-
-        @Override
-        public boolean equals(Object other) { return false; }
-
-        @Override
-        public int compare(Pair<Number,USet> left, Pair<Number,USet> right ) {
-            return Double.compare(left.first.doubleValue(),right.first.doubleValue());
-        }
-    }
-
     public enum USet { SET1, SET2 }
     public enum ExactMode { POINT, CUMULATIVE }
 
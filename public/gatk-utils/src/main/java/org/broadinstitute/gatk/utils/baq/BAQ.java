@@ -72,6 +72,14 @@ public class BAQ {
         RECALCULATE                 // do HMM BAQ calculation on the fly, regardless of whether there's a tag present
     }
 
+    /**
+     * The implementations of the BAQ HMM.  All implementations give identical results.
+     */
+    public enum HMMImplementation {
+        ORIGINAL,                   // the scalar banded HMM synchronized with samtools, the default
+        FLAT_BAND                   // the same HMM over flattened band matrices that are reused across reads
+    }
+
     /** these are features that only the walker can override */
     public enum QualityMode {
         ADD_TAG,                    // calculate the BAQ, but write it into the reads as the BAQ tag, leaving QUAL field alone
@@ -104,6 +112,7 @@ public class BAQ {
     private double ce = 0.1;    // gap extension probability [0.1]
 	private int cb = 7;         // band width [7]
     private boolean includeClippedBases = false;
+    private HMMImplementation hmmImplementation = HMMImplementation.ORIGINAL;
 
     public byte getMinBaseQual() {
         return minBaseQual;
@@ -126,6 +135,15 @@ public class BAQ {
         return cb;
     }
 
+    public HMMImplementation getHMMImplementation() {
+        return hmmImplementation;
+    }
+
+    public void setHMMImplementation(final HMMImplementation hmmImplementation) {
+        if ( hmmImplementation == null ) throw new IllegalArgumentException("hmmImplementation cannot be null");
+        this.hmmImplementation = hmmImplementation;
+    }
+
     /**
      * Use defaults for everything
      */
@@ -163,6 +181,25 @@ public class BAQ {
 
     private double[][][] EPSILONS = new double[256][256][SAMUtils.MAX_PHRED_SCORE+1];
 
+    /**
+     * The bases of EPSILONS as small codes: A, C, G and T (in either case) are 0 to 3, everything else is 4
+     */
+    private final static String CODED_BASES = "ACGTN";
+    private final static byte[] BASE_CODES = new byte[256];
+    static {
+        java.util.Arrays.fill(BASE_CODES, (byte)4);
+        for ( int code = 0; code < 4; code++ ) {
+            BASE_CODES[CODED_BASES.charAt(code)] = (byte)code;
+            BASE_CODES[Character.toLowerCase(CODED_BASES.charAt(code))] = (byte)code;
+        }
+    }
+
+    /**
+     * Same values as EPSILONS, indexed by [read base code][qual][ref base code], so that a single row of
+     * ref base code -> epsilon serves a whole row of the HMM
+     */
+    private final double[][][] CODED_EPSILONS = new double[CODED_BASES.length()][SAMUtils.MAX_PHRED_SCORE+1][CODED_BASES.length()];
+
     private void initializeCachedData() {
         for ( int i = 0; i < 256; i++ )
             for ( int j = 0; j < 256; j++ )
@@ -179,6 +216,11 @@ public class BAQ {
                 }
             }
         }
+
+        for ( int readCode = 0; readCode < CODED_BASES.length(); readCode++ )
+            for ( int q = 0; q <= SAMUtils.MAX_PHRED_SCORE; q++ )
+                for ( int refCode = 0; refCode < CODED_BASES.length(); refCode++ )
+                    CODED_EPSILONS[readCode][q][refCode] = EPSILONS[CODED_BASES.charAt(refCode)][CODED_BASES.charAt(readCode)][q];
     }
 
     protected double calcEpsilon( byte ref, byte read, byte qualB ) {
@@ -202,6 +244,9 @@ public class BAQ {
         //if ( q != null && q.length != state.length ) throw new ReviewedGATKException("BUG: BAQ quality length != read sequence length");
         //if ( state != null && state.length != l_query ) throw new ReviewedGATKException("BUG: state length != read sequence length");
 
+        if ( hmmImplementation == HMMImplementation.FLAT_BAND )
+            return hmm_glocal_flat_band(ref, query, qstart, l_query, _iqual, state, q);
+
 		int i, k;
 
         /*** initialization ***/
@@ -209,18 +254,7 @@ public class BAQ {
 		final int l_ref = ref.length;
 
 		// set band width
-		int bw2, bw = l_ref > l_query? l_ref : l_query;
-        if (cb < Math.abs(l_ref - l_query)) {
-            bw = Math.abs(l_ref - l_query) + 3;
-            //System.out.printf("SC  cb=%d, bw=%d%n", cb, bw);
-        }
-        if (bw > cb) bw = cb;
-		if (bw < Math.abs(l_ref - l_query)) {
-            //int bwOld = bw;
-            bw = Math.abs(l_ref - l_query);
-            //System.out.printf("old bw is %d, new is %d%n", bwOld, bw);
-        }
-        //System.out.printf("c->bw = %d, bw = %d, l_ref = %d, l_query = %d\n", cb, bw, l_ref, l_query);
+		int bw2, bw = calculateBandWidth(l_ref, l_query);
 		bw2 = bw * 2 + 1;
 
         // allocate the forward and backward matrices f[][] and b[][] and the scaling array s[]
@@ -360,6 +394,205 @@ public class BAQ {
 		return 0;
 	}
 
+    /**
+     * The band width used by the HMM for a reference of length l_ref and a query of length l_query
+     */
+    private int calculateBandWidth(final int l_ref, final int l_query) {
+        int bw = l_ref > l_query? l_ref : l_query;
+        if (cb < Math.abs(l_ref - l_query)) {
+            bw = Math.abs(l_ref - l_query) + 3;
+        }
+        if (bw > cb) bw = cb;
+        if (bw < Math.abs(l_ref - l_query)) {
+            bw = Math.abs(l_ref - l_query);
+        }
+        return bw;
+    }
+
+    /**
+     * The forward, backward and scaling matrices of hmm_glocal_flat_band, reused across calls by the same thread
+     */
+    private final static class FlatBandMatrices {
+        double[] f = new double[0], b = new double[0], s = new double[0];
+        byte[] refCodes = new byte[0];
+
+        void ensureCapacity(final int l_ref, final int l_query, final int rowLength) {
+            final int size = (l_query + 1) * rowLength;
+            if ( f.length < size ) {
+                f = new double[size];
+                b = new double[size];
+            } else {
+                // the HMM relies on cells outside of the band being 0
+                java.util.Arrays.fill(f, 0, size, 0.0);
+                java.util.Arrays.fill(b, 0, size, 0.0);
+            }
+            if ( s.length < l_query + 2 ) s = new double[l_query + 2];
+            if ( refCodes.length < l_ref ) refCodes = new byte[l_ref];
+        }
+    }
+
+    private final ThreadLocal<FlatBandMatrices> flatBandMatrices = new ThreadLocal<FlatBandMatrices>() {
+        @Override
+        protected FlatBandMatrices initialValue() {
+            return new FlatBandMatrices();
+        }
+    };
+
+    /**
+     * Same computation as hmm_glocal, giving bit for bit identical results, but faster
+     *
+     * The f[][] and b[][] matrices are flattened into single arrays of rows of length bw2*3 + 6, which are reused
+     * across calls by the same thread instead of being allocated for every read.  The bases are converted to codes
+     * once, so that each row of the HMM looks up its emission probabilities in a single small array, and the band
+     * offsets are computed incrementally.  Every cell is calculated with exactly the same floating point operations,
+     * in the same order, as in hmm_glocal.
+     */
+    private int hmm_glocal_flat_band(final byte[] ref, final byte[] query, final int qstart, final int l_query, final byte[] _iqual, final int[] state, final byte[] q) {
+        int i, k;
+
+        final int l_ref = ref.length;
+        final int bw = calculateBandWidth(l_ref, l_query);
+        final int bw2 = bw * 2 + 1;
+        final int rowLength = bw2*3 + 6;
+
+        final FlatBandMatrices matrices = flatBandMatrices.get();
+        matrices.ensureCapacity(l_ref, l_query, rowLength);
+        final double[] f = matrices.f, b = matrices.b, s = matrices.s;
+        final byte[] refCodes = matrices.refCodes;
+        for (k = 0; k < l_ref; ++k) refCodes[k] = BASE_CODES[ref[k] & 0xFF];
+
+        // initialize transition probabilities
+        final double sM, sI, bM, bI;
+        sM = sI = 1. / (2 * l_query + 2);
+        bM = (1 - cd) / l_ref; bI = cd / l_ref; // (bM+bI)*l_ref==1
+
+        final double m0 = (1 - cd - cd) * (1 - sM), m1 = cd * (1 - sM), m2 = m1;
+        final double m3 = (1 - ce) * (1 - sI), m4 = ce * (1 - sI);
+        final double m6 = 1 - ce, m8 = ce;
+
+        /*** forward ***/
+        // f[0]
+        f[set_u(bw, 0, 0)] = s[0] = 1.;
+        { // f[1]
+            final int fi = rowLength;
+            final double[] eRow = CODED_EPSILONS[BASE_CODES[query[qstart] & 0xFF]][_iqual[qstart]];
+            double sum;
+            int beg = 1, end = l_ref < bw + 1? l_ref : bw + 1, _beg, _end;
+            for (k = beg, sum = 0.; k <= end; ++k) {
+                final int u = fi + set_u(bw, 1, k);
+                f[u] = eRow[refCodes[k-1]] * bM; f[u+1] = EI * bI;
+                sum += f[u] + f[u+1];
+            }
+            // rescale
+            s[1] = sum;
+            _beg = fi + set_u(bw, 1, beg); _end = fi + set_u(bw, 1, end) + 2;
+            for (k = _beg; k <= _end; ++k) f[k] /= sum;
+        }
+
+        // f[2..l_query]
+        for (i = 2; i <= l_query; ++i) {
+            final int fi = i * rowLength, fi1 = fi - rowLength;
+            final double[] eRow = CODED_EPSILONS[BASE_CODES[query[qstart+i-1] & 0xFF]][_iqual[qstart+i-1]];
+            double sum;
+            int beg = 1, end = l_ref, x, _beg, _end;
+            x = i - bw; beg = beg > x? beg : x; // band start
+            x = i + bw; end = end < x? end : x; // band end
+
+            // set_u(bw, i, k), set_u(bw, i-1, k-1) and set_u(bw, i-1, k) all advance by 3 with k
+            int u = fi + set_u(bw, i, beg), v11 = fi1 + set_u(bw, i-1, beg-1), v10 = fi1 + set_u(bw, i-1, beg);
+            for (k = beg, sum = 0.; k <= end; ++k, u += 3, v11 += 3, v10 += 3) {
+                final int v01 = u - 3; // set_u(bw, i, k-1)
+                f[u] = eRow[refCodes[k-1]] * (m0 * f[v11] + m3 * f[v11+1] + m6 * f[v11+2]);
+                f[u+1] = EI * (m1 * f[v10] + m4 * f[v10+1]);
+                f[u+2] = m2 * f[v01] + m8 * f[v01+2];
+                sum += f[u] + f[u+1] + f[u+2];
+            }
+            // rescale
+            s[i] = sum;
+            _beg = fi + set_u(bw, i, beg); _end = fi + set_u(bw, i, end) + 2;
+            for (k = _beg, sum = 1./sum; k <= _end; ++k) f[k] *= sum;
+        }
+        { // f[l_query+1]
+            final int fl = l_query * rowLength;
+            double sum;
+            for (k = 1, sum = 0.; k <= l_ref; ++k) {
+                final int u = set_u(bw, l_query, k);
+                if (u < 3 || u >= bw2*3+3) continue;
+                sum += f[fl+u] * sM + f[fl+u+1] * sI;
+            }
+            s[l_query+1] = sum; // the last scaling factor
+        }
+
+        /*** backward ***/
+        // b[l_query] (b[l_query+1][0]=1 and thus \tilde{b}[][]=1/s[l_query+1]; this is where s[l_query+1] comes from)
+        {
+            final int bl = l_query * rowLength;
+            for (k = 1; k <= l_ref; ++k) {
+                final int u = set_u(bw, l_query, k);
+                if (u < 3 || u >= bw2*3+3) continue;
+                b[bl+u] = sM / s[l_query] / s[l_query+1]; b[bl+u+1] = sI / s[l_query] / s[l_query+1];
+            }
+        }
+        // b[l_query-1..1]
+        for (i = l_query - 1; i >= 1; --i) {
+            final int bi = i * rowLength, bi1 = bi + rowLength;
+            final double[] eRow = CODED_EPSILONS[BASE_CODES[query[qstart+i] & 0xFF]][_iqual[qstart+i]];
+            int beg = 1, end = l_ref, x, _beg, _end;
+            double y = (i > 1)? 1. : 0.;
+            x = i - bw; beg = beg > x? beg : x;
+            x = i + bw; end = end < x? end : x;
+
+            // set_u(bw, i, k), set_u(bw, i+1, k+1) and set_u(bw, i+1, k) all go down by 3 with k
+            int u = bi + set_u(bw, i, end), v11 = bi1 + set_u(bw, i+1, end+1), v10 = bi1 + set_u(bw, i+1, end);
+            for (k = end; k >= beg; --k, u -= 3, v11 -= 3, v10 -= 3) {
+                final int v01 = u + 3; // set_u(bw, i, k+1)
+                final double e = (k >= l_ref? 0 : eRow[refCodes[k]]) * b[v11];
+                b[u] = e * m0 + EI * m1 * b[v10+1] + m2 * b[v01+2]; // b[v11] has been folded into e.
+                b[u+1] = e * m3 + EI * m4 * b[v10+1];
+                b[u+2] = (e * m6 + m8 * b[v01+2]) * y;
+            }
+            // rescale
+            _beg = bi + set_u(bw, i, beg); _end = bi + set_u(bw, i, end) + 2;
+            for (k = _beg, y = 1./s[i]; k <= _end; ++k) b[k] *= y;
+        }
+
+        { // b[0]
+            final int b1 = rowLength;
+            final double[] eRow = CODED_EPSILONS[BASE_CODES[query[qstart] & 0xFF]][_iqual[qstart]];
+            int beg = 1, end = l_ref < bw + 1? l_ref : bw + 1;
+            double sum = 0.;
+            for (k = end; k >= beg; --k) {
+                final int u = set_u(bw, 1, k);
+                if (u < 3 || u >= bw2*3+3) continue;
+                sum += eRow[refCodes[k-1]] * b[b1+u] * bM + EI * b[b1+u+1] * bI;
+            }
+            b[set_u(bw, 0, 0)] = sum / s[0]; // if everything works as is expected, this is 1.0
+        }
+
+        /*** MAP ***/
+        for (i = 1; i <= l_query; ++i) {
+            final int row = i * rowLength;
+            double sum = 0., max = 0.;
+            int beg = 1, end = l_ref, x, max_k = -1;
+            x = i - bw; beg = beg > x? beg : x;
+            x = i + bw; end = end < x? end : x;
+            int u = row + set_u(bw, i, beg);
+            for (k = beg; k <= end; ++k, u += 3) {
+                double z;
+                sum += (z = f[u] * b[u]); if (z > max) { max = z; max_k = (k-1)<<2 | 0; }
+                sum += (z = f[u+1] * b[u+1]); if (z > max) { max = z; max_k = (k-1)<<2 | 1; }
+            }
+            max /= sum;
+            if (state != null) state[qstart+i-1] = max_k;
+            if (q != null) {
+                k = (int)(-4.343 * Math.log(1. - max) + .499); // = 10*log10(1-max)
+                q[qstart+i-1] = (byte)(k > 100? 99 : (k < minBaseQual ? minBaseQual : k));
+            }
+        }
+
+        return 0;
+    }
+
     // ---------------------------------------------------------------------------------------------------------------
     //
     // Helper routines
@@ -0,0 +1,382 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.codecs.gvcfstore;
+
+import htsjdk.tribble.BinaryFeatureCodec;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.FeatureCodecHeader;
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+import org.broadinstitute.gatk.utils.commandline.RodBinding;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Codec for GVCF stores, the binary columnar gVCF format written by CombineGVCFs
+ *
+ * <p>
+ * A GVCF store holds the records of any number of gVCFs in a single position-sorted file, so that one index and one
+ * seek per interval serve every sample in it.  Each sample's reference blocks are kept as the runs in which they were
+ * called, rather than being broken up wherever another sample has a record, and the records of different samples
+ * that share their position, alleles and site-level fields are stored as a single record holding just those samples.
+ * Within a record the genotype fields are laid out column by column, and they are only decoded once the genotypes
+ * of the record are asked for.
+ * </p>
+ *
+ * <p>
+ * As the reference blocks of a sample are not broken up, the records of a store overlap each other; all of the
+ * records spanning a site are needed to see every sample there (see GenotypeGVCFs).
+ * </p>
+ *
+ * <h2>File format</h2>
+ * <p>
+ * All numbers are big-endian and all strings are in modified UTF-8, as written by {@link DataOutputStream}.
+ * </p>
+ * <pre>
+ *     file      := "GVS" version:byte headerLength:int VCF-header-text record*
+ *     record    := length:int contig:string start:int end:int id:string log10PError:double filters alleles info
+ *                  nSamples:int genotypes
+ *     filters   := 0:byte (unfiltered) | 1:byte (PASS) | 2:byte n:short filter:string^n
+ *     alleles   := n:short allele:string^n (the reference first)
+ *     info      := n:short (key:string 0:byte | key:string 1:byte value:string)^n
+ *     genotypes := sampleIndex:int^nSamples GT^nSamples GQ:int^nSamples DP:int^nSamples AD^nSamples PL^nSamples
+ *                  FT:string^nSamples attributes^nSamples
+ *     GT        := ploidy:byte (with 0x80 set if phased) alleleIndex:byte^ploidy (-1 for a no-call)
+ *     AD, PL    := n:short value:int^n
+ *     attributes:= n:short (key:string value:string)^n
+ * </pre>
+ * <p>
+ * Missing GQ and DP values are stored as -1, missing AD, PL and attributes as n = 0 and a missing FT as an empty
+ * string.  INFO and FORMAT values are stored as their VCF text, and decoded as strings just as the VCF codec does.
+ * </p>
+ * <p>
+ * The format therefore limits each count stored as a short to 32767, each string to 65535 bytes of modified UTF-8,
+ * ploidies to 127 and the number of alleles of a record with genotypes to 128; the writer refuses records beyond them.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <p>
+ * GVCF stores are recognized by their content, so they can be passed wherever gVCFs are expected:
+ * </p>
+ * <pre>
+ *     -V cohort.gvs
+ * </pre>
+ */
+public class GVCFStoreCodec extends BinaryFeatureCodec<VariantContext> {
+    /**
+     * The extension of GVCF store files
+     */
+    public final static String STORE_EXT = "gvs";
+
+    /**
+     * The name of this codec's feature type, as used in rod binding tags
+     */
+    public final static String FEATURE_NAME = "GVCFStore";
+
+    final static byte[] MAGIC = {'G', 'V', 'S'};
+    final static byte VERSION = 1;
+
+    final static byte UNFILTERED = 0;
+    final static byte PASSES_FILTERS = 1;
+    final static byte FILTERED = 2;
+
+    final static byte FLAG_VALUE = 0;
+    final static byte STRING_VALUE = 1;
+
+    final static int PHASED = 0x80;
+
+    final static int MAX_COUNT = Short.MAX_VALUE;
+    final static int MAX_PLOIDY = PHASED - 1;
+    final static int MAX_GENOTYPED_ALLELES = Byte.MAX_VALUE + 1;
+
+    private VCFHeader header = null;
+    private List<String> samples = null;
+
+    // alternate alleles are mostly <NON_REF> and a handful of others, so we share their instances between records
+    private final Map<String, Allele> altAlleleCache = new HashMap<>();
+    private String lastContig = null;
+
+    /**
+     * Is the given file a GVCF store?
+     *
+     * @param file the file to check
+     * @return true if the file has the name of a GVCF store, false otherwise
+     */
+    public static boolean isStoreFile(final File file) {
+        return file != null && file.getName().endsWith("." + STORE_EXT);
+    }
+
+    /**
+     * Is the given rod binding bound to a GVCF store?
+     *
+     * @param binding the rod binding to check
+     * @return true if the binding reads a GVCF store, false otherwise
+     */
+    public static boolean isStoreBinding(final RodBinding<?> binding) {
+        return binding.getTribbleType() != null && binding.getTribbleType().equalsIgnoreCase(FEATURE_NAME);
+    }
+
+    @Override
+    public Class<VariantContext> getFeatureType() {
+        return VariantContext.class;
+    }
+
+    @Override
+    public boolean canDecode(final String path) {
+        final byte[] magic = new byte[MAGIC.length + 1];
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(path));
+            try {
+                in.readFully(magic);
+            } finally {
+                in.close();
+            }
+        } catch ( IOException e ) {
+            return false;
+        }
+        return Arrays.equals(Arrays.copyOf(magic, MAGIC.length), MAGIC) && magic[MAGIC.length] == VERSION;
+    }
+
+    @Override
+    public FeatureCodecHeader readHeader(final PositionalBufferedStream source) throws IOException {
+        final DataInputStream in = new DataInputStream(source);
+        final byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if ( ! Arrays.equals(magic, MAGIC) )
+            throw new UserException.MalformedFile("this is not a GVCF store");
+        final byte version = in.readByte();
+        if ( version != VERSION )
+            throw new UserException.MalformedFile("GVCF store version " + version + " is not supported, only version " + VERSION + " is");
+
+        final byte[] headerText = new byte[in.readInt()];
+        in.readFully(headerText);
+        final VCFCodec vcfCodec = new VCFCodec();
+        header = (VCFHeader) vcfCodec.readActualHeader(vcfCodec.makeSourceFromStream(new ByteArrayInputStream(headerText)));
+        samples = new ArrayList<>(header.getGenotypeSamples());
+
+        return new FeatureCodecHeader(header, source.getPosition());
+    }
+
+    /**
+     * @return the VCF header of the store, once it has been read
+     */
+    public VCFHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public Feature decodeLoc(final PositionalBufferedStream source) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(readRecord(source)));
+        return new SimpleFeature(readContig(in), in.readInt(), in.readInt());
+    }
+
+    @Override
+    public VariantContext decode(final PositionalBufferedStream source) throws IOException {
+        final byte[] record = readRecord(source);
+        final ByteArrayInputStream bytes = new ByteArrayInputStream(record);
+        final DataInputStream in = new DataInputStream(bytes);
+
+        final VariantContextBuilder builder = new VariantContextBuilder();
+        builder.source(FEATURE_NAME);
+        builder.chr(readContig(in)).start(in.readInt()).stop(in.readInt());
+        builder.id(in.readUTF());
+        builder.log10PError(in.readDouble());
+
+        switch ( in.readByte() ) {
+            case UNFILTERED:
+                builder.unfiltered();
+                break;
+            case PASSES_FILTERS:
+                builder.passFilters();
+                break;
+            default:
+                final int nFilters = in.readShort();
+                final Set<String> filters = new LinkedHashSet<>(nFilters);
+                for ( int i = 0; i < nFilters; i++ )
+                    filters.add(in.readUTF());
+                builder.filters(filters);
+        }
+
+        final int nAlleles = in.readShort();
+        final List<Allele> alleles = new ArrayList<>(nAlleles);
+        alleles.add(Allele.create(in.readUTF(), true));
+        for ( int i = 1; i < nAlleles; i++ )
+            alleles.add(getAltAllele(in.readUTF()));
+        builder.alleles(alleles);
+
+        final int nInfo = in.readShort();
+        final Map<String, Object> attributes = new HashMap<>(nInfo);
+        for ( int i = 0; i < nInfo; i++ ) {
+            final String key = in.readUTF();
+            attributes.put(key, in.readByte() == FLAG_VALUE ? Boolean.TRUE : in.readUTF());
+        }
+        builder.attributes(attributes);
+
+        final int nSamples = in.readInt();
+        final GenotypeColumns columns = new GenotypeColumns(record, record.length - bytes.available(), nSamples, alleles, samples);
+        builder.genotypes(new LazyGenotypesContext(GenotypeColumns.PARSER, columns, nSamples));
+
+        return builder.make();
+    }
+
+    private static byte[] readRecord(final PositionalBufferedStream source) throws IOException {
+        final DataInputStream in = new DataInputStream(source);
+        final byte[] record = new byte[in.readInt()];
+        in.readFully(record);
+        return record;
+    }
+
+    /**
+     * Reads the contig of a record, reusing the string of the previous record when the contig is the same
+     */
+    private String readContig(final DataInputStream in) throws IOException {
+        final String contig = in.readUTF();
+        if ( ! contig.equals(lastContig) )
+            lastContig = contig;
+        return lastContig;
+    }
+
+    private Allele getAltAllele(final String allele) {
+        Allele cached = altAlleleCache.get(allele);
+        if ( cached == null ) {
+            cached = allele.equals(GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE.getDisplayString()) ? GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE : Allele.create(allele, false);
+            altAlleleCache.put(allele, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * The still encoded genotype columns of a record, which are decoded only when its genotypes are first needed
+     *
+     * <p>
+     * Decoding only reads the record and the immutable alleles and sample names, so it is safe to do from any thread.
+     * </p>
+     */
+    private static final class GenotypeColumns {
+        private static final LazyGenotypesContext.LazyParser PARSER = new LazyGenotypesContext.LazyParser() {
+            @Override
+            public LazyGenotypesContext.LazyData parse(final Object data) {
+                try {
+                    return ((GenotypeColumns) data).decode();
+                } catch ( IOException e ) {
+                    throw new UserException.MalformedFile("the genotypes of a GVCF store record could not be decoded", e);
+                }
+            }
+        };
+
+        private final byte[] record;
+        private final int offset;
+        private final int nSamples;
+        private final List<Allele> alleles;
+        private final List<String> samples;
+
+        private GenotypeColumns(final byte[] record, final int offset, final int nSamples, final List<Allele> alleles, final List<String> samples) {
+            this.record = record;
+            this.offset = offset;
+            this.nSamples = nSamples;
+            this.alleles = alleles;
+            this.samples = samples;
+        }
+
+        private LazyGenotypesContext.LazyData decode() throws IOException {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, offset, record.length - offset));
+
+            final ArrayList<String> sampleNamesInOrder = new ArrayList<>(nSamples);
+            final Map<String, Integer> sampleNameToOffset = new HashMap<>(nSamples);
+            final GenotypeBuilder[] builders = new GenotypeBuilder[nSamples];
+            for ( int i = 0; i < nSamples; i++ ) {
+                final String sample = samples.get(in.readInt());
+                sampleNamesInOrder.add(sample);
+                sampleNameToOffset.put(sample, i);
+                builders[i] = new GenotypeBuilder(sample);
+            }
+
+            // GT
+            for ( final GenotypeBuilder builder : builders ) {
+                final int ploidyAndPhase = in.readByte() & 0xFF;
+                final int ploidy = ploidyAndPhase & ~PHASED;
+                final List<Allele> genotypeAlleles = new ArrayList<>(ploidy);
+                for ( int j = 0; j < ploidy; j++ ) {
+                    final int alleleIndex = in.readByte();
+                    genotypeAlleles.add(alleleIndex < 0 ? Allele.NO_CALL : alleles.get(alleleIndex));
+                }
+                builder.alleles(genotypeAlleles).phased((ploidyAndPhase & PHASED) != 0);
+            }
+
+            // GQ and DP
+            for ( final GenotypeBuilder builder : builders ) {
+                final int GQ = in.readInt();
+                if ( GQ >= 0 ) builder.GQ(GQ);
+            }
+            for ( final GenotypeBuilder builder : builders ) {
+                final int DP = in.readInt();
+                if ( DP >= 0 ) builder.DP(DP);
+            }
+
+            // AD and PL
+            for ( final GenotypeBuilder builder : builders ) {
+                final int[] AD = readInts(in);
+                if ( AD != null ) builder.AD(AD);
+            }
+            for ( final GenotypeBuilder builder : builders ) {
+                final int[] PL = readInts(in);
+                if ( PL != null ) builder.PL(PL);
+            }
+
+            // FT and the other FORMAT fields
+            for ( final GenotypeBuilder builder : builders ) {
+                final String filters = in.readUTF();
+                if ( ! filters.isEmpty() ) builder.filter(filters);
+            }
+            for ( final GenotypeBuilder builder : builders ) {
+                final int nAttributes = in.readShort();
+                for ( int j = 0; j < nAttributes; j++ )
+                    builder.attribute(in.readUTF(), in.readUTF());
+            }
+
+            final ArrayList<Genotype> genotypes = new ArrayList<>(nSamples);
+            for ( final GenotypeBuilder builder : builders )
+                genotypes.add(builder.make());
+            return new LazyGenotypesContext.LazyData(genotypes, sampleNamesInOrder, sampleNameToOffset);
+        }
+
+        private static int[] readInts(final DataInputStream in) throws IOException {
+            final int n = in.readShort();
+            if ( n == 0 )
+                return null;
+            final int[] values = new int[n];
+            for ( int i = 0; i < n; i++ )
+                values[i] = in.readInt();
+            return values;
+        }
+    }
+}
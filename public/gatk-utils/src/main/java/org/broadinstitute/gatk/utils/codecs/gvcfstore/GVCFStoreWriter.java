@@ -0,0 +1,359 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.codecs.gvcfstore;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterFactory;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFHeader;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Writes gVCF records into a GVCF store (see {@link GVCFStoreCodec} for the format)
+ *
+ * <p>
+ * Records must be added in coordinate order, but may overlap: the reference blocks of each sample should be added as
+ * they were called.  The records starting at the same position are held back until the position is complete, so that
+ * those with the same end, alleles and site-level fields can be written as a single record with all of their samples.
+ * </p>
+ */
+public class GVCFStoreWriter implements VariantContextWriter {
+    private final File file;
+    private final DataOutputStream out;
+    private final SAMSequenceDictionary dictionary;
+
+    private VCFHeader header = null;
+    private Map<String, Integer> sampleIndices = null;
+
+    // the records starting at the current position, grouped by their site-level fields
+    private final Map<Site, List<VariantContext>> pending = new LinkedHashMap<>();
+    private String pendingContig = null;
+    private int pendingStart = -1;
+
+    // a record is encoded here first so that its length can be written ahead of it
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+    /**
+     * Create a writer of a GVCF store
+     *
+     * @param file the file being written, used in error messages; may be null
+     * @param stream the stream to write the store to
+     * @param dictionary the sequence dictionary of the reference, used to write the header; may be null
+     */
+    public GVCFStoreWriter(final File file, final OutputStream stream, final SAMSequenceDictionary dictionary) {
+        if ( stream == null ) throw new IllegalArgumentException("stream cannot be null");
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void writeHeader(final VCFHeader header) {
+        if ( header == null ) throw new IllegalArgumentException("header cannot be null");
+        this.header = header;
+        sampleIndices = header.getSampleNameToOffset();
+
+        // the header is kept as the VCF text, which the VCF codec knows how to read back
+        final ByteArrayOutputStream headerText = new ByteArrayOutputStream();
+        final VariantContextWriter vcfWriter = VariantContextWriterFactory.create(headerText, dictionary, EnumSet.noneOf(Options.class));
+        vcfWriter.writeHeader(header);
+        vcfWriter.close();
+
+        try {
+            out.write(GVCFStoreCodec.MAGIC);
+            out.writeByte(GVCFStoreCodec.VERSION);
+            out.writeInt(headerText.size());
+            headerText.writeTo(out);
+        } catch ( IOException e ) {
+            throw couldNotWrite(e);
+        }
+    }
+
+    @Override
+    public void add(final VariantContext vc) {
+        if ( header == null )
+            throw new ReviewedGATKException("The header of a GVCF store must be written before any of its records");
+
+        if ( pendingContig != null && (vc.getStart() != pendingStart || ! vc.getChr().equals(pendingContig)) ) {
+            if ( vc.getStart() < pendingStart && vc.getChr().equals(pendingContig) )
+                throw new ReviewedGATKException("Records must be added to a GVCF store in coordinate order, but " + vc.getChr() + ":" + vc.getStart() + " came after " + pendingContig + ":" + pendingStart);
+            writePending();
+        }
+
+        pendingContig = vc.getChr();
+        pendingStart = vc.getStart();
+        final Site site = new Site(vc);
+        List<VariantContext> VCs = pending.get(site);
+        if ( VCs == null ) {
+            VCs = new ArrayList<>(1);
+            pending.put(site, VCs);
+        }
+        VCs.add(vc);
+    }
+
+    @Override
+    public void close() {
+        writePending();
+        try {
+            out.close();
+        } catch ( IOException e ) {
+            throw couldNotWrite(e);
+        }
+    }
+
+    private void writePending() {
+        try {
+            for ( final List<VariantContext> VCs : pending.values() )
+                writeRecord(VCs);
+        } catch ( IOException e ) {
+            throw couldNotWrite(e);
+        }
+        pending.clear();
+        pendingContig = null;
+    }
+
+    /**
+     * Writes the records of one site as a single record holding all of their samples
+     *
+     * @param VCs records that differ in nothing but their genotypes
+     */
+    private void writeRecord(final List<VariantContext> VCs) throws IOException {
+        final VariantContext vc = VCs.get(0);
+        final List<Genotype> genotypes = new ArrayList<>(vc.getNSamples());
+        for ( final VariantContext sampleVC : VCs )
+            for ( final Genotype g : sampleVC.getGenotypes() )
+                genotypes.add(g);
+        final int[] indices = new int[genotypes.size()];
+        final Integer[] order = new Integer[genotypes.size()];
+        for ( int i = 0; i < indices.length; i++ ) {
+            final Integer index = sampleIndices.get(genotypes.get(i).getSampleName());
+            if ( index == null )
+                throw new ReviewedGATKException("Sample " + genotypes.get(i).getSampleName() + " is not in the header of the GVCF store");
+            indices[i] = index;
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                return Integer.compare(indices[a], indices[b]);
+            }
+        });
+
+        recordBytes.reset();
+        writeString(vc.getChr(), "contig name", vc);
+        record.writeInt(vc.getStart());
+        record.writeInt(vc.getEnd());
+        writeString(vc.getID(), "ID", vc);
+        record.writeDouble(vc.getLog10PError());
+
+        if ( ! vc.filtersWereApplied() ) {
+            record.writeByte(GVCFStoreCodec.UNFILTERED);
+        } else if ( ! vc.isFiltered() ) {
+            record.writeByte(GVCFStoreCodec.PASSES_FILTERS);
+        } else {
+            record.writeByte(GVCFStoreCodec.FILTERED);
+            writeCount(vc.getFilters().size(), "filters", vc);
+            for ( final String filter : vc.getFilters() )
+                writeString(filter, "filter", vc);
+        }
+
+        final List<Allele> alleles = vc.getAlleles();
+        writeCount(alleles.size(), "alleles", vc);
+        for ( final Allele allele : alleles )
+            writeString(allele.getDisplayString(), "allele", vc);
+
+        writeCount(vc.getAttributes().size(), "INFO fields", vc);
+        for ( final Map.Entry<String, Object> attribute : vc.getAttributes().entrySet() ) {
+            writeString(attribute.getKey(), "INFO key", vc);
+            if ( Boolean.TRUE.equals(attribute.getValue()) ) {
+                record.writeByte(GVCFStoreCodec.FLAG_VALUE);
+            } else {
+                record.writeByte(GVCFStoreCodec.STRING_VALUE);
+                writeString(formatValue(attribute.getValue()), "value of INFO field " + attribute.getKey(), vc);
+            }
+        }
+
+        record.writeInt(genotypes.size());
+        for ( final Integer i : order )
+            record.writeInt(indices[i]);
+
+        // GT, with the allele indices in a byte each and the phase in the top bit of the ploidy
+        if ( ! genotypes.isEmpty() && alleles.size() > GVCFStoreCodec.MAX_GENOTYPED_ALLELES )
+            throw formatLimitExceeded(vc, "it has " + alleles.size() + " alleles, but records with genotypes can have at most " + GVCFStoreCodec.MAX_GENOTYPED_ALLELES);
+        for ( final Integer i : order ) {
+            final Genotype g = genotypes.get(i);
+            if ( g.getPloidy() > GVCFStoreCodec.MAX_PLOIDY )
+                throw formatLimitExceeded(vc, "sample " + g.getSampleName() + " has ploidy " + g.getPloidy() + ", but the ploidy can be at most " + GVCFStoreCodec.MAX_PLOIDY);
+            record.writeByte(g.getPloidy() | (g.isPhased() ? GVCFStoreCodec.PHASED : 0));
+            for ( final Allele allele : g.getAlleles() )
+                record.writeByte(allele.isNoCall() ? -1 : alleles.indexOf(allele));
+        }
+
+        // GQ and DP
+        for ( final Integer i : order )
+            record.writeInt(genotypes.get(i).hasGQ() ? genotypes.get(i).getGQ() : -1);
+        for ( final Integer i : order )
+            record.writeInt(genotypes.get(i).hasDP() ? genotypes.get(i).getDP() : -1);
+
+        // AD and PL
+        for ( final Integer i : order )
+            writeInts(genotypes.get(i).hasAD() ? genotypes.get(i).getAD() : null, "AD values", vc);
+        for ( final Integer i : order )
+            writeInts(genotypes.get(i).hasPL() ? genotypes.get(i).getPL() : null, "PL values", vc);
+
+        // FT and the other FORMAT fields
+        for ( final Integer i : order )
+            writeString(genotypes.get(i).isFiltered() ? genotypes.get(i).getFilters() : "", "FT", vc);
+        for ( final Integer i : order ) {
+            final Map<String, Object> attributes = genotypes.get(i).getExtendedAttributes();
+            writeCount(attributes.size(), "FORMAT fields", vc);
+            for ( final Map.Entry<String, Object> attribute : attributes.entrySet() ) {
+                writeString(attribute.getKey(), "FORMAT key", vc);
+                writeString(formatValue(attribute.getValue()), "value of FORMAT field " + attribute.getKey(), vc);
+            }
+        }
+
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+    }
+
+    private void writeInts(final int[] values, final String what, final VariantContext vc) throws IOException {
+        if ( values == null ) {
+            record.writeShort(0);
+        } else {
+            writeCount(values.length, what, vc);
+            for ( final int value : values )
+                record.writeInt(value);
+        }
+    }
+
+    /**
+     * Writes a count that the format stores as a short
+     */
+    private void writeCount(final int count, final String what, final VariantContext vc) throws IOException {
+        if ( count > GVCFStoreCodec.MAX_COUNT )
+            throw formatLimitExceeded(vc, "it has " + count + " " + what + ", but a GVCF store can hold at most " + GVCFStoreCodec.MAX_COUNT);
+        record.writeShort(count);
+    }
+
+    /**
+     * Writes a string, which the format stores with its length as an unsigned short
+     */
+    private void writeString(final String value, final String what, final VariantContext vc) throws IOException {
+        try {
+            record.writeUTF(value);
+        } catch ( UTFDataFormatException e ) {
+            // thrown before anything is written, when the encoded string is longer than 65535 bytes
+            throw formatLimitExceeded(vc, "its " + what + " is longer than the 65535 bytes a GVCF store can hold in a string");
+        }
+    }
+
+    private UserException formatLimitExceeded(final VariantContext vc, final String reason) {
+        return new UserException.BadInput("The record at " + vc.getChr() + ":" + vc.getStart() + " cannot be written to the GVCF store" +
+                (file == null ? "" : " " + file.getAbsolutePath()) + " because " + reason + ". Write a gVCF instead.");
+    }
+
+    /**
+     * Formats an INFO or FORMAT value as VCF text, which is how the store keeps them
+     *
+     * @param value the value, which may be a list or an array
+     * @return the text of the value
+     */
+    private static String formatValue(final Object value) {
+        if ( value == null )
+            return VCFConstants.MISSING_VALUE_v4;
+        if ( value instanceof Collection ) {
+            final StringBuilder text = new StringBuilder();
+            for ( final Object element : (Collection) value ) {
+                if ( text.length() > 0 ) text.append(',');
+                text.append(formatValue(element));
+            }
+            return text.toString();
+        }
+        if ( value.getClass().isArray() ) {
+            final StringBuilder text = new StringBuilder();
+            for ( int i = 0; i < Array.getLength(value); i++ ) {
+                if ( i > 0 ) text.append(',');
+                text.append(formatValue(Array.get(value, i)));
+            }
+            return text.toString();
+        }
+        return value.toString();
+    }
+
+    private RuntimeException couldNotWrite(final IOException e) {
+        return file == null ? new UserException.CouldNotCreateOutputFile("Unable to write the GVCF store", e)
+                            : new UserException.CouldNotCreateOutputFile(file, "Unable to write the GVCF store", e);
+    }
+
+    /**
+     * The site-level fields of a record, which must all be the same for records to be stored together
+     */
+    private static final class Site {
+        private final int end;
+        private final List<Allele> alleles;
+        private final String id;
+        private final double log10PError;
+        private final boolean filtersWereApplied;
+        private final Set<String> filters;
+        private final Map<String, Object> attributes;
+
+        private Site(final VariantContext vc) {
+            end = vc.getEnd();
+            alleles = vc.getAlleles();
+            id = vc.getID();
+            log10PError = vc.getLog10PError();
+            filtersWereApplied = vc.filtersWereApplied();
+            filters = vc.getFilters();
+            attributes = vc.getAttributes();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if ( this == o ) return true;
+            if ( ! (o instanceof Site) ) return false;
+            final Site other = (Site) o;
+            return end == other.end && Double.compare(log10PError, other.log10PError) == 0 && filtersWereApplied == other.filtersWereApplied &&
+                    alleles.equals(other.alleles) && id.equals(other.id) && filters.equals(other.filters) && attributes.equals(other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * end + alleles.hashCode()) + attributes.hashCode();
+        }
+    }
+}
@@ -211,6 +211,40 @@ public class NestedIntegerArray<T> {
         }
     }
 
+    /**
+     * Callback used by visitAllLeaves()
+     *
+     * The keys array passed to visit() is shared between calls and is only valid for the
+     * duration of the call.  Clients that need to hold onto the keys must clone them.
+     */
+    public interface LeafVisitor<T> {
+        public void visit(final int[] keys, final T value);
+    }
+
+    /**
+     * Visit every leaf in this array, in the same order as getAllLeaves(), without allocating
+     * a Leaf object (or a key path) per value
+     *
+     * @param visitor the visitor to invoke on each non-null leaf
+     */
+    public void visitAllLeaves(final LeafVisitor<T> visitor) {
+        visitAllLeaves(data, 0, new int[numDimensions], visitor);
+    }
+
+    private void visitAllLeaves(final Object[] array, final int depth, final int[] path, final LeafVisitor<T> visitor) {
+        for ( int key = 0; key < array.length; key++ ) {
+            final Object value = array[key];
+            if ( value == null )
+                continue;
+            path[depth] = key;
+            if ( value instanceof Object[] ) {
+                visitAllLeaves((Object[]) value, depth + 1, path, visitor);
+            } else {
+                visitor.visit(path, (T)value);
+            }
+        }
+    }
+
     private int[] appendToPath(final int[] path, final int newKey) {
         final int[] newPath = new int[path.length + 1];
         for ( int i = 0; i < path.length; i++ )
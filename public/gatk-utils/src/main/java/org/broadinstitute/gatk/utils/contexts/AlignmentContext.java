@@ -28,6 +28,7 @@ package org.broadinstitute.gatk.utils.contexts;
 import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.HasGenomeLocation;
 import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+import org.broadinstitute.gatk.utils.pileup.PileupStatistics;
 import org.broadinstitute.gatk.utils.pileup.ReadBackedPileup;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 
@@ -47,6 +48,10 @@ public class AlignmentContext implements HasGenomeLocation {
     protected ReadBackedPileup basePileup = null;
     protected boolean hasPileupBeenDownsampled;
 
+    // the statistics of basePileup, gathered the first time they are asked for.  Volatile because the
+    // annotations of a context may run on several threads (see VariantAnnotatorEngine -annThreads)
+    private volatile PileupStatistics pileupStatistics = null;
+
     /**
      * The number of bases we've skipped over in the reference since the last map invocation.
      * Only filled in by RodTraversals right now.  By default, nothing is being skipped, so skippedBases == 0.
@@ -97,6 +102,28 @@ public class AlignmentContext implements HasGenomeLocation {
      */
     public boolean hasPileupBeenDownsampled() { return hasPileupBeenDownsampled; }
 
+    /**
+     * Get the statistics of the base pileup, gathering them on the first call.
+     *
+     * Annotations that look at the same context several times should use these rather than each
+     * iterating over the pileup.
+     *
+     * @return a non-null PileupStatistics for the base pileup
+     */
+    public PileupStatistics getPileupStatistics() {
+        PileupStatistics stats = pileupStatistics;
+        if ( stats == null ) {
+            synchronized (this) {
+                stats = pileupStatistics;
+                if ( stats == null ) {
+                    stats = new PileupStatistics(basePileup);
+                    pileupStatistics = stats;
+                }
+            }
+        }
+        return stats;
+    }
+
     /**
      * get all of the reads within this context
      * 
@@ -137,9 +164,10 @@ public class AlignmentContext implements HasGenomeLocation {
     public long getPosition() { return getLocation().getStart(); }
     public GenomeLoc getLocation() { return loc; }
 
-    public void downsampleToCoverage(int coverage) {
+    public synchronized void downsampleToCoverage(int coverage) {
         basePileup = basePileup.getDownsampledPileup(coverage);
         hasPileupBeenDownsampled = true;
+        pileupStatistics = null;
     }
 
     /**
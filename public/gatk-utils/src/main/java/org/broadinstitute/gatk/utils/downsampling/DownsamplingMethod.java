@@ -47,6 +47,16 @@ public class DownsamplingMethod {
      */
     public final Double toFraction;
 
+    /**
+     * Should the reads be downsampled as they are decoded, before read filtering, rather than after?
+     *
+     * The keep / drop decisions are then made from the position, flags and sample of the undecoded
+     * records, so that the bases and qualities of the reads that are dropped are never parsed.  Their tags
+     * are parsed when the sample is needed, as the read group is one of them.  The engine rejects this when
+     * LocusIteratorByState does the downsampling (locus traversals downsampling to coverage by sample).
+     */
+    public final boolean beforeDecoding;
+
     /**
      * Expresses no downsampling applied at all.
      */
@@ -65,7 +75,12 @@ public class DownsamplingMethod {
 
 
     public DownsamplingMethod( DownsampleType type, Integer toCoverage, Double toFraction ) {
+        this(type, toCoverage, toFraction, false);
+    }
+
+    public DownsamplingMethod( DownsampleType type, Integer toCoverage, Double toFraction, boolean beforeDecoding ) {
         this.type = type != null ? type : DEFAULT_DOWNSAMPLING_TYPE;
+        this.beforeDecoding = beforeDecoding && this.type != DownsampleType.NONE;
 
         if ( type == DownsampleType.NONE ) {
             this.toCoverage = null;
@@ -79,6 +94,13 @@ public class DownsamplingMethod {
         validate();
     }
 
+    /**
+     * @return a copy of this method that downsamples the reads as they are decoded
+     */
+    public DownsamplingMethod beforeDecoding() {
+        return new DownsamplingMethod(type, toCoverage, toFraction, true);
+    }
+
     private void validate() {
         // Can't leave toFraction and toCoverage null unless type is NONE
         if ( type != DownsampleType.NONE && toFraction == null && toCoverage == null )
@@ -114,6 +136,9 @@ public class DownsamplingMethod {
             else {
                 builder.append(String.format("Target Fraction: %.2f", toFraction));
             }
+            if ( beforeDecoding ) {
+                builder.append(", before decoding");
+            }
         }
 
         return builder.toString();
@@ -162,15 +162,41 @@ public class LevelingDownsampler<T extends List<E>, E> extends Downsampler<T> {
             currentGroupIndex++;
         }
 
-        if ( totalSize <= targetSize ) {
+        if ( ! levelGroupSizes(groupSizes, totalSize, targetSize, minElementsPerStack) ) {
             return;    // no need to eliminate any items
         }
 
+        // Now we actually go through and reduce each group to its new count as specified in groupSizes
+        currentGroupIndex = 0;
+        for ( final T group : groups ) {
+            downsampleOneGroup(group, groupSizes[currentGroupIndex]);
+            currentGroupIndex++;
+        }
+    }
+
+    /**
+     * Computes the number of items to keep in each group so that the groups are leveled down to targetSize
+     *
+     * Items are taken away from the groups one at a time in a round-robin fashion, never leaving a group
+     * with fewer than minElementsPerStack items.  Shared with code that levels its groups in place rather
+     * than through Lists, so that both make exactly the same choices.
+     *
+     * @param groupSizes the sizes of the groups, updated in place with the number of items to keep in each group
+     * @param totalSize the sum of groupSizes
+     * @param targetSize the total number of items we want to keep
+     * @param minElementsPerStack no group will be reduced below this size
+     * @return true if any group needs to be downsampled, false if totalSize <= targetSize
+     */
+    public static boolean levelGroupSizes( final int[] groupSizes, final int totalSize, final int targetSize, final int minElementsPerStack ) {
+        if ( totalSize <= targetSize ) {
+            return false;
+        }
+
         // We will try to remove exactly this many items, however we will refuse to allow any
         // one group to fall below size 1, and so might end up removing fewer items than this
         int numItemsToRemove = totalSize - targetSize;
 
-        currentGroupIndex = 0;
+        int currentGroupIndex = 0;
         int numConsecutiveUmodifiableGroups = 0;
 
         // Continue until we've either removed all the items we wanted to, or we can't
@@ -189,12 +215,7 @@ public class LevelingDownsampler<T extends List<E>, E> extends Downsampler<T> {
             currentGroupIndex = (currentGroupIndex + 1) % groupSizes.length;
         }
 
-        // Now we actually go through and reduce each group to its new count as specified in groupSizes
-        currentGroupIndex = 0;
-        for ( final T group : groups ) {
-            downsampleOneGroup(group, groupSizes[currentGroupIndex]);
-            currentGroupIndex++;
-        }
+        return true;
     }
 
     private void downsampleOneGroup( final T group, final int numItemsToKeep ) {
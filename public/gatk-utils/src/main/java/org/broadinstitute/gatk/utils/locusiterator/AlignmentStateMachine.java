@@ -67,6 +67,18 @@ public class AlignmentStateMachine {
     private final int nCigarElements;
     private int currentCigarElementOffset = -1;
 
+    /**
+     * The cigar of the read, compiled once into a table of runs encoded by encodeRun, so that stepping
+     * along the cigar doesn't have to go back to the CigarElements and their operators at every step
+     */
+    private final int[] compiledCigar;
+
+    /**
+     * The operator and length of the current cigar element, decoded from compiledCigar
+     */
+    private CigarOperator currentOperator;
+    private int currentLength;
+
     /**
      * how far are we offset from the start of the read bases?
      */
@@ -92,9 +104,38 @@ public class AlignmentStateMachine {
         this.read = read;
         this.cigar = read.getCigar();
         this.nCigarElements = cigar.numCigarElements();
+        this.compiledCigar = compileCigar(cigar);
         initializeAsLeftEdge();
     }
 
+    private static final CigarOperator[] OPERATORS = CigarOperator.values();
+    private static final int OPERATOR_BITS = 4;
+    private static final int OPERATOR_MASK = (1 << OPERATOR_BITS) - 1;
+
+    /**
+     * Encodes a cigar element as an int, with the ordinal of its operator in the low bits and its length above them
+     */
+    private static int encodeRun(final CigarElement element) {
+        return (element.getLength() << OPERATOR_BITS) | element.getOperator().ordinal();
+    }
+
+    private static CigarOperator runOperator(final int run) {
+        return OPERATORS[run & OPERATOR_MASK];
+    }
+
+    private static int runLength(final int run) {
+        return run >>> OPERATOR_BITS;
+    }
+
+    @Requires("cigar != null")
+    @Ensures("result.length == cigar.numCigarElements()")
+    private static int[] compileCigar(final Cigar cigar) {
+        final int[] runs = new int[cigar.numCigarElements()];
+        for ( int i = 0; i < runs.length; i++ )
+            runs[i] = encodeRun(cigar.getCigarElement(i));
+        return runs;
+    }
+
     /**
      * Initialize the state variables to put this machine one bp before the
      * start of the alignment, so that a call to stepForwardOnGenome() will advance
@@ -104,6 +145,8 @@ public class AlignmentStateMachine {
     private void initializeAsLeftEdge() {
         readOffset = offsetIntoCurrentCigarElement = genomeOffset = -1;
         currentElement = null;
+        currentOperator = null;
+        currentLength = 0;
     }
 
     /**
@@ -240,7 +283,42 @@ public class AlignmentStateMachine {
      */
     @Ensures("result != null || isLeftEdge() || isRightEdge()")
     public CigarOperator getCigarOperator() {
-        return currentElement == null ? null : currentElement.getOperator();
+        return currentOperator;
+    }
+
+    /**
+     * How many more steps along the genome can this machine take without leaving its current cigar element?
+     *
+     * Until then every step just moves the machine one base along the same M/=/X, D or N run, so the
+     * next "interesting" position of this machine on the genome, where its operator might change, is
+     * getGenomePosition() + getGenomeStepsLeftInCurrentElement() + 1.
+     *
+     * @return the number of steps left in the current on-genome cigar element, or 0 on an edge
+     */
+    @Ensures("result >= 0")
+    public int getGenomeStepsLeftInCurrentElement() {
+        return currentOperator == null ? 0 : currentLength - offsetIntoCurrentCigarElement - 1;
+    }
+
+    /**
+     * Step the state machine forward nSteps bases on the genome within the current cigar element
+     *
+     * Equivalent to calling stepForwardOnGenome() nSteps times, but jumps over the whole run at once.
+     *
+     * @param nSteps the number of steps to take, 0 <= nSteps <= getGenomeStepsLeftInCurrentElement()
+     * @return the operator of the current cigar element
+     */
+    @Requires({"nSteps >= 0", "nSteps <= getGenomeStepsLeftInCurrentElement()"})
+    @Ensures("result == getCigarOperator()")
+    public CigarOperator stepForwardOnGenome(final int nSteps) {
+        if ( nSteps < 0 || nSteps > getGenomeStepsLeftInCurrentElement() )
+            throw new IllegalArgumentException("Cannot step " + nSteps + " bases within the current cigar element of " + this);
+
+        offsetIntoCurrentCigarElement += nSteps;
+        genomeOffset += nSteps;
+        if ( currentOperator.consumesReadBases() )
+            readOffset += nSteps;
+        return currentOperator;
     }
 
     @Override
@@ -278,28 +356,41 @@ public class AlignmentStateMachine {
      */
     @Ensures("result != null || isRightEdge()")
     public CigarOperator stepForwardOnGenome() {
+        // fast path: we're inside an on-genome cigar element with bases left, which is the common case
+        if ( currentOperator != null && offsetIntoCurrentCigarElement + 1 < currentLength && currentOperator.consumesReferenceBases() ) {
+            offsetIntoCurrentCigarElement++;
+            genomeOffset++;
+            if ( currentOperator.consumesReadBases() )
+                readOffset++;
+            return currentOperator;
+        }
+
         // loop until we either find a cigar element step that moves us one base on the genome, or we run
         // out of cigar elements
         while ( true ) {
             // we enter this method with readOffset = index of the last processed base on the read
             // (-1 if we did not process a single base yet); this can be last matching base,
             // or last base of an insertion
-            if (currentElement == null || (offsetIntoCurrentCigarElement + 1) >= currentElement.getLength()) {
+            if (currentOperator == null || (offsetIntoCurrentCigarElement + 1) >= currentLength) {
                 currentCigarElementOffset++;
                 if (currentCigarElementOffset < nCigarElements) {
                     currentElement = cigar.getCigarElement(currentCigarElementOffset);
+                    currentOperator = runOperator(compiledCigar[currentCigarElementOffset]);
+                    currentLength = runLength(compiledCigar[currentCigarElementOffset]);
                     offsetIntoCurrentCigarElement = -1;
                     // next line: guards against cigar elements of length 0; when new cigar element is retrieved,
                     // we reenter in order to re-check offsetIntoCurrentCigarElement against currentElement's length
                     continue;
                 } else {
-                    if (currentElement != null && currentElement.getOperator() == CigarOperator.D)
+                    if (currentOperator == CigarOperator.D)
                         throw new UserException.MalformedBAM(read, "read ends with deletion. Cigar: " + read.getCigarString() + ". Although the SAM spec technically permits such reads, this is often indicative of malformed files. If you are sure you want to use this file, re-run your analysis with the extra option: -rf BadCigar");
 
                     // we're done, so set the offset of the cigar to 0 for cleanliness, as well as the current element
                     offsetIntoCurrentCigarElement = 0;
                     readOffset = read.getReadLength();
                     currentElement = null;
+                    currentOperator = null;
+                    currentLength = 0;
 
                     // Reads that contain indels model the genomeOffset as the following base in the reference.  Because
                     // we fall into this else block only when indels end the read, increment genomeOffset  such that the
@@ -314,15 +405,15 @@ public class AlignmentStateMachine {
 
             offsetIntoCurrentCigarElement++;
             boolean done = false;
-            switch (currentElement.getOperator()) {
+            switch (currentOperator) {
                 case H: // ignore hard clips
                 case P: // ignore pads
-                    offsetIntoCurrentCigarElement = currentElement.getLength();
+                    offsetIntoCurrentCigarElement = currentLength;
                     break;
                 case I: // insertion w.r.t. the reference
                 case S: // soft clip
-                    offsetIntoCurrentCigarElement = currentElement.getLength();
-                    readOffset += currentElement.getLength();
+                    offsetIntoCurrentCigarElement = currentLength;
+                    readOffset += currentLength;
                     break;
                 case D: // deletion w.r.t. the reference
                     if (readOffset < 0)             // we don't want reads starting with deletion, this is a malformed cigar string
@@ -343,11 +434,11 @@ public class AlignmentStateMachine {
                     done = true;
                     break;
                 default:
-                    throw new IllegalStateException("Case statement didn't deal with cigar op: " + currentElement.getOperator());
+                    throw new IllegalStateException("Case statement didn't deal with cigar op: " + currentOperator);
             }
 
             if ( done )
-                return currentElement.getOperator();
+                return currentOperator;
         }
     }
 
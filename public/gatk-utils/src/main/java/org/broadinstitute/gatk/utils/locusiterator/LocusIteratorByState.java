@@ -39,7 +39,7 @@ import org.broadinstitute.gatk.utils.GenomeLoc;
 import org.broadinstitute.gatk.utils.GenomeLocParser;
 import org.broadinstitute.gatk.utils.downsampling.DownsamplingMethod;
 import org.broadinstitute.gatk.utils.pileup.PileupElement;
-import org.broadinstitute.gatk.utils.pileup.ReadBackedPileupImpl;
+import org.broadinstitute.gatk.utils.pileup2.Pileup2;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import org.broadinstitute.gatk.utils.sam.ReadUtils;
 
@@ -295,17 +295,17 @@ public final class LocusIteratorByState extends LocusIterator {
             readStates.collectPendingReads();
 
             final GenomeLoc location = getLocation();
-            final Map<String, ReadBackedPileupImpl> fullPileup = new HashMap<String, ReadBackedPileupImpl>();
+            final Map<String, List<PileupElement>> fullPileup = new HashMap<String, List<PileupElement>>();
 
             for (final Map.Entry<String, PerSampleReadStateManager> sampleStatePair : readStates ) {
                 final String sample = sampleStatePair.getKey();
                 final PerSampleReadStateManager readState = sampleStatePair.getValue();
-                final Iterator<AlignmentStateMachine> iterator = readState.iterator();
-                final List<PileupElement> pile = new ArrayList<PileupElement>(readState.size());
+                final int nStates = readState.size();
+                final List<PileupElement> pile = new ArrayList<PileupElement>(nStates);
 
-                while (iterator.hasNext()) {
+                for (int i = 0; i < nStates; i++) {
                     // state object with the read/offset information
-                    final AlignmentStateMachine state = iterator.next();
+                    final AlignmentStateMachine state = readState.get(i);
                     final GATKSAMRecord read = state.getRead();
                     final CigarOperator op = state.getCigarOperator();
 
@@ -322,12 +322,15 @@ public final class LocusIteratorByState extends LocusIterator {
                 }
 
                 if (! pile.isEmpty() ) // if this pileup added at least one base, add it to the full pileup
-                    fullPileup.put(sample, new ReadBackedPileupImpl(location, pile));
+                    fullPileup.put(sample, pile);
             }
 
+            if (fullPileup.isEmpty()) // jump over the following loci that can't have a pileup either, e.g. within a large N
+                readStates.skipLociWithoutPileups(includeReadsWithDeletionAtLoci);
+
             readStates.updateReadStates(); // critical - must be called after we get the current state offsets and location
             if (!fullPileup.isEmpty()) // if we got reads with non-D/N over the current position, we are done
-                nextAlignmentContext = new AlignmentContext(location, new ReadBackedPileupImpl(location, fullPileup), false);
+                nextAlignmentContext = new AlignmentContext(location, new Pileup2(location, fullPileup), false);
         }
     }
 
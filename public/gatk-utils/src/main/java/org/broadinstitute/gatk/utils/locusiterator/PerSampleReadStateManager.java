@@ -30,16 +30,21 @@ import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import htsjdk.samtools.CigarOperator;
 import org.apache.log4j.Logger;
-import org.broadinstitute.gatk.utils.downsampling.Downsampler;
+import org.broadinstitute.gatk.utils.MathUtils;
 import org.broadinstitute.gatk.utils.downsampling.LevelingDownsampler;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * ReadStateManager for a single sample
  *
+ * The alignment state machines are kept in a single array, in alignment start order, that is compacted in
+ * place as states are removed and leveled in place when downsampling, so that advancing all of the states
+ * to the next position neither allocates nor chases list pointers.
+ *
  * User: depristo
  * Date: 1/13/13
  * Time: 12:28 PM
@@ -54,16 +59,18 @@ import java.util.List;
 final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine> {
     private final static Logger logger = Logger.getLogger(ReadStateManager.class);
     private final static boolean CAPTURE_DOWNSAMPLING_STATS = false;
+    private final static int INITIAL_CAPACITY = 64;
 
     /**
-     * A list (potentially empty) of alignment state machines.
+     * The (potentially empty) alignment state machines of this sample, in readStatesByAlignmentStart[0, nReadStates)
      *
      * The state machines must be ordered by the alignment start of their underlying reads, with the
      * lowest alignment starts on the left, and the largest on the right
      */
-    private LinkedList<AlignmentStateMachine> readStatesByAlignmentStart = new LinkedList<AlignmentStateMachine>();
+    private AlignmentStateMachine[] readStatesByAlignmentStart = new AlignmentStateMachine[INITIAL_CAPACITY];
+    private int nReadStates = 0;
 
-    private final Downsampler<LinkedList<AlignmentStateMachine>> levelingDownsampler;
+    private final boolean performDownsampling;
     private final int downsamplingTarget;
 
     /**
@@ -81,50 +88,8 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      * @param LIBSDownsamplingInfo the downsampling params we want to use
      */
     public PerSampleReadStateManager(final LIBSDownsamplingInfo LIBSDownsamplingInfo) {
-        this.downsamplingTarget = LIBSDownsamplingInfo.isPerformDownsampling() ? LIBSDownsamplingInfo.getToCoverage() : -1;
-        this.levelingDownsampler = LIBSDownsamplingInfo.isPerformDownsampling()
-                ? new LevelingDownsampler<LinkedList<AlignmentStateMachine>, AlignmentStateMachine>(LIBSDownsamplingInfo.getToCoverage())
-                : null;
-    }
-
-    /**
-     * Group the underlying readStatesByAlignmentStart into a list of list of alignment state machines,
-     * where each list contains machines with a unique genome site.  The outer list is ordered
-     * by alignment start.
-     *
-     * For example, if the flat list has alignment starts [10, 10, 11, 12, 12, 13] then
-     * the resulting grouping will be [[10, 10], [11], [12, 12], [13]].
-     *
-     * @return a non-null list of lists
-     */
-    @Ensures("result != null")
-    private List<LinkedList<AlignmentStateMachine>> groupByAlignmentStart() {
-        final LinkedList<LinkedList<AlignmentStateMachine>> grouped = new LinkedList<LinkedList<AlignmentStateMachine>>();
-
-        AlignmentStateMachine last = null;
-        for ( final AlignmentStateMachine stateMachine : readStatesByAlignmentStart ) {
-            if ( last == null || stateMachine.getGenomeOffset() != last.getGenomeOffset() ) {
-                // we've advanced to a place where the state machine has a different state,
-                // so start a new list
-                grouped.add(new LinkedList<AlignmentStateMachine>());
-                last = stateMachine;
-            }
-            grouped.getLast().add(stateMachine);
-        }
-
-        return grouped;
-    }
-
-    /**
-     * Flattens the grouped list of list of alignment state machines into a single list in order
-     * @return a non-null list contains the state machines
-     */
-    @Ensures("result != null")
-    private LinkedList<AlignmentStateMachine> flattenByAlignmentStart(final List<LinkedList<AlignmentStateMachine>> grouped) {
-        final LinkedList<AlignmentStateMachine> flat = new LinkedList<AlignmentStateMachine>();
-        for ( final List<AlignmentStateMachine> l : grouped )
-            flat.addAll(l);
-        return flat;
+        this.performDownsampling = LIBSDownsamplingInfo.isPerformDownsampling();
+        this.downsamplingTarget = performDownsampling ? LIBSDownsamplingInfo.getToCoverage() : -1;
     }
 
     /**
@@ -133,7 +98,8 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      */
     private boolean readStartsAreWellOrdered() {
         int lastStart = -1;
-        for ( final AlignmentStateMachine machine : readStatesByAlignmentStart ) {
+        for ( int i = 0; i < nReadStates; i++ ) {
+            final AlignmentStateMachine machine = readStatesByAlignmentStart[i];
             if ( lastStart > machine.getRead().getAlignmentStart() )
                 return false;
             lastStart = machine.getRead().getAlignmentStart();
@@ -142,35 +108,92 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
     }
 
     /**
-     * Assumes it can just keep the states linked lists without making a copy
-     * @param states the new states to add to this manager
+     * Adds states, which all start at the next alignment start, to this manager
+     *
+     * @param states the new states to add to this manager.  Not kept by this manager, so may be reused by the caller
      * @return The change in the number of states, after including states and potentially downsampling.  Note
      * that this return result might be negative, if downsampling is enabled, as we might drop
      * more sites than have been added by the downsampler
      */
     @Requires("states != null")
-    public int addStatesAtNextAlignmentStart(final LinkedList<AlignmentStateMachine> states) {
+    public int addStatesAtNextAlignmentStart(final List<AlignmentStateMachine> states) {
         if ( states.isEmpty() ) {
             return 0;
         }
 
-        readStatesByAlignmentStart.addAll(states);
-        int nStatesAdded = states.size();
+        final int nNewStates = states.size();
+        ensureCapacity(nReadStates + nNewStates);
+        for ( int i = 0; i < nNewStates; i++ )
+            readStatesByAlignmentStart[nReadStates + i] = states.get(i);
+        nReadStates += nNewStates;
 
-        if ( isDownsampling() && readStatesByAlignmentStart.size() > downsamplingTarget ) {
+        if ( isDownsampling() && nReadStates > downsamplingTarget ) {
             // only go into the downsampling branch if we are downsampling and the coverage > the target
             captureDownsamplingStats();
-            levelingDownsampler.submit(groupByAlignmentStart());
-            levelingDownsampler.signalEndOfInput();
+            return nNewStates - levelByAlignmentStart();
+        }
 
-            nStatesAdded -= levelingDownsampler.getNumberOfDiscardedItems();
+        return nNewStates;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if ( capacity > readStatesByAlignmentStart.length )
+            readStatesByAlignmentStart = Arrays.copyOf(readStatesByAlignmentStart, Math.max(capacity, 2 * readStatesByAlignmentStart.length));
+    }
 
-            // use returned List directly rather than make a copy, for efficiency's sake
-            readStatesByAlignmentStart = flattenByAlignmentStart(levelingDownsampler.consumeFinalizedItems());
-            levelingDownsampler.resetStats();
+    /**
+     * Levels the states down to the downsampling target in place
+     *
+     * The states are grouped by their genome offset, which is the same for all states with the same alignment
+     * start, and the groups are leveled exactly like the LevelingDownsampler would level a list of lists of
+     * these states, consuming the same random numbers, so the states that are kept don't depend on this
+     * representation.
+     *
+     * @return the number of states discarded
+     */
+    @Requires("isDownsampling()")
+    private int levelByAlignmentStart() {
+        // find the boundaries of the groups of states with the same genome offset
+        int[] groupStarts = new int[Math.min(nReadStates, INITIAL_CAPACITY) + 1];
+        int nGroups = 0;
+        for ( int i = 0; i < nReadStates; i++ ) {
+            if ( i == 0 || readStatesByAlignmentStart[i].getGenomeOffset() != readStatesByAlignmentStart[i - 1].getGenomeOffset() ) {
+                if ( nGroups + 1 >= groupStarts.length )
+                    groupStarts = Arrays.copyOf(groupStarts, 2 * groupStarts.length);
+                groupStarts[nGroups++] = i;
+            }
+        }
+        groupStarts[nGroups] = nReadStates;
+
+        final int[] groupSizes = new int[nGroups];
+        for ( int group = 0; group < nGroups; group++ )
+            groupSizes[group] = groupStarts[group + 1] - groupStarts[group];
+
+        if ( ! LevelingDownsampler.levelGroupSizes(groupSizes, nReadStates, downsamplingTarget, 1) )
+            return 0;
+
+        // compact the kept states of each group towards the front of the array, keeping their order
+        int nKept = 0;
+        for ( int group = 0; group < nGroups; group++ ) {
+            final int start = groupStarts[group];
+            final int groupSize = groupStarts[group + 1] - start;
+            if ( groupSizes[group] >= groupSize ) {
+                System.arraycopy(readStatesByAlignmentStart, start, readStatesByAlignmentStart, nKept, groupSize);
+                nKept += groupSize;
+            } else {
+                final boolean[] keep = new boolean[groupSize];
+                for ( final int selectedIndex : MathUtils.sampleIndicesWithoutReplacement(groupSize, groupSizes[group]) )
+                    keep[selectedIndex] = true;
+                for ( int i = 0; i < groupSize; i++ )
+                    if ( keep[i] )
+                        readStatesByAlignmentStart[nKept++] = readStatesByAlignmentStart[start + i];
+            }
         }
 
-        return nStatesAdded;
+        final int nDiscarded = nReadStates - nKept;
+        Arrays.fill(readStatesByAlignmentStart, nKept, nReadStates, null);
+        nReadStates = nKept;
+        return nDiscarded;
     }
 
     /**
@@ -178,7 +201,7 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      * @return true if we are downsampling, false otherwise
      */
     private boolean isDownsampling() {
-        return levelingDownsampler != null;
+        return performDownsampling;
     }
 
     /**
@@ -186,7 +209,19 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      * @return a potentially null AlignmentStateMachine
      */
     public AlignmentStateMachine getFirst() {
-        return isEmpty() ? null : readStatesByAlignmentStart.getFirst();
+        return isEmpty() ? null : readStatesByAlignmentStart[0];
+    }
+
+    /**
+     * Get the i-th alignment state machine in alignment start order, so callers can walk over the states
+     * without an iterator
+     *
+     * @param i the index of the state, 0 <= i < size()
+     * @return a non-null AlignmentStateMachine
+     */
+    @Requires({"i >= 0", "i < size()"})
+    public AlignmentStateMachine get(final int i) {
+        return readStatesByAlignmentStart[i];
     }
 
     /**
@@ -215,7 +250,7 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      * @return true if there's at least one alignment, false otherwise
      */
     public boolean isEmpty() {
-        return readStatesByAlignmentStart.isEmpty();
+        return nReadStates == 0;
     }
 
     /**
@@ -224,7 +259,7 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      */
     @Ensures("result >= 0")
     public int size() {
-        return readStatesByAlignmentStart.size();
+        return nReadStates;
     }
 
     /**
@@ -233,29 +268,57 @@ final class PerSampleReadStateManager implements Iterable<AlignmentStateMachine>
      * @return the number of states we're removed after advancing
      */
     public int updateReadStates() {
-        int nRemoved = 0;
-        final Iterator<AlignmentStateMachine> it = iterator();
-        while (it.hasNext()) {
-            final AlignmentStateMachine state = it.next();
+        int nKept = 0;
+        for ( int i = 0; i < nReadStates; i++ ) {
+            final AlignmentStateMachine state = readStatesByAlignmentStart[i];
             final CigarOperator op = state.stepForwardOnGenome();
-            if (op == null) {
-                // we discard the read only when we are past its end AND indel at the end of the read (if any) was
-                // already processed. Keeping the read state that returned null upon stepForwardOnGenome() is safe
-                // as the next call to stepForwardOnGenome() will return null again AND will clear hadIndel() flag.
-                it.remove();                                                // we've stepped off the end of the object
-                nRemoved++;
-            }
+            // we discard the read only when we are past its end AND indel at the end of the read (if any) was
+            // already processed. Keeping the read state that returned null upon stepForwardOnGenome() is safe
+            // as the next call to stepForwardOnGenome() will return null again AND will clear hadIndel() flag.
+            if ( op != null )
+                readStatesByAlignmentStart[nKept++] = state;
         }
 
+        final int nRemoved = nReadStates - nKept;
+        Arrays.fill(readStatesByAlignmentStart, nKept, nReadStates, null); // we've stepped off the end of these objects
+        nReadStates = nKept;
         return nRemoved;
     }
 
     /**
      * Iterate over the AlignmentStateMachine in this manager in alignment start order.
+     *
+     * The iterator supports remove(), but as that shifts all of the following states it's meant for testing
+     * only; use updateReadStates() to remove finished states in bulk
+     *
      * @return a valid iterator
      */
     @Ensures("result != null")
     public Iterator<AlignmentStateMachine> iterator() {
-        return readStatesByAlignmentStart.iterator();
+        return new Iterator<AlignmentStateMachine>() {
+            private int next = 0;
+            private boolean canRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                return next < nReadStates;
+            }
+
+            @Override
+            public AlignmentStateMachine next() {
+                if ( next >= nReadStates ) throw new NoSuchElementException();
+                canRemove = true;
+                return readStatesByAlignmentStart[next++];
+            }
+
+            @Override
+            public void remove() {
+                if ( ! canRemove ) throw new IllegalStateException("next() hasn't been called since the last remove()");
+                canRemove = false;
+                next--;
+                System.arraycopy(readStatesByAlignmentStart, next + 1, readStatesByAlignmentStart, next, nReadStates - next - 1);
+                readStatesByAlignmentStart[--nReadStates] = null;
+            }
+        };
     }
 }
@@ -27,6 +27,7 @@ package org.broadinstitute.gatk.utils.locusiterator;
 
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
+import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.util.PeekableIterator;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 
@@ -59,9 +60,14 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
      */
     private final Map<String, PerSampleReadStateManager> readStatesBySample = new LinkedHashMap<String, PerSampleReadStateManager>();
 
-    private LinkedList<GATKSAMRecord> submittedReads;
+    private List<GATKSAMRecord> submittedReads;
     private final boolean keepSubmittedReads;
 
+    /**
+     * Scratch list of the new read states of a sample, reused for every sample and position
+     */
+    private final ArrayList<AlignmentStateMachine> newReadStates = new ArrayList<AlignmentStateMachine>();
+
     private int totalReadStates = 0;
 
     public ReadStateManager(final Iterator<GATKSAMRecord> source,
@@ -72,7 +78,7 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
         this.iterator = new PeekableIterator<GATKSAMRecord>(source);
 
         this.keepSubmittedReads = keepSubmittedReads;
-        this.submittedReads = new LinkedList<GATKSAMRecord>();
+        this.submittedReads = keepSubmittedReads ? new ArrayList<GATKSAMRecord>() : Collections.<GATKSAMRecord>emptyList();
 
         for (final String sample : samples) {
             // because this is a linked hash map the order of iteration will be in sample order
@@ -140,6 +146,49 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
         }
     }
 
+    /**
+     * Jumps all of the read states over the following loci where none of them can contribute to a pileup
+     *
+     * If every read state is within a reference skip (N), or within a deletion and deletions aren't put into
+     * pileups, the pileups at the current and following loci will be empty until the first state leaves its
+     * cigar element or a new read starts.  Rather than stepping all of the states over those loci one at a
+     * time, this jumps them all forward to the locus just before that, so that the next updateReadStates()
+     * brings them to the next locus that may have a pileup.
+     *
+     * @param includeDeletions are states within deletions put into pileups?
+     * @return the number of loci that were skipped
+     */
+    @Ensures("result >= 0")
+    public int skipLociWithoutPileups(final boolean includeDeletions) {
+        if ( isEmpty() )
+            return 0;
+
+        int nSteps = Integer.MAX_VALUE;
+        for ( final PerSampleReadStateManager perSampleReadStateManager : readStatesBySample.values() ) {
+            for ( int i = 0; i < perSampleReadStateManager.size(); i++ ) {
+                final AlignmentStateMachine state = perSampleReadStateManager.get(i);
+                final CigarOperator op = state.getCigarOperator();
+                if ( op != CigarOperator.N && (op != CigarOperator.D || includeDeletions) )
+                    return 0;
+                nSteps = Math.min(nSteps, state.getGenomeStepsLeftInCurrentElement());
+            }
+        }
+
+        // don't jump over the start of the next read
+        final AlignmentStateMachine first = getFirst();
+        if ( iterator.hasNext() && iterator.peek().getReferenceIndex() == first.getReferenceIndex() )
+            nSteps = Math.min(nSteps, iterator.peek().getAlignmentStart() - first.getGenomePosition() - 1);
+
+        if ( nSteps <= 0 )
+            return 0;
+
+        for ( final PerSampleReadStateManager perSampleReadStateManager : readStatesBySample.values() ) {
+            for ( int i = 0; i < perSampleReadStateManager.size(); i++ )
+                perSampleReadStateManager.get(i).stepForwardOnGenome(nSteps);
+        }
+        return nSteps;
+    }
+
     /**
      * Does read start at the same position as described by currentContextIndex and currentAlignmentStart?
      *
@@ -234,7 +283,7 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
         if ( ! keepSubmittedReads ) throw new UnsupportedOperationException("cannot transferSubmittedReads if you aren't keeping them");
 
         final List<GATKSAMRecord> prevSubmittedReads = submittedReads;
-        this.submittedReads = new LinkedList<GATKSAMRecord>();
+        this.submittedReads = new ArrayList<GATKSAMRecord>(prevSubmittedReads.size());
 
         return prevSubmittedReads;
     }
@@ -275,8 +324,7 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
         if (reads.isEmpty())
             return;
 
-        final LinkedList<AlignmentStateMachine> newReadStates = new LinkedList<AlignmentStateMachine>();
-
+        newReadStates.clear();
         for (final GATKSAMRecord read : reads) {
             final AlignmentStateMachine state = new AlignmentStateMachine(read);
             if ( state.stepForwardOnGenome() != null ) // todo -- should be an assertion not a skip
@@ -285,5 +333,6 @@ final class ReadStateManager implements Iterable<Map.Entry<String, PerSampleRead
         }
 
         totalReadStates += readStates.addStatesAtNextAlignmentStart(newReadStates);
+        newReadStates.clear(); // don't hold on to the states, the per sample manager has them now
     }
 }
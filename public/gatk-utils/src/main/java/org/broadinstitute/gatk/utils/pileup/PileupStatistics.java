@@ -0,0 +1,173 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.pileup;
+
+import org.broadinstitute.gatk.utils.QualityUtils;
+
+/**
+ * The per-element data of a pileup that the annotations look at (bases, qualities, mapping qualities and
+ * strands), gathered into arrays in a single pass over the pileup, along with a few totals over them.
+ *
+ * Several annotations look at each pileup, and each of them used to iterate over the pileup itself.
+ * Use AlignmentContext.getPileupStatistics() to get the statistics for a context, so that they are
+ * only gathered once per context however many annotations look at them.
+ *
+ * The elements are in the order in which the pileup iterates over them.  All of the fields are final, so a
+ * PileupStatistics can be shared between threads once it has been constructed.
+ */
+public class PileupStatistics {
+    private final PileupElement[] elements;
+    private final byte[] bases;
+    private final byte[] quals;
+    private final int[] mappingQuals;
+    private final boolean[] deletions;
+    private final boolean[] negativeStrands;
+    private final boolean[] strandless;
+
+    private final int nMappingQualityZero;
+    private final int nMappingQualityAvailable;
+    private final long sumOfSquaredMappingQualities;
+
+    /**
+     * Gather the statistics of pileup
+     *
+     * @param pileup a non-null pileup
+     */
+    public PileupStatistics(final ReadBackedPileup pileup) {
+        if ( pileup == null ) throw new IllegalArgumentException("pileup cannot be null");
+
+        final int n = pileup.getNumberOfElements();
+        elements = new PileupElement[n];
+        bases = new byte[n];
+        quals = new byte[n];
+        mappingQuals = new int[n];
+        deletions = new boolean[n];
+        negativeStrands = new boolean[n];
+        strandless = new boolean[n];
+
+        int nMQ0 = 0, nMQAvailable = 0;
+        long sumOfSquaredMQs = 0;
+        int i = 0;
+        for ( final PileupElement p : pileup ) {
+            elements[i] = p;
+            bases[i] = p.getBase();
+            quals[i] = p.getQual();
+            deletions[i] = p.isDeletion();
+            negativeStrands[i] = p.getRead().getReadNegativeStrandFlag();
+            strandless[i] = p.getRead().isStrandless();
+
+            final int mq = p.getMappingQual();
+            mappingQuals[i] = mq;
+            if ( mq == 0 )
+                nMQ0++;
+            if ( mq != QualityUtils.MAPPING_QUALITY_UNAVAILABLE ) {
+                nMQAvailable++;
+                sumOfSquaredMQs += mq * mq;
+            }
+            i++;
+        }
+
+        nMappingQualityZero = nMQ0;
+        nMappingQualityAvailable = nMQAvailable;
+        sumOfSquaredMappingQualities = sumOfSquaredMQs;
+    }
+
+    /**
+     * @return the number of elements in the pileup
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    public PileupElement getElement(final int i) {
+        return elements[i];
+    }
+
+    public byte getBase(final int i) {
+        return bases[i];
+    }
+
+    public byte getQual(final int i) {
+        return quals[i];
+    }
+
+    public int getMappingQual(final int i) {
+        return mappingQuals[i];
+    }
+
+    public boolean isDeletion(final int i) {
+        return deletions[i];
+    }
+
+    /**
+     * @return true if the read of the ith element is on the negative strand (never true for strandless reads)
+     */
+    public boolean isNegativeStrand(final int i) {
+        return negativeStrands[i];
+    }
+
+    /**
+     * @return true if the read of the ith element doesn't have meaningful strand information
+     */
+    public boolean isStrandless(final int i) {
+        return strandless[i];
+    }
+
+    /**
+     * Can the base of the ith element be used in comparative tests between the alleles?  That is, is it
+     * a base (not a deletion) of usable quality from a read with a meaningful mapping quality?
+     *
+     * @param i the index of the element
+     * @return true if the base is usable, false otherwise
+     */
+    public boolean isUsableBase(final int i) {
+        return ! ( deletions[i] ||
+                mappingQuals[i] == 0 ||
+                mappingQuals[i] == QualityUtils.MAPPING_QUALITY_UNAVAILABLE ||
+                quals[i] < QualityUtils.MIN_USABLE_Q_SCORE );
+    }
+
+    /**
+     * @return the number of elements whose reads have mapping quality zero
+     */
+    public int getNumberOfMappingQualityZero() {
+        return nMappingQualityZero;
+    }
+
+    /**
+     * @return the number of elements whose reads have an available mapping quality
+     */
+    public int getNumberOfAvailableMappingQualities() {
+        return nMappingQualityAvailable;
+    }
+
+    /**
+     * @return the sum of the squares of the available mapping qualities of the reads of the elements
+     */
+    public long getSumOfSquaredMappingQualities() {
+        return sumOfSquaredMappingQualities;
+    }
+}
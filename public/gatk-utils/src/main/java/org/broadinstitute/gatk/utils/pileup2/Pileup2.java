@@ -0,0 +1,780 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.pileup2;
+
+import org.broadinstitute.gatk.utils.BaseUtils;
+import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.Utils;
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+import org.broadinstitute.gatk.utils.fragments.FragmentCollection;
+import org.broadinstitute.gatk.utils.fragments.FragmentUtils;
+import org.broadinstitute.gatk.utils.pileup.PileupElement;
+import org.broadinstitute.gatk.utils.pileup.PileupElementFilter;
+import org.broadinstitute.gatk.utils.pileup.ReadBackedPileup;
+import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
+
+import java.util.*;
+
+/**
+ * Lightweight, immutable, sample-tree implementation of ReadBackedPileup
+ *
+ * A Pileup2 is a root over one leaf per sample (or a single leaf when the pileup isn't split by sample).  Each
+ * leaf is the PileupColumns of that sample together with a bit mask of the elements of those columns that are in
+ * this pileup.  Filtering a pileup creates a new root with new masks over the same columns, so it costs O(N)
+ * bit operations instead of a new graph of element lists, and selecting samples just selects leaves.
+ *
+ * The size of each pileup is computed once, when it is created, and the other counts are cached as needed.
+ *
+ * See the Notes in this package for the design.
+ */
+public class Pileup2 implements ReadBackedPileup {
+    private final static int UNINITIALIZED_CACHED_INT_VALUE = -1;
+
+    private final GenomeLoc loc;
+
+    /** true if the leaves are the pileups of individual samples, false if there is a single leaf of unknown samples */
+    private final boolean perSample;
+    private final String[] samples;
+    private final PileupColumns[] columns;
+    private final BitSet[] masks;
+    private final int size;
+
+    private int nDeletions = UNINITIALIZED_CACHED_INT_VALUE;            // cached value of the number of deletions
+    private int nMQ0Reads = UNINITIALIZED_CACHED_INT_VALUE;             // cached value of the number of MQ0 reads
+
+    /**
+     * Create a new pileup at loc without any aligned reads
+     */
+    public Pileup2(final GenomeLoc loc) {
+        this(loc, Collections.<PileupElement>emptyList());
+    }
+
+    /**
+     * Create a new pileup at loc with the elements of pileup, in order.  Don't go changing the reads of pileup.
+     */
+    public Pileup2(final GenomeLoc loc, final List<PileupElement> pileup) {
+        this(loc, false, new String[]{null}, new PileupColumns[]{new PileupColumns(checkPileup(loc, pileup))}, null);
+    }
+
+    /**
+     * Create a new pileup at loc with a leaf for each sample.  Don't go changing the reads of the pileups.
+     *
+     * @param loc the location of the pileup
+     * @param pileupsBySample the elements of each sample, in order
+     */
+    public Pileup2(final GenomeLoc loc, final Map<String, ? extends List<PileupElement>> pileupsBySample) {
+        this(loc, true, pileupsBySample.keySet().toArray(new String[pileupsBySample.size()]), columnsOf(loc, pileupsBySample), null);
+    }
+
+    /**
+     * The low-level constructor, keeping pointers to all of its arguments
+     *
+     * @param masks the masks of each leaf, or null if all of the elements of the columns are in this pileup
+     */
+    private Pileup2(final GenomeLoc loc, final boolean perSample, final String[] samples, final PileupColumns[] columns, final BitSet[] masks) {
+        if ( loc == null ) throw new ReviewedGATKException("Illegal null genomeloc in ReadBackedPileup");
+
+        this.loc = loc;
+        this.perSample = perSample;
+        this.samples = samples;
+        this.columns = columns;
+        if ( masks == null ) {
+            this.masks = new BitSet[columns.length];
+            for ( int i = 0; i < columns.length; i++ )
+                this.masks[i] = columns[i].all;
+        } else {
+            this.masks = masks;
+        }
+
+        int size = 0;
+        for ( final BitSet mask : this.masks )
+            size += mask.cardinality();
+        this.size = size;
+    }
+
+    private static List<PileupElement> checkPileup(final GenomeLoc loc, final List<PileupElement> pileup) {
+        if ( pileup == null ) throw new ReviewedGATKException("Illegal null pileup in ReadBackedPileup");
+        return pileup;
+    }
+
+    private static PileupColumns[] columnsOf(final GenomeLoc loc, final Map<String, ? extends List<PileupElement>> pileupsBySample) {
+        final PileupColumns[] columns = new PileupColumns[pileupsBySample.size()];
+        int i = 0;
+        for ( final List<PileupElement> pileup : pileupsBySample.values() )
+            columns[i++] = new PileupColumns(checkPileup(loc, pileup));
+        return columns;
+    }
+
+    // --------------------------------------------------------
+    //
+    // Views
+    //
+    // --------------------------------------------------------
+
+    /**
+     * Tests whether the element at an index of some columns should be in a filtered view
+     */
+    private interface ElementTest {
+        public boolean keep(final PileupColumns columns, final int i);
+    }
+
+    /**
+     * @return a pileup with the elements of this pileup that pass test, sharing the columns of this pileup
+     */
+    private Pileup2 filter(final ElementTest test) {
+        final BitSet[] filtered = new BitSet[masks.length];
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final BitSet mask = masks[leaf];
+            filtered[leaf] = new BitSet(columns[leaf].size());
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) ) {
+                if ( test.keep(columns[leaf], i) )
+                    filtered[leaf].set(i);
+            }
+        }
+        return new Pileup2(loc, perSample, samples, columns, filtered);
+    }
+
+    /**
+     * @return a pileup with the elements of this pileup that are (or, if keep is false, are not) in the flags of each leaf
+     */
+    private Pileup2 filter(final BitSet[] flags, final boolean keep) {
+        final BitSet[] filtered = new BitSet[masks.length];
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            filtered[leaf] = (BitSet) masks[leaf].clone();
+            if ( keep )
+                filtered[leaf].and(flags[leaf]);
+            else
+                filtered[leaf].andNot(flags[leaf]);
+        }
+        return new Pileup2(loc, perSample, samples, columns, filtered);
+    }
+
+    /**
+     * @return a pileup that isn't split by sample with only the given leaf of this pileup
+     */
+    private Pileup2 leaf(final int leaf) {
+        return new Pileup2(loc, false, new String[]{samples[leaf]}, new PileupColumns[]{columns[leaf]}, new BitSet[]{masks[leaf]});
+    }
+
+    private int indexOfSample(final String sample) {
+        for ( int leaf = 0; leaf < samples.length; leaf++ )
+            if ( samples[leaf] == null ? sample == null : samples[leaf].equals(sample) )
+                return leaf;
+        return -1;
+    }
+
+    private BitSet[] deletions() {
+        final BitSet[] flags = new BitSet[columns.length];
+        for ( int leaf = 0; leaf < columns.length; leaf++ )
+            flags[leaf] = columns[leaf].deletions;
+        return flags;
+    }
+
+    private BitSet[] negativeStrand() {
+        final BitSet[] flags = new BitSet[columns.length];
+        for ( int leaf = 0; leaf < columns.length; leaf++ )
+            flags[leaf] = columns[leaf].negativeStrand;
+        return flags;
+    }
+
+    private BitSet[] mappingQualityZero() {
+        final BitSet[] flags = new BitSet[columns.length];
+        for ( int leaf = 0; leaf < columns.length; leaf++ )
+            flags[leaf] = columns[leaf].mappingQualityZero;
+        return flags;
+    }
+
+    @Override
+    public Pileup2 getPileupWithoutDeletions() {
+        return getNumberOfDeletions() > 0 ? filter(deletions(), false) : this;
+    }
+
+    @Override
+    public Pileup2 getOverlappingFragmentFilteredPileup() {
+        return getOverlappingFragmentFilteredPileup(true, true);
+    }
+
+    /**
+     * Returns a new pileup where only one read from an overlapping read pair is retained.  If discardDiscordant
+     * and the two reads in question disagree to their basecall, neither read is retained.  Otherwise, the read
+     * with the higher quality (base or mapping, depending on baseQualNotMapQual) observation is retained.
+     *
+     * Overlapping reads are only looked for within the same leaf.  Unlike ReadBackedPileupImpl, which hands them
+     * back in hash order, the retained elements keep their order.
+     */
+    @Override
+    public Pileup2 getOverlappingFragmentFilteredPileup(final boolean discardDiscordant, final boolean baseQualNotMapQual) {
+        final BitSet[] filtered = new BitSet[masks.length];
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final PileupColumns c = columns[leaf];
+            final BitSet mask = masks[leaf];
+            final Map<String, Integer> filteredPileup = new HashMap<String, Integer>();
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) ) {
+                final String readName = c.elements[i].getRead().getReadName();
+                final Integer existing = filteredPileup.get(readName);
+
+                // if we've never seen this read before, life is good
+                if ( existing == null ) {
+                    filteredPileup.put(readName, i);
+                } else if ( discardDiscordant && c.bases[existing] != c.bases[i] ) {
+                    // if the reads disagree at this position, throw them both out
+                    filteredPileup.remove(readName);
+                } else if ( baseQualNotMapQual ? c.quals[existing] < c.quals[i] : c.mappingQuals[existing] < c.mappingQuals[i] ) {
+                    // otherwise keep the element with the higher quality score
+                    filteredPileup.put(readName, i);
+                }
+            }
+
+            filtered[leaf] = new BitSet(c.size());
+            for ( final int i : filteredPileup.values() )
+                filtered[leaf].set(i);
+        }
+        return new Pileup2(loc, perSample, samples, columns, filtered);
+    }
+
+    @Override
+    public Pileup2 getPileupWithoutMappingQualityZeroReads() {
+        return getNumberOfMappingQualityZeroReads() > 0 ? filter(mappingQualityZero(), false) : this;
+    }
+
+    @Override
+    public Pileup2 getPositiveStrandPileup() {
+        return filter(negativeStrand(), false);
+    }
+
+    @Override
+    public Pileup2 getNegativeStrandPileup() {
+        return filter(negativeStrand(), true);
+    }
+
+    @Override
+    public Pileup2 getFilteredPileup(final PileupElementFilter filter) {
+        return filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                return filter.allow(columns.elements[i]);
+            }
+        });
+    }
+
+    /**
+     * Returns subset of this pileup that contains only bases with quality >= minBaseQ (or deletions), coming from
+     * reads with mapping qualities >= minMapQ.
+     */
+    @Override
+    public Pileup2 getBaseAndMappingFilteredPileup(final int minBaseQ, final int minMapQ) {
+        return filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                return columns.mappingQuals[i] >= minMapQ && (columns.deletions.get(i) || columns.quals[i] >= minBaseQ);
+            }
+        });
+    }
+
+    @Override
+    public Pileup2 getBaseFilteredPileup(final int minBaseQ) {
+        return getBaseAndMappingFilteredPileup(minBaseQ, -1);
+    }
+
+    @Override
+    public Pileup2 getMappingFilteredPileup(final int minMapQ) {
+        return getBaseAndMappingFilteredPileup(-1, minMapQ);
+    }
+
+    /**
+     * Returns a pileup randomly downsampled to the desiredCoverage.
+     */
+    @Override
+    public Pileup2 getDownsampledPileup(final int desiredCoverage) {
+        if ( size <= desiredCoverage )
+            return this;
+
+        // randomly choose numbers corresponding to positions in the leaves, one after the other
+        final BitSet positions = new BitSet(size);
+        for ( int i = 0; i < desiredCoverage; /* no update */ ) {
+            final int position = Utils.getRandomGenerator().nextInt(size);
+            if ( ! positions.get(position) ) {
+                positions.set(position);
+                i++;
+            }
+        }
+
+        final BitSet[] filtered = new BitSet[masks.length];
+        int position = 0;
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final BitSet mask = masks[leaf];
+            filtered[leaf] = new BitSet(columns[leaf].size());
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) ) {
+                if ( positions.get(position++) )
+                    filtered[leaf].set(i);
+            }
+        }
+        return new Pileup2(loc, perSample, samples, columns, filtered);
+    }
+
+    @Override
+    public Collection<String> getReadGroups() {
+        final Set<String> readGroups = new HashSet<String>();
+        for ( final PileupElement p : this )
+            readGroups.add(p.getRead().getReadGroup().getReadGroupId());
+        return readGroups;
+    }
+
+    private static String readGroupId(final GATKSAMRecord read) {
+        return read.getReadGroup() == null ? null : read.getReadGroup().getReadGroupId();
+    }
+
+    private static String sample(final GATKSAMRecord read) {
+        return read.getReadGroup() == null ? null : read.getReadGroup().getSample();
+    }
+
+    /**
+     * As with the read group filters of ReadBackedPileupImpl, samples without any elements are dropped from the
+     * filtered pileup, and if no elements are left at all there's no pileup
+     *
+     * @return pileup without its empty leaves, or null if it is empty
+     */
+    private static Pileup2 nullIfEmpty(final Pileup2 pileup) {
+        if ( pileup.isEmpty() )
+            return null;
+        if ( ! pileup.perSample )
+            return pileup;
+
+        final List<Integer> leaves = new ArrayList<Integer>(pileup.masks.length);
+        for ( int leaf = 0; leaf < pileup.masks.length; leaf++ )
+            if ( ! pileup.masks[leaf].isEmpty() )
+                leaves.add(leaf);
+        return leaves.size() == pileup.masks.length ? pileup : pileup.selectLeaves(leaves);
+    }
+
+    /**
+     * @return a pileup split by sample with only the given leaves of this pileup
+     */
+    private Pileup2 selectLeaves(final List<Integer> leaves) {
+        final String[] selectedSamples = new String[leaves.size()];
+        final PileupColumns[] selectedColumns = new PileupColumns[leaves.size()];
+        final BitSet[] selectedMasks = new BitSet[leaves.size()];
+        for ( int i = 0; i < leaves.size(); i++ ) {
+            selectedSamples[i] = samples[leaves.get(i)];
+            selectedColumns[i] = columns[leaves.get(i)];
+            selectedMasks[i] = masks[leaves.get(i)];
+        }
+        return new Pileup2(loc, true, selectedSamples, selectedColumns, selectedMasks);
+    }
+
+    @Override
+    public Pileup2 getPileupForReadGroup(final String targetReadGroupId) {
+        return nullIfEmpty(filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                final String readGroupId = readGroupId(columns.elements[i].getRead());
+                return targetReadGroupId == null ? readGroupId == null : targetReadGroupId.equals(readGroupId);
+            }
+        }));
+    }
+
+    @Override
+    public Pileup2 getPileupForReadGroups(final HashSet<String> rgSet) {
+        return nullIfEmpty(filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                final String readGroupId = readGroupId(columns.elements[i].getRead());
+                return rgSet != null && ! rgSet.isEmpty() ? readGroupId != null && rgSet.contains(readGroupId) : readGroupId == null;
+            }
+        }));
+    }
+
+    @Override
+    public Pileup2 getPileupForLane(final String laneID) {
+        return nullIfEmpty(filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                final String readGroupId = readGroupId(columns.elements[i].getRead());
+                if ( laneID == null )
+                    return readGroupId == null;
+                // either the lane is the same but the sample identifier is different, or there is no sample identifier
+                return readGroupId != null && (readGroupId.startsWith(laneID + ".") || readGroupId.equals(laneID));
+            }
+        }));
+    }
+
+    @Override
+    public Collection<String> getSamples() {
+        if ( perSample )
+            return new HashSet<String>(Arrays.asList(samples));
+
+        final Set<String> sampleNames = new HashSet<String>();
+        for ( final PileupElement p : this )
+            sampleNames.add(sample(p.getRead()));
+        return sampleNames;
+    }
+
+    @Override
+    public Pileup2 getPileupForSamples(final Collection<String> sampleNames) {
+        if ( perSample ) {
+            final List<Integer> leaves = new ArrayList<Integer>(sampleNames.size());
+            for ( final String sample : sampleNames ) {
+                final int leaf = indexOfSample(sample);
+                if ( leaf != -1 )
+                    leaves.add(leaf);
+            }
+            return selectLeaves(leaves);
+        }
+
+        final Set<String> hashSampleNames = sampleNames == null ? null : new HashSet<String>(sampleNames);
+        return nullIfEmpty(filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                final String sample = sample(columns.elements[i].getRead());
+                return hashSampleNames != null ? sample != null && hashSampleNames.contains(sample) : sample == null;
+            }
+        }));
+    }
+
+    @Override
+    public Map<String, ReadBackedPileup> getPileupsForSamples(final Collection<String> sampleNames) {
+        final Map<String, ReadBackedPileup> result = new HashMap<String, ReadBackedPileup>();
+        if ( perSample ) {
+            for ( final String sample : sampleNames ) {
+                final int leaf = indexOfSample(sample);
+                if ( leaf != -1 )
+                    result.put(sample, leaf(leaf));
+            }
+        } else {
+            // go through all pileup elements only once and add them to the respective sample's mask
+            final Map<String, BitSet> sampleMasks = new HashMap<String, BitSet>();
+            for ( final String sample : sampleNames )
+                sampleMasks.put(sample, new BitSet(columns[0].size()));
+            final BitSet mask = masks[0];
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) ) {
+                final GATKSAMRecord read = columns[0].elements[i].getRead();
+                if ( read.getReadGroup() != null ) {
+                    final BitSet sampleMask = sampleMasks.get(read.getReadGroup().getSample());
+                    if ( sampleMask != null ) // we only add the requested samples, completely ignoring the rest
+                        sampleMask.set(i);
+                }
+            }
+            for ( final Map.Entry<String, BitSet> entry : sampleMasks.entrySet() )
+                result.put(entry.getKey(), new Pileup2(loc, false, new String[]{entry.getKey()}, columns, new BitSet[]{entry.getValue()}));
+        }
+        return result;
+    }
+
+    @Override
+    public Pileup2 getPileupForSample(final String sampleName) {
+        if ( perSample ) {
+            final int leaf = indexOfSample(sampleName);
+            return leaf == -1 ? null : leaf(leaf);
+        }
+
+        return nullIfEmpty(filter(new ElementTest() {
+            @Override
+            public boolean keep(final PileupColumns columns, final int i) {
+                final String sample = sample(columns.elements[i].getRead());
+                return sampleName == null ? sample == null : sampleName.equals(sample);
+            }
+        }));
+    }
+
+    // --------------------------------------------------------
+    //
+    // iterators
+    //
+    // --------------------------------------------------------
+
+    /**
+     * Iterates over the elements of this pileup.  The elements of a pileup split by sample are merged the same way
+     * as in ReadBackedPileupImpl, by decreasing offset, so given its samples in the same (hash) order as the
+     * ReadBackedPileupImpl made by LocusIteratorByState, ties between samples are broken the same way too.
+     */
+    @Override
+    public Iterator<PileupElement> iterator() {
+        final OrderedIndexIterator it = new OrderedIndexIterator();
+        return new Iterator<PileupElement>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public PileupElement next() {
+                it.next();
+                return columns[it.leaf].elements[it.index];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Cannot remove from a pileup element iterator");
+            }
+        };
+    }
+
+    /**
+     * Walks over the leaves and indices in those leaves of the elements of this pileup, in iteration order
+     */
+    private class OrderedIndexIterator {
+        private final PriorityQueue<LeafCursor> cursors;
+
+        /** the leaf and index of the current element */
+        private int leaf, index;
+
+        private OrderedIndexIterator() {
+            cursors = new PriorityQueue<LeafCursor>(Math.max(masks.length, 1), new Comparator<LeafCursor>() {
+                @Override
+                public int compare(final LeafCursor lhs, final LeafCursor rhs) {
+                    return columns[rhs.leaf].offsets[rhs.next] - columns[lhs.leaf].offsets[lhs.next];
+                }
+            });
+            for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+                final LeafCursor cursor = new LeafCursor(leaf);
+                if ( cursor.next >= 0 )
+                    cursors.add(cursor);
+            }
+        }
+
+        private boolean hasNext() {
+            return ! cursors.isEmpty();
+        }
+
+        private void next() {
+            final LeafCursor current = cursors.poll();
+            if ( current == null ) throw new NoSuchElementException();
+            leaf = current.leaf;
+            index = current.next;
+            current.next = masks[leaf].nextSetBit(index + 1);
+            if ( current.next >= 0 )
+                cursors.add(current);
+        }
+    }
+
+    private class LeafCursor {
+        private final int leaf;
+        private int next;
+
+        private LeafCursor(final int leaf) {
+            this.leaf = leaf;
+            this.next = masks[leaf].nextSetBit(0);
+        }
+    }
+
+    // --------------------------------------------------------
+    //
+    // counts and columns
+    //
+    // --------------------------------------------------------
+
+    @Override
+    public int getNumberOfDeletions() {
+        if ( nDeletions == UNINITIALIZED_CACHED_INT_VALUE ) {
+            int n = 0;
+            for ( int leaf = 0; leaf < masks.length; leaf++ )
+                n += countIntersection(masks[leaf], columns[leaf].deletions);
+            nDeletions = n;
+        }
+        return nDeletions;
+    }
+
+    @Override
+    public int getNumberOfMappingQualityZeroReads() {
+        if ( nMQ0Reads == UNINITIALIZED_CACHED_INT_VALUE ) {
+            int n = 0;
+            for ( int leaf = 0; leaf < masks.length; leaf++ )
+                n += countIntersection(masks[leaf], columns[leaf].mappingQualityZero);
+            nMQ0Reads = n;
+        }
+        return nMQ0Reads;
+    }
+
+    private static int countIntersection(final BitSet mask, final BitSet flags) {
+        if ( flags.isEmpty() )
+            return 0;
+        final BitSet intersection = (BitSet) mask.clone();
+        intersection.and(flags);
+        return intersection.cardinality();
+    }
+
+    @Override
+    public int getNumberOfDeletionsAfterThisElement() {
+        int count = 0;
+        for ( final PileupElement p : this )
+            if ( p.isBeforeDeletionStart() )
+                count++;
+        return count;
+    }
+
+    @Override
+    public int getNumberOfInsertionsAfterThisElement() {
+        int count = 0;
+        for ( final PileupElement p : this )
+            if ( p.isBeforeInsertion() )
+                count++;
+        return count;
+    }
+
+    @Override
+    public int getNumberOfElements() {
+        return size;
+    }
+
+    @Override
+    public int depthOfCoverage() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public GenomeLoc getLocation() {
+        return loc;
+    }
+
+    /**
+     * Get counts of A, C, G, T in order, which returns a int[4] vector with counts according
+     * to BaseUtils.simpleBaseToBaseIndex for each base.
+     */
+    @Override
+    public int[] getBaseCounts() {
+        final int[] counts = new int[4];
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final PileupColumns c = columns[leaf];
+            final BitSet mask = masks[leaf];
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) ) {
+                // skip deletion sites
+                if ( ! c.deletions.get(i) ) {
+                    final int index = BaseUtils.simpleBaseToBaseIndex(c.bases[i]);
+                    if ( index != -1 )
+                        counts[index]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public String getPileupString(final Character ref) {
+        // In the pileup format, each line represents a genomic position, consisting of chromosome name,
+        // coordinate, reference base, read bases, read qualities and alignment mapping qualities.
+        final StringBuilder quals = new StringBuilder(size);
+        for ( final byte qual : getQuals() )
+            quals.append((char) (33 + Math.min(qual, 63)));     // as in ReadBackedPileupImpl, illegal for qual > 63
+        return String.format("%s %s %c %s %s",
+                getLocation().getContig(), getLocation().getStart(),    // chromosome name and coordinate
+                ref,                                                     // reference base
+                new String(getBases()),
+                quals.toString());
+    }
+
+    @Override
+    public List<GATKSAMRecord> getReads() {
+        final List<GATKSAMRecord> reads = new ArrayList<GATKSAMRecord>(size);
+        for ( final PileupElement p : this )
+            reads.add(p.getRead());
+        return reads;
+    }
+
+    @Override
+    public List<Integer> getOffsets() {
+        final List<Integer> offsets = new ArrayList<Integer>(size);
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final BitSet mask = masks[leaf];
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) )
+                offsets.add(columns[leaf].offsets[i]);
+        }
+        return offsets;
+    }
+
+    @Override
+    public byte[] getBases() {
+        final byte[] v = new byte[size];
+        final OrderedIndexIterator it = new OrderedIndexIterator();
+        for ( int n = 0; it.hasNext(); n++ ) {
+            it.next();
+            v[n] = columns[it.leaf].bases[it.index];
+        }
+        return v;
+    }
+
+    @Override
+    public byte[] getQuals() {
+        final byte[] v = new byte[size];
+        final OrderedIndexIterator it = new OrderedIndexIterator();
+        for ( int n = 0; it.hasNext(); n++ ) {
+            it.next();
+            v[n] = columns[it.leaf].quals[it.index];
+        }
+        return v;
+    }
+
+    @Override
+    public int[] getMappingQuals() {
+        final int[] v = new int[size];
+        final OrderedIndexIterator it = new OrderedIndexIterator();
+        for ( int n = 0; it.hasNext(); n++ ) {
+            it.next();
+            v[n] = columns[it.leaf].mappingQuals[it.index];
+        }
+        return v;
+    }
+
+    /**
+     * Returns a new pileup, not split by sample, that is sorted by start coordinate of the reads.
+     *
+     * As in ReadBackedPileupImpl, the elements are added sample by sample, so that of two elements with the same
+     * start and read name the same one is kept.
+     */
+    @Override
+    public Pileup2 getStartSortedPileup() {
+        final TreeSet<PileupElement> sortedElements = new TreeSet<PileupElement>(new Comparator<PileupElement>() {
+            @Override
+            public int compare(PileupElement element1, PileupElement element2) {
+                final int difference = element1.getRead().getAlignmentStart() - element2.getRead().getAlignmentStart();
+                return difference != 0 ? difference : element1.getRead().getReadName().compareTo(element2.getRead().getReadName());
+            }
+        });
+        for ( int leaf = 0; leaf < masks.length; leaf++ ) {
+            final BitSet mask = masks[leaf];
+            for ( int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1) )
+                sortedElements.add(columns[leaf].elements[i]);
+        }
+        return new Pileup2(loc, new ArrayList<PileupElement>(sortedElements));
+    }
+
+    @Override
+    public FragmentCollection<PileupElement> toFragments() {
+        return FragmentUtils.create(this);
+    }
+
+    /**
+     * Pileup2s are immutable, so a copy can share all of the data of this pileup
+     */
+    @Override
+    public Pileup2 copy() {
+        return new Pileup2(loc, perSample, samples, columns, masks);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.pileup2;
+
+import org.broadinstitute.gatk.utils.pileup.PileupElement;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Immutable, columnar store of the pileup elements of a single sample
+ *
+ * The bases, quals, mapping qualities and offsets of the elements are kept in primitive arrays, and the
+ * properties that pileups are commonly filtered on are kept as bit masks, so that a filtered view of these
+ * columns is just another bit mask over them.  The values are captured when the columns are created, so
+ * don't go changing the reads afterwards.
+ */
+final class PileupColumns {
+    final PileupElement[] elements;
+    final byte[] bases;
+    final byte[] quals;
+    final int[] mappingQuals;
+    final int[] offsets;
+
+    /** elements that are deletions */
+    final BitSet deletions;
+
+    /** elements of reads on the negative strand */
+    final BitSet negativeStrand;
+
+    /** elements of reads with mapping quality zero */
+    final BitSet mappingQualityZero;
+
+    /** all of the elements */
+    final BitSet all;
+
+    PileupColumns(final List<PileupElement> pileup) {
+        final int size = pileup.size();
+        elements = pileup.toArray(new PileupElement[size]);
+        bases = new byte[size];
+        quals = new byte[size];
+        mappingQuals = new int[size];
+        offsets = new int[size];
+        deletions = new BitSet(size);
+        negativeStrand = new BitSet(size);
+        mappingQualityZero = new BitSet(size);
+        all = new BitSet(size);
+        all.set(0, size);
+
+        for ( int i = 0; i < size; i++ ) {
+            final PileupElement p = elements[i];
+            bases[i] = p.getBase();
+            quals[i] = p.getQual();
+            mappingQuals[i] = p.getMappingQual();
+            offsets[i] = p.getOffset();
+            if ( p.isDeletion() ) deletions.set(i);
+            if ( p.getRead().getReadNegativeStrandFlag() ) negativeStrand.set(i);
+            if ( mappingQuals[i] == 0 ) mappingQualityZero.set(i);
+        }
+    }
+
+    int size() {
+        return elements.length;
+    }
+}
@@ -85,6 +85,7 @@ public class SeekableRODIterator implements LocationAwareSeekableRODIterator {
     int max_position = 0;  // the rightmost stop position of currently loaded records
     String curr_contig = null;   // what contig the iterator is currently on
     boolean next_is_allowed = true; // see discussion below. next() is illegal after seek-forward queries of length > 1
+    boolean record_starts_only = false; // if true, next() jumps between record starts instead of stepping through covered bases
 
     // the stop position of the last query. We can query only in forward direction ("seek forward");
     // it is not only the start position of every successive query that can not be before the start
@@ -155,6 +156,19 @@ public class SeekableRODIterator implements LocationAwareSeekableRODIterator {
     }
 
 
+    /**
+     * Switches the iterator between its default mode, in which next() advances to every genomic position covered
+     * by at least one record, and a mode in which next() advances only to the positions at which at least one
+     * record starts. In both modes the list returned by next() holds all records overlapping the new position, so
+     * the second mode simply skips the positions that would only repeat records already returned. This is meant for
+     * consumers that keep track of the extent of the records themselves (e.g. long gVCF reference blocks).
+     *
+     * @param recordStartsOnly true to visit only record starts, false to visit every covered position
+     */
+    public void setRecordStartsOnly(final boolean recordStartsOnly) {
+        this.record_starts_only = recordStartsOnly;
+    }
+
     /**
      * Returns true if the data we iterate over has records associated with (any, not necessarily adjacent)
      * genomic position farther along the reference.
@@ -164,7 +178,7 @@ public class SeekableRODIterator implements LocationAwareSeekableRODIterator {
 
         // if we did not walk to the very end of the interval(s) covered by currently loaded
         // annotations (records), then we definitely have data for next genomic location
-        if ( curr_position < max_position ) return true;
+        if ( ! record_starts_only && curr_position < max_position ) return true;
 
         // we are past currently loaded stuff; we have next if there are more lines to load:
         return it.hasNext();
@@ -173,7 +187,7 @@ public class SeekableRODIterator implements LocationAwareSeekableRODIterator {
     // Returns point location (i.e. genome loc of length 1) on the reference, to which this iterator will advance
     // upon next call to next().
     public GenomeLoc peekNextLocation() {
-        if ( curr_position + 1 <= max_position ) return parser.createGenomeLoc(curr_contig,curr_position+1);
+        if ( ! record_starts_only && curr_position + 1 <= max_position ) return parser.createGenomeLoc(curr_contig,curr_position+1);
 
         // sorry, next reference position is not covered by the RODs we are currently holding. In this case,
         // the location we will jump to upon next call to next() is the start of the next ROD record that we did
@@ -198,11 +212,16 @@ public class SeekableRODIterator implements LocationAwareSeekableRODIterator {
          curr_position++;
  //        curr_query_end = -1;
 
-         if ( curr_position <= max_position ) {
+         if ( curr_position <= max_position && ! record_starts_only ) {
 
              // we still have bases covered by at least one currently loaded record;
              // we have to purge only subset of records, on which we moved past the end
              purgeOutOfScopeRecords();
+         } else if ( curr_position <= max_position && it.element() != null && it.element().getLocation().getContig().equals(curr_contig) ) {
+             // visiting record starts only, and the next record starts on the current contig: jump straight to
+             // its start, keeping those of the loaded records that still overlap it (hasNext() guarantees a next record)
+             curr_position = Math.max(curr_position, it.element().getLocation().getStart());
+             purgeOutOfScopeRecords();
          } else {
              // ooops, we are past the end of all loaded records - kill them all at once,
              // load next record and reinitialize by fastforwarding current position to the start of next record
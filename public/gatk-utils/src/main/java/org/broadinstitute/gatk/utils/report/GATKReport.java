@@ -30,6 +30,7 @@ import org.broadinstitute.gatk.utils.exceptions.UserException;
 
 import java.io.*;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -66,7 +67,24 @@ public class GATKReport {
      * @param file the file to load
      */
     public GATKReport(File file) {
-        loadReport(file);
+        loadReport(file, null);
+    }
+
+    /**
+     * Create a new GATKReport with the tables of a GATKReport on disk, up to and including the table named lastTableName.
+     *
+     * Tables are read in the order in which they appear in the file (i.e., sorted by name for reports written by
+     * the GATK), so this avoids parsing the remainder of a large report when only one of its first tables is needed.
+     * If there is no table named lastTableName, the whole report is loaded.
+     *
+     * @param file          the file to load
+     * @param lastTableName the name of the last table to load
+     * @return a report with the tables of file up to and including lastTableName
+     */
+    public static GATKReport loadReportUpToTable(final File file, final String lastTableName) {
+        final GATKReport report = new GATKReport();
+        report.loadReport(file, lastTableName);
+        return report;
     }
 
     /**
@@ -82,8 +100,9 @@ public class GATKReport {
      * Load a GATKReport file from disk
      *
      * @param file the file to load
+     * @param lastTableName if not null, stop loading after the table with this name
      */
-    private void loadReport(File file) {
+    private void loadReport(File file, final String lastTableName) {
         BufferedReader reader;
         String reportHeader;
         try {
@@ -106,7 +125,16 @@ public class GATKReport {
 
         // Read each table according ot the number of tables
         for (int i = 0; i < nTables; i++) {
-            addTable(new GATKReportTable(reader, version));
+            final GATKReportTable table = new GATKReportTable(reader, version);
+            addTable(table);
+            if ( table.getTableName().equals(lastTableName) )
+                break;
+        }
+
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UserException.CouldNotReadInputFile(file, e);
         }
     }
 
@@ -177,9 +205,21 @@ public class GATKReport {
      * @param out the PrintStream to which the tables should be written
      */
     public void print(PrintStream out) {
-        out.println(GATKREPORT_HEADER_PREFIX + getVersion().toString() + SEPARATOR + getTables().size());
+        print(out, Collections.<GATKReportStreamingTable>emptyList());
+    }
+
+    /**
+     * Print all tables contained within this container to a PrintStream, followed by the given streaming tables
+     *
+     * @param out the PrintStream to which the tables should be written
+     * @param streamingTables the streaming tables to write after the tables of this report, in order
+     */
+    public void print(final PrintStream out, final List<? extends GATKReportStreamingTable> streamingTables) {
+        out.println(GATKREPORT_HEADER_PREFIX + getVersion().toString() + SEPARATOR + (getTables().size() + streamingTables.size()));
         for (GATKReportTable table : tables.values())
             table.write(out);
+        for (final GATKReportStreamingTable table : streamingTables)
+            table.write(out);
     }
 
     public Collection<GATKReportTable> getTables() {
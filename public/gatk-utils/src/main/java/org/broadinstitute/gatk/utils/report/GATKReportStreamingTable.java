@@ -0,0 +1,143 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.report;
+
+import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A GATK report table whose rows are produced on demand rather than stored in the table
+ *
+ * Unlike GATKReportTable, a streaming table holds no cells: there is nothing to get, set or look up.  Subclasses
+ * implement emitRows(), which appends the rows through a RowWriter and must produce exactly the same sequence of
+ * rows each time it is called.  The table is written with two passes over the rows: the first computes the column
+ * widths and alignments (and the row count needed in the table header), and the second formats and writes each row
+ * directly to the output.  This is suitable for tables with millions of rows backed by primitive data structures.
+ *
+ * The output is byte-for-byte identical to a GATKReportTable with TableSortingWay.DO_NOT_SORT populated with the
+ * same values in the same order.  Streaming tables are written with GATKReport.print(PrintStream, List).
+ */
+public abstract class GATKReportStreamingTable {
+    private final String tableName;
+    private final String tableDescription;
+    private final List<GATKReportColumn> columnInfo;
+
+    /**
+     * Receives each row produced by emitRows()
+     */
+    public interface RowWriter {
+        /**
+         * @param values the values for each column of the row, in column order
+         */
+        public void writeRow(final Object... values);
+    }
+
+    /**
+     * Construct a new streaming GATK report table with the specified name and description
+     *
+     * @param tableName        the name of the table
+     * @param tableDescription the description of the table
+     * @param numColumns       the number of columns in this table
+     */
+    public GATKReportStreamingTable(final String tableName, final String tableDescription, final int numColumns) {
+        if ( !GATKReportTable.isValidName(tableName) )
+            throw new ReviewedGATKException("Attempted to set a GATKReportTable name of '" + tableName + "'.  GATKReportTable names must be purely alphanumeric - no spaces or special characters are allowed.");
+        this.tableName = tableName;
+        this.tableDescription = tableDescription;
+        this.columnInfo = new ArrayList<GATKReportColumn>(numColumns);
+    }
+
+    /**
+     * Add a column to the report, with the specified format
+     *
+     * @param columnName the name of the column
+     * @param format     the format string used to display data
+     */
+    public void addColumn(final String columnName, final String format) {
+        columnInfo.add(new GATKReportColumn(columnName, format));
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int getNumColumns() {
+        return columnInfo.size();
+    }
+
+    /**
+     * Produce every row of this table, in order, by calling writer.writeRow()
+     *
+     * May be called more than once, and must produce the same rows each time
+     *
+     * @param writer the destination of the rows
+     */
+    protected abstract void emitRows(final RowWriter writer);
+
+    /**
+     * Make a first pass over the rows, updating the formatting of each column
+     *
+     * @return the number of rows
+     */
+    private int measureRows() {
+        final int[] count = new int[1];
+        emitRows(new RowWriter() {
+            @Override
+            public void writeRow(final Object... values) {
+                validateRow(values);
+                for ( int i = 0; i < values.length; i++ )
+                    columnInfo.get(i).updateFormatting(values[i] == null ? "null" : values[i]);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Write the table to the PrintStream, in the same format as GATKReportTable
+     *
+     * @param out the PrintStream to which the table should be written
+     */
+    void write(final PrintStream out) {
+        GATKReportTable.writeHeader(out, tableName, tableDescription, columnInfo, measureRows());
+        emitRows(new RowWriter() {
+            @Override
+            public void writeRow(final Object... values) {
+                validateRow(values);
+                GATKReportTable.writeRow(out, columnInfo, values);
+            }
+        });
+        out.println();
+    }
+
+    private void validateRow(final Object[] values) {
+        if ( values.length != getNumColumns() )
+            throw new ReviewedGATKException("The number of values in a row (" + values.length + ") must match the number of columns in the table (" + getNumColumns() + ")");
+    }
+}
@@ -232,7 +232,7 @@ public class GATKReportTable {
         * @param name the name of the table or column
         * @return true if the name is valid, false if otherwise
         */
-    private boolean isValidName(String name) {
+    static boolean isValidName(String name) {
         Pattern p = Pattern.compile(INVALID_TABLE_NAME_REGEX);
         Matcher m = p.matcher(name);
 
@@ -538,36 +538,7 @@ public class GATKReportTable {
      * @param out the PrintStream to which the table should be written
      */
      void write(final PrintStream out) {
-
-         /*
-          * Table header:
-          * #:GATKTable:nColumns:nRows:(DataType for each column):;
-          * #:GATKTable:TableName:Description :;
-          * key   colA  colB
-          * row1  xxxx  xxxxx
-         */
-
-         // write the table definition
-         out.printf(GATKTABLE_HEADER_PREFIX + ":%d:%d", getNumColumns(), getNumRows());
-
-         // write the formats for all the columns
-         for ( final GATKReportColumn column : columnInfo )
-             out.print(SEPARATOR + column.getFormat());
-         out.println(ENDLINE);
-
-         // write the table name & description
-         out.printf(GATKTABLE_HEADER_PREFIX + ":%s:%s\n", tableName, tableDescription);
-
-         // write the column names
-         boolean needsPadding = false;
-         for ( final GATKReportColumn column : columnInfo ) {
-             if ( needsPadding )
-                 out.printf("  ");
-             needsPadding = true;
-
-             out.printf(column.getColumnFormat().getNameFormat(), column.getColumnName());
-         }
-         out.println();
+         writeHeader(out, tableName, tableDescription, columnInfo, getNumRows());
 
          // write the table body
          switch (sortingWay) {
@@ -597,7 +568,7 @@ public class GATKReportTable {
                      }
                  });
                  for ( final Object[] row : underlyingData )
-                     writeRow(out, row);
+                     writeRow(out, columnInfo, row);
                  break;
              case SORT_BY_ROW:
                  // make sure that there are exactly the correct number of ID mappings
@@ -611,16 +582,58 @@ public class GATKReportTable {
                      throw new ReviewedGATKException("Unable to sort the rows based on the row IDs because the ID Objects are of different types");
                  }
                  for ( final Map.Entry<Object, Integer> rowKey : sortedMap.entrySet() )
-                     writeRow(out, underlyingData.get(rowKey.getValue()));
+                     writeRow(out, columnInfo, underlyingData.get(rowKey.getValue()));
                  break;
              case DO_NOT_SORT:
                  for ( final Object[] row : underlyingData )
-                     writeRow(out, row);
+                     writeRow(out, columnInfo, row);
+         }
+         out.println();
+     }
+
+    /**
+     * Write the table definition, name and column names to the PrintStream
+     *
+     * @param out the PrintStream to which the header should be written
+     * @param tableName the name of the table
+     * @param tableDescription the description of the table
+     * @param columnInfo the columns of the table
+     * @param numRows the number of rows in the table
+     */
+     static void writeHeader(final PrintStream out, final String tableName, final String tableDescription, final List<GATKReportColumn> columnInfo, final int numRows) {
+
+         /*
+          * Table header:
+          * #:GATKTable:nColumns:nRows:(DataType for each column):;
+          * #:GATKTable:TableName:Description :;
+          * key   colA  colB
+          * row1  xxxx  xxxxx
+         */
+
+         // write the table definition
+         out.printf(GATKTABLE_HEADER_PREFIX + ":%d:%d", columnInfo.size(), numRows);
+
+         // write the formats for all the columns
+         for ( final GATKReportColumn column : columnInfo )
+             out.print(SEPARATOR + column.getFormat());
+         out.println(ENDLINE);
+
+         // write the table name & description
+         out.printf(GATKTABLE_HEADER_PREFIX + ":%s:%s\n", tableName, tableDescription);
+
+         // write the column names
+         boolean needsPadding = false;
+         for ( final GATKReportColumn column : columnInfo ) {
+             if ( needsPadding )
+                 out.printf("  ");
+             needsPadding = true;
+
+             out.printf(column.getColumnFormat().getNameFormat(), column.getColumnName());
          }
          out.println();
      }
 
-    private void writeRow(final PrintStream out, final Object[] row) {
+    static void writeRow(final PrintStream out, final List<GATKReportColumn> columnInfo, final Object[] row) {
         boolean needsPadding = false;
         for ( int i = 0; i < row.length; i++ ) {
             if ( needsPadding )
@@ -29,6 +29,7 @@ import com.google.java.contract.Ensures;
 import htsjdk.samtools.*;
 import org.broadinstitute.gatk.utils.NGSPlatform;
 import org.broadinstitute.gatk.utils.exceptions.ReviewedGATKException;
+import org.broadinstitute.gatk.utils.exceptions.UserException;
 import org.broadinstitute.gatk.utils.recalibration.EventType;
 
 import java.util.*;
@@ -48,6 +49,11 @@ import java.util.*;
  * that depending on the inferred insert size and alignment starts and stops of this read and its mate.
  * Changing these values in any way will invalidate the cached value. However, we do not monitor those setter
  * functions, so modifying a GATKSAMRecord in any way may result in stale cached values.
+ *
+ * GATKSAMRecords made from BAM records only copy over the fixed-length fields of the record (positions, flags,
+ * mapping quality, etc) up front.  The cigar, and then the bases, qualities and tags, are copied over (and so
+ * decoded by htsjdk) only when they are first accessed, so that reads which are thrown away by filters that
+ * look only at the fixed-length fields are never fully decoded.
  */
 public class GATKSAMRecord extends SAMRecord implements Cloneable {
     // Base Quality Score Recalibrator specific attribute tags
@@ -73,6 +79,15 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
     // because some values can be null, we don't want to duplicate effort
     private boolean retrievedReadGroup = false;
 
+    // the record we were created from, while our cigar (undecodedCigarSource) and our bases, qualities
+    // and attributes (undecodedFieldsSource) have not yet been copied over from it.  Reads may be shared
+    // between annotation threads, so decoding is synchronized and the sources are only cleared once the
+    // copy is complete; the decoding flags stop the copy from re-entering itself through our own overrides
+    private volatile SAMRecord undecodedCigarSource = null;
+    private volatile SAMRecord undecodedFieldsSource = null;
+    private boolean decodingCigar = false;
+    private boolean decodingFields = false;
+
     // These temporary attributes were added here to make life easier for
     // certain algorithms by providing a way to label or attach arbitrary data to
     // individual GATKSAMRecords.
@@ -97,33 +112,101 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
         super.setAlignmentStart(read.getAlignmentStart());
         super.setReadName(read.getReadName());
         super.setMappingQuality(read.getMappingQuality());
-        // indexing bin done below
-        super.setCigar(read.getCigar());
+        // indexing bin done below, cigar when it's first needed
         super.setFlags(read.getFlags());
         super.setMateReferenceIndex(read.getMateReferenceIndex());
         super.setMateAlignmentStart(read.getMateAlignmentStart());
         super.setInferredInsertSize(read.getInferredInsertSize());
-        SAMReadGroupRecord samRG = read.getReadGroup();
-        SAMBinaryTagAndValue samAttr = GATKBin.getReadBinaryAttributes(read);
-        if (samAttr == null) {
-            clearAttributes();
-        } else {
-            setAttributes(samAttr);
-        }
-        if (samRG != null) {
-            GATKSAMReadGroupRecord rg = new GATKSAMReadGroupRecord(samRG);
-            setReadGroup(rg);
+        super.setFileSource(read.getFileSource());
+
+        // BAM records decode their variable-length fields on demand, so leave them in the BAM record until we need them
+        undecodedCigarSource = read;
+        undecodedFieldsSource = read;
+        if ( ! (read instanceof BAMRecord) ) {
+            decodeCigar();
+            decodeFields();
         }
 
-        super.setFileSource(read.getFileSource());
-        super.setReadName(read.getReadName());
-        super.setCigarString(read.getCigarString());
-        super.setReadBases(read.getReadBases());
-        super.setBaseQualities(read.getBaseQualities());
         // From SAMRecord constructor: Do this after the above because setCigarString will clear it.
         GATKBin.setReadIndexingBin(this, GATKBin.getReadIndexingBin(read));
     }
 
+    /**
+     * Copy the cigar over from the record we were created from, if we haven't done so already
+     */
+    private void decodeCigar() {
+        if ( undecodedCigarSource == null )
+            return;
+
+        synchronized (this) {
+            final SAMRecord read = undecodedCigarSource;
+            if ( read == null || decodingCigar )
+                return;
+
+            decodingCigar = true;
+            try {
+                // setting the cigar clears the indexing bin, which doesn't depend on the cigar we're setting here
+                final Integer indexingBin = GATKBin.getReadIndexingBin(this);
+                super.setCigar(read.getCigar());
+                super.setCigarString(read.getCigarString());
+                GATKBin.setReadIndexingBin(this, indexingBin);
+            } catch ( RuntimeException e ) { // htsjdk throws RuntimeExceptions (among SAMFormatExceptions) for malformed records
+                throw new UserException.MalformedBAM(read, e.getMessage());
+            } finally {
+                undecodedCigarSource = null;
+                decodingCigar = false;
+            }
+        }
+    }
+
+    /**
+     * Copy the bases, qualities and attributes over from the record we were created from, if we haven't done so already
+     */
+    private void decodeFields() {
+        if ( undecodedFieldsSource == null )
+            return;
+
+        synchronized (this) {
+            final SAMRecord read = undecodedFieldsSource;
+            if ( read == null || decodingFields )
+                return;
+
+            decodingFields = true;
+            try {
+                final SAMReadGroupRecord samRG = read.getReadGroup();
+                final SAMBinaryTagAndValue samAttr = GATKBin.getReadBinaryAttributes(read);
+                if (samAttr == null) {
+                    super.clearAttributes();
+                } else {
+                    super.setAttributes(samAttr);
+                }
+                if (samRG != null) {
+                    mReadGroup = new GATKSAMReadGroupRecord(samRG);
+                    retrievedReadGroup = true;
+                }
+
+                super.setReadBases(read.getReadBases());
+                super.setBaseQualities(read.getBaseQualities());
+            } catch ( RuntimeException e ) { // htsjdk throws RuntimeExceptions (among SAMFormatExceptions) for malformed records
+                throw new UserException.MalformedBAM(read, e.getMessage());
+            } finally {
+                undecodedFieldsSource = null;
+                decodingFields = false;
+            }
+        }
+    }
+
+    /**
+     * Copy over everything we haven't yet copied from the record we were created from
+     *
+     * Until then the read keeps the whole record it was created from alive, so reads that are kept around after
+     * filtering should be fully decoded (see ReadFormattingIterator).
+     */
+    public void decodeAll() {
+        decodeCigar();
+        decodeFields();
+    }
+
     public static GATKSAMRecord createRandomRead(int length) {
         List<CigarElement> cigarElements = new LinkedList<>();
         cigarElements.add(new CigarElement(length, CigarOperator.M));
@@ -183,10 +266,117 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
 
     @Override
     public void setReadString(String s) {
+        decodeFields();
         super.setReadString(s);
         mReadString = s;
     }
 
+    ///////////////////////////////////////////////////////////////////////////////
+    // *** The following methods are overloaded to decode fields on demand    ***//
+    ///////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Cigar getCigar() {
+        decodeCigar();
+        return super.getCigar();
+    }
+
+    @Override
+    public String getCigarString() {
+        decodeCigar();
+        return super.getCigarString();
+    }
+
+    @Override
+    public void setCigar(final Cigar cigar) {
+        decodeCigar();
+        super.setCigar(cigar);
+    }
+
+    @Override
+    public void setCigarString(final String value) {
+        decodeCigar();
+        super.setCigarString(value);
+    }
+
+    @Override
+    public byte[] getReadBases() {
+        decodeFields();
+        return super.getReadBases();
+    }
+
+    @Override
+    public void setReadBases(final byte[] value) {
+        decodeFields();
+        super.setReadBases(value);
+    }
+
+    @Override
+    public byte[] getBaseQualities() {
+        decodeFields();
+        return super.getBaseQualities();
+    }
+
+    @Override
+    public void setBaseQualities(final byte[] value) {
+        decodeFields();
+        super.setBaseQualities(value);
+    }
+
+    @Override
+    public Object getAttribute(final String tag) {
+        decodeFields();
+        return super.getAttribute(tag);
+    }
+
+    @Override
+    public Object getAttribute(final short tag) {
+        decodeFields();
+        return super.getAttribute(tag);
+    }
+
+    @Override
+    public List<SAMTagAndValue> getAttributes() {
+        decodeFields();
+        return super.getAttributes();
+    }
+
+    @Override
+    protected SAMBinaryTagAndValue getBinaryAttributes() {
+        decodeFields();
+        return super.getBinaryAttributes();
+    }
+
+    @Override
+    public void setAttribute(final String tag, final Object value) {
+        decodeFields();
+        super.setAttribute(tag, value);
+    }
+
+    @Override
+    protected void setAttribute(final short tag, final Object value) {
+        decodeFields();
+        super.setAttribute(tag, value);
+    }
+
+    @Override
+    public void setUnsignedArrayAttribute(final String tag, final Object value) {
+        decodeFields();
+        super.setUnsignedArrayAttribute(tag, value);
+    }
+
+    @Override
+    protected void setAttributes(final SAMBinaryTagAndValue attributes) {
+        decodeFields();
+        super.setAttributes(attributes);
+    }
+
+    @Override
+    public void clearAttributes() {
+        decodeFields();
+        super.clearAttributes();
+    }
+
     /**
      * Get the GATKSAMReadGroupRecord of this read
      * @return a non-null GATKSAMReadGroupRecord
@@ -211,6 +401,7 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
     }
 
     public void setReadGroup( final GATKSAMReadGroupRecord readGroup ) {
+        decodeFields(); // or the read group of the record we were created from would replace this one
         mReadGroup = readGroup;
         retrievedReadGroup = true;
         setAttribute("RG", mReadGroup.getId()); // todo -- this should be standardized, but we don't have access to SAMTagUtils!
@@ -219,6 +410,7 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
 
     @Override
     public int hashCode() {
+        decodeAll();
         return super.hashCode();
     }
 
@@ -229,6 +421,8 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
         if (!(o instanceof GATKSAMRecord)) return false;
 
         // note that we do not consider the GATKSAMRecord internal state at all
+        decodeAll();
+        ((GATKSAMRecord)o).decodeAll();
         return super.equals(o);
     }
 
@@ -388,6 +582,7 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
      * @return true if the read has no bases
      */
     public boolean isEmpty() {
+        decodeFields();
         return super.getReadBases() == null || super.getReadLength() == 0;
     }
 
@@ -590,6 +785,8 @@ public class GATKSAMRecord extends SAMRecord implements Cloneable {
     @Override
     public Object clone() {
         try {
+            // decode everything first, so that the clone doesn't share the record we were created from
+            decodeAll();
             final GATKSAMRecord clone = (GATKSAMRecord) super.clone();
             if (temporaryAttributes != null) {
                 clone.temporaryAttributes = new HashMap<>();
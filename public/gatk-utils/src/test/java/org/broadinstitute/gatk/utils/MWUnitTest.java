@@ -25,6 +25,7 @@
 
 package org.broadinstitute.gatk.utils;
 
+import cern.jet.math.Arithmetic;
 import org.broadinstitute.gatk.utils.BaseTest;
 import org.broadinstitute.gatk.utils.collections.Pair;
 
@@ -32,6 +33,9 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.testng.Assert;
 
+import java.util.Comparator;
+import java.util.TreeSet;
+
 /**
  * Created by IntelliJ IDEA.
  * User: Ghost
@@ -59,8 +63,8 @@ public class MWUnitTest extends BaseTest {
         mwu.add(9,MannWhitneyU.USet.SET1);
         mwu.add(10,MannWhitneyU.USet.SET1);
         mwu.add(11,MannWhitneyU.USet.SET2);
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwu.getObservations(), MannWhitneyU.USet.SET1),25L);
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwu.getObservations(),MannWhitneyU.USet.SET2),11L);
+        Assert.assertEquals(mwu.getOneSidedU(MannWhitneyU.USet.SET1),25L);
+        Assert.assertEquals(mwu.getOneSidedU(MannWhitneyU.USet.SET2),11L);
 
         MannWhitneyU mwu2 = new MannWhitneyU();
         MannWhitneyU mwuNoDither = new MannWhitneyU(false);
@@ -78,10 +82,10 @@ public class MWUnitTest extends BaseTest {
         MannWhitneyU.ExactMode cm = MannWhitneyU.ExactMode.CUMULATIVE;
 
         // tests using the hypothesis that set 2 dominates set 1 (U value = 10)
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwu2.getObservations(),MannWhitneyU.USet.SET1),10L);
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwu2.getObservations(),MannWhitneyU.USet.SET2),30L);
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwuNoDither.getObservations(),MannWhitneyU.USet.SET1),10L);
-        Assert.assertEquals(MannWhitneyU.calculateOneSidedU(mwuNoDither.getObservations(),MannWhitneyU.USet.SET2),30L);
+        Assert.assertEquals(mwu2.getOneSidedU(MannWhitneyU.USet.SET1),10L);
+        Assert.assertEquals(mwu2.getOneSidedU(MannWhitneyU.USet.SET2),30L);
+        Assert.assertEquals(mwuNoDither.getOneSidedU(MannWhitneyU.USet.SET1),10L);
+        Assert.assertEquals(mwuNoDither.getOneSidedU(MannWhitneyU.USet.SET2),30L);
 
         Pair<Integer,Integer> sizes = mwu2.getSetSizes();
 
@@ -116,7 +120,7 @@ public class MWUnitTest extends BaseTest {
         for ( int dp : new int[]{1,5,6,7,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25,26,27,28,29,30,31,32,33,34} ) {
             mwu3.add(dp,MannWhitneyU.USet.SET2);
         }
-        long u = MannWhitneyU.calculateOneSidedU(mwu3.getObservations(),MannWhitneyU.USet.SET1);
+        long u = mwu3.getOneSidedU(MannWhitneyU.USet.SET1);
         //logger.warn(String.format("U is: %d",u));
         Pair<Integer,Integer> nums = mwu3.getSetSizes();
         //logger.warn(String.format("Corrected p is: %.4e",MannWhitneyU.calculatePRecursivelyDoNotCheckValuesEvenThoughItIsSlow(nums.first,nums.second,u)));
@@ -128,4 +132,104 @@ public class MWUnitTest extends BaseTest {
         Assert.assertEquals(MannWhitneyU.calculatePUniformApproximation(nums.first,nums.second,u),0.0026195003025784036,1e-14);
 
     }
+
+    @Test
+    private void testMWUExactDistributionMatchesSequenceCounts() {
+        for ( int n = 1; n <= 6; n++ ) {
+            for ( int m = 1; m <= 6; m++ ) {
+                final double nSequences = Arithmetic.binomial(n+m,n);
+                for ( long u = 0; u <= n*m; u++ )
+                    Assert.assertEquals(MannWhitneyU.calculatePRecursivelyDoNotCheckValuesEvenThoughItIsSlow(n,m,u),MannWhitneyU.countSequences(n,m,u)/nSequences,1e-12);
+            }
+        }
+    }
+
+    @Test
+    private void testMWUDitheringMatchesObservationTree() {
+        // base-quality-like values with plenty of ties, within and between the sets
+        final double[] set1 = new double[]{20,25,25,30,30,30,12,25,40,30};
+        final double[] set2 = new double[]{30,30,35,25,30,40,40,20,30,30,30,35,12};
+        for ( int trial = 0; trial < 10; trial++ ) {
+            // the ties broken by the tree of observations MannWhitneyU used to keep
+            Utils.resetRandomGenerator(trial);
+            final TreeSet<Pair<Double,MannWhitneyU.USet>> tree = new TreeSet<Pair<Double,MannWhitneyU.USet>>(new Comparator<Pair<Double,MannWhitneyU.USet>>() {
+                @Override
+                public int compare(Pair<Double,MannWhitneyU.USet> left, Pair<Double,MannWhitneyU.USet> right) {
+                    final int comp = Double.compare(left.first, right.first);
+                    if ( comp != 0 ) { return comp; }
+                    return Utils.getRandomGenerator().nextBoolean() ? -1 : 1;
+                }
+            });
+            for ( final double x : set1 )
+                tree.add(new Pair<Double,MannWhitneyU.USet>(x,MannWhitneyU.USet.SET1));
+            for ( final double y : set2 )
+                tree.add(new Pair<Double,MannWhitneyU.USet>(y,MannWhitneyU.USet.SET2));
+            long expectedU = 0;
+            int set2SeenSoFar = 0;
+            for ( final Pair<Double,MannWhitneyU.USet> p : tree ) {
+                if ( p.second == MannWhitneyU.USet.SET1 )
+                    expectedU += set2SeenSoFar;
+                else
+                    set2SeenSoFar++;
+            }
+            final int expectedNextDraw = Utils.getRandomGenerator().nextInt();
+
+            Utils.resetRandomGenerator(trial);
+            final MannWhitneyU mwu = new MannWhitneyU(true);
+            for ( final double x : set1 )
+                mwu.add(x,MannWhitneyU.USet.SET1);
+            for ( final double y : set2 )
+                mwu.add(y,MannWhitneyU.USet.SET2);
+            Assert.assertEquals(mwu.getOneSidedU(MannWhitneyU.USet.SET1),expectedU);
+            // the same coin flips, and no more, have been drawn from the shared generator
+            Assert.assertEquals(Utils.getRandomGenerator().nextInt(),expectedNextDraw);
+        }
+        Utils.resetRandomGenerator();
+    }
+
+    @Test
+    private void testMWUTieCorrectedRanks() {
+        // set 2 observations below, tied with and above each set 1 observation count 1, 1/2 and 0 towards U
+        final int[] set1 = new int[]{1,2,2,3,5,5};
+        final int[] set2 = new int[]{0,2,3,3,4,5,5,5};
+        final MannWhitneyU mwu = new MannWhitneyU(MannWhitneyU.ExactMode.POINT,false,true);
+        double u = 0.0;
+        for ( final int x : set1 ) {
+            mwu.add(x,MannWhitneyU.USet.SET1);
+            for ( final int y : set2 )
+                u += y < x ? 1.0 : ( y == x ? 0.5 : 0.0 );
+        }
+        for ( final int y : set2 )
+            mwu.add(y,MannWhitneyU.USet.SET2);
+
+        // runs of ties: {2,2,2}, {3,3,3} and {5,5,5,5,5}
+        final long tieCorrection = 24 + 24 + 120;
+        final Pair<Double,Double> expected = MannWhitneyU.calculatePNormalApproximation(set1.length,set2.length,u,tieCorrection,false);
+        final Pair<Double,Double> observed = mwu.runOneSidedTest(MannWhitneyU.USet.SET1);
+        Assert.assertEquals(observed.first,expected.first,1e-14);
+        Assert.assertEquals(observed.second,expected.second,1e-14);
+
+        // ties increase the evidence against the null over the uncorrected variance
+        Assert.assertTrue(Math.abs(expected.first) > Math.abs(MannWhitneyU.calculatePNormalApproximation(set1.length,set2.length,u,0L,false).first));
+
+        // a second query uses the cached ranks and must give the same answer
+        Assert.assertEquals(mwu.runOneSidedTest(MannWhitneyU.USet.SET1).second,observed.second,1e-14);
+
+        // nothing to go on if every observation is tied
+        final MannWhitneyU allTied = new MannWhitneyU(MannWhitneyU.ExactMode.POINT,false,true);
+        for ( int i = 0; i < 5; i++ ) {
+            allTied.add(30,MannWhitneyU.USet.SET1);
+            allTied.add(30,MannWhitneyU.USet.SET2);
+        }
+        Assert.assertEquals(allTied.runTwoSidedTest().second,1.0,1e-6);
+
+        // without the correction, ties that aren't dithered are collapsed into the first of the tied observations
+        final MannWhitneyU uncorrected = new MannWhitneyU(false);
+        for ( final int x : new int[]{1,2} )
+            uncorrected.add(x,MannWhitneyU.USet.SET1);
+        for ( final int y : new int[]{2,3} )
+            uncorrected.add(y,MannWhitneyU.USet.SET2);
+        Assert.assertEquals(uncorrected.getOneSidedU(MannWhitneyU.USet.SET1),0L);
+        Assert.assertEquals(uncorrected.getOneSidedU(MannWhitneyU.USet.SET2),2L);
+    }
 }
@@ -0,0 +1,135 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import org.broadinstitute.gatk.utils.collections.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Caliper microbenchmark of the per-site cost of a rank sum annotation, contrasting MannWhitneyU with the
+ * boxed, tree-based ranking it used to do
+ *
+ * Each way of handling ties is benchmarked: dithered and collapsed ties (the default, which still replays
+ * tied observations into a tree) and ties corrected for with mid-ranks (--rankSumTieCorrection).
+ */
+public class MannWhitneyUBenchmark extends SimpleBenchmark {
+    private static final int N_SITES = 100;
+
+    @Param({"10", "50", "250", "1000"})
+    int depth; // set automatically by framework
+
+    @Param({"0.1", "0.5"})
+    double altFraction; // set automatically by framework
+
+    @Param
+    Ties ties; // set automatically by framework
+
+    public enum Ties {
+        DITHER,
+        COLLAPSE,
+        CORRECT
+    }
+
+    private List<double[]> refQuals;
+    private List<double[]> altQuals;
+
+    @Override protected void setUp() {
+        // base-quality-like values, so there are plenty of ties, as there are at a real site
+        final Random random = new Random(42);
+        refQuals = new ArrayList<double[]>(N_SITES);
+        altQuals = new ArrayList<double[]>(N_SITES);
+        for ( int site = 0; site < N_SITES; site++ ) {
+            final int nAlt = Math.max((int) (depth * altFraction), 1);
+            refQuals.add(makeQuals(random, depth - nAlt, 30));
+            altQuals.add(makeQuals(random, nAlt, 25));
+        }
+    }
+
+    private static double[] makeQuals(final Random random, final int n, final int mean) {
+        final double[] quals = new double[n];
+        for ( int i = 0; i < n; i++ )
+            quals[i] = Math.min(Math.max(mean + (int) (5 * random.nextGaussian()), 2), 40);
+        return quals;
+    }
+
+    public void timeMannWhitneyU(int rep) {
+        double sum = 0.0;
+        for ( int i = 0; i < rep; i++ ) {
+            for ( int site = 0; site < N_SITES; site++ ) {
+                final MannWhitneyU mannWhitneyU = new MannWhitneyU(MannWhitneyU.ExactMode.POINT, ties == Ties.DITHER, ties == Ties.CORRECT);
+                for ( final double qual : altQuals.get(site) )
+                    mannWhitneyU.add(qual, MannWhitneyU.USet.SET1);
+                for ( final double qual : refQuals.get(site) )
+                    mannWhitneyU.add(qual, MannWhitneyU.USet.SET2);
+                sum += mannWhitneyU.runOneSidedTest(MannWhitneyU.USet.SET1).getFirst();
+            }
+        }
+    }
+
+    public void timeTreeSetBaseline(int rep) {
+        double sum = 0.0;
+        for ( int i = 0; i < rep; i++ ) {
+            for ( int site = 0; site < N_SITES; site++ ) {
+                final TreeSet<Pair<Number,MannWhitneyU.USet>> observations = new TreeSet<Pair<Number,MannWhitneyU.USet>>(new DitheringComparator(ties == Ties.DITHER));
+                for ( final double qual : altQuals.get(site) )
+                    observations.add(new Pair<Number,MannWhitneyU.USet>(qual, MannWhitneyU.USet.SET1));
+                for ( final double qual : refQuals.get(site) )
+                    observations.add(new Pair<Number,MannWhitneyU.USet>(qual, MannWhitneyU.USet.SET2));
+                final long u = MannWhitneyU.calculateOneSidedU(observations, MannWhitneyU.USet.SET1);
+                sum += MannWhitneyU.calculateP(altQuals.get(site).length, refQuals.get(site).length, u, false, MannWhitneyU.ExactMode.POINT).getFirst();
+            }
+        }
+    }
+
+    /**
+     * The comparator MannWhitneyU used to order its tree of observations by (which had no tie correction)
+     */
+    private static class DitheringComparator implements Comparator<Pair<Number,MannWhitneyU.USet>> {
+        private final boolean dither;
+
+        private DitheringComparator(final boolean dither) {
+            this.dither = dither;
+        }
+
+        @Override
+        public int compare(Pair<Number,MannWhitneyU.USet> left, Pair<Number,MannWhitneyU.USet> right) {
+            final int comp = Double.compare(left.first.doubleValue(), right.first.doubleValue());
+            if ( comp != 0 || ! dither ) { return comp; }
+            return Utils.getRandomGenerator().nextBoolean() ? -1 : 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        com.google.caliper.Runner.main(MannWhitneyUBenchmark.class, args);
+    }
+}
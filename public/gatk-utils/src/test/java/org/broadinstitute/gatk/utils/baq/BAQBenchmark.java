@@ -0,0 +1,86 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.baq;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+
+import java.util.Random;
+
+/**
+ * Caliper microbenchmark of the BAQ HMM implementations
+ */
+public class BAQBenchmark extends SimpleBenchmark {
+    @Param({"ORIGINAL", "FLAT_BAND"})
+    BAQ.HMMImplementation implementation; // set automatically by framework
+
+    @Param({"36", "101", "250"})
+    int readLength; // set automatically by framework
+
+    final int nReads = 1000;
+    final int refPadding = 10;
+
+    private BAQ baq;
+    private final byte[][] refs = new byte[nReads][];
+    private final byte[][] reads = new byte[nReads][];
+    private final byte[][] quals = new byte[nReads][];
+    private int[] state;
+    private byte[] bq;
+
+    @Override protected void setUp() {
+        baq = new BAQ(1e-3, 0.1, 7, (byte)4, false);
+        baq.setHMMImplementation(implementation);
+
+        final Random random = new Random(42);
+        final byte[] bases = "ACGT".getBytes();
+        for ( int r = 0; r < nReads; r++ ) {
+            refs[r] = new byte[readLength + 2 * refPadding];
+            for ( int i = 0; i < refs[r].length; i++ )
+                refs[r][i] = bases[random.nextInt(bases.length)];
+
+            // the read is the middle of the reference, with 1% errors
+            reads[r] = new byte[readLength];
+            quals[r] = new byte[readLength];
+            for ( int i = 0; i < readLength; i++ ) {
+                reads[r][i] = random.nextInt(100) == 0 ? bases[random.nextInt(bases.length)] : refs[r][i + refPadding];
+                quals[r][i] = (byte)(10 + random.nextInt(31));
+            }
+        }
+        state = new int[readLength];
+        bq = new byte[readLength];
+    }
+
+    public void timeHMM(int rep) {
+        for ( int i = 0; i < rep; i++ ) {
+            for ( int r = 0; r < nReads; r++ )
+                baq.hmm_glocal(refs[r], reads[r], 0, readLength, quals[r], state, bq);
+        }
+    }
+
+    public static void main(String[] args) {
+        com.google.caliper.Runner.main(BAQBenchmark.class, args);
+    }
+}
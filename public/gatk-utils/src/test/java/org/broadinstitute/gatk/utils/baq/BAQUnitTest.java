@@ -40,6 +40,7 @@ import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Random;
 
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import htsjdk.samtools.*;
@@ -193,6 +194,53 @@ public class BAQUnitTest extends BaseTest {
         }
     }
 
+    @Test(dataProvider = "data", enabled = true)
+    public void testFlatBandBAQWithProvidedReference(BAQTest test) {
+        if ( test.refBases != null ) {
+            testBAQ(test, false, BAQ.HMMImplementation.FLAT_BAND);
+        }
+    }
+
+    @Test(dataProvider = "data", enabled = true)
+    public void testFlatBandBAQWithCigarAndRefLookup(BAQTest test) {
+        if ( test.cigar != null ) {
+            testBAQ(test, true, BAQ.HMMImplementation.FLAT_BAND);
+        }
+    }
+
+    @Test(enabled = true)
+    public void testFlatBandHMMMatchesOriginal() {
+        final BAQ original = new BAQ(1e-3, 0.1, 7, (byte)4, false);
+        final BAQ flatBand = new BAQ(1e-3, 0.1, 7, (byte)4, false);
+        flatBand.setHMMImplementation(BAQ.HMMImplementation.FLAT_BAND);
+
+        final Random random = new Random(42);
+        final byte[] bases = "ACGTNacgt".getBytes();
+        // alternate long and short reads, so the reused matrices of the flat band HMM must be properly cleared
+        for ( final int readLength : new int[]{101, 10, 250, 1, 36, 101, 76, 2} ) {
+            for ( int iteration = 0; iteration < 10; iteration++ ) {
+                final byte[] ref = new byte[readLength + random.nextInt(10)];
+                for ( int i = 0; i < ref.length; i++ )
+                    ref[i] = bases[random.nextInt(bases.length)];
+                final byte[] read = new byte[readLength];
+                final byte[] quals = new byte[readLength];
+                for ( int i = 0; i < readLength; i++ ) {
+                    // mostly the reference, with some errors
+                    read[i] = random.nextInt(10) == 0 || i >= ref.length ? bases[random.nextInt(bases.length)] : ref[i];
+                    quals[i] = (byte)random.nextInt(SAMUtils.MAX_PHRED_SCORE + 1);
+                }
+
+                final int[] originalState = new int[readLength], flatBandState = new int[readLength];
+                final byte[] originalBQ = new byte[readLength], flatBandBQ = new byte[readLength];
+                original.hmm_glocal(ref, read, 0, readLength, quals, originalState, originalBQ);
+                flatBand.hmm_glocal(ref, read, 0, readLength, quals, flatBandState, flatBandBQ);
+
+                Assert.assertEquals(flatBandState, originalState, "BAQ states differ for read length " + readLength);
+                Assert.assertEquals(flatBandBQ, originalBQ, "BAQ qualities differ for read length " + readLength);
+            }
+        }
+    }
+
     @Test(enabled = true)
     public void testBAQQualRange() {
         BAQ baq = new BAQ(1e-3, 0.1, 7, (byte)4, false);         // matches current samtools parameters
@@ -222,7 +270,12 @@ public class BAQUnitTest extends BaseTest {
     }
 
     public void testBAQ(BAQTest test, boolean lookupWithFasta) {
+        testBAQ(test, lookupWithFasta, BAQ.HMMImplementation.ORIGINAL);
+    }
+
+    public void testBAQ(BAQTest test, boolean lookupWithFasta, BAQ.HMMImplementation hmmImplementation) {
         BAQ baqHMM = new BAQ(1e-3, 0.1, 7, (byte)4, false);         // matches current samtools parameters
+        baqHMM.setHMMImplementation(hmmImplementation);
 
         SAMRecord read = test.createRead();
         BAQ.BAQCalculationResult result;
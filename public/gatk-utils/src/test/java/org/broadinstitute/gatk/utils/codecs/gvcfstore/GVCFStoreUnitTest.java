@@ -0,0 +1,130 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.codecs.gvcfstore;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.vcf.*;
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.variant.GATKVCFConstants;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Unit tests for writing and reading GVCF stores
+ */
+public class GVCFStoreUnitTest extends BaseTest {
+    private final static Allele REF_A = Allele.create("A", true);
+    private final static Allele ALT_C = Allele.create("C", false);
+
+    private static VCFHeader makeHeader() {
+        final Set<VCFHeaderLine> lines = new LinkedHashSet<>();
+        lines.add(new VCFContigHeaderLine("<ID=1,length=1000>", VCFHeaderVersion.VCF4_2, VCFHeader.CONTIG_KEY, 0));
+        lines.add(VCFStandardHeaderLines.getInfoLine(VCFConstants.END_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_QUALITY_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.DEPTH_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_PL_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_ALLELE_DEPTHS));
+        lines.add(new VCFFormatHeaderLine("MIN_DP", 1, VCFHeaderLineType.Integer, "Minimum DP observed within the GVCF block"));
+        return new VCFHeader(lines, new LinkedHashSet<>(Arrays.asList("s1", "s2", "s3")));
+    }
+
+    private static VariantContext makeRefBlock(final String sample, final int start, final int end, final int GQ) {
+        final Genotype g = new GenotypeBuilder(sample, Arrays.asList(REF_A, REF_A)).GQ(GQ).DP(10).PL(new int[]{0, GQ, 10 * GQ}).attribute("MIN_DP", "8").make();
+        return new VariantContextBuilder("test", "1", start, end, Arrays.asList(REF_A, GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE))
+                .attribute(VCFConstants.END_KEY, Integer.toString(end)).genotypes(g).make();
+    }
+
+    private static List<VariantContext> writeAndRead(final List<VariantContext> VCs) throws IOException {
+        final File store = createTempFile("GVCFStoreUnitTest", "." + GVCFStoreCodec.STORE_EXT);
+        final GVCFStoreWriter writer = new GVCFStoreWriter(store, new FileOutputStream(store), null);
+        writer.writeHeader(makeHeader());
+        for ( final VariantContext vc : VCs )
+            writer.add(vc);
+        writer.close();
+
+        final GVCFStoreCodec codec = new GVCFStoreCodec();
+        Assert.assertTrue(codec.canDecode(store.getAbsolutePath()));
+        final AbstractFeatureReader<VariantContext, ?> reader = AbstractFeatureReader.getFeatureReader(store.getAbsolutePath(), codec, false);
+        Assert.assertEquals(((VCFHeader) reader.getHeader()).getGenotypeSamples(), Arrays.asList("s1", "s2", "s3"));
+        final List<VariantContext> read = new ArrayList<>();
+        for ( final VariantContext vc : reader.iterator() )
+            read.add(vc);
+        reader.close();
+        return read;
+    }
+
+    @Test
+    public void testRecordsAreReadBack() throws IOException {
+        final Genotype het = new GenotypeBuilder("s2", Arrays.asList(REF_A, ALT_C)).GQ(40).DP(12).AD(new int[]{6, 6, 0}).PL(new int[]{40, 0, 50, 90, 80, 200}).make();
+        final VariantContext variant = new VariantContextBuilder("test", "1", 20, 20, Arrays.asList(REF_A, ALT_C, GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE))
+                .attribute("BaseQRankSum", "-0.5").genotypes(het).make();
+        final List<VariantContext> read = writeAndRead(Arrays.asList(makeRefBlock("s1", 10, 100, 30), variant));
+
+        Assert.assertEquals(read.size(), 2);
+        final VariantContext block = read.get(0);
+        Assert.assertEquals(block.getStart(), 10);
+        Assert.assertEquals(block.getEnd(), 100);
+        Assert.assertEquals(block.getAlleles(), Arrays.asList(REF_A, GATKVCFConstants.NON_REF_SYMBOLIC_ALLELE));
+        Assert.assertEquals(block.getAttribute(VCFConstants.END_KEY), "100");
+        final Genotype g1 = block.getGenotype("s1");
+        Assert.assertTrue(g1.isHomRef());
+        Assert.assertEquals(g1.getGQ(), 30);
+        Assert.assertEquals(g1.getDP(), 10);
+        Assert.assertEquals(g1.getPL(), new int[]{0, 30, 300});
+        Assert.assertFalse(g1.hasAD());
+        Assert.assertEquals(g1.getExtendedAttribute("MIN_DP"), "8");
+
+        final Genotype g2 = read.get(1).getGenotype("s2");
+        Assert.assertEquals(read.get(1).getAttribute("BaseQRankSum"), "-0.5");
+        Assert.assertEquals(g2.getAlleles(), Arrays.asList(REF_A, ALT_C));
+        Assert.assertEquals(g2.getAD(), new int[]{6, 6, 0});
+        Assert.assertEquals(g2.getPL(), new int[]{40, 0, 50, 90, 80, 200});
+    }
+
+    @Test
+    public void testRecordsOfTheSameSiteAreStoredTogether() throws IOException {
+        // s3 and s1 share their block, s2's block ends elsewhere and is not split
+        final List<VariantContext> read = writeAndRead(Arrays.asList(
+                makeRefBlock("s3", 10, 50, 20), makeRefBlock("s2", 10, 30, 25), makeRefBlock("s1", 10, 50, 30), makeRefBlock("s2", 31, 50, 35)));
+
+        Assert.assertEquals(read.size(), 3);
+        Assert.assertEquals(read.get(0).getEnd(), 50);
+        Assert.assertEquals(new ArrayList<>(read.get(0).getSampleNamesOrderedByName()), Arrays.asList("s1", "s3"));
+        Assert.assertEquals(read.get(0).getGenotype("s1").getGQ(), 30);
+        Assert.assertEquals(read.get(0).getGenotype("s3").getGQ(), 20);
+        Assert.assertEquals(read.get(1).getEnd(), 30);
+        Assert.assertEquals(read.get(1).getSampleNames(), Collections.singleton("s2"));
+        Assert.assertEquals(read.get(2).getStart(), 31);
+        Assert.assertEquals(read.get(2).getGenotype("s2").getGQ(), 35);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.downsampling;
+
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class DownsamplingMethodUnitTest extends BaseTest {
+
+    @DataProvider(name = "DownsamplingMethods")
+    public Object[][] makeDownsamplingMethods() {
+        return new Object[][] {
+                { new DownsamplingMethod(DownsampleType.BY_SAMPLE, 250, null) },
+                { new DownsamplingMethod(DownsampleType.BY_SAMPLE, null, 0.5) },
+                { new DownsamplingMethod(DownsampleType.ALL_READS, 100, null) },
+                { new DownsamplingMethod(DownsampleType.ALL_READS, null, 0.1) }
+        };
+    }
+
+    @Test(dataProvider = "DownsamplingMethods")
+    public void testBeforeDecoding(final DownsamplingMethod method) {
+        Assert.assertFalse(method.beforeDecoding);
+
+        final DownsamplingMethod beforeDecoding = method.beforeDecoding();
+        Assert.assertTrue(beforeDecoding.beforeDecoding);
+        Assert.assertEquals(beforeDecoding.type, method.type);
+        Assert.assertEquals(beforeDecoding.toCoverage, method.toCoverage);
+        Assert.assertEquals(beforeDecoding.toFraction, method.toFraction);
+        Assert.assertTrue(beforeDecoding.toString().endsWith(", before decoding"), beforeDecoding.toString());
+
+        // the original method is left alone
+        Assert.assertFalse(method.beforeDecoding);
+        Assert.assertFalse(method.toString().contains("before decoding"));
+    }
+
+    @Test
+    public void testNoDownsamplingIsNeverBeforeDecoding() {
+        Assert.assertFalse(DownsamplingMethod.NONE.beforeDecoding().beforeDecoding);
+        Assert.assertFalse(new DownsamplingMethod(DownsampleType.NONE, null, null, true).beforeDecoding);
+    }
+}
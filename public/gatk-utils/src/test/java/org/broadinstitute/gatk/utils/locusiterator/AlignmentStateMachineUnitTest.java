@@ -113,4 +113,35 @@ public class AlignmentStateMachineUnitTest extends LocusIteratorByStateBaseTest
         Assert.assertEquals(state.getCurrentCigarElement(), null);
         Assert.assertNotNull(state.toString());
     }
+
+    @Test(dataProvider = "AlignmentStateMachineTest")
+    public void testStepOverCurrentElement(LIBSTest params) {
+        final GATKSAMRecord read = params.makeRead();
+        final AlignmentStateMachine stepping = new AlignmentStateMachine(read);
+        final AlignmentStateMachine jumping = new AlignmentStateMachine(read);
+
+        Assert.assertEquals(jumping.getGenomeStepsLeftInCurrentElement(), 0);
+
+        // jumping over the rest of each cigar element must leave the machine just where stepping one bp at a time does
+        while ( jumping.stepForwardOnGenome() != null ) {
+            Assert.assertEquals(stepping.stepForwardOnGenome(), jumping.getCigarOperator());
+
+            final int nSteps = jumping.getGenomeStepsLeftInCurrentElement();
+            Assert.assertEquals(nSteps, jumping.getCurrentCigarElement().getLength() - jumping.getOffsetIntoCurrentCigarElement() - 1);
+            Assert.assertEquals(jumping.stepForwardOnGenome(nSteps), jumping.getCigarOperator());
+            for ( int i = 0; i < nSteps; i++ )
+                Assert.assertEquals(stepping.stepForwardOnGenome(), jumping.getCigarOperator());
+
+            Assert.assertEquals(jumping.getGenomeStepsLeftInCurrentElement(), 0);
+            Assert.assertEquals(jumping.getReadOffset(), stepping.getReadOffset());
+            Assert.assertEquals(jumping.getGenomeOffset(), stepping.getGenomeOffset());
+            Assert.assertEquals(jumping.getCurrentCigarElementOffset(), stepping.getCurrentCigarElementOffset());
+            Assert.assertEquals(jumping.getOffsetIntoCurrentCigarElement(), stepping.getOffsetIntoCurrentCigarElement());
+            Assert.assertEquals(jumping.getCurrentCigarElement(), stepping.getCurrentCigarElement());
+        }
+
+        Assert.assertNull(stepping.stepForwardOnGenome());
+        Assert.assertTrue(jumping.isRightEdge());
+        Assert.assertEquals(jumping.getGenomeStepsLeftInCurrentElement(), 0);
+    }
 }
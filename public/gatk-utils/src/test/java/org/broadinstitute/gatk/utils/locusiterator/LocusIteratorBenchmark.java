@@ -50,11 +50,20 @@ public class LocusIteratorBenchmark extends SimpleBenchmark {
     final int nReads = 10000;
     final int locus = 1;
 
-    @Param({"101M", "50M10I40M", "50M10D40M"})
+    @Param({"101M", "50M10I40M", "50M10D40M", "50M500N51M"})
     String cigar; // set automatically by framework
 
+    /**
+     * Deep, staggered reads that start at every position, as in a high coverage BAM, to exercise the
+     * advancing, removing and leveling of read states in the ReadStateManager
+     */
+    List<GATKSAMRecord> staggeredReads = new LinkedList<GATKSAMRecord>();
+    final int readsPerStart = 20;
+    final int nStarts = 500;
+    final int downsampleTo = 250;
+
     @Override protected void setUp() {
-        header = ArtificialSAMUtils.createArtificialSamHeader(1, 1, 1000);
+        header = ArtificialSAMUtils.createArtificialSamHeader(1, 1, 2000);
         genomeLocParser = new GenomeLocParser(header.getSequenceDictionary());
 
         for ( int j = 0; j < nReads; j++ ) {
@@ -67,6 +76,16 @@ public class LocusIteratorBenchmark extends SimpleBenchmark {
             read.setCigarString(cigar);
             reads.add(read);
         }
+
+        for ( int start = 1; start <= nStarts; start++ ) {
+            for ( int j = 0; j < readsPerStart; j++ ) {
+                final GATKSAMRecord read = ArtificialSAMUtils.createArtificialRead(header, "read" + start + "." + j, 0, start, readLength);
+                read.setReadBases(Utils.dupBytes((byte) 'A', readLength));
+                read.setBaseQualities(Utils.dupBytes((byte) 30, readLength));
+                read.setCigarString(cigar);
+                staggeredReads.add(read);
+            }
+        }
     }
 
 //    public void timeOriginalLIBS(int rep) {
@@ -114,6 +133,38 @@ public class LocusIteratorBenchmark extends SimpleBenchmark {
         }
     }
 
+    public void timeNewLIBSHighCoverage(int rep) {
+        for ( int i = 0; i < rep; i++ ) {
+            final LocusIteratorByState libs =
+                    new LocusIteratorByState(
+                            new LocusIteratorByStateBaseTest.FakeCloseableIterator<GATKSAMRecord>(staggeredReads.iterator()),
+                            new LIBSDownsamplingInfo(false, 0), true,
+                            genomeLocParser,
+                            LocusIteratorByState.sampleListForSAMWithoutReadGroups(),
+                            false);
+
+            while ( libs.hasNext() ) {
+                AlignmentContext context = libs.next();
+            }
+        }
+    }
+
+    public void timeNewLIBSHighCoverageDownsampled(int rep) {
+        for ( int i = 0; i < rep; i++ ) {
+            final LocusIteratorByState libs =
+                    new LocusIteratorByState(
+                            new LocusIteratorByStateBaseTest.FakeCloseableIterator<GATKSAMRecord>(staggeredReads.iterator()),
+                            new LIBSDownsamplingInfo(true, downsampleTo), true,
+                            genomeLocParser,
+                            LocusIteratorByState.sampleListForSAMWithoutReadGroups(),
+                            false);
+
+            while ( libs.hasNext() ) {
+                AlignmentContext context = libs.next();
+            }
+        }
+    }
+
 //    public void timeOriginalLIBSStateMachine(int rep) {
 //        for ( int i = 0; i < rep; i++ ) {
 //            for ( final SAMRecord read : reads ) {
@@ -36,6 +36,7 @@ import org.broadinstitute.gatk.utils.QualityUtils;
 import org.broadinstitute.gatk.utils.Utils;
 import org.broadinstitute.gatk.utils.pileup.PileupElement;
 import org.broadinstitute.gatk.utils.pileup.ReadBackedPileup;
+import org.broadinstitute.gatk.utils.pileup2.Pileup2;
 import org.broadinstitute.gatk.utils.sam.ArtificialBAMBuilder;
 import org.broadinstitute.gatk.utils.sam.ArtificialSAMUtils;
 import org.broadinstitute.gatk.utils.sam.GATKSAMReadGroupRecord;
@@ -116,6 +117,37 @@ public class LocusIteratorByStateUnitTest extends LocusIteratorByStateBaseTest {
         }
     }
 
+    @Test(enabled = true && ! DEBUG)
+    public void testSkippingOverReferenceSkips() {
+        final GATKSAMRecord spliced = ArtificialSAMUtils.createArtificialRead(header, "spliced", 0, 1, 20);
+        spliced.setCigarString("10M100N10M");
+        final GATKSAMRecord insideSkip = ArtificialSAMUtils.createArtificialRead(header, "insideSkip", 0, 50, 5);
+        insideSkip.setCigarString("5M");
+        final GATKSAMRecord afterSkip = ArtificialSAMUtils.createArtificialRead(header, "afterSkip", 0, 200, 10);
+        afterSkip.setCigarString("10M");
+
+        li = makeLTBS(Arrays.asList(spliced, insideSkip, afterSkip));
+
+        // the loci within the N without any other read have no pileup at all, and must all be jumped over
+        final List<Integer> expectedPositions = new ArrayList<Integer>();
+        for ( int i = 1; i <= 10; i++ ) expectedPositions.add(i);
+        for ( int i = 50; i <= 54; i++ ) expectedPositions.add(i);
+        for ( int i = 111; i <= 120; i++ ) expectedPositions.add(i);
+        for ( int i = 200; i <= 209; i++ ) expectedPositions.add(i);
+
+        final List<Integer> positions = new ArrayList<Integer>();
+        while ( li.hasNext() ) {
+            final AlignmentContext context = li.next();
+            final ReadBackedPileup pileup = context.getBasePileup();
+            Assert.assertEquals(pileup.depthOfCoverage(), 1, "Only one read should be in the pileup at " + context.getPosition());
+            final GATKSAMRecord expectedRead = context.getPosition() <= 120 ? (context.getPosition() >= 50 && context.getPosition() <= 54 ? insideSkip : spliced) : afterSkip;
+            Assert.assertSame(pileup.getReads().get(0), expectedRead);
+            positions.add((int) context.getPosition());
+        }
+
+        Assert.assertEquals(positions, expectedPositions);
+    }
+
     @Test(enabled = true && ! DEBUG)
     public void testIndelsInRegularPileup() {
         final byte[] bases = new byte[] {'A','A','A','A','A','A','A','A','A','A'};
@@ -574,6 +606,33 @@ public class LocusIteratorByStateUnitTest extends LocusIteratorByStateBaseTest {
         }
     }
 
+    @Test(enabled = ! DEBUG)
+    public void testPileupsAreSplitBySample() {
+        final ArtificialBAMBuilder bamBuilder = new ArtificialBAMBuilder(header.getSequenceDictionary(), 3, 5);
+        bamBuilder.createAndSetHeader(4).setReadLength(10).setAlignmentStart(1);
+        li = new LocusIteratorByState(new FakeCloseableIterator<GATKSAMRecord>(bamBuilder.makeReads().iterator()),
+                new DownsamplingMethod(DownsampleType.NONE, null, null), true, false,
+                genomeLocParser,
+                bamBuilder.getSamples());
+
+        while ( li.hasNext() ) {
+            final ReadBackedPileup p = li.next().getBasePileup();
+            Assert.assertTrue(p instanceof Pileup2, "LIBS should create columnar pileups");
+            Assert.assertEquals(new HashSet<String>(p.getSamples()), new HashSet<String>(bamBuilder.getSamples()));
+
+            int nElements = 0;
+            for ( final String sample : bamBuilder.getSamples() ) {
+                final ReadBackedPileup samplePileup = p.getPileupForSample(sample);
+                AssertWellOrderedPileup(samplePileup);
+                for ( final GATKSAMRecord read : samplePileup.getReads() )
+                    Assert.assertEquals(read.getReadGroup().getSample(), sample);
+                nElements += samplePileup.getNumberOfElements();
+            }
+            Assert.assertEquals(nElements, p.getNumberOfElements());
+            Assert.assertEquals(p.getPileupWithoutDeletions().getNumberOfElements(), p.getNumberOfElements() - p.getNumberOfDeletions());
+        }
+    }
+
     private void AssertWellOrderedPileup(final ReadBackedPileup pileup) {
         if ( ! pileup.isEmpty() ) {
             int leftMostPos = -1;
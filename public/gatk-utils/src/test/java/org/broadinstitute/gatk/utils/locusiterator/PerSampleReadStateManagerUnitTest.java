@@ -27,6 +27,8 @@ package org.broadinstitute.gatk.utils.locusiterator;
 
 import htsjdk.samtools.SAMRecord;
 import org.broadinstitute.gatk.utils.MathUtils;
+import org.broadinstitute.gatk.utils.Utils;
+import org.broadinstitute.gatk.utils.downsampling.LevelingDownsampler;
 import org.broadinstitute.gatk.utils.sam.ArtificialSAMUtils;
 import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
 import org.testng.Assert;
@@ -185,4 +187,83 @@ public class PerSampleReadStateManagerUnitTest extends LocusIteratorByStateBaseT
 
         test.run();
     }
+
+    @DataProvider(name = "LevelingTestDataProvider")
+    public Object[][] createLevelingTests() {
+        final List<Object[]> tests = new ArrayList<Object[]>();
+        for ( final int downsampleTo : Arrays.asList(1, 5, 20, 100) )
+            for ( final List<Integer> readCountsPerAlignmentStart : Arrays.asList(
+                    Arrays.asList(10),
+                    Arrays.asList(1, 1, 1, 1, 1, 1),
+                    Arrays.asList(10, 10, 10, 10, 10, 10),
+                    Arrays.asList(1, 2, 10, 1, 2, 10, 50, 3)) )
+                tests.add(new Object[]{readCountsPerAlignmentStart, downsampleTo});
+        return tests.toArray(new Object[][]{});
+    }
+
+    /**
+     * The in-place leveling of the states must keep exactly the states the LevelingDownsampler would have
+     * kept given the states grouped by alignment start
+     */
+    @Test(dataProvider = "LevelingTestDataProvider")
+    public void testLevelingMatchesLevelingDownsampler(final List<Integer> readCountsPerAlignmentStart, final int downsampleTo) {
+        final List<List<AlignmentStateMachine>> stacks = new ArrayList<List<AlignmentStateMachine>>();
+        int alignmentStart = 1;
+        for ( final int readsThisStack : readCountsPerAlignmentStart ) {
+            final List<AlignmentStateMachine> stack = new ArrayList<AlignmentStateMachine>();
+            for ( final GATKSAMRecord read : ArtificialSAMUtils.createStackOfIdenticalArtificialReads(readsThisStack, header, "foo", 0, alignmentStart, 100) )
+                stack.add(new AlignmentStateMachine(read));
+            stacks.add(stack);
+            alignmentStart++;
+        }
+
+        // the expected states, by leveling lists of lists of copies of the states
+        Utils.resetRandomGenerator();
+        final LevelingDownsampler<LinkedList<AlignmentStateMachine>, AlignmentStateMachine> downsampler =
+                new LevelingDownsampler<LinkedList<AlignmentStateMachine>, AlignmentStateMachine>(downsampleTo);
+        List<LinkedList<AlignmentStateMachine>> expected = new ArrayList<LinkedList<AlignmentStateMachine>>();
+        for ( final List<AlignmentStateMachine> stack : stacks ) {
+            for ( final List<AlignmentStateMachine> group : expected )
+                for ( final AlignmentStateMachine state : group )
+                    state.stepForwardOnGenome();
+            final LinkedList<AlignmentStateMachine> newStates = new LinkedList<AlignmentStateMachine>();
+            for ( final AlignmentStateMachine state : stack ) {
+                final AlignmentStateMachine copy = new AlignmentStateMachine(state.getRead());
+                copy.stepForwardOnGenome();
+                newStates.add(copy);
+            }
+            expected.add(newStates);
+
+            int size = 0;
+            for ( final List<AlignmentStateMachine> group : expected )
+                size += group.size();
+            if ( size > downsampleTo ) {
+                downsampler.submit(expected);
+                downsampler.signalEndOfInput();
+                expected = downsampler.consumeFinalizedItems();
+                downsampler.resetStats();
+            }
+        }
+
+        // the actual states, leveled in place by the manager
+        Utils.resetRandomGenerator();
+        final PerSampleReadStateManager manager = new PerSampleReadStateManager(new LIBSDownsamplingInfo(true, downsampleTo));
+        for ( final List<AlignmentStateMachine> stack : stacks ) {
+            manager.updateReadStates();
+            for ( final AlignmentStateMachine state : stack )
+                state.stepForwardOnGenome();
+            manager.addStatesAtNextAlignmentStart(stack);
+        }
+
+        final List<GATKSAMRecord> expectedReads = new ArrayList<GATKSAMRecord>();
+        for ( final List<AlignmentStateMachine> group : expected )
+            for ( final AlignmentStateMachine state : group )
+                expectedReads.add(state.getRead());
+        final List<GATKSAMRecord> actualReads = new ArrayList<GATKSAMRecord>();
+        for ( final AlignmentStateMachine state : manager )
+            actualReads.add(state.getRead());
+
+        Assert.assertEquals(manager.size(), actualReads.size());
+        Assert.assertEquals(actualReads, expectedReads);
+    }
 }
@@ -325,4 +325,41 @@ public class ReadBackedPileupUnitTest {
 
         Assert.assertEquals(pileup.getMappingQuals()[0], 200);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPileupStatistics() {
+        final int[] mappingQuals = {0, 20, 255, 60, 6};
+        final List<GATKSAMRecord> reads = new ArrayList<>();
+        for ( int i = 0; i < mappingQuals.length; i++ ) {
+            final GATKSAMRecord read = ArtificialSAMUtils.createArtificialRead(header, "read" + i, 0, 1, 10);
+            read.setMappingQuality(mappingQuals[i]);
+            read.setReadNegativeStrandFlag(i % 2 == 1);
+            reads.add(read);
+        }
+        reads.get(3).setIsStrandless(true);
+        reads.get(4).getBaseQualities()[0] = 2;
+
+        final ReadBackedPileup pileup = new ReadBackedPileupImpl(loc, reads, 0);
+        final PileupStatistics stats = new PileupStatistics(pileup);
+        Assert.assertEquals(stats.size(), pileup.depthOfCoverage());
+        Assert.assertEquals(stats.getNumberOfMappingQualityZero(), 1);
+        Assert.assertEquals(stats.getNumberOfAvailableMappingQualities(), 4);
+        Assert.assertEquals(stats.getSumOfSquaredMappingQualities(), 20 * 20 + 60 * 60 + 6 * 6);
+
+        int i = 0;
+        for ( final PileupElement p : pileup ) {
+            Assert.assertSame(stats.getElement(i), p);
+            Assert.assertEquals(stats.getBase(i), p.getBase());
+            Assert.assertEquals(stats.getQual(i), p.getQual());
+            Assert.assertEquals(stats.getMappingQual(i), p.getMappingQual());
+            Assert.assertEquals(stats.isNegativeStrand(i), p.getRead().getReadNegativeStrandFlag());
+            Assert.assertEquals(stats.isStrandless(i), p.getRead().isStrandless());
+            i++;
+        }
+
+        // only the read with a reasonable mapping quality and base quality is usable
+        final boolean[] usable = {false, true, false, true, false};
+        for ( i = 0; i < usable.length; i++ )
+            Assert.assertEquals(stats.isUsableBase(i), usable[i], "element " + i);
+    }
+}
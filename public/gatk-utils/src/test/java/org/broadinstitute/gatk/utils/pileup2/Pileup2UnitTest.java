@@ -0,0 +1,289 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.pileup2;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.GenomeLocParser;
+import org.broadinstitute.gatk.utils.Utils;
+import org.broadinstitute.gatk.utils.pileup.PileupElement;
+import org.broadinstitute.gatk.utils.pileup.PileupElementFilter;
+import org.broadinstitute.gatk.utils.pileup.ReadBackedPileup;
+import org.broadinstitute.gatk.utils.pileup.ReadBackedPileupImpl;
+import org.broadinstitute.gatk.utils.sam.ArtificialSAMUtils;
+import org.broadinstitute.gatk.utils.sam.GATKSAMRecord;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Checks that Pileup2 behaves just like ReadBackedPileupImpl over the same pileup elements
+ */
+public class Pileup2UnitTest extends BaseTest {
+    private static final int READ_LENGTH = 12;
+    private static final String[] SAMPLES = {"sample1", "sample2", "sample3"};
+
+    private SAMFileHeader header;
+    private GenomeLoc loc;
+
+    @BeforeClass
+    public void beforeClass() {
+        header = ArtificialSAMUtils.createArtificialSamHeader(1, 1, 1000);
+        for ( final String sample : SAMPLES ) {
+            for ( int lane = 1; lane <= 2; lane++ ) {
+                final SAMReadGroupRecord rg = new SAMReadGroupRecord("lane" + lane + "." + sample);
+                rg.setSample(sample);
+                header.addReadGroup(rg);
+            }
+        }
+        loc = new GenomeLocParser(header.getSequenceDictionary()).createGenomeLoc("chr1", 100);
+    }
+
+    /**
+     * Creates nReads random pileup elements for each sample at loc, including deletions, MQ0 reads, reads on
+     * both strands and both mates of some fragments
+     */
+    private Map<String, List<PileupElement>> makeElements(final int nReads) {
+        final Random random = Utils.getRandomGenerator();
+        final Map<String, List<PileupElement>> elementsBySample = new LinkedHashMap<String, List<PileupElement>>();
+        for ( final String sample : SAMPLES ) {
+            final List<PileupElement> elements = new ArrayList<PileupElement>(nReads);
+            for ( int i = 0; i < nReads; i++ ) {
+                final byte[] bases = new byte[READ_LENGTH];
+                final byte[] quals = new byte[READ_LENGTH];
+                for ( int j = 0; j < READ_LENGTH; j++ ) {
+                    bases[j] = "ACGTN".getBytes()[random.nextInt(5)];
+                    quals[j] = (byte) random.nextInt(60);
+                }
+
+                final boolean deletion = random.nextInt(5) == 0;
+                final int offset = random.nextInt(READ_LENGTH / 2);
+                final int start = loc.getStart() - offset;
+                final String cigar = deletion ? (offset + 1) + "M2D" + (READ_LENGTH - offset - 1) + "M" : READ_LENGTH + "M";
+                // mates share a name, so every other read of a sample is part of an overlapping fragment
+                final String name = sample + ".fragment" + (i / 2);
+                final GATKSAMRecord read = ArtificialSAMUtils.createArtificialRead(header, name, 0, deletion ? start - 1 : start, bases, quals, cigar);
+                read.setAttribute("RG", "lane" + (1 + random.nextInt(2)) + "." + sample);
+                read.setMappingQuality(random.nextInt(4) == 0 ? 0 : random.nextInt(60));
+                read.setReadNegativeStrandFlag(random.nextBoolean());
+
+                elements.add(deletion
+                        ? new PileupElement(read, offset, read.getCigar().getCigarElement(1), 1, 0)
+                        : new PileupElement(read, offset, read.getCigar().getCigarElement(0), 0, offset));
+            }
+            elementsBySample.put(sample, elements);
+        }
+        return elementsBySample;
+    }
+
+    private List<PileupElement> allElements(final Map<String, List<PileupElement>> elementsBySample) {
+        final List<PileupElement> all = new ArrayList<PileupElement>();
+        for ( final List<PileupElement> elements : elementsBySample.values() )
+            all.addAll(elements);
+        return all;
+    }
+
+    @DataProvider(name = "PileupPairs")
+    public Object[][] makePileupPairs() {
+        final List<Object[]> tests = new ArrayList<Object[]>();
+        for ( final int nReads : Arrays.asList(0, 1, 5, 50) ) {
+            final Map<String, List<PileupElement>> elementsBySample = makeElements(nReads);
+
+            // unified
+            final List<PileupElement> all = allElements(elementsBySample);
+            tests.add(new Object[]{new ReadBackedPileupImpl(loc, all), new Pileup2(loc, all)});
+
+            // per sample, from a hash map of the samples like LocusIteratorByState does
+            final Map<String, List<PileupElement>> hashedElementsBySample = new HashMap<String, List<PileupElement>>(elementsBySample);
+            final Map<String, ReadBackedPileupImpl> implsBySample = new HashMap<String, ReadBackedPileupImpl>();
+            for ( final Map.Entry<String, List<PileupElement>> entry : hashedElementsBySample.entrySet() )
+                implsBySample.put(entry.getKey(), new ReadBackedPileupImpl(loc, entry.getValue()));
+            tests.add(new Object[]{new ReadBackedPileupImpl(loc, implsBySample), new Pileup2(loc, hashedElementsBySample)});
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    /**
+     * The multi-sample pileups may break ties in the offsets of different samples differently, so
+     * compare pileups by their elements in the order of their reads
+     */
+    private void assertSamePileup(final ReadBackedPileup actual, final ReadBackedPileup expected) {
+        if ( expected == null ) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(actual.getNumberOfElements(), expected.getNumberOfElements(), "size");
+        Assert.assertEquals(actual.depthOfCoverage(), expected.depthOfCoverage(), "depth");
+        Assert.assertEquals(actual.isEmpty(), expected.isEmpty(), "isEmpty");
+        Assert.assertEquals(actual.getNumberOfDeletions(), expected.getNumberOfDeletions(), "deletions");
+        Assert.assertEquals(actual.getNumberOfMappingQualityZeroReads(), expected.getNumberOfMappingQualityZeroReads(), "MQ0");
+        Assert.assertEquals(actual.getNumberOfDeletionsAfterThisElement(), expected.getNumberOfDeletionsAfterThisElement());
+        Assert.assertEquals(actual.getNumberOfInsertionsAfterThisElement(), expected.getNumberOfInsertionsAfterThisElement());
+        Assert.assertEquals(actual.getBaseCounts(), expected.getBaseCounts(), "base counts");
+        Assert.assertEquals(actual.getSamples(), expected.getSamples(), "samples");
+        Assert.assertEquals(actual.getLocation(), expected.getLocation());
+        Assert.assertEquals(sorted(actual.getOffsets()), sorted(expected.getOffsets()), "offsets");
+        Assert.assertEquals(asSet(actual), asSet(expected), "elements");
+
+        // the values of the columns must come in iteration order
+        final List<PileupElement> elements = new ArrayList<PileupElement>();
+        for ( final PileupElement p : actual )
+            elements.add(p);
+        final byte[] bases = actual.getBases(), quals = actual.getQuals();
+        final int[] mappingQuals = actual.getMappingQuals();
+        for ( int i = 0; i < elements.size(); i++ ) {
+            Assert.assertEquals(bases[i], elements.get(i).getBase());
+            Assert.assertEquals(quals[i], elements.get(i).getQual());
+            Assert.assertEquals(mappingQuals[i], elements.get(i).getMappingQual());
+            Assert.assertSame(actual.getReads().get(i), elements.get(i).getRead());
+        }
+    }
+
+    private static List<Integer> sorted(final List<Integer> values) {
+        final List<Integer> copy = new ArrayList<Integer>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static Set<PileupElement> asSet(final ReadBackedPileup pileup) {
+        final Set<PileupElement> elements = Collections.newSetFromMap(new IdentityHashMap<PileupElement, Boolean>());
+        for ( final PileupElement p : pileup )
+            elements.add(p);
+        return elements;
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testSamePileup(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        assertSamePileup(pileup2, impl);
+        assertSamePileup(pileup2.copy(), impl.copy());
+        Assert.assertEquals(pileup2.getReadGroups(), impl.getReadGroups());
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testSameIterationOrder(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        // with the samples hashed the same way, even ties between the offsets of samples are broken the same way
+        Assert.assertEquals(pileup2.getReads(), impl.getReads());
+        Assert.assertEquals(pileup2.getBases(), impl.getBases());
+        Assert.assertEquals(pileup2.getPileupString('A'), impl.getPileupString('A'));
+        Assert.assertEquals(pileup2.getOffsets(), impl.getOffsets());
+        Assert.assertEquals(pileup2.getPileupWithoutDeletions().getReads(), impl.getPileupWithoutDeletions().getReads());
+        Assert.assertEquals(pileup2.getStartSortedPileup().getReads(), impl.getStartSortedPileup().getReads());
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testSamplePileupsKeepOrder(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        // within a sample the elements come in the order they were given
+        for ( final String sample : SAMPLES ) {
+            final ReadBackedPileup expected = impl.getPileupForSample(sample);
+            final ReadBackedPileup actual = pileup2.getPileupForSample(sample);
+            if ( expected == null ) {
+                Assert.assertNull(actual);
+            } else {
+                Assert.assertEquals(actual.getReads(), expected.getReads());
+                Assert.assertEquals(actual.getBases(), expected.getBases());
+                Assert.assertEquals(actual.getPileupString('A'), expected.getPileupString('A'));
+            }
+        }
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testFilters(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        assertSamePileup(pileup2.getPileupWithoutDeletions(), impl.getPileupWithoutDeletions());
+        assertSamePileup(pileup2.getPileupWithoutMappingQualityZeroReads(), impl.getPileupWithoutMappingQualityZeroReads());
+        assertSamePileup(pileup2.getPositiveStrandPileup(), impl.getPositiveStrandPileup());
+        assertSamePileup(pileup2.getNegativeStrandPileup(), impl.getNegativeStrandPileup());
+        assertSamePileup(pileup2.getBaseFilteredPileup(20), impl.getBaseFilteredPileup(20));
+        assertSamePileup(pileup2.getMappingFilteredPileup(20), impl.getMappingFilteredPileup(20));
+        assertSamePileup(pileup2.getBaseAndMappingFilteredPileup(20, 30), impl.getBaseAndMappingFilteredPileup(20, 30));
+        assertSamePileup(pileup2.getStartSortedPileup(), impl.getStartSortedPileup());
+
+        final PileupElementFilter filter = new PileupElementFilter() {
+            @Override
+            public boolean allow(final PileupElement pileupElement) {
+                return pileupElement.getBase() == 'A';
+            }
+        };
+        assertSamePileup(pileup2.getFilteredPileup(filter), impl.getFilteredPileup(filter));
+
+        // filters of filtered pileups only see the filtered elements
+        assertSamePileup(pileup2.getPositiveStrandPileup().getPileupWithoutDeletions().getMappingFilteredPileup(10),
+                impl.getPositiveStrandPileup().getPileupWithoutDeletions().getMappingFilteredPileup(10));
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testOverlappingFragmentFilter(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        for ( final boolean discardDiscordant : Arrays.asList(true, false) )
+            for ( final boolean baseQualNotMapQual : Arrays.asList(true, false) )
+                assertSamePileup(pileup2.getOverlappingFragmentFilteredPileup(discardDiscordant, baseQualNotMapQual),
+                        impl.getOverlappingFragmentFilteredPileup(discardDiscordant, baseQualNotMapQual));
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testSamplesAndReadGroups(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        for ( final String sample : SAMPLES ) {
+            assertSamePileup(pileup2.getPileupForSample(sample), impl.getPileupForSample(sample));
+            assertSamePileup(pileup2.getPileupForReadGroup("lane1." + sample), impl.getPileupForReadGroup("lane1." + sample));
+        }
+        assertSamePileup(pileup2.getPileupForSample("noSuchSample"), impl.getPileupForSample("noSuchSample"));
+        assertSamePileup(pileup2.getPileupForLane("lane2"), impl.getPileupForLane("lane2"));
+
+        final HashSet<String> readGroups = new HashSet<String>(Arrays.asList("lane1." + SAMPLES[0], "lane2." + SAMPLES[1]));
+        assertSamePileup(pileup2.getPileupForReadGroups(readGroups), impl.getPileupForReadGroups(readGroups));
+
+        final List<String> someSamples = Arrays.asList(SAMPLES[0], SAMPLES[2]);
+        assertSamePileup(pileup2.getPileupForSamples(someSamples), impl.getPileupForSamples(someSamples));
+
+        final Map<String, ReadBackedPileup> pileup2sBySample = pileup2.getPileupsForSamples(someSamples);
+        final Map<String, ReadBackedPileup> implsBySample = impl.getPileupsForSamples(someSamples);
+        Assert.assertEquals(pileup2sBySample.keySet(), implsBySample.keySet());
+        for ( final String sample : implsBySample.keySet() )
+            assertSamePileup(pileup2sBySample.get(sample), implsBySample.get(sample));
+    }
+
+    @Test(dataProvider = "PileupPairs")
+    public void testDownsampling(final ReadBackedPileup impl, final Pileup2 pileup2) {
+        for ( final int coverage : Arrays.asList(0, 1, 10, 1000) ) {
+            final Pileup2 downsampled = pileup2.getDownsampledPileup(coverage);
+            Assert.assertEquals(downsampled.getNumberOfElements(), Math.min(coverage, impl.getNumberOfElements()));
+            Assert.assertTrue(asSet(pileup2).containsAll(asSet(downsampled)));
+        }
+    }
+
+    @Test
+    public void testEmptyPileup() {
+        final Pileup2 pileup2 = new Pileup2(loc);
+        Assert.assertTrue(pileup2.isEmpty());
+        Assert.assertFalse(pileup2.iterator().hasNext());
+        Assert.assertEquals(pileup2.getBases().length, 0);
+        Assert.assertSame(pileup2.getPileupWithoutDeletions(), pileup2);
+    }
+}
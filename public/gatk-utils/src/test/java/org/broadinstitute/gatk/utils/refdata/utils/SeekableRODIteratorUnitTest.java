@@ -0,0 +1,115 @@
+/*
+* Copyright (c) 2012 The Broad Institute
+* 
+* Permission is hereby granted, free of charge, to any person
+* obtaining a copy of this software and associated documentation
+* files (the "Software"), to deal in the Software without
+* restriction, including without limitation the rights to use,
+* copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following
+* conditions:
+* 
+* The above copyright notice and this permission notice shall be
+* included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+* OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+* HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+* THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package org.broadinstitute.gatk.utils.refdata.utils;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.gatk.utils.BaseTest;
+import org.broadinstitute.gatk.utils.GenomeLoc;
+import org.broadinstitute.gatk.utils.GenomeLocParser;
+import org.broadinstitute.gatk.utils.refdata.SeekableRODIterator;
+import org.broadinstitute.gatk.utils.sam.ArtificialSAMUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class SeekableRODIteratorUnitTest extends BaseTest {
+    private SAMFileHeader header = ArtificialSAMUtils.createArtificialSamHeader(2, 1, 1000);
+    private GenomeLocParser genomeLocParser;
+    private List<GATKFeature> records;
+
+    @BeforeMethod
+    public void setup() {
+        genomeLocParser = new GenomeLocParser(header.getSequenceDictionary());
+        final String contig1 = header.getSequenceDictionary().getSequence(0).getSequenceName();
+        final String contig2 = header.getSequenceDictionary().getSequence(1).getSequenceName();
+        records = Arrays.<GATKFeature>asList(
+                new FakeRODatum("a", genomeLocParser.createGenomeLoc(contig1, 10, 20)),
+                new FakeRODatum("b", genomeLocParser.createGenomeLoc(contig1, 15, 15)),
+                new FakeRODatum("c", genomeLocParser.createGenomeLoc(contig1, 30, 40)),
+                new FakeRODatum("d", genomeLocParser.createGenomeLoc(contig2, 5, 8)));
+    }
+
+    private SeekableRODIterator makeIterator() {
+        final Iterator<GATKFeature> it = records.iterator();
+        return new SeekableRODIterator(null, header.getSequenceDictionary(), header.getSequenceDictionary(), genomeLocParser, new CloseableIterator<GATKFeature>() {
+            @Override public void close() {}
+            @Override public boolean hasNext() { return it.hasNext(); }
+            @Override public GATKFeature next() { return it.next(); }
+            @Override public void remove() { throw new UnsupportedOperationException(); }
+        });
+    }
+
+    @Test
+    public void testEveryCoveredPositionIsVisited() {
+        final SeekableRODIterator it = makeIterator();
+        int nVisited = 0;
+        while ( it.hasNext() ) {
+            it.next();
+            nVisited++;
+        }
+        Assert.assertEquals(nVisited, 11 + 11 + 4);
+    }
+
+    @Test
+    public void testRecordStartsOnly() {
+        final SeekableRODIterator it = makeIterator();
+        it.setRecordStartsOnly(true);
+
+        final List<Integer> starts = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+        while ( it.hasNext() ) {
+            final GenomeLoc next = it.peekNextLocation();
+            final RODRecordList list = it.next();
+            Assert.assertEquals(list.getLocation().getStart(), next.getStart());
+            starts.add(list.getLocation().getStart());
+            sizes.add(list.size());
+        }
+
+        Assert.assertEquals(starts, Arrays.asList(10, 15, 30, 5));
+        // the list at 15 also holds the record started at 10, which still spans it
+        Assert.assertEquals(sizes, Arrays.asList(1, 2, 1, 1));
+    }
+
+    @Test
+    public void testRecordStartsOnlyAfterPointSeek() {
+        final SeekableRODIterator it = makeIterator();
+        it.setRecordStartsOnly(true);
+
+        final RODRecordList spanning = it.seekForward(genomeLocParser.createGenomeLoc(records.get(0).getLocation().getContig(), 12));
+        Assert.assertEquals(spanning.size(), 1);
+
+        // the record spanning the seek position is kept along with the one starting at the next visited position
+        final RODRecordList list = it.next();
+        Assert.assertEquals(list.getLocation().getStart(), 15);
+        Assert.assertEquals(list.size(), 2);
+    }
+}
@@ -62,6 +62,19 @@ public class GATKReportUnitTest extends BaseTest {
         Assert.assertEquals(validationReport.get(2, "PPV"), Double.NaN);
     }
 
+    @Test
+    public void testLoadReportUpToTable() throws Exception {
+        final File reportFile = new File(publicTestDir + "exampleGATKReportv2.tbl");
+        final GATKReport fullReport = new GATKReport(reportFile);
+
+        final GATKReport partialReport = GATKReport.loadReportUpToTable(reportFile, "CountVariants");
+        Assert.assertEquals(partialReport.getTables().size(), 2);
+        Assert.assertTrue(partialReport.getTable("CountVariants").equals(fullReport.getTable("CountVariants")));
+        Assert.assertTrue(partialReport.getTable("CompOverlap").equals(fullReport.getTable("CompOverlap")));
+
+        Assert.assertEquals(GATKReport.loadReportUpToTable(reportFile, "NoSuchTable").getTables().size(), 5);
+    }
+
     @DataProvider(name = "rightAlignValues")
     public Object[][] getRightAlignValues() {
         return new Object[][]{
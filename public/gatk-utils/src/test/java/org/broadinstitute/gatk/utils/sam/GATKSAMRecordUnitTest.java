@@ -25,12 +25,19 @@
 
 package org.broadinstitute.gatk.utils.sam;
 
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.BAMRecordCodec;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTagUtil;
 import org.broadinstitute.gatk.utils.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
 
 public class GATKSAMRecordUnitTest extends BaseTest {
     GATKSAMRecord read;
@@ -75,4 +82,75 @@ public class GATKSAMRecordUnitTest extends BaseTest {
         read.setIsStrandless(true);
         read.setReadNegativeStrandFlag(true);
     }
+
+    /**
+     * Round trip a read through the BAM codec, to get a BAMRecord that decodes its fields on demand
+     */
+    private SAMRecord toBAMRecord(final SAMFileHeader header, final SAMRecord read) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.setOutputStream(out);
+        codec.encode(read);
+        codec.setInputStream(new ByteArrayInputStream(out.toByteArray()));
+        return codec.decode();
+    }
+
+    @Test
+    public void testReadFromBAMRecord() {
+        final SAMFileHeader header = ArtificialSAMUtils.createArtificialSamHeader(1, 1, 1000);
+        final GATKSAMRecord original = ArtificialSAMUtils.createArtificialRead(header, "read1", 0, 10, BASES.length());
+        original.setReadBases(BASES.getBytes());
+        original.setBaseQualityString(QUALS);
+        original.setCigarString("1S3M");
+        original.setMappingQuality(30);
+        original.setDuplicateReadFlag(true);
+        original.setAttribute("XY", "value");
+
+        final SAMRecord bamRecord = toBAMRecord(header, original);
+        Assert.assertTrue(bamRecord instanceof BAMRecord);
+
+        final GATKSAMRecord read = new GATKSAMRecord(bamRecord);
+        Assert.assertEquals(read.getReadName(), original.getReadName());
+        Assert.assertEquals(read.getAlignmentStart(), original.getAlignmentStart());
+        Assert.assertEquals(read.getMappingQuality(), original.getMappingQuality());
+        Assert.assertEquals(read.getFlags(), original.getFlags());
+        Assert.assertEquals(read.getAlignmentEnd(), original.getAlignmentEnd());
+        Assert.assertEquals(read.getCigarString(), original.getCigarString());
+        Assert.assertEquals(read.getReadString(), BASES);
+        Assert.assertEquals(read.getBaseQualityString(), QUALS);
+        Assert.assertEquals(read.getAttribute("XY"), "value");
+        Assert.assertEquals(read, new GATKSAMRecord(toBAMRecord(header, original)));
+
+        // modifying a read before its fields are decoded must not lose the fields that aren't modified
+        final GATKSAMRecord modified = new GATKSAMRecord(toBAMRecord(header, original));
+        modified.setAttribute("ZZ", 1);
+        modified.setCigarString("4M");
+        Assert.assertEquals(modified.getAttribute("XY"), "value");
+        Assert.assertEquals(modified.getAttribute("ZZ"), 1);
+        Assert.assertEquals(modified.getReadString(), BASES);
+        Assert.assertEquals(modified.getAlignmentEnd(), 13);
+    }
+
+    @Test
+    public void testModifyingUndecodedRead() {
+        final SAMFileHeader header = ArtificialSAMUtils.createArtificialSamHeader(1, 1, 1000);
+        final GATKSAMReadGroupRecord readGroup = new GATKSAMReadGroupRecord("rg1");
+        header.addReadGroup(readGroup);
+        final GATKSAMRecord original = ArtificialSAMUtils.createArtificialRead(header, "read1", 0, 10, BASES.length());
+        original.setReadBases(BASES.getBytes());
+        original.setBaseQualityString(QUALS);
+        original.setAttribute("XY", "value");
+
+        // none of the values written before the fields are decoded may be replaced by those of the BAM record
+        final GATKSAMRecord read = new GATKSAMRecord(toBAMRecord(header, original));
+        read.setUnsignedArrayAttribute("ZU", new byte[]{1, 2});
+        read.setAttribute(SAMTagUtil.getSingleton().makeBinaryTag("ZS"), "short");
+        read.setReadGroup(readGroup);
+        Assert.assertEquals(read.getAttribute("XY"), "value");
+        Assert.assertEquals(read.getAttribute("ZU"), new byte[]{1, 2});
+        Assert.assertTrue(read.isUnsignedArrayAttribute("ZU"));
+        Assert.assertEquals(read.getAttribute("ZS"), "short");
+        Assert.assertSame(read.getReadGroup(), readGroup);
+        Assert.assertEquals(read.getReadString(), BASES);
+    }
 }